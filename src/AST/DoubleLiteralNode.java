@@ -0,0 +1,10 @@
+package AST;
+
+public class DoubleLiteralNode implements ExpressionNode {
+    public double value;
+
+    @Override
+    public String toString() {
+        return value + "d ";
+    }
+}
@@ -0,0 +1,10 @@
+package AST;
+
+public class IntegerLiteralNode implements ExpressionNode {
+    public long value;
+
+    @Override
+    public String toString() {
+        return value + "L ";
+    }
+}
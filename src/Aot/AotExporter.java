@@ -0,0 +1,135 @@
+package Aot;
+
+import AST.TranNode;
+import Interpreter.ExecutionEngine;
+import Interpreter.Interpreter;
+import Optimizer.Optimizer;
+import Tran.Lexer;
+import Tran.Parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+/**
+ * Compiles a Tran program ahead of time into a jar that runs on its own:
+ *      java Aot.AotExporter program.tran program.jar [engine]
+ *      java -jar program.jar
+ *
+ * The program is lexed, parsed and optimized here, once, and written in binary form (see AstWriter). The jar holds
+ * that, Launcher (its main class) and AstReader, and the runtime - the AST, Interpreter and Optimizer packages, which
+ * don't use the Lexer or the Parser. So a launch only pays for reading the AST and creating the Interpreter.
+ *
+ * Like Interpreter.start(), the jar runs the program's "shared start()" method; export() checks that there is one.
+ */
+public class AotExporter {
+    private static final List<String> RUNTIME_PACKAGES = List.of("AST/", "Interpreter/", "Optimizer/");
+    private static final List<String> LAUNCHER_CLASSES = List.of("Aot/Launcher", "Aot/AstReader", "Aot/AstWriter");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("usage: java Aot.AotExporter <program.tran> <output.jar> [" + List.of(ExecutionEngine.values()) + "]");
+            System.exit(2);
+        }
+        TranNode top = new TranNode();
+        new Parser(top, new Lexer(Files.readString(Path.of(args[0]))).Lex()).Tran();
+        new Optimizer(top).optimize();
+        ExecutionEngine engine = args.length == 3 ? ExecutionEngine.valueOf(args[2]) : ExecutionEngine.TREE_WALKER;
+        export(top, engine, Files.newOutputStream(Path.of(args[1])));
+    }
+
+    /**
+     * Write the jar. The program must not have been given to an Interpreter yet (see AstWriter).
+     * @param top - the program, parsed and (optionally) optimized
+     * @param engine - the engine the jar runs it with
+     * @param jar - where to write the jar; closed when done
+     * @throws IOException if the runtime classes can't be found or the jar can't be written
+     */
+    public static void export(TranNode top, ExecutionEngine engine, OutputStream jar) throws IOException {
+        if (top.Classes.stream().flatMap(c -> c.methods.stream()).noneMatch(m -> m.name.equals("start") && m.isShared && !m.isPrivate && m.parameters.isEmpty()))
+            throw new IllegalArgumentException("No 'start' method found");
+        ByteArrayOutputStream program = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(program);
+        out.writeUTF(engine.name());
+        new AstWriter(out).write(top);
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, Launcher.class.getName());
+        try (JarOutputStream jarOut = new JarOutputStream(jar, manifest)) {
+            jarOut.putNextEntry(new JarEntry(Launcher.PROGRAM));
+            program.writeTo(jarOut);
+            jarOut.closeEntry();
+            for (RuntimeClass runtimeClass : runtimeClasses()) {
+                jarOut.putNextEntry(new JarEntry(runtimeClass.name));
+                jarOut.write(runtimeClass.bytes);
+                jarOut.closeEntry();
+            }
+        }
+    }
+
+    private record RuntimeClass(String name, byte[] bytes) {
+    }
+
+    /**
+     * @return the class files the jar needs, from wherever this class was loaded (a directory or a jar)
+     */
+    private static List<RuntimeClass> runtimeClasses() throws IOException {
+        Path location;
+        try {
+            location = Path.of(Interpreter.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException | SecurityException | NullPointerException e) {
+            throw new IOException("Unable to find the runtime classes", e);
+        }
+        List<RuntimeClass> classes = new ArrayList<>();
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.walk(location)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = location.relativize(file).toString().replace('\\', '/');
+                    if (isRuntimeClass(name))
+                        classes.add(new RuntimeClass(name, Files.readAllBytes(file)));
+                }
+            }
+        }
+        else {
+            try (JarFile jarFile = new JarFile(location.toFile())) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (isRuntimeClass(entry.getName())) {
+                        try (InputStream in = jarFile.getInputStream(entry)) {
+                            classes.add(new RuntimeClass(entry.getName(), in.readAllBytes()));
+                        }
+                    }
+                }
+            }
+        }
+        if (classes.stream().noneMatch(c -> c.name.equals("Aot/Launcher.class")))
+            throw new IOException("Unable to find the runtime classes in " + location);
+        return classes;
+    }
+
+    private static boolean isRuntimeClass(String name) {
+        if (!name.endsWith(".class"))
+            return false;
+        for (String className : LAUNCHER_CLASSES) {
+            if (name.equals(className + ".class") || name.startsWith(className + "$"))
+                return true;
+        }
+        return RUNTIME_PACKAGES.stream().anyMatch(name::startsWith);
+    }
+}
@@ -0,0 +1,265 @@
+package Aot;
+
+import AST.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads a program written by AstWriter back into an AST, ready for an Interpreter (or the Optimizer).
+ */
+public class AstReader {
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+
+    public AstReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * @return the program
+     * @throws IOException if the stream can't be read, or doesn't hold a program in this version of the format
+     */
+    public TranNode read() throws IOException {
+        if (in.readInt() != AstWriter.MAGIC)
+            throw new IOException("Not a compiled Tran program");
+        int version = in.readUnsignedShort();
+        if (version != AstWriter.VERSION)
+            throw new IOException("Compiled Tran program has version " + version + ", expected " + AstWriter.VERSION);
+        TranNode top = new TranNode();
+        int interfaces = in.readInt();
+        for (int i = 0; i < interfaces; i++) {
+            InterfaceNode interfaceNode = new InterfaceNode();
+            interfaceNode.name = readString();
+            int methods = in.readInt();
+            for (int j = 0; j < methods; j++) {
+                MethodHeaderNode header = new MethodHeaderNode();
+                header.name = readString();
+                header.parameters = readDeclarations();
+                header.returns = readDeclarations();
+                interfaceNode.methods.add(header);
+            }
+            top.Interfaces.add(interfaceNode);
+        }
+        int classes = in.readInt();
+        for (int i = 0; i < classes; i++)
+            top.Classes.add(readClass());
+        return top;
+    }
+
+    private ClassNode readClass() throws IOException {
+        ClassNode classNode = new ClassNode();
+        classNode.name = readString();
+        int interfaces = in.readInt();
+        for (int i = 0; i < interfaces; i++)
+            classNode.interfaces.add(readString());
+        int members = in.readInt();
+        for (int i = 0; i < members; i++) {
+            MemberNode member = new MemberNode();
+            member.declaration = readDeclaration();
+            classNode.members.add(member);
+        }
+        int constructors = in.readInt();
+        for (int i = 0; i < constructors; i++) {
+            ConstructorNode constructor = new ConstructorNode();
+            constructor.parameters = readDeclarations();
+            constructor.locals = readDeclarations();
+            constructor.statements = readStatements();
+            classNode.constructors.add(constructor);
+        }
+        int methods = in.readInt();
+        for (int i = 0; i < methods; i++) {
+            MethodDeclarationNode method = new MethodDeclarationNode();
+            method.isShared = in.readBoolean();
+            method.isPrivate = in.readBoolean();
+            method.name = readString();
+            method.parameters = readDeclarations();
+            method.returns = readDeclarations();
+            method.locals = readDeclarations();
+            method.statements = readStatements();
+            classNode.methods.add(method);
+        }
+        return classNode;
+    }
+
+    private List<VariableDeclarationNode> readDeclarations() throws IOException {
+        int count = in.readInt();
+        List<VariableDeclarationNode> declarations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            declarations.add(readDeclaration());
+        return declarations;
+    }
+
+    private VariableDeclarationNode readDeclaration() throws IOException {
+        VariableDeclarationNode declaration = new VariableDeclarationNode();
+        declaration.type = readString();
+        declaration.name = readString();
+        if (in.readBoolean())
+            declaration.initializer = Optional.of(readExpression());
+        return declaration;
+    }
+
+    private List<StatementNode> readStatements() throws IOException {
+        int count = in.readInt();
+        List<StatementNode> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            statements.add(readStatement());
+        return statements;
+    }
+
+    private StatementNode readStatement() throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case AstWriter.ASSIGNMENT -> {
+                AssignmentNode assignment = new AssignmentNode();
+                assignment.target = reference(readString());
+                assignment.expression = readExpression();
+                return assignment;
+            }
+            case AstWriter.CALL -> {
+                MethodCallStatementNode call = new MethodCallStatementNode();
+                call.objectName = readOptionalString();
+                call.methodName = readString();
+                call.parameters = readExpressions();
+                int returnValues = in.readInt();
+                for (int i = 0; i < returnValues; i++)
+                    call.returnValues.add(reference(readString()));
+                return call;
+            }
+            case AstWriter.IF -> {
+                IfNode ifNode = new IfNode();
+                ifNode.condition = readExpression();
+                ifNode.statements = readStatements();
+                if (in.readBoolean()) {
+                    ElseNode elseNode = new ElseNode();
+                    elseNode.statements = readStatements();
+                    ifNode.elseStatement = Optional.of(elseNode);
+                }
+                else
+                    ifNode.elseStatement = Optional.empty();
+                return ifNode;
+            }
+            case AstWriter.LOOP -> {
+                LoopNode loop = new LoopNode();
+                loop.assignment = readOptionalString().map(AstReader::reference);
+                loop.expression = readExpression();
+                loop.statements = readStatements();
+                return loop;
+            }
+            default -> throw new IOException("Unknown statement tag " + tag);
+        }
+    }
+
+    private List<ExpressionNode> readExpressions() throws IOException {
+        int count = in.readInt();
+        List<ExpressionNode> expressions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            expressions.add(readExpression());
+        return expressions;
+    }
+
+    private ExpressionNode readExpression() throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case AstWriter.NUMBER -> {
+                NumericLiteralNode number = new NumericLiteralNode();
+                number.value = in.readFloat();
+                return number;
+            }
+            case AstWriter.INTEGER -> {
+                IntegerLiteralNode integer = new IntegerLiteralNode();
+                integer.value = in.readLong();
+                return integer;
+            }
+            case AstWriter.DOUBLE -> {
+                DoubleLiteralNode number = new DoubleLiteralNode();
+                number.value = in.readDouble();
+                return number;
+            }
+            case AstWriter.STRING -> {
+                StringLiteralNode string = new StringLiteralNode();
+                string.value = readString();
+                return string;
+            }
+            case AstWriter.CHARACTER -> {
+                CharLiteralNode character = new CharLiteralNode();
+                character.value = in.readChar();
+                return character;
+            }
+            case AstWriter.BOOLEAN -> {
+                return new BooleanLiteralNode(in.readBoolean());
+            }
+            case AstWriter.VARIABLE -> {
+                return reference(readString());
+            }
+            case AstWriter.MATH -> {
+                MathOpNode math = new MathOpNode();
+                math.op = MathOpNode.MathOperations.values()[in.readUnsignedByte()];
+                math.left = readExpression();
+                math.right = readExpression();
+                return math;
+            }
+            case AstWriter.COMPARE -> {
+                CompareNode compare = new CompareNode();
+                compare.op = CompareNode.CompareOperations.values()[in.readUnsignedByte()];
+                compare.left = readExpression();
+                compare.right = readExpression();
+                return compare;
+            }
+            case AstWriter.BOOLEAN_OP -> {
+                BooleanOpNode bool = new BooleanOpNode();
+                bool.op = BooleanOpNode.BooleanOperations.values()[in.readUnsignedByte()];
+                bool.left = readExpression();
+                bool.right = readExpression();
+                return bool;
+            }
+            case AstWriter.NOT -> {
+                NotOpNode not = new NotOpNode();
+                not.left = readExpression();
+                return not;
+            }
+            case AstWriter.CALL_EXPRESSION -> {
+                MethodCallExpressionNode call = new MethodCallExpressionNode();
+                call.objectName = readOptionalString();
+                call.methodName = readString();
+                call.parameters = readExpressions();
+                return call;
+            }
+            case AstWriter.NEW -> {
+                NewNode newNode = new NewNode();
+                newNode.className = readString();
+                newNode.parameters = readExpressions();
+                return newNode;
+            }
+            default -> throw new IOException("Unknown expression tag " + tag);
+        }
+    }
+
+    private static VariableReferenceNode reference(String name) {
+        VariableReferenceNode reference = new VariableReferenceNode();
+        reference.name = name;
+        return reference;
+    }
+
+    private Optional<String> readOptionalString() throws IOException {
+        return in.readBoolean() ? Optional.of(readString()) : Optional.empty();
+    }
+
+    private String readString() throws IOException {
+        int index = in.readInt();
+        if (index >= 0 && index < strings.size())
+            return strings.get(index);
+        if (index != strings.size())
+            throw new IOException("Bad string index " + index);
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(value);
+        return value;
+    }
+}
@@ -0,0 +1,249 @@
+package Aot;
+
+import AST.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes a parsed (and usually optimized) program in a binary form that AstReader turns back into the same AST, so
+ * running it doesn't need the Lexer or the Parser.
+ *
+ * The format is a header (MAGIC, VERSION) followed by the interfaces and the classes. Each node starts with a tag
+ * byte saying what kind of node it is; lists start with their length. Strings are written once: the first use of a
+ * string is its index in the string table followed by its UTF-8 bytes, and later uses are just the index.
+ *
+ * The program has to be written before an Interpreter is created for it - the interpreter adds the built-in
+ * methods, which have no binary form.
+ */
+public class AstWriter {
+    static final int MAGIC = 0x5452414E; // "TRAN"
+    static final int VERSION = 1;
+
+    // statements
+    static final int ASSIGNMENT = 0;
+    static final int CALL = 1;
+    static final int IF = 2;
+    static final int LOOP = 3;
+    // expressions
+    static final int NUMBER = 10;
+    static final int STRING = 11;
+    static final int CHARACTER = 12;
+    static final int BOOLEAN = 13;
+    static final int VARIABLE = 14;
+    static final int MATH = 15;
+    static final int COMPARE = 16;
+    static final int BOOLEAN_OP = 17;
+    static final int NOT = 18;
+    static final int CALL_EXPRESSION = 19;
+    static final int NEW = 20;
+    static final int INTEGER = 21;
+    static final int DOUBLE = 22;
+
+    private final DataOutputStream out;
+    private final HashMap<String, Integer> strings = new HashMap<>();
+
+    public AstWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * @param top - the program
+     * @throws IOException if the stream can't be written
+     */
+    public void write(TranNode top) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(top.Interfaces.size());
+        for (InterfaceNode interfaceNode : top.Interfaces) {
+            writeString(interfaceNode.name);
+            out.writeInt(interfaceNode.methods.size());
+            for (MethodHeaderNode header : interfaceNode.methods) {
+                writeString(header.name);
+                writeDeclarations(header.parameters);
+                writeDeclarations(header.returns);
+            }
+        }
+        out.writeInt(top.Classes.size());
+        for (ClassNode classNode : top.Classes)
+            writeClass(classNode);
+        out.flush();
+    }
+
+    private void writeClass(ClassNode classNode) throws IOException {
+        writeString(classNode.name);
+        out.writeInt(classNode.interfaces.size());
+        for (String name : classNode.interfaces)
+            writeString(name);
+        out.writeInt(classNode.members.size());
+        for (MemberNode member : classNode.members)
+            writeDeclaration(member.declaration);
+        out.writeInt(classNode.constructors.size());
+        for (ConstructorNode constructor : classNode.constructors) {
+            writeDeclarations(constructor.parameters);
+            writeDeclarations(constructor.locals);
+            writeStatements(constructor.statements);
+        }
+        out.writeInt(classNode.methods.size());
+        for (MethodDeclarationNode method : classNode.methods) {
+            if (method instanceof BuiltInMethodDeclarationNode)
+                throw new IllegalArgumentException("Built-in method " + method.name + " can't be written - write the program before creating an Interpreter for it");
+            out.writeBoolean(method.isShared);
+            out.writeBoolean(method.isPrivate);
+            writeString(method.name);
+            writeDeclarations(method.parameters);
+            writeDeclarations(method.returns);
+            writeDeclarations(method.locals);
+            writeStatements(method.statements);
+        }
+    }
+
+    private void writeDeclarations(List<VariableDeclarationNode> declarations) throws IOException {
+        out.writeInt(declarations.size());
+        for (VariableDeclarationNode declaration : declarations)
+            writeDeclaration(declaration);
+    }
+
+    private void writeDeclaration(VariableDeclarationNode declaration) throws IOException {
+        writeString(declaration.type);
+        writeString(declaration.name);
+        out.writeBoolean(declaration.initializer.isPresent());
+        if (declaration.initializer.isPresent())
+            writeExpression(declaration.initializer.get());
+    }
+
+    private void writeStatements(List<StatementNode> statements) throws IOException {
+        out.writeInt(statements.size());
+        for (StatementNode statement : statements)
+            writeStatement(statement);
+    }
+
+    private void writeStatement(StatementNode statement) throws IOException {
+        if (statement instanceof AssignmentNode assignment) {
+            out.writeByte(ASSIGNMENT);
+            writeString(assignment.target.name);
+            writeExpression(assignment.expression);
+        }
+        else if (statement instanceof MethodCallStatementNode call) {
+            out.writeByte(CALL);
+            writeOptionalString(call.objectName);
+            writeString(call.methodName);
+            writeExpressions(call.parameters);
+            out.writeInt(call.returnValues.size());
+            for (VariableReferenceNode returnValue : call.returnValues)
+                writeString(returnValue.name);
+        }
+        else if (statement instanceof IfNode ifNode) {
+            out.writeByte(IF);
+            writeExpression(ifNode.condition);
+            writeStatements(ifNode.statements);
+            out.writeBoolean(ifNode.elseStatement.isPresent());
+            if (ifNode.elseStatement.isPresent())
+                writeStatements(ifNode.elseStatement.get().statements);
+        }
+        else if (statement instanceof LoopNode loop) {
+            out.writeByte(LOOP);
+            writeOptionalString(loop.assignment.map(variable -> variable.name));
+            writeExpression(loop.expression);
+            writeStatements(loop.statements);
+        }
+        else
+            throw new IllegalArgumentException("Unknown statement " + statement);
+    }
+
+    private void writeExpressions(List<ExpressionNode> expressions) throws IOException {
+        out.writeInt(expressions.size());
+        for (ExpressionNode expression : expressions)
+            writeExpression(expression);
+    }
+
+    private void writeExpression(ExpressionNode expression) throws IOException {
+        if (expression instanceof NumericLiteralNode number) {
+            out.writeByte(NUMBER);
+            out.writeFloat(number.value);
+        }
+        else if (expression instanceof IntegerLiteralNode integer) {
+            out.writeByte(INTEGER);
+            out.writeLong(integer.value);
+        }
+        else if (expression instanceof DoubleLiteralNode number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(number.value);
+        }
+        else if (expression instanceof StringLiteralNode string) {
+            out.writeByte(STRING);
+            writeString(string.value);
+        }
+        else if (expression instanceof CharLiteralNode character) {
+            out.writeByte(CHARACTER);
+            out.writeChar(character.value);
+        }
+        else if (expression instanceof BooleanLiteralNode bool) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(bool.value);
+        }
+        else if (expression instanceof VariableReferenceNode variable) {
+            out.writeByte(VARIABLE);
+            writeString(variable.name);
+        }
+        else if (expression instanceof MathOpNode math) {
+            out.writeByte(MATH);
+            out.writeByte(math.op.ordinal());
+            writeExpression(math.left);
+            writeExpression(math.right);
+        }
+        else if (expression instanceof CompareNode compare) {
+            out.writeByte(COMPARE);
+            out.writeByte(compare.op.ordinal());
+            writeExpression(compare.left);
+            writeExpression(compare.right);
+        }
+        else if (expression instanceof BooleanOpNode bool) {
+            out.writeByte(BOOLEAN_OP);
+            out.writeByte(bool.op.ordinal());
+            writeExpression(bool.left);
+            writeExpression(bool.right);
+        }
+        else if (expression instanceof NotOpNode not) {
+            out.writeByte(NOT);
+            writeExpression(not.left);
+        }
+        else if (expression instanceof MethodCallExpressionNode call) {
+            out.writeByte(CALL_EXPRESSION);
+            writeOptionalString(call.objectName);
+            writeString(call.methodName);
+            writeExpressions(call.parameters);
+        }
+        else if (expression instanceof NewNode newNode) {
+            out.writeByte(NEW);
+            writeString(newNode.className);
+            writeExpressions(newNode.parameters);
+        }
+        else
+            throw new IllegalArgumentException("Unknown expression " + expression);
+    }
+
+    private void writeOptionalString(Optional<String> value) throws IOException {
+        out.writeBoolean(value.isPresent());
+        if (value.isPresent())
+            writeString(value.get());
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            out.writeInt(index);
+            return;
+        }
+        out.writeInt(strings.size());
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,40 @@
+package Aot;
+
+import Interpreter.ExecutionEngine;
+import Interpreter.Interpreter;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The main class of a jar written by AotExporter. It reads the program the exporter compiled into the jar and starts
+ * it - there is no Lexer or Parser in the jar, and the program was already optimized when it was exported.
+ *
+ * The program resource holds the name of the ExecutionEngine to run it with, then the AST (see AstWriter).
+ */
+public class Launcher {
+    static final String PROGRAM = "Aot/program.tranc";
+
+    public static void main(String[] args) throws IOException {
+        InputStream program = Launcher.class.getResourceAsStream("/" + PROGRAM);
+        if (program == null)
+            throw new IOException("No compiled program (" + PROGRAM + ") in this jar");
+        try (program) {
+            load(program).start();
+        }
+    }
+
+    /**
+     * @param program - a program resource written by AotExporter
+     * @return an interpreter for it, set to the engine it was exported for
+     * @throws IOException if the program can't be read
+     */
+    public static Interpreter load(InputStream program) throws IOException {
+        DataInputStream in = new DataInputStream(program);
+        ExecutionEngine engine = ExecutionEngine.valueOf(in.readUTF());
+        Interpreter interpreter = new Interpreter(new AstReader(in).read());
+        interpreter.setEngine(engine);
+        return interpreter;
+    }
+}
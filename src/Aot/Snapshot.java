@@ -0,0 +1,126 @@
+package Aot;
+
+import AST.TranNode;
+import Interpreter.ExecutionEngine;
+import Interpreter.HeapReader;
+import Interpreter.HeapWriter;
+import Interpreter.Interpreter;
+import Optimizer.Optimizer;
+import Tran.Lexer;
+import Tran.Parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Warm start for programs that spend a long time building their data before they do anything useful. The program's
+ * initialization (a shared method with no parameters) runs once, and what it built is saved with the program itself:
+ *      java Aot.Snapshot <program.tran> <initializer> <snapshot> [engine]
+ * Later runs restore that instead of initializing again, and go straight to start():
+ *      java Aot.Snapshot <snapshot>
+ *
+ * A snapshot is a header (MAGIC, VERSION), the name of the ExecutionEngine, the program (see AstWriter) and the state
+ * of its members and objects (see HeapWriter). restore() memory-maps the file, so reading it is a walk over the mapped
+ * pages rather than a series of reads.
+ */
+public class Snapshot {
+    static final int MAGIC = 0x54534E50; // "TSNP"
+    static final int VERSION = 2;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1) {
+            restore(Path.of(args[0])).start();
+            return;
+        }
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("usage: java Aot.Snapshot <program.tran> <initializer> <snapshot> [" + List.of(ExecutionEngine.values()) + "]");
+            System.err.println("       java Aot.Snapshot <snapshot>");
+            System.exit(2);
+        }
+        TranNode top = new TranNode();
+        new Parser(top, new Lexer(Files.readString(Path.of(args[0]))).Lex()).Tran();
+        new Optimizer(top).optimize();
+        ExecutionEngine engine = args.length == 4 ? ExecutionEngine.valueOf(args[3]) : ExecutionEngine.TREE_WALKER;
+        take(top, args[1], engine, Path.of(args[2]));
+    }
+
+    /**
+     * Initialize a program and save the result. The program must not have been given to an Interpreter yet (see
+     * AstWriter).
+     * @param top - the program, parsed and (optionally) optimized
+     * @param initializer - the name of the shared method that initializes it (see Interpreter.initialize())
+     * @param engine - the engine to initialize it with, and to run it with once it is restored
+     * @param file - where to save it; only written if the initialization finishes
+     * @throws IOException if the file can't be written
+     */
+    public static void take(TranNode top, String initializer, ExecutionEngine engine, Path file) throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(snapshot);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeUTF(engine.name());
+        new AstWriter(out).write(top);
+        Interpreter interpreter = new Interpreter(top);
+        interpreter.setEngine(engine);
+        interpreter.initialize(initializer);
+        new HeapWriter(out).write(interpreter);
+        Files.write(file, snapshot.toByteArray());
+    }
+
+    /**
+     * @param file - a snapshot written by take()
+     * @return an interpreter for the program, in the state its initialization left it in, ready to start()
+     * @throws IOException if the file can't be read or isn't a snapshot in this version of the format
+     */
+    public static Interpreter restore(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a Tran snapshot");
+            int version = in.readUnsignedShort();
+            if (version != VERSION)
+                throw new IOException("Tran snapshot has version " + version + ", expected " + VERSION);
+            ExecutionEngine engine = ExecutionEngine.valueOf(in.readUTF());
+            Interpreter interpreter = new Interpreter(new AstReader(in).read());
+            interpreter.setEngine(engine);
+            new HeapReader(in).read(interpreter);
+            return interpreter;
+        }
+    }
+
+    /**
+     * The readers take streams; this one reads straight out of the mapped file.
+     */
+    private static class MappedInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        MappedInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
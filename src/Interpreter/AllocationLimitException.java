@@ -0,0 +1,13 @@
+package Interpreter;
+
+/**
+ * Thrown when a program allocates more than one of the limits of its MemoryAccount allows. The program stops, like it
+ * does for any other error; the counts stay available in the account.
+ */
+public class AllocationLimitException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public AllocationLimitException(String what, long limit) {
+        super("Allocation limit exceeded: more than " + limit + " " + what + " allocated");
+    }
+}
@@ -1,14 +1,34 @@
 package Interpreter;
 
 public class BooleanIDT implements InterpreterDataType {
+    /** the shared constants (see asVariable()) */
+    public static final BooleanIDT TRUE = new BooleanIDT(true, true);
+    public static final BooleanIDT FALSE = new BooleanIDT(false, true);
+
     public boolean Value;
+    private final boolean constant;
 
     public BooleanIDT(boolean value) {
+        this(value, false);
+    }
+
+    private BooleanIDT(boolean value, boolean constant) {
         this.Value = value;
+        this.constant = constant;
+    }
+
+    /**
+     * @param value - a value
+     * @return TRUE or FALSE
+     */
+    public static BooleanIDT of(boolean value) {
+        return value ? TRUE : FALSE;
     }
 
     @Override
     public void Assign(InterpreterDataType in) {
+        if (constant)
+            throw new IllegalStateException("Assigning to the constant " + this);
         if (in instanceof BooleanIDT inv) {
             Value = inv.Value;
         }
@@ -17,6 +37,11 @@ public class BooleanIDT implements InterpreterDataType {
         }
     }
 
+    @Override
+    public InterpreterDataType asVariable() {
+        return constant ? new BooleanIDT(Value) : this;
+    }
+
     @Override
     public String toString() {
         return Value?"true":"false";
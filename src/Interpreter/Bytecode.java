@@ -0,0 +1,135 @@
+package Interpreter;
+
+/**
+ * The instruction set of the RegisterVM. An instruction is an opcode followed by a fixed number of int operands, all
+ * stored in one int[].
+ *
+ * A frame has three kinds of slot: registers holding IDTs, float slots holding numbers and int slots holding booleans
+ * (0 or 1) and characters. Variables nothing else can see live in the primitive slots, as do the results of number
+ * arithmetic and comparisons; a value is only boxed into an IDT when it escapes (into a call, a member, console.write()
+ * or an operation that only works on IDTs).
+ *
+ * Operand kinds (the letters are used in FORMATS):
+ *      r - a register
+ *      o - a value: a register when >= 0, otherwise constant number -1 - o. Constants are read, never handed out.
+ *      F - a float slot
+ *      f - a number: a float slot when >= 0, otherwise number constant -1 - f
+ *      I - an int slot
+ *      i - a boolean or character: an int slot when >= 0, otherwise int constant -1 - i
+ *      t - what an int holds: BOOLEAN or CHARACTER
+ *      k - a constant pool index (a name)
+ *      L - a jump target (an index into the code)
+ *      m/c/b - the ordinal of a MathOperations/CompareOperations/BooleanOperations
+ *      s - a call site (constant pool index)
+ *      n - a loop counter slot
+ *      l - a LoopNode (constant pool index)
+ */
+public class Bytecode {
+    public static final int BOOLEAN = 0;
+    public static final int CHARACTER = 1;
+
+    /** r k : r = a new IDT with the value of constant k */
+    public static final int CONST = 0;
+    /** r r : r = the IDT in the other register itself, or a copy of a constant (a loop putting its condition in its variable) */
+    public static final int MOVE = 1;
+    /** r k : r = the member (or global) named by constant k, a MemberSite */
+    public static final int LOAD_MEMBER = 2;
+    /** r k : throw "Unable to find variable" if the register has never been set */
+    public static final int CHECK = 3;
+    /** r o : Assign() the value to the IDT in the register */
+    public static final int ASSIGN = 4;
+    /** r o o m : any math */
+    public static final int MATH = 5;
+    /** r o o : number math on IDTs, falling back to MATH when the values aren't numbers */
+    public static final int ADD_N = 6;
+    public static final int SUB_N = 7;
+    public static final int MUL_N = 8;
+    public static final int DIV_N = 9;
+    public static final int MOD_N = 10;
+    /** r o o : string concatenation, falling back to MATH */
+    public static final int CONCAT = 11;
+    /** r o o c : any comparison */
+    public static final int CMP = 12;
+    /** r o o c : number comparison of IDTs, falling back to CMP */
+    public static final int CMP_N = 13;
+    /** o o c L : jump unless the comparison of IDTs holds (number fast path) */
+    public static final int JUMP_UNLESS_N = 14;
+    /** r o o b : and/or */
+    public static final int BOOL = 15;
+    /** r o : not */
+    public static final int NOT = 16;
+    /** L */
+    public static final int JUMP = 17;
+    /** o L : jump if false; a non-boolean is a ClassCastException (as in a loop) */
+    public static final int JUMP_FALSE = 18;
+    /** o L L : if: go to the first target if false, the second if not a boolean */
+    public static final int IF_FALSE = 19;
+    /** o : throw "Illegal loop condition" if not a boolean */
+    public static final int CHECK_BOOL = 20;
+    /** o : throw if a times() counter isn't a number */
+    public static final int CHECK_TIMES = 21;
+    /** n : counter n = 0 */
+    public static final int COUNTER_ZERO = 22;
+    /** n f L : jump unless counter n < f */
+    public static final int JUMP_COUNTER_NOT_BELOW = 23;
+    /** n : counter n++ */
+    public static final int COUNTER_INCREMENT = 24;
+    /** r s : call; r = the first return value (r is -1 for a call statement) */
+    public static final int CALL = 25;
+    /** r s : r = a new object */
+    public static final int NEW = 26;
+    /** end of the method */
+    public static final int RETURN = 27;
+    /** L l : jump back to the top of a loop, counting the pass for the TIERED engine */
+    public static final int LOOP = 28;
+    /** F f : F = f */
+    public static final int F_MOVE = 29;
+    /** F f f : number math on floats, in MathOperations order */
+    public static final int F_ADD = 30;
+    public static final int F_SUB = 31;
+    public static final int F_MUL = 32;
+    public static final int F_DIV = 33;
+    public static final int F_MOD = 34;
+    /** I f f c : I = the comparison */
+    public static final int F_CMP = 35;
+    /** f f c L : jump unless the comparison holds */
+    public static final int F_JUMP_UNLESS = 36;
+    /** F : F = F + 1 */
+    public static final int F_INCREMENT = 37;
+    /** F r : F = the value of r, which is known to hold a NumberIDT */
+    public static final int F_LOAD = 38;
+    /** F o : F = the value, failing just as NumberIDT.Assign() would */
+    public static final int F_UNBOX = 39;
+    /** r f : r = a new NumberIDT */
+    public static final int F_BOX = 40;
+    /** r f : Assign() a number to the IDT in r (without making an IDT when r holds a NumberIDT) */
+    public static final int F_STORE = 41;
+    /** I i : I = i */
+    public static final int I_MOVE = 42;
+    /** i L : jump if the boolean is false */
+    public static final int I_JUMP_FALSE = 43;
+    /** I r : I = the value of r, which is known to hold a BooleanIDT (a ClassCastException otherwise, as in a loop) */
+    public static final int I_LOAD = 44;
+    /** I o t : I = the value, failing just as BooleanIDT/CharIDT.Assign() would */
+    public static final int I_UNBOX = 45;
+    /** r i t : r = a new BooleanIDT/CharIDT */
+    public static final int I_BOX = 46;
+    /** r i t : Assign() a boolean or character to the IDT in r */
+    public static final int I_STORE = 47;
+
+    static final String[] NAMES = {
+            "CONST", "MOVE", "LOAD_MEMBER", "CHECK", "ASSIGN", "MATH", "ADD_N", "SUB_N", "MUL_N", "DIV_N", "MOD_N",
+            "CONCAT", "CMP", "CMP_N", "JUMP_UNLESS_N", "BOOL", "NOT", "JUMP", "JUMP_FALSE", "IF_FALSE", "CHECK_BOOL",
+            "CHECK_TIMES", "COUNTER_ZERO", "JUMP_COUNTER_NOT_BELOW", "COUNTER_INCREMENT", "CALL", "NEW", "RETURN", "LOOP",
+            "F_MOVE", "F_ADD", "F_SUB", "F_MUL", "F_DIV", "F_MOD", "F_CMP", "F_JUMP_UNLESS", "F_INCREMENT", "F_LOAD",
+            "F_UNBOX", "F_BOX", "F_STORE", "I_MOVE", "I_JUMP_FALSE", "I_LOAD", "I_UNBOX", "I_BOX", "I_STORE"
+    };
+
+    static final String[] FORMATS = {
+            "rk", "rr", "rk", "rk", "ro", "room", "roo", "roo", "roo", "roo", "roo",
+            "roo", "rooc", "rooc", "oocL", "roob", "ro", "L", "oL", "oLL", "o",
+            "o", "n", "nfL", "n", "rs", "rs", "", "Ll",
+            "Ff", "Fff", "Fff", "Fff", "Fff", "Fff", "Iffc", "ffcL", "F", "Fr",
+            "Fo", "rf", "rf", "Ii", "iL", "Ir", "Iot", "rit", "rit"
+    };
+}
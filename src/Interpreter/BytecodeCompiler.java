@@ -0,0 +1,864 @@
+package Interpreter;
+
+import AST.*;
+import Optimizer.TypeScope;
+
+import java.util.*;
+
+/**
+ * Compiles methods to register bytecode for the RegisterVM (see Bytecode for the instruction set).
+ *
+ * Only methods whose variables can live in registers without changing what any name means are compiled:
+ *      no parameter, local, return or loop variable may share a name with a member (inside an object the member would
+ *          win), and every other name used must be a member
+ *      calls on other objects ("x.method(...)" statements) may only have arguments made of the method's own variables
+ *          and literals, since the interpreter evaluates those arguments inside x
+ *      no variable may be an integer or a double, and there are no integer or double literals
+ * Anything else (and every constructor) is left to the tree walker. The results are cached, compiled or not.
+ *
+ * Calls are resolved at compile time when the name is unique in the program and the method is in the caller's class
+ * (so the interpreter could find nothing else), and for console.write() when no class declares its own write().
+ *
+ * Number, boolean and character locals that nothing else can see are kept unboxed in float and int slots, along with
+ * the results of number math and comparisons on them, so a loop like "loop i < n / i = i + 1" runs without making an
+ * IDT. Values are boxed when they escape: as arguments, into members or other boxed variables, and as return values.
+ */
+public class BytecodeCompiler {
+    private static final Set<String> PRIMITIVE_TYPES = Set.of("number", "boolean", "character");
+    // there are no long or double registers
+    private static final Set<String> WIDE_TYPES = Set.of("integer", "double");
+
+    private final Interpreter interpreter;
+    private final TranNode top;
+    private final IdentityHashMap<MethodDeclarationNode, Optional<BytecodeFunction>> compiled = new IdentityHashMap<>();
+    private final Set<String> memberNames = new HashSet<>();
+    private final HashMap<String, Integer> methodNameCounts = new HashMap<>();
+    private final IdentityHashMap<MethodDeclarationNode, ClassNode> owners = new IdentityHashMap<>();
+    private Optional<MethodDeclarationNode> consoleWrite = Optional.empty();
+
+    public BytecodeCompiler(Interpreter interpreter, TranNode top) {
+        this.interpreter = interpreter;
+        this.top = top;
+        memberNames.add("console");
+        for (ClassNode classNode : top.Classes) {
+            for (MemberNode member : classNode.members)
+                memberNames.add(member.declaration.name);
+            for (MethodDeclarationNode method : classNode.methods) {
+                owners.put(method, classNode);
+                if (method instanceof BuiltInMethodDeclarationNode && classNode.name.equals("console") && method.name.equals("write"))
+                    consoleWrite = Optional.of(method);
+                else
+                    methodNameCounts.merge(method.name, 1, Integer::sum);
+            }
+        }
+        if (methodNameCounts.containsKey("write"))
+            consoleWrite = Optional.empty();
+    }
+
+    /**
+     * @param method - a method
+     * @return its bytecode, or empty if it has to run in the tree walker
+     */
+    public Optional<BytecodeFunction> compile(MethodDeclarationNode method) {
+        Optional<BytecodeFunction> function = compiled.get(method);
+        if (function == null) {
+            function = method instanceof BuiltInMethodDeclarationNode ? Optional.empty() : new MethodCompilation(method).compile();
+            compiled.put(method, function);
+        }
+        return function;
+    }
+
+    /** Thrown when a method uses something that can't be compiled. */
+    private static class Unsupported extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private enum Kind { BOXED, FLOAT, INT }
+
+    /**
+     * Where compileExpression() left a value: an 'o', 'f' or 'i' operand (see Bytecode).
+     * intType - Bytecode.BOOLEAN/CHARACTER, for an INT
+     * isBoxedPrimitive - a register that can only hold a NumberIDT (or a BooleanIDT, for a boolean), so it can be read
+     * as a primitive without a check
+     */
+    private static class Operand {
+        final Kind kind;
+        final int value;
+        final int intType;
+        final boolean isBoxedPrimitive;
+
+        Operand(Kind kind, int value, int intType, boolean isBoxedPrimitive) {
+            this.kind = kind;
+            this.value = value;
+            this.intType = intType;
+            this.isBoxedPrimitive = isBoxedPrimitive;
+        }
+
+        static Operand boxed(int value, boolean isBoxedPrimitive) {
+            return new Operand(Kind.BOXED, value, -1, isBoxedPrimitive);
+        }
+
+        static Operand number(int value) {
+            return new Operand(Kind.FLOAT, value, -1, false);
+        }
+
+        static Operand integer(int value, int intType) {
+            return new Operand(Kind.INT, value, intType, false);
+        }
+    }
+
+    private class MethodCompilation {
+        private final MethodDeclarationNode method;
+        private final TypeScope scope;
+        private final HashMap<String, Integer> registers = new HashMap<>();
+        private final HashMap<String, Integer> floatSlots = new HashMap<>();
+        private final HashMap<String, Integer> intSlots = new HashMap<>();
+        private final HashMap<String, Integer> intTypes = new HashMap<>();
+        private final Set<String> loopOnly = new HashSet<>();
+        private final Set<String> boxedPrimitives = new HashSet<>();
+        private final List<String> registerNames = new ArrayList<>();
+        private final List<String> floatNames = new ArrayList<>();
+        private final List<String> intNames = new ArrayList<>();
+        private final List<Object> constants = new ArrayList<>();
+        private final List<Float> numberConstants = new ArrayList<>();
+        private final List<Integer> intConstants = new ArrayList<>();
+        private int[] code = new int[64];
+        private int size = 0;
+        /** where the last instruction starts */
+        private int last = 0;
+        private int variableCount;
+        private int nextTemp;
+        private int maxRegisters;
+        private int floatVariableCount;
+        private int nextFloat;
+        private int maxFloats;
+        private int intVariableCount;
+        private int nextInt;
+        private int maxInts;
+        private int counters = 0;
+
+        MethodCompilation(MethodDeclarationNode method) {
+            this.method = method;
+            scope = new TypeScope(top, method.parameters, method.locals, method.returns);
+            scope.declareLoopVariables(method.statements);
+        }
+
+        Optional<BytecodeFunction> compile() {
+            try {
+                for (VariableDeclarationNode declaration : concat(method.parameters, concat(method.locals, method.returns))) {
+                    if (WIDE_TYPES.contains(declaration.type))
+                        throw new Unsupported();
+                }
+                List<Integer> instantiated = new ArrayList<>();
+                List<String> types = new ArrayList<>();
+                List<Integer> characterSlots = new ArrayList<>();
+                Set<String> unboxed = unboxedVariables();
+                for (VariableDeclarationNode parameter : method.parameters)
+                    declare(parameter.name);
+                for (VariableDeclarationNode declaration : concat(method.locals, method.returns)) {
+                    if (!unboxed.contains(declaration.name)) {
+                        instantiated.add(declare(declaration.name));
+                        types.add(declaration.type);
+                        if (declaration.type.equals("number") || declaration.type.equals("boolean"))
+                            boxedPrimitives.add(declaration.name);
+                    }
+                    else if (declaration.type.equals("number"))
+                        declareSlot(declaration.name, floatSlots, floatNames);
+                    else {
+                        int slot = declareSlot(declaration.name, intSlots, intNames);
+                        intTypes.put(declaration.name, declaration.type.equals("boolean") ? Bytecode.BOOLEAN : Bytecode.CHARACTER);
+                        if (declaration.type.equals("character"))
+                            characterSlots.add(slot);
+                    }
+                }
+                for (String name : loopVariables(method.statements, new LinkedHashSet<>())) {
+                    if (!isVariable(name)) {
+                        declare(name);
+                        loopOnly.add(name);
+                    }
+                }
+                // A number loop variable can be rebound to a boolean (and the other way round) by a loop of the other kind.
+                boxedPrimitives.removeIf(name -> scope.typeOf(name).isEmpty());
+                variableCount = registers.size();
+                maxRegisters = variableCount;
+                floatVariableCount = maxFloats = floatNames.size();
+                intVariableCount = maxInts = intNames.size();
+                compileBlock(method.statements);
+                resetTemps();
+                int[] returnRegisters = new int[method.returns.size()];
+                for (int i = 0; i < returnRegisters.length; i++)
+                    returnRegisters[i] = materialize(variable(method.returns.get(i).name));
+                emit(Bytecode.RETURN);
+                while (registerNames.size() < maxRegisters)
+                    registerNames.add("t" + (registerNames.size() - variableCount));
+                while (floatNames.size() < maxFloats)
+                    floatNames.add("t" + (floatNames.size() - floatVariableCount));
+                while (intNames.size() < maxInts)
+                    intNames.add("t" + (intNames.size() - intVariableCount));
+                float[] numbers = new float[numberConstants.size()];
+                for (int i = 0; i < numbers.length; i++)
+                    numbers[i] = numberConstants.get(i);
+                return Optional.of(new BytecodeFunction(method, Arrays.copyOf(code, size), constants.toArray(), registerNames.toArray(new String[0]),
+                        maxRegisters, numbers, floatNames.toArray(new String[0]), toArray(intConstants), intNames.toArray(new String[0]),
+                        counters, toArray(instantiated), types.toArray(new String[0]), toArray(characterSlots), returnRegisters));
+            } catch (Unsupported e) {
+                return Optional.empty();
+            }
+        }
+
+        private int declare(String name) throws Unsupported {
+            checkName(name);
+            registers.put(name, registers.size());
+            registerNames.add(name);
+            return registers.get(name);
+        }
+
+        private int declareSlot(String name, HashMap<String, Integer> slots, List<String> names) throws Unsupported {
+            checkName(name);
+            slots.put(name, names.size());
+            names.add(name);
+            return slots.get(name);
+        }
+
+        private void checkName(String name) throws Unsupported {
+            if (isVariable(name) || memberNames.contains(name) || name.equals("true") || name.equals("false"))
+                throw new Unsupported();
+        }
+
+        private boolean isVariable(String name) {
+            return registers.containsKey(name) || floatSlots.containsKey(name) || intSlots.containsKey(name);
+        }
+
+        /**
+         * A number, boolean or character local (or return) can live unboxed when nothing but this call can see its
+         * IDT: it is never an argument on its own (the callee would get the IDT itself), never the condition of a loop
+         * that puts it into a loop variable, never the object of a call, and everything assigned to it has its type.
+         * Parameters always stay boxed - they are the caller's IDTs.
+         */
+        private Set<String> unboxedVariables() {
+            Set<String> shared = new HashSet<>();
+            findShared(method.statements, shared);
+            Set<String> unboxed = new HashSet<>();
+            for (VariableDeclarationNode declaration : concat(method.locals, method.returns)) {
+                if (PRIMITIVE_TYPES.contains(declaration.type) && !shared.contains(declaration.name)
+                        && scope.typeOf(declaration.name).filter(declaration.type::equals).isPresent())
+                    unboxed.add(declaration.name);
+            }
+            return unboxed;
+        }
+
+        private void findShared(List<StatementNode> statements, Set<String> shared) {
+            for (StatementNode statement : statements) {
+                if (statement instanceof AssignmentNode assignment) {
+                    if (!scope.typeOf(assignment.expression).equals(scope.typeOf(assignment.target.name)))
+                        shared.add(assignment.target.name);
+                    findShared(assignment.expression, shared);
+                }
+                else if (statement instanceof MethodCallStatementNode methodCall)
+                    findShared(methodCall.objectName, methodCall.methodName, methodCall.parameters, shared);
+                else if (statement instanceof IfNode ifNode) {
+                    findShared(ifNode.condition, shared);
+                    findShared(ifNode.statements, shared);
+                    if (ifNode.elseStatement.isPresent())
+                        findShared(ifNode.elseStatement.get().statements, shared);
+                }
+                else if (statement instanceof LoopNode loop) {
+                    boolean isTimes = loop.expression instanceof MethodCallExpressionNode mc && mc.objectName.isPresent() && mc.methodName.equals("times");
+                    if (!isTimes) {
+                        if (loop.assignment.isPresent() && loop.expression instanceof VariableReferenceNode condition) {
+                            shared.add(condition.name);
+                            shared.add(loop.assignment.get().name);
+                        }
+                        else if (loop.assignment.isPresent() && scope.typeOf(loop.expression).filter("boolean"::equals).isEmpty())
+                            shared.add(loop.assignment.get().name);
+                        findShared(loop.expression, shared);
+                    }
+                    findShared(loop.statements, shared);
+                }
+            }
+        }
+
+        private void findShared(ExpressionNode expression, Set<String> shared) {
+            if (expression instanceof MethodCallExpressionNode methodCall)
+                findShared(methodCall.objectName, methodCall.methodName, methodCall.parameters, shared);
+            else if (expression instanceof NewNode newNode)
+                findShared(Optional.empty(), newNode.className, newNode.parameters, shared);
+            else if (expression instanceof MathOpNode math) {
+                findShared(math.left, shared);
+                findShared(math.right, shared);
+            }
+            else if (expression instanceof CompareNode compare) {
+                findShared(compare.left, shared);
+                findShared(compare.right, shared);
+            }
+            else if (expression instanceof BooleanOpNode boolOp) {
+                findShared(boolOp.left, shared);
+                findShared(boolOp.right, shared);
+            }
+            else if (expression instanceof NotOpNode not)
+                findShared(not.left, shared);
+        }
+
+        // console.write() only reads its arguments, so they can be boxed copies.
+        private void findShared(Optional<String> objectName, String methodName, List<ExpressionNode> arguments, Set<String> shared) {
+            boolean isConsoleWrite = consoleWrite.isPresent() && objectName.filter("console"::equals).isPresent() && methodName.equals("write");
+            objectName.ifPresent(shared::add);
+            for (ExpressionNode argument : arguments) {
+                if (argument instanceof VariableReferenceNode variable && !isConsoleWrite)
+                    shared.add(variable.name);
+                else
+                    findShared(argument, shared);
+            }
+        }
+
+        //              Statements
+
+        private void compileBlock(List<StatementNode> statements) throws Unsupported {
+            for (StatementNode statement : statements) {
+                resetTemps();
+                compileStatement(statement);
+            }
+        }
+
+        private void compileStatement(StatementNode statement) throws Unsupported {
+            if (statement instanceof AssignmentNode assignment)
+                compileAssignment(assignment.target.name, assignment.expression);
+            else if (statement instanceof MethodCallStatementNode methodCall)
+                compileCall(methodCall, true, -1);
+            else if (statement instanceof IfNode ifNode)
+                compileIf(ifNode);
+            else if (statement instanceof LoopNode loop) {
+                if (loop.expression instanceof MethodCallExpressionNode mc && mc.objectName.isPresent() && mc.methodName.equals("times"))
+                    compileTimes(loop, mc.objectName.get());
+                else if (loop.assignment.isPresent())
+                    compileWhileWithVariable(loop, loop.assignment.get().name);
+                else
+                    compileWhile(loop);
+            }
+            else
+                throw new Unsupported();
+        }
+
+        private void compileAssignment(String name, ExpressionNode expression) throws Unsupported {
+            if (floatSlots.containsKey(name)) {
+                Operand value = compileExpression(expression);
+                if (value.kind == Kind.FLOAT) {
+                    if (!retarget(value, floatVariableCount, floatSlots.get(name)))
+                        emit(Bytecode.F_MOVE, floatSlots.get(name), value.value);
+                }
+                else
+                    emit(Bytecode.F_UNBOX, floatSlots.get(name), boxedOperand(value));
+            }
+            else if (intSlots.containsKey(name)) {
+                Operand value = compileExpression(expression);
+                if (value.kind == Kind.INT) {
+                    if (!retarget(value, intVariableCount, intSlots.get(name)))
+                        emit(Bytecode.I_MOVE, intSlots.get(name), value.value);
+                }
+                else
+                    emit(Bytecode.I_UNBOX, intSlots.get(name), boxedOperand(value), intTypes.get(name));
+            }
+            else {
+                int target = lookup(name);
+                Operand value = compileExpression(expression);
+                switch (value.kind) {
+                    case FLOAT -> emit(Bytecode.F_STORE, target, value.value);
+                    case INT -> emit(Bytecode.I_STORE, target, value.value, value.intType);
+                    default -> emit(Bytecode.ASSIGN, target, value.value);
+                }
+            }
+        }
+
+        private void compileIf(IfNode ifNode) throws Unsupported {
+            int branch = compileBranchUnless(ifNode.condition, true);
+            compileBlock(ifNode.statements);
+            if (ifNode.elseStatement.isPresent()) {
+                int skipElse = emit(Bytecode.JUMP, 0);
+                patchFalse(branch, size);
+                compileBlock(ifNode.elseStatement.get().statements);
+                code[skipElse + 1] = size;
+            }
+            else
+                patchFalse(branch, size);
+            patchNotBoolean(branch, size);
+        }
+
+        private void compileWhile(LoopNode loop) throws Unsupported {
+            // The first evaluation is only a type check; one that can't be anything but a boolean (or fail the same way
+            // straight after) is left out.
+            if (!isType(loop.expression, "boolean") || hasCall(loop.expression)) {
+                Operand first = compileExpression(loop.expression);
+                if (first.kind != Kind.INT || first.intType != Bytecode.BOOLEAN)
+                    emit(Bytecode.CHECK_BOOL, boxedOperand(first));
+            }
+            int top = size;
+            resetTemps();
+            int exit = compileBranchUnless(loop.expression, false);
+            compileBlock(loop.statements);
+            emit(Bytecode.LOOP, top, constant(loop));
+            patchFalse(exit, size);
+        }
+
+        private void compileWhileWithVariable(LoopNode loop, String name) throws Unsupported {
+            int top;
+            if (intSlots.containsKey(name)) {
+                int slot = intSlots.get(name);
+                loadCondition(slot, compileExpression(loop.expression), true);
+                top = emit(Bytecode.I_JUMP_FALSE, slot, 0);
+                compileBlock(loop.statements);
+                resetTemps();
+                loadCondition(slot, compileExpression(loop.expression), false);
+            }
+            else {
+                int variable = registers.get(name);
+                int condition = materialize(compileExpression(loop.expression));
+                emit(Bytecode.CHECK_BOOL, condition);
+                emit(Bytecode.MOVE, variable, condition);
+                top = emit(Bytecode.JUMP_FALSE, variable, 0);
+                compileBlock(loop.statements);
+                resetTemps();
+                emit(Bytecode.MOVE, variable, materialize(compileExpression(loop.expression)));
+            }
+            emit(Bytecode.LOOP, top, constant(loop));
+            code[top + 2] = size;
+        }
+
+        // Put a (statically boolean) loop condition in an unboxed variable.
+        private void loadCondition(int slot, Operand condition, boolean isFirst) {
+            if (condition.kind == Kind.INT) {
+                if (!retarget(condition, intVariableCount, slot))
+                    emit(Bytecode.I_MOVE, slot, condition.value);
+                return;
+            }
+            int register = boxedOperand(condition);
+            if (isFirst)
+                emit(Bytecode.CHECK_BOOL, register);
+            emit(Bytecode.I_LOAD, slot, register);
+        }
+
+        // "locals.get(counter)": a variable, or the member (or global) of that name.
+        private void compileTimes(LoopNode loop, String counterName) throws Unsupported {
+            Operand counter = timesCounter(counterName);
+            if (counter.kind != Kind.FLOAT)
+                emit(Bytecode.CHECK_TIMES, boxedOperand(counter));
+            int top;
+            if (loop.assignment.isPresent() && floatSlots.containsKey(loop.assignment.get().name)) {
+                int variable = floatSlots.get(loop.assignment.get().name);
+                emit(Bytecode.F_MOVE, variable, numberConstant(0));
+                top = size;
+                int exit = emit(Bytecode.F_JUMP_UNLESS, variable, timesLimit(counterName), CompareNode.CompareOperations.lt.ordinal(), 0);
+                compileBlock(loop.statements);
+                emit(Bytecode.F_INCREMENT, variable);
+                emit(Bytecode.LOOP, top, constant(loop));
+                code[exit + 4] = size;
+            }
+            else if (loop.assignment.isPresent()) {
+                // The variable gets a new IDT, like locals.put() gives it
+                int variable = registers.get(loop.assignment.get().name);
+                emit(Bytecode.F_BOX, variable, numberConstant(0));
+                top = size;
+                int limit = timesLimit(counterName);
+                int current = floatTemp();
+                emit(Bytecode.F_LOAD, current, variable);
+                int exit = emit(Bytecode.F_JUMP_UNLESS, current, limit, CompareNode.CompareOperations.lt.ordinal(), 0);
+                compileBlock(loop.statements);
+                resetTemps();
+                current = floatTemp();
+                emit(Bytecode.F_LOAD, current, variable);
+                emit(Bytecode.F_INCREMENT, current);
+                emit(Bytecode.F_STORE, variable, current);
+                emit(Bytecode.LOOP, top, constant(loop));
+                code[exit + 4] = size;
+            }
+            else {
+                int slot = counters++;
+                emit(Bytecode.COUNTER_ZERO, slot);
+                top = size;
+                int exit = emit(Bytecode.JUMP_COUNTER_NOT_BELOW, slot, timesLimit(counterName), 0);
+                compileBlock(loop.statements);
+                emit(Bytecode.COUNTER_INCREMENT, slot);
+                emit(Bytecode.LOOP, top, constant(loop));
+                code[exit + 3] = size;
+            }
+        }
+
+        private Operand timesCounter(String name) throws Unsupported {
+            resetTemps();
+            if (isVariable(name))
+                return variable(name);
+            if (!memberNames.contains(name))
+                throw new Unsupported();
+            int temp = temp();
+            emit(Bytecode.LOAD_MEMBER, temp, constant(new BytecodeFunction.MemberSite(name)));
+            return Operand.boxed(temp, false);
+        }
+
+        // The counter is read on every pass, and cast like the tree walker casts it.
+        private int timesLimit(String name) throws Unsupported {
+            Operand counter = timesCounter(name);
+            if (counter.kind == Kind.FLOAT)
+                return counter.value;
+            int limit = floatTemp();
+            emit(Bytecode.F_LOAD, limit, materialize(counter));
+            return limit;
+        }
+
+        /**
+         * Emit the test of an if or loop condition.
+         * @param isIf - an if skips both branches when the condition isn't a boolean; a loop fails on the cast
+         * @return where the jump is, for patchFalse() / patchNotBoolean()
+         */
+        private int compileBranchUnless(ExpressionNode condition, boolean isIf) throws Unsupported {
+            // A comparison is always a boolean (or an error), so it can branch directly.
+            if (condition instanceof CompareNode compare && isNumber(compare.left) && isNumber(compare.right)) {
+                Operand left = compileExpression(compare.left);
+                Operand right = compileExpression(compare.right);
+                if (isFloat(left) && isFloat(right))
+                    return emit(Bytecode.F_JUMP_UNLESS, toFloat(left), toFloat(right), compare.op.ordinal(), 0);
+                return emit(Bytecode.JUMP_UNLESS_N, boxedOperand(left), boxedOperand(right), compare.op.ordinal(), 0);
+            }
+            Operand value = compileExpression(condition);
+            if (value.kind == Kind.INT && value.intType == Bytecode.BOOLEAN)
+                return emit(Bytecode.I_JUMP_FALSE, value.value, 0);
+            int operand = boxedOperand(value);
+            return isIf ? emit(Bytecode.IF_FALSE, operand, 0, 0) : emit(Bytecode.JUMP_FALSE, operand, 0);
+        }
+
+        private void patchFalse(int branch, int target) {
+            switch (code[branch]) {
+                case Bytecode.JUMP_UNLESS_N, Bytecode.F_JUMP_UNLESS -> code[branch + 4] = target;
+                default -> code[branch + 2] = target;
+            }
+        }
+
+        private void patchNotBoolean(int branch, int target) {
+            if (code[branch] == Bytecode.IF_FALSE)
+                code[branch + 3] = target;
+        }
+
+        //              Expressions
+
+        private Operand compileExpression(ExpressionNode expression) throws Unsupported {
+            if (expression instanceof NumericLiteralNode number)
+                return Operand.number(numberConstant(number.value));
+            if (expression instanceof StringLiteralNode string)
+                return Operand.boxed(-1 - constant(new StringIDT(string.value)), false);
+            if (expression instanceof CharLiteralNode character)
+                return Operand.integer(intConstant(character.value), Bytecode.CHARACTER);
+            if (expression instanceof BooleanLiteralNode bool)
+                return Operand.integer(intConstant(bool.value ? 1 : 0), Bytecode.BOOLEAN);
+            if (expression instanceof VariableReferenceNode variable) {
+                if (variable.name.equals("true") || variable.name.equals("false"))
+                    return Operand.integer(intConstant(variable.name.equals("true") ? 1 : 0), Bytecode.BOOLEAN);
+                if (isVariable(variable.name))
+                    return variable(variable.name);
+                return Operand.boxed(lookup(variable.name), false);
+            }
+            if (expression instanceof MathOpNode math) {
+                Operand left = compileExpression(math.left);
+                Operand right = compileExpression(math.right);
+                if (isNumber(math.left) && isNumber(math.right) && isFloat(left) && isFloat(right)) {
+                    int l = toFloat(left), r = toFloat(right);
+                    int result = floatTemp();
+                    emit(Bytecode.F_ADD + math.op.ordinal(), result, l, r);
+                    return Operand.number(result);
+                }
+                int l = boxedOperand(left), r = boxedOperand(right);
+                int result = temp();
+                if (isNumber(math.left) && isNumber(math.right))
+                    emit(Bytecode.ADD_N + math.op.ordinal(), result, l, r);
+                else if (math.op == MathOpNode.MathOperations.add && isType(math.left, "string") && isType(math.right, "string"))
+                    emit(Bytecode.CONCAT, result, l, r);
+                else
+                    emit(Bytecode.MATH, result, l, r, math.op.ordinal());
+                return Operand.boxed(result, false);
+            }
+            if (expression instanceof CompareNode compare) {
+                Operand left = compileExpression(compare.left);
+                Operand right = compileExpression(compare.right);
+                boolean numbers = isNumber(compare.left) && isNumber(compare.right);
+                if (numbers && isFloat(left) && isFloat(right)) {
+                    int l = toFloat(left), r = toFloat(right);
+                    int result = intTemp();
+                    emit(Bytecode.F_CMP, result, l, r, compare.op.ordinal());
+                    return Operand.integer(result, Bytecode.BOOLEAN);
+                }
+                int l = boxedOperand(left), r = boxedOperand(right);
+                int result = temp();
+                emit(numbers ? Bytecode.CMP_N : Bytecode.CMP, result, l, r, compare.op.ordinal());
+                return Operand.boxed(result, true);
+            }
+            if (expression instanceof BooleanOpNode boolOp) {
+                int left = boxedOperand(compileExpression(boolOp.left));
+                int right = boxedOperand(compileExpression(boolOp.right));
+                int result = temp();
+                emit(Bytecode.BOOL, result, left, right, boolOp.op.ordinal());
+                return Operand.boxed(result, false);
+            }
+            if (expression instanceof NotOpNode not) {
+                int operand = boxedOperand(compileExpression(not.left));
+                int result = temp();
+                emit(Bytecode.NOT, result, operand);
+                return Operand.boxed(result, false);
+            }
+            if (expression instanceof MethodCallExpressionNode methodCall) {
+                int result = temp();
+                compileCall(new MethodCallStatementNode(methodCall), false, result);
+                return Operand.boxed(result, false);
+            }
+            if (expression instanceof NewNode newNode) {
+                int[] arguments = compileArguments(newNode.parameters);
+                int result = temp();
+                emit(Bytecode.NEW, result, constant(new BytecodeFunction.NewSite(newNode, arguments)));
+                return Operand.boxed(result, false);
+            }
+            throw new Unsupported();
+        }
+
+        private void compileCall(MethodCallStatementNode call, boolean isStatement, int result) throws Unsupported {
+            boolean onOtherObject = call.objectName.isPresent() && !call.objectName.get().equals("console");
+            int receiver = -1;
+            if (onOtherObject && isStatement) {
+                receiver = receiver(call.objectName.get());
+                for (ExpressionNode argument : call.parameters) {
+                    if (!isLocalOnly(argument))
+                        throw new Unsupported();
+                }
+            }
+            int[] arguments = compileArguments(call.parameters);
+            if (onOtherObject && !isStatement)
+                receiver = receiver(call.objectName.get());
+            emit(Bytecode.CALL, result, constant(new BytecodeFunction.CallSite(call, resolve(call), isStatement, receiver, arguments)));
+        }
+
+        private int receiver(String name) throws Unsupported {
+            if (registers.containsKey(name))
+                return registers.get(name);
+            if (isVariable(name))
+                throw new Unsupported();
+            if (!memberNames.contains(name))
+                return -1;
+            int temp = temp();
+            emit(Bytecode.LOAD_MEMBER, temp, constant(new BytecodeFunction.MemberSite(name)));
+            return temp;
+        }
+
+        // Arguments are handed over as IDTs the callee may change, so literals get a new IDT every time.
+        private int[] compileArguments(List<ExpressionNode> parameters) throws Unsupported {
+            int[] arguments = new int[parameters.size()];
+            for (int i = 0; i < arguments.length; i++)
+                arguments[i] = materialize(compileExpression(parameters.get(i)));
+            return arguments;
+        }
+
+        private Optional<MethodDeclarationNode> resolve(MethodCallStatementNode call) {
+            if (call.objectName.isPresent())
+                return call.objectName.get().equals("console") && call.methodName.equals("write") ? consoleWrite : Optional.empty();
+            if (methodNameCounts.getOrDefault(call.methodName, 0) != 1)
+                return Optional.empty();
+            for (MethodDeclarationNode candidate : owners.get(method).methods) {
+                if (candidate.name.equals(call.methodName))
+                    return Optional.of(candidate);
+            }
+            return Optional.empty();
+        }
+
+        private boolean isLocalOnly(ExpressionNode expression) {
+            if (expression instanceof VariableReferenceNode variable)
+                return isVariable(variable.name) || variable.name.equals("true") || variable.name.equals("false");
+            if (expression instanceof MathOpNode math)
+                return isLocalOnly(math.left) && isLocalOnly(math.right);
+            if (expression instanceof CompareNode compare)
+                return isLocalOnly(compare.left) && isLocalOnly(compare.right);
+            if (expression instanceof BooleanOpNode boolOp)
+                return isLocalOnly(boolOp.left) && isLocalOnly(boolOp.right);
+            if (expression instanceof NotOpNode not)
+                return isLocalOnly(not.left);
+            return !(expression instanceof MethodCallExpressionNode) && !(expression instanceof NewNode);
+        }
+
+        /**
+         * "x = x + 1": when the value was just computed into a temporary, have that instruction write the variable
+         * instead.
+         * @return was the instruction changed?
+         */
+        private boolean retarget(Operand value, int firstTemp, int slot) {
+            boolean computed = value.kind == Kind.FLOAT
+                    ? code[last] >= Bytecode.F_ADD && code[last] <= Bytecode.F_MOD
+                    : code[last] == Bytecode.F_CMP;
+            if (!computed || value.value < firstTemp || code[last + 1] != value.value)
+                return false;
+            code[last + 1] = slot;
+            return true;
+        }
+
+        private boolean hasCall(ExpressionNode expression) {
+            if (expression instanceof MathOpNode math)
+                return hasCall(math.left) || hasCall(math.right);
+            if (expression instanceof CompareNode compare)
+                return hasCall(compare.left) || hasCall(compare.right);
+            if (expression instanceof BooleanOpNode boolOp)
+                return hasCall(boolOp.left) || hasCall(boolOp.right);
+            if (expression instanceof NotOpNode not)
+                return hasCall(not.left);
+            return expression instanceof MethodCallExpressionNode || expression instanceof NewNode;
+        }
+
+        /**
+         * @return one of the method's own variables: its float or int slot, or its register (checked first if it is a
+         * loop variable that may not exist yet)
+         */
+        private Operand variable(String name) {
+            if (floatSlots.containsKey(name))
+                return Operand.number(floatSlots.get(name));
+            if (intSlots.containsKey(name))
+                return Operand.integer(intSlots.get(name), intTypes.get(name));
+            int register = registers.get(name);
+            if (loopOnly.contains(name))
+                emit(Bytecode.CHECK, register, constant(name));
+            return Operand.boxed(register, boxedPrimitives.contains(name));
+        }
+
+        /**
+         * @return the register of a boxed variable, or a temporary loaded with the member
+         */
+        private int lookup(String name) throws Unsupported {
+            if (registers.containsKey(name))
+                return variable(name).value;
+            if (isVariable(name) || !memberNames.contains(name))
+                throw new Unsupported();
+            int temp = temp();
+            emit(Bytecode.LOAD_MEMBER, temp, constant(new BytecodeFunction.MemberSite(name)));
+            return temp;
+        }
+
+        /**
+         * @return an 'o' operand for the value: boxing a primitive slot into a temporary, or a literal into a constant
+         */
+        private int boxedOperand(Operand operand) {
+            if (operand.kind == Kind.BOXED)
+                return operand.value;
+            if (operand.value < 0) {
+                if (operand.kind == Kind.FLOAT)
+                    return -1 - constant(new NumberIDT(numberConstants.get(-1 - operand.value)));
+                int value = intConstants.get(-1 - operand.value);
+                return -1 - constant(operand.intType == Bytecode.BOOLEAN ? new BooleanIDT(value != 0) : new CharIDT((char) value));
+            }
+            int temp = temp();
+            if (operand.kind == Kind.FLOAT)
+                emit(Bytecode.F_BOX, temp, operand.value);
+            else
+                emit(Bytecode.I_BOX, temp, operand.value, operand.intType);
+            return temp;
+        }
+
+        // A register holding a new IDT (or the variable's own) - for values that are handed out
+        private int materialize(Operand operand) {
+            int boxed = boxedOperand(operand);
+            if (boxed >= 0)
+                return boxed;
+            int temp = temp();
+            emit(Bytecode.CONST, temp, -1 - boxed);
+            return temp;
+        }
+
+        private boolean isFloat(Operand operand) {
+            return operand.kind == Kind.FLOAT || (operand.kind == Kind.BOXED && operand.isBoxedPrimitive && operand.value >= 0);
+        }
+
+        // Registers are read when the operation runs, after every operand has been evaluated (as the tree walker does).
+        private int toFloat(Operand operand) {
+            if (operand.kind == Kind.FLOAT)
+                return operand.value;
+            int temp = floatTemp();
+            emit(Bytecode.F_LOAD, temp, operand.value);
+            return temp;
+        }
+
+        private boolean isNumber(ExpressionNode expression) {
+            return isType(expression, "number");
+        }
+
+        private boolean isType(ExpressionNode expression, String type) {
+            return scope.typeOf(expression).filter(type::equals).isPresent();
+        }
+
+        private void resetTemps() {
+            nextTemp = variableCount;
+            nextFloat = floatVariableCount;
+            nextInt = intVariableCount;
+        }
+
+        private int temp() {
+            int temp = nextTemp++;
+            maxRegisters = Math.max(maxRegisters, nextTemp);
+            return temp;
+        }
+
+        private int floatTemp() {
+            int temp = nextFloat++;
+            maxFloats = Math.max(maxFloats, nextFloat);
+            return temp;
+        }
+
+        private int intTemp() {
+            int temp = nextInt++;
+            maxInts = Math.max(maxInts, nextInt);
+            return temp;
+        }
+
+        private int constant(Object value) {
+            constants.add(value);
+            return constants.size() - 1;
+        }
+
+        // Number and int constants are operands themselves, so these return -1 - index.
+        private int numberConstant(float value) {
+            numberConstants.add(value);
+            return -numberConstants.size();
+        }
+
+        private int intConstant(int value) {
+            intConstants.add(value);
+            return -intConstants.size();
+        }
+
+        private int emit(int... instruction) {
+            if (size + instruction.length > code.length)
+                code = Arrays.copyOf(code, code.length * 2 + instruction.length);
+            int at = last = size;
+            System.arraycopy(instruction, 0, code, size, instruction.length);
+            size += instruction.length;
+            return at;
+        }
+    }
+
+    private static Set<String> loopVariables(List<StatementNode> statements, Set<String> names) {
+        for (StatementNode statement : statements) {
+            if (statement instanceof LoopNode loop) {
+                loop.assignment.ifPresent(variable -> names.add(variable.name));
+                loopVariables(loop.statements, names);
+            }
+            else if (statement instanceof IfNode ifNode) {
+                loopVariables(ifNode.statements, names);
+                if (ifNode.elseStatement.isPresent())
+                    loopVariables(ifNode.elseStatement.get().statements, names);
+            }
+        }
+        return names;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static List<VariableDeclarationNode> concat(List<VariableDeclarationNode> first, List<VariableDeclarationNode> second) {
+        List<VariableDeclarationNode> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+}
@@ -0,0 +1,123 @@
+package Interpreter;
+
+import AST.MethodCallStatementNode;
+import AST.MethodDeclarationNode;
+import AST.NewNode;
+
+import java.util.Optional;
+
+/**
+ * A method compiled by the BytecodeCompiler. Registers 0 to parameters-1 hold the parameters; the boxed locals and
+ * returns follow, then loop variables that were never declared, then temporaries. Locals and returns that are kept
+ * unboxed live in the float and int slots instead, ahead of the primitive temporaries.
+ */
+public class BytecodeFunction {
+    public final MethodDeclarationNode method;
+    final int[] code;
+    final Object[] constants;
+    final String[] registerNames;
+    final int registerCount;
+    final float[] numberConstants;
+    final String[] floatNames;
+    final int[] intConstants;
+    final String[] intNames;
+    final int counterCount;
+    /** the registers to fill with new IDTs on entry, and the types to instantiate */
+    final int[] instantiated;
+    final String[] instantiatedTypes;
+    /** the int slots of character variables, which start as ' ' rather than 0 */
+    final int[] characterSlots;
+    /** the registers holding the return values at RETURN (unboxed returns are boxed into temporaries first) */
+    final int[] returnRegisters;
+
+    BytecodeFunction(MethodDeclarationNode method, int[] code, Object[] constants, String[] registerNames, int registerCount,
+                     float[] numberConstants, String[] floatNames, int[] intConstants, String[] intNames, int counterCount,
+                     int[] instantiated, String[] instantiatedTypes, int[] characterSlots, int[] returnRegisters) {
+        this.method = method;
+        this.code = code;
+        this.constants = constants;
+        this.registerNames = registerNames;
+        this.registerCount = registerCount;
+        this.numberConstants = numberConstants;
+        this.floatNames = floatNames;
+        this.intConstants = intConstants;
+        this.intNames = intNames;
+        this.counterCount = counterCount;
+        this.instantiated = instantiated;
+        this.instantiatedTypes = instantiatedTypes;
+        this.characterSlots = characterSlots;
+        this.returnRegisters = returnRegisters;
+    }
+
+    /**
+     * @return the length of the code, in ints
+     */
+    public int size() {
+        return code.length;
+    }
+
+    @Override
+    public String toString() {
+        return Disassembler.disassemble(this);
+    }
+
+    /**
+     * A call in the constant pool.
+     * target - the method, when it is known at compile time; otherwise the interpreter looks it up
+     * receiver - for "x.method()": the register (or constant name, < 0) that holds x
+     */
+    static class CallSite {
+        final MethodCallStatementNode call;
+        final Optional<MethodDeclarationNode> target;
+        final boolean isStatement;
+        final int receiver;
+        final int[] arguments;
+
+        CallSite(MethodCallStatementNode call, Optional<MethodDeclarationNode> target, boolean isStatement, int receiver, int[] arguments) {
+            this.call = call;
+            this.target = target;
+            this.isStatement = isStatement;
+            this.receiver = receiver;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public String toString() {
+            return (target.isPresent() ? "static " : "dynamic ") + call.objectName.map(name -> name + ".").orElse("") + call.methodName;
+        }
+    }
+
+    /**
+     * A member name in the constant pool, for LOAD_MEMBER. It remembers the shape of the last object it found the
+     * member in, and the slot (an inline cache).
+     */
+    static class MemberSite {
+        final String name;
+        Shape shape;
+        int slot;
+
+        MemberSite(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static class NewSite {
+        final NewNode newNode;
+        final int[] arguments;
+
+        NewSite(NewNode newNode, int[] arguments) {
+            this.newNode = newNode;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public String toString() {
+            return "new " + newNode.className;
+        }
+    }
+}
@@ -1,14 +1,38 @@
 package Interpreter;
 
 public class CharIDT implements InterpreterDataType {
+    // ASCII characters have one shared constant each
+    private static final CharIDT[] CACHE = new CharIDT[128];
+
+    static {
+        for (char c = 0; c < CACHE.length; c++)
+            CACHE[c] = new CharIDT(c, true);
+    }
+
     public char Value;
+    private final boolean constant;
 
     public CharIDT(char value) {
+        this(value, false);
+    }
+
+    private CharIDT(char value, boolean constant) {
         Value = value;
+        this.constant = constant;
+    }
+
+    /**
+     * @param value - a value
+     * @return a constant CharIDT holding it - shared for ASCII characters (see asVariable())
+     */
+    public static CharIDT of(char value) {
+        return value < CACHE.length ? CACHE[value] : new CharIDT(value, true);
     }
 
     @Override
     public void Assign(InterpreterDataType in) {
+        if (constant)
+            throw new IllegalStateException("Assigning to the constant " + Value);
         if (in instanceof CharIDT inv) {
             Value = inv.Value;
         } else {
@@ -16,6 +40,11 @@ public class CharIDT implements InterpreterDataType {
         }
     }
 
+    @Override
+    public InterpreterDataType asVariable() {
+        return constant ? new CharIDT(Value) : this;
+    }
+
     public String toString() {
         return String.valueOf(Value);
     }
@@ -0,0 +1,412 @@
+package Interpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Just enough of the JVM class file format (JVMS chapter 4) to write the classes the JvmCompiler needs: a constant
+ * pool, static fields and methods with a Code attribute.
+ *
+ * Classes are written as version 49 (Java 5) so that the JVM verifies them by type inference and we don't have to
+ * compute StackMapTable frames.
+ */
+public class ClassFileWriter {
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+    private final int thisClass;
+    private final int superClass;
+
+    /**
+     * @param name - the internal name of the class ("Interpreter/Example")
+     */
+    public ClassFileWriter(String name) {
+        thisClass = classConstant(name);
+        superClass = classConstant("java/lang/Object");
+    }
+
+    //              The constant pool
+
+    public int utf8(String value) {
+        return constant("U" + value, 1, out -> out.writeUTF(value));
+    }
+
+    public int classReference(String internalName) {
+        return classConstant(internalName);
+    }
+
+    public int string(String value) {
+        int utf8 = utf8(value);
+        return constant("S" + value, 8, out -> out.writeShort(utf8));
+    }
+
+    public int floatConstant(float value) {
+        return constant("F" + Float.floatToRawIntBits(value), 4, out -> out.writeFloat(value));
+    }
+
+    public int fieldReference(String owner, String name, String descriptor) {
+        return memberReference(9, owner, name, descriptor);
+    }
+
+    public int methodReference(String owner, String name, String descriptor) {
+        return memberReference(10, owner, name, descriptor);
+    }
+
+    public int thisClass() {
+        return thisClass;
+    }
+
+    private int memberReference(int tag, String owner, String name, String descriptor) {
+        int ownerClass = classReference(owner);
+        int nameUtf8 = utf8(name);
+        int descriptorUtf8 = utf8(descriptor);
+        int nameAndType = constant("N" + name + " " + descriptor, 12, out -> {
+            out.writeShort(nameUtf8);
+            out.writeShort(descriptorUtf8);
+        });
+        return constant(tag + owner + "." + name + descriptor, tag, out -> {
+            out.writeShort(ownerClass);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // classReference(), which the constructor can call without handing this to a method a subclass might override
+    private int classConstant(String internalName) {
+        int name = constant("U" + internalName, 1, out -> out.writeUTF(internalName));
+        return constant("C" + internalName, 7, out -> out.writeShort(name));
+    }
+
+    private int constant(String key, int tag, Entry entry) {
+        Integer index = poolIndexes.get(key);
+        if (index != null)
+            return index;
+        try {
+            pool.writeByte(tag);
+            entry.write(pool);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        poolIndexes.put(key, poolCount);
+        return poolCount++;
+    }
+
+    //              Fields and methods
+
+    public void field(int access, String name, String descriptor) {
+        fields.add(bytes(out -> {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        }));
+    }
+
+    /**
+     * Start a method. Call Code.finish() to add it to the class.
+     */
+    public Code method(int access, String name, String descriptor) {
+        return new Code(access, name, descriptor);
+    }
+
+    /**
+     * @return the finished class file
+     */
+    public byte[] toBytes() {
+        return bytes(out -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields)
+                out.write(field);
+            out.writeShort(methods.size());
+            for (byte[] method : methods)
+                out.write(method);
+            out.writeShort(0);
+        });
+    }
+
+    private static byte[] bytes(Entry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            entry.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** A jump target. Jumps to it may be written before it is placed. */
+    public static class Label {
+        private int position = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+    }
+
+    /**
+     * The instructions of one method. Keeps track of the stack depth (as it would be after each instruction, in
+     * straight-line code) to work out max_stack.
+     */
+    public class Code {
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private byte[] code = new byte[256];
+        private int length = 0;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+
+        private Code(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            maxLocals = argumentSlots(descriptor);
+        }
+
+        /**
+         * @param opcode - an instruction with no operands
+         * @param stackChange - how much it changes the stack depth by
+         */
+        public void op(int opcode, int stackChange) {
+            write(opcode);
+            adjustStack(stackChange);
+        }
+
+        public void loadConstant(int poolIndex) {
+            if (poolIndex < 256) {
+                write(Opcodes.LDC);
+                write(poolIndex);
+            }
+            else {
+                write(Opcodes.LDC_W);
+                writeShort(poolIndex);
+            }
+            adjustStack(1);
+        }
+
+        /**
+         * iload, fload, aload, istore, fstore, astore
+         */
+        public void local(int opcode, int slot) {
+            maxLocals = Math.max(maxLocals, slot + 1);
+            write(opcode);
+            write(slot);
+            adjustStack(opcode >= Opcodes.ISTORE ? -1 : 1);
+        }
+
+        public void increment(int slot, int amount) {
+            write(Opcodes.IINC);
+            write(slot);
+            write(amount);
+        }
+
+        public void pushInt(int value) {
+            if (value >= -1 && value <= 5)
+                op(Opcodes.ICONST_0 + value, 1);
+            else {
+                write(Opcodes.SIPUSH);
+                writeShort(value);
+                adjustStack(1);
+            }
+        }
+
+        /**
+         * An instruction with a constant pool operand (invokes, field access, anewarray, checkcast).
+         */
+        public void poolOp(int opcode, int poolIndex, int stackChange) {
+            write(opcode);
+            writeShort(poolIndex);
+            adjustStack(stackChange);
+        }
+
+        public void invokeStatic(String owner, String name, String descriptor) {
+            poolOp(Opcodes.INVOKESTATIC, methodReference(owner, name, descriptor), returnSlots(descriptor) - argumentSlots(descriptor));
+        }
+
+        public void invokeVirtual(String owner, String name, String descriptor) {
+            poolOp(Opcodes.INVOKEVIRTUAL, methodReference(owner, name, descriptor), returnSlots(descriptor) - argumentSlots(descriptor) - 1);
+        }
+
+        /**
+         * goto, or a conditional branch (which pops its operands)
+         */
+        public void jump(int opcode, Label target) {
+            int at = length;
+            write(opcode);
+            if (target.position >= 0)
+                writeShort(target.position - at);
+            else {
+                target.jumps.add(at);
+                writeShort(0);
+            }
+            if (opcode >= Opcodes.IF_ICMPEQ && opcode <= Opcodes.IF_ICMPLE)
+                adjustStack(-2);
+            else if (opcode != Opcodes.GOTO)
+                adjustStack(-1);
+        }
+
+        public void place(Label label) {
+            label.position = length;
+            for (int jump : label.jumps)
+                patchShort(jump + 1, label.position - jump);
+            label.jumps.clear();
+        }
+
+        /**
+         * For code that is only reached by a jump: the stack depth there.
+         */
+        public void setStack(int depth) {
+            stack = depth;
+        }
+
+        public int stack() {
+            return stack;
+        }
+
+        /**
+         * @return a local variable slot that isn't used yet
+         */
+        public int newLocal() {
+            return maxLocals++;
+        }
+
+        /**
+         * @return the code size so far, in bytes
+         */
+        public int size() {
+            return length;
+        }
+
+        /**
+         * Add the method to the class.
+         */
+        public void finish() {
+            byte[] instructions = Arrays.copyOf(code, length);
+            if (instructions.length > Short.MAX_VALUE)
+                throw new IllegalStateException("Method " + name + " is too large");
+            methods.add(bytes(out -> {
+                out.writeShort(access);
+                out.writeShort(utf8(name));
+                out.writeShort(utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + instructions.length);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(instructions.length);
+                out.write(instructions);
+                out.writeShort(0);
+                out.writeShort(0);
+            }));
+        }
+
+        private void adjustStack(int change) {
+            stack += change;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void write(int value) {
+            if (length == code.length)
+                code = Arrays.copyOf(code, length * 2);
+            code[length++] = (byte) value;
+        }
+
+        private void writeShort(int value) {
+            write(value >> 8);
+            write(value);
+        }
+
+        private void patchShort(int at, int value) {
+            code[at] = (byte) (value >> 8);
+            code[at + 1] = (byte) value;
+        }
+    }
+
+    // Every type we use takes one slot (no long or double).
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            while (descriptor.charAt(i) == '[')
+                i++;
+            if (descriptor.charAt(i) == 'L')
+                i = descriptor.indexOf(';', i);
+            slots++;
+        }
+        return slots;
+    }
+
+    private static int returnSlots(String descriptor) {
+        return descriptor.endsWith(")V") ? 0 : 1;
+    }
+
+    /** The opcodes the JvmCompiler uses. */
+    public static class Opcodes {
+        public static final int ICONST_0 = 0x03;
+        public static final int FCONST_0 = 0x0b;
+        public static final int SIPUSH = 0x11;
+        public static final int LDC = 0x12;
+        public static final int LDC_W = 0x13;
+        public static final int ILOAD = 0x15;
+        public static final int FLOAD = 0x17;
+        public static final int ALOAD = 0x19;
+        public static final int AALOAD = 0x32;
+        public static final int ISTORE = 0x36;
+        public static final int FSTORE = 0x38;
+        public static final int ASTORE = 0x3a;
+        public static final int AASTORE = 0x53;
+        public static final int POP = 0x57;
+        public static final int DUP = 0x59;
+        public static final int FADD = 0x62;
+        public static final int FSUB = 0x66;
+        public static final int FMUL = 0x6a;
+        public static final int IINC = 0x84;
+        public static final int I2F = 0x86;
+        public static final int FCMPL = 0x95;
+        public static final int FCMPG = 0x96;
+        public static final int IFEQ = 0x99;
+        public static final int IFNE = 0x9a;
+        public static final int IFLT = 0x9b;
+        public static final int IFGE = 0x9c;
+        public static final int IFGT = 0x9d;
+        public static final int IFLE = 0x9e;
+        public static final int IF_ICMPEQ = 0x9f;
+        public static final int IF_ICMPLE = 0xa4;
+        public static final int GOTO = 0xa7;
+        public static final int IRETURN = 0xac;
+        public static final int FRETURN = 0xae;
+        public static final int ARETURN = 0xb0;
+        public static final int RETURN = 0xb1;
+        public static final int GETSTATIC = 0xb2;
+        public static final int PUTSTATIC = 0xb3;
+        public static final int INVOKEVIRTUAL = 0xb6;
+        public static final int INVOKESTATIC = 0xb8;
+        public static final int ANEWARRAY = 0xbd;
+        public static final int CHECKCAST = 0xc0;
+    }
+}
@@ -0,0 +1,64 @@
+package Interpreter;
+
+import AST.BooleanOpNode;
+import AST.CompareNode;
+import AST.MathOpNode;
+
+/**
+ * Turns a BytecodeFunction back into readable text, one instruction per line:
+ *      0004: ADD_N r3(t0), r1(i), k#0(2.0)
+ *      0008: F_ADD f1(sum), f1(sum), f0(i)
+ * Float slots print as f, int slots as i, and number/int constants as #(value).
+ */
+public class Disassembler {
+    /**
+     * @param function - compiled code
+     * @return a listing of it, starting with the method name
+     */
+    public static String disassemble(BytecodeFunction function) {
+        StringBuilder listing = new StringBuilder(function.method.name).append(" (").append(function.registerCount).append(" registers, ")
+                .append(function.floatNames.length).append(" floats, ").append(function.intNames.length).append(" ints)\n");
+        int[] code = function.code;
+        int pc = 0;
+        while (pc < code.length) {
+            int opcode = code[pc];
+            String format = Bytecode.FORMATS[opcode];
+            listing.append(String.format("%04d: %s", pc, Bytecode.NAMES[opcode]));
+            for (int i = 0; i < format.length(); i++) {
+                listing.append(i == 0 ? " " : ", ");
+                listing.append(operand(function, format.charAt(i), code[pc + 1 + i]));
+            }
+            listing.append('\n');
+            pc += 1 + format.length();
+        }
+        return listing.toString();
+    }
+
+    private static String operand(BytecodeFunction function, char kind, int operand) {
+        return switch (kind) {
+            case 'r' -> operand < 0 ? "-" : register(function, operand);
+            case 'o' -> operand >= 0 ? register(function, operand) : "k#" + (-1 - operand) + "(" + function.constants[-1 - operand] + ")";
+            case 'F' -> slot("f", function.floatNames, operand);
+            case 'f' -> operand >= 0 ? slot("f", function.floatNames, operand) : "#(" + function.numberConstants[-1 - operand] + ")";
+            case 'I' -> slot("i", function.intNames, operand);
+            case 'i' -> operand >= 0 ? slot("i", function.intNames, operand) : "#(" + function.intConstants[-1 - operand] + ")";
+            case 't' -> operand == Bytecode.BOOLEAN ? "boolean" : "character";
+            case 'k', 's' -> "k#" + operand + "(" + function.constants[operand] + ")";
+            case 'L' -> String.format("%04d", operand);
+            case 'm' -> MathOpNode.MathOperations.values()[operand].toString();
+            case 'c' -> CompareNode.CompareOperations.values()[operand].toString();
+            case 'b' -> BooleanOpNode.BooleanOperations.values()[operand].toString();
+            case 'n' -> "n" + operand;
+            case 'l' -> "k#" + operand + "(loop)";
+            default -> throw new IllegalArgumentException("Unknown operand kind " + kind);
+        };
+    }
+
+    private static String slot(String prefix, String[] names, int slot) {
+        return prefix + slot + "(" + names[slot] + ")";
+    }
+
+    private static String register(BytecodeFunction function, int register) {
+        return "r" + register + "(" + function.registerNames[register] + ")";
+    }
+}
@@ -0,0 +1,56 @@
+package Interpreter;
+
+public class DoubleIDT implements InterpreterDataType {
+    public double Value;
+    private final boolean constant;
+
+    public DoubleIDT(double v) {
+        this(v, false);
+    }
+
+    private DoubleIDT(double v, boolean constant) {
+        Value = v;
+        this.constant = constant;
+    }
+
+    /**
+     * @param v - a value
+     * @return a constant DoubleIDT holding it (see asVariable())
+     */
+    public static DoubleIDT of(double v) {
+        return new DoubleIDT(v, true);
+    }
+
+    /**
+     * @return a constant whose Value a Scratch region rewrites for each result it holds
+     */
+    static DoubleIDT scratch() {
+        return new DoubleIDT(0, true);
+    }
+
+    /**
+     * A double can be assigned from any number.
+     */
+    @Override
+    public void Assign(InterpreterDataType in) {
+        if (constant)
+            throw new IllegalStateException("Assigning to the constant " + Value);
+        if (in instanceof DoubleIDT inv)
+            Value = inv.Value;
+        else if (in instanceof NumberIDT inv)
+            Value = inv.Value;
+        else if (in instanceof IntegerIDT inv)
+            Value = inv.Value;
+        else
+            throw new RuntimeException("Trying to assign to a double IDT from a " + in.getClass());
+    }
+
+    @Override
+    public InterpreterDataType asVariable() {
+        return constant ? new DoubleIDT(Value) : this;
+    }
+
+    public String toString() {
+        return String.valueOf(Value);
+    }
+}
@@ -0,0 +1,50 @@
+package Interpreter;
+
+import java.util.HashMap;
+import java.util.Optional;
+
+/**
+ * An expression compiled by the NodeCompiler. execute() produces the same IDT that evaluate() would. The typed variants
+ * let a parent that expects a number, an integer or a boolean get the raw value without boxing it into a new IDT.
+ */
+public abstract class ExecutableExpression {
+    /**
+     * @param locals - the local variables
+     * @param object - the current object
+     * @return the value
+     */
+    public abstract InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object);
+
+    /**
+     * @return the value, if it is a number
+     * @throws UnexpectedResultException carrying the value if it isn't
+     */
+    public float executeNumber(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) throws UnexpectedResultException {
+        InterpreterDataType value = execute(locals, object);
+        if (value instanceof NumberIDT number)
+            return number.Value;
+        throw new UnexpectedResultException(value);
+    }
+
+    /**
+     * @return the value, if it is an integer
+     * @throws UnexpectedResultException carrying the value if it isn't
+     */
+    public long executeInteger(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) throws UnexpectedResultException {
+        InterpreterDataType value = execute(locals, object);
+        if (value instanceof IntegerIDT integer)
+            return integer.Value;
+        throw new UnexpectedResultException(value);
+    }
+
+    /**
+     * @return the value, if it is a boolean
+     * @throws UnexpectedResultException carrying the value if it isn't
+     */
+    public boolean executeBoolean(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) throws UnexpectedResultException {
+        InterpreterDataType value = execute(locals, object);
+        if (value instanceof BooleanIDT bool)
+            return bool.Value;
+        throw new UnexpectedResultException(value);
+    }
+}
@@ -0,0 +1,15 @@
+package Interpreter;
+
+import java.util.HashMap;
+import java.util.Optional;
+
+/**
+ * A statement compiled by the NodeCompiler. execute() has the same effect as interpretStatementBlock() on the statement.
+ */
+public abstract class ExecutableStatement {
+    /**
+     * @param locals - the local variables
+     * @param object - the current object
+     */
+    public abstract void execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object);
+}
@@ -0,0 +1,22 @@
+package Interpreter;
+
+/**
+ * The ways the Interpreter can run method bodies. Select one with Interpreter.setEngine() before calling start().
+ */
+public enum ExecutionEngine {
+    /** Walk the AST directly (interpretStatementBlock() and evaluate()) */
+    TREE_WALKER,
+    /** Compile each body once into executable nodes that specialize themselves on the types they see (see NodeCompiler) */
+    NODES,
+    /** Compile each method once into register bytecode and run it in the RegisterVM (see BytecodeCompiler) */
+    BYTECODE,
+    /** Compile each class into a JVM class and run the methods that could be compiled as Java (see JvmCompiler) */
+    JVM,
+    /** Start every method in the tree walker and move it to BYTECODE, then JVM, as it gets hot (see TieredExecution) */
+    TIERED,
+    /**
+     * BYTECODE, with calls between compiled methods kept on an explicit call stack instead of the Java stack, so deep
+     * recursion doesn't overflow (see RegisterVM and Interpreter.setMaxCallDepth())
+     */
+    STACK
+}
@@ -0,0 +1,422 @@
+package Interpreter;
+
+import AST.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The executable expression nodes made by the NodeCompiler.
+ *
+ * The operator nodes specialize themselves: they start out uninitialized, look at the operand types the first time they
+ * run and switch to a fast path for those types (numbers, for example, are passed between nodes as raw floats instead
+ * of new NumberIDTs). If the types ever change, the node falls back to the generic code for good - so a node changes
+ * state at most twice.
+ */
+public class ExpressionNodes {
+    private enum State { UNINITIALIZED, NUMBER, INTEGER, STRING, BOOLEAN, GENERIC }
+
+    public static class NumberLiteral extends ExecutableExpression {
+        private final float value;
+        private final NumberIDT constant;
+
+        NumberLiteral(float value) {
+            this.value = value;
+            constant = NumberIDT.of(value);
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return constant;
+        }
+
+        @Override
+        public float executeNumber(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return value;
+        }
+    }
+
+    public static class IntegerLiteral extends ExecutableExpression {
+        private final long value;
+        private final IntegerIDT constant;
+
+        IntegerLiteral(long value) {
+            this.value = value;
+            constant = IntegerIDT.of(value);
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return constant;
+        }
+
+        @Override
+        public long executeInteger(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return value;
+        }
+    }
+
+    public static class DoubleLiteral extends ExecutableExpression {
+        private final DoubleIDT constant;
+
+        DoubleLiteral(double value) {
+            constant = DoubleIDT.of(value);
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return constant;
+        }
+    }
+
+    public static class StringLiteral extends ExecutableExpression {
+        private final StringIDT constant;
+
+        StringLiteral(String value) {
+            constant = StringIDT.of(value);
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return constant;
+        }
+    }
+
+    public static class CharLiteral extends ExecutableExpression {
+        private final CharIDT constant;
+
+        CharLiteral(char value) {
+            constant = CharIDT.of(value);
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return constant;
+        }
+    }
+
+    public static class BooleanLiteral extends ExecutableExpression {
+        private final boolean value;
+
+        BooleanLiteral(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return BooleanIDT.of(value);
+        }
+
+        @Override
+        public boolean executeBoolean(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return value;
+        }
+    }
+
+    /**
+     * Returns the variable's IDT itself, like evaluate() does - method calls need it to share the caller's variable.
+     */
+    public static class Variable extends ExecutableExpression {
+        private final Interpreter interpreter;
+        private final String name;
+
+        Variable(Interpreter interpreter, String name) {
+            this.interpreter = interpreter;
+            this.name = name;
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return interpreter.findVariable(name, locals, object);
+        }
+    }
+
+    /**
+     * Specializes to NUMBER (float math, no IDTs in between), INTEGER (the same with longs) or STRING (concatenation).
+     */
+    public static class Math extends ExecutableExpression {
+        private final MathOpNode.MathOperations op;
+        private final ExecutableExpression left;
+        private final ExecutableExpression right;
+        private State state;
+
+        Math(MathOpNode.MathOperations op, ExecutableExpression left, ExecutableExpression right, boolean canSpecialize) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            state = canSpecialize ? State.UNINITIALIZED : State.GENERIC;
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            if (state == State.NUMBER) {
+                try {
+                    return NumberIDT.of(executeNumber(locals, object));
+                } catch (UnexpectedResultException e) {
+                    return e.result;
+                }
+            }
+            if (state == State.INTEGER) {
+                try {
+                    return IntegerIDT.of(executeInteger(locals, object));
+                } catch (UnexpectedResultException e) {
+                    return e.result;
+                }
+            }
+            InterpreterDataType leftValue = left.execute(locals, object);
+            InterpreterDataType rightValue = right.execute(locals, object);
+            if (state == State.STRING && leftValue instanceof StringIDT leftString && rightValue instanceof StringIDT rightString)
+                return StringIDT.concat(leftString, rightString);
+            if (state == State.UNINITIALIZED) {
+                if (leftValue instanceof NumberIDT && rightValue instanceof NumberIDT)
+                    state = State.NUMBER;
+                else if (leftValue instanceof IntegerIDT && rightValue instanceof IntegerIDT)
+                    state = State.INTEGER;
+                else if (leftValue instanceof StringIDT && rightValue instanceof StringIDT && op == MathOpNode.MathOperations.add)
+                    state = State.STRING;
+                else
+                    state = State.GENERIC;
+            }
+            else
+                state = State.GENERIC;
+            return Operations.math(op, leftValue, rightValue);
+        }
+
+        @Override
+        public float executeNumber(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) throws UnexpectedResultException {
+            if (state != State.NUMBER)
+                return super.executeNumber(locals, object);
+            float leftValue;
+            try {
+                leftValue = left.executeNumber(locals, object);
+            } catch (UnexpectedResultException e) {
+                throw generalize(e.result, right.execute(locals, object));
+            }
+            try {
+                return Operations.math(op, leftValue, right.executeNumber(locals, object));
+            } catch (UnexpectedResultException e) {
+                throw generalize(new NumberIDT(leftValue), e.result);
+            }
+        }
+
+        @Override
+        public long executeInteger(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) throws UnexpectedResultException {
+            if (state != State.INTEGER)
+                return super.executeInteger(locals, object);
+            long leftValue;
+            try {
+                leftValue = left.executeInteger(locals, object);
+            } catch (UnexpectedResultException e) {
+                throw generalize(e.result, right.execute(locals, object));
+            }
+            try {
+                return Operations.math(op, leftValue, right.executeInteger(locals, object));
+            } catch (UnexpectedResultException e) {
+                throw generalize(new IntegerIDT(leftValue), e.result);
+            }
+        }
+
+        // gives up on the fast path for good; the exception carries the generic result
+        private UnexpectedResultException generalize(InterpreterDataType leftValue, InterpreterDataType rightValue) {
+            state = State.GENERIC;
+            return new UnexpectedResultException(Operations.math(op, leftValue, rightValue));
+        }
+    }
+
+    /**
+     * Specializes to NUMBER (comparing floats) or INTEGER (comparing longs).
+     */
+    public static class Compare extends ExecutableExpression {
+        private final CompareNode.CompareOperations op;
+        private final ExecutableExpression left;
+        private final ExecutableExpression right;
+        private State state;
+
+        Compare(CompareNode.CompareOperations op, ExecutableExpression left, ExecutableExpression right, boolean canSpecialize) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            state = canSpecialize ? State.UNINITIALIZED : State.GENERIC;
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            if (state == State.NUMBER || state == State.INTEGER)
+                return BooleanIDT.of(executeBoolean(locals, object));
+            InterpreterDataType leftValue = left.execute(locals, object);
+            InterpreterDataType rightValue = right.execute(locals, object);
+            if (state == State.UNINITIALIZED) {
+                if (leftValue instanceof NumberIDT && rightValue instanceof NumberIDT)
+                    state = State.NUMBER;
+                else if (leftValue instanceof IntegerIDT && rightValue instanceof IntegerIDT)
+                    state = State.INTEGER;
+                else
+                    state = State.GENERIC;
+            }
+            return Operations.compare(op, leftValue, rightValue);
+        }
+
+        @Override
+        public boolean executeBoolean(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            if (state == State.INTEGER)
+                return compareIntegers(locals, object);
+            if (state != State.NUMBER)
+                return ((BooleanIDT) execute(locals, object)).Value;
+            float leftValue;
+            try {
+                leftValue = left.executeNumber(locals, object);
+            } catch (UnexpectedResultException e) {
+                return generalize(e.result, right.execute(locals, object));
+            }
+            try {
+                return Operations.compare(op, leftValue, right.executeNumber(locals, object));
+            } catch (UnexpectedResultException e) {
+                return generalize(new NumberIDT(leftValue), e.result);
+            }
+        }
+
+        private boolean compareIntegers(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            long leftValue;
+            try {
+                leftValue = left.executeInteger(locals, object);
+            } catch (UnexpectedResultException e) {
+                return generalize(e.result, right.execute(locals, object));
+            }
+            try {
+                return Operations.compare(op, leftValue, right.executeInteger(locals, object));
+            } catch (UnexpectedResultException e) {
+                return generalize(new IntegerIDT(leftValue), e.result);
+            }
+        }
+
+        private boolean generalize(InterpreterDataType leftValue, InterpreterDataType rightValue) {
+            state = State.GENERIC;
+            return Operations.compare(op, leftValue, rightValue).Value;
+        }
+    }
+
+    /**
+     * Specializes to BOOLEAN (raw booleans from both sides). Both sides are always evaluated, as in evaluate().
+     */
+    public static class BooleanOp extends ExecutableExpression {
+        private final BooleanOpNode.BooleanOperations op;
+        private final ExecutableExpression left;
+        private final ExecutableExpression right;
+        private State state;
+
+        BooleanOp(BooleanOpNode.BooleanOperations op, ExecutableExpression left, ExecutableExpression right, boolean canSpecialize) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            state = canSpecialize ? State.UNINITIALIZED : State.GENERIC;
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            if (state == State.BOOLEAN)
+                return BooleanIDT.of(executeBoolean(locals, object));
+            InterpreterDataType leftValue = left.execute(locals, object);
+            InterpreterDataType rightValue = right.execute(locals, object);
+            if (state == State.UNINITIALIZED)
+                state = leftValue instanceof BooleanIDT && rightValue instanceof BooleanIDT ? State.BOOLEAN : State.GENERIC;
+            return Operations.booleanOp(op, leftValue, rightValue);
+        }
+
+        @Override
+        public boolean executeBoolean(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            if (state != State.BOOLEAN)
+                return ((BooleanIDT) execute(locals, object)).Value;
+            boolean leftValue;
+            try {
+                leftValue = left.executeBoolean(locals, object);
+            } catch (UnexpectedResultException e) {
+                return generalize(e.result, right.execute(locals, object));
+            }
+            boolean rightValue;
+            try {
+                rightValue = right.executeBoolean(locals, object);
+            } catch (UnexpectedResultException e) {
+                return generalize(new BooleanIDT(leftValue), e.result);
+            }
+            return op == BooleanOpNode.BooleanOperations.and ? leftValue && rightValue : leftValue || rightValue;
+        }
+
+        private boolean generalize(InterpreterDataType leftValue, InterpreterDataType rightValue) {
+            state = State.GENERIC;
+            return Operations.booleanOp(op, leftValue, rightValue).Value;
+        }
+    }
+
+    public static class Not extends ExecutableExpression {
+        private final ExecutableExpression operand;
+
+        Not(ExecutableExpression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return BooleanIDT.of(executeBoolean(locals, object));
+        }
+
+        @Override
+        public boolean executeBoolean(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            try {
+                return !operand.executeBoolean(locals, object);
+            } catch (UnexpectedResultException e) {
+                return Operations.not(e.result).Value;
+            }
+        }
+    }
+
+    /**
+     * A method call used as a value - the first return value. Like evaluate(), this runs on the current object.
+     */
+    public static class Call extends ExecutableExpression {
+        private final Interpreter interpreter;
+        private final MethodCallStatementNode call;
+        private final ExecutableExpression[] arguments;
+
+        Call(Interpreter interpreter, MethodCallStatementNode call, ExecutableExpression[] arguments) {
+            this.interpreter = interpreter;
+            this.call = call;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            return interpreter.runMethodCall(object, locals, call, evaluateAll(arguments, locals, object)).get(0);
+        }
+    }
+
+    public static class New extends ExecutableExpression {
+        private final Interpreter interpreter;
+        private final NewNode newNode;
+        private final ExecutableExpression[] arguments;
+
+        New(Interpreter interpreter, NewNode newNode, ExecutableExpression[] arguments) {
+            this.interpreter = interpreter;
+            this.newNode = newNode;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public InterpreterDataType execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            Optional<ClassNode> classNode = interpreter.getClassByName(newNode.className);
+            if (classNode.isEmpty())
+                throw new RuntimeException("Class " + newNode.className + " not found");
+            ObjectIDT newObject = interpreter.newObject(classNode.get());
+            interpreter.runConstructor(newNode, newObject, evaluateAll(arguments, locals, object));
+            return newObject;
+        }
+    }
+
+    static List<InterpreterDataType> evaluateAll(ExecutableExpression[] expressions, HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+        List<InterpreterDataType> values = new ArrayList<>(expressions.length);
+        for (ExecutableExpression expression : expressions)
+            values.add(expression.execute(locals, object).asVariable());
+        return values;
+    }
+}
@@ -0,0 +1,55 @@
+package Interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The local variables of one call in the tree walker (and in the executable nodes).
+ *
+ * A frame only holds the method's own variables: parameters, locals, returns and loop variables. Any other name falls
+ * through to the object's members and then to the global members as they were when the call started. That is what
+ * the locals used to contain as copies (every member of the program, then the object's members), so lookups give the
+ * same answers without a call having to copy anything.
+ *
+ * Constructors get a frame with nothing behind it - their locals never included the members.
+ */
+public class Frame extends HashMap<String, InterpreterDataType> {
+    private static final long serialVersionUID = 1L;
+
+    private transient ObjectIDT object;
+    private transient Map<String, InterpreterDataType> globals;
+
+    Frame(int capacity) {
+        super(capacity);
+    }
+
+    /**
+     * @param object - the object the call runs on (or null)
+     * @param globals - the global members (or null)
+     */
+    void setFallbacks(ObjectIDT object, Map<String, InterpreterDataType> globals) {
+        this.object = object;
+        this.globals = globals;
+    }
+
+    @Override
+    public InterpreterDataType get(Object name) {
+        InterpreterDataType found = super.get(name);
+        if (found != null)
+            return found;
+        if (object != null && (found = object.get((String) name)) != null)
+            return found;
+        return globals == null ? null : globals.get(name);
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return get(name) != null;
+    }
+
+    @Override
+    public InterpreterDataType getOrDefault(Object name, InterpreterDataType defaultValue) {
+        InterpreterDataType found = get(name);
+        return found == null ? defaultValue : found;
+    }
+}
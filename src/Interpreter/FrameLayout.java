@@ -0,0 +1,142 @@
+package Interpreter;
+
+import AST.VariableDeclarationNode;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a call to one method or constructor puts in its Frame, worked out once instead of on every call: the names of
+ * its locals, parameters and returns (in the order they are added, so a repeated name ends up the same way) and the
+ * kind of IDT each local and return starts as.
+ *
+ * Frames are handed back when the call returns and reused by the next call, so a call doesn't allocate a map either.
+ * A recursive call simply takes another frame from the pool (or makes one).
+ */
+public class FrameLayout {
+    private static final int NUMBER = 0;
+    private static final int STRING = 1;
+    private static final int BOOLEAN = 2;
+    private static final int CHARACTER = 3;
+    private static final int REFERENCE = 4;
+    private static final int INTEGER = 5;
+    private static final int DOUBLE = 6;
+
+    private final String[] localNames;
+    private final int[] localKinds;
+    private final String[] parameterNames;
+    private final String[] returnNames;
+    private final int[] returnKinds;
+    private final int capacity;
+    private final ArrayDeque<Frame> pool = new ArrayDeque<>();
+
+    FrameLayout(List<VariableDeclarationNode> parameters, List<VariableDeclarationNode> locals, List<VariableDeclarationNode> returns) {
+        localNames = names(locals);
+        localKinds = kinds(locals);
+        parameterNames = names(parameters);
+        returnNames = names(returns);
+        returnKinds = kinds(returns);
+        // room for the declared variables and a few loop variables, without rehashing
+        capacity = (int) ((locals.size() + parameters.size() + returns.size() + 4) / 0.75f) + 1;
+    }
+
+    /**
+     * Start a call.
+     * @param object - the object it runs on, or null
+     * @param globals - the global members, or null
+     * @param values - the parameter values
+     * @return a frame holding the new locals and returns and the parameters
+     */
+    Frame enter(ObjectIDT object, Map<String, InterpreterDataType> globals, List<InterpreterDataType> values) {
+        Frame frame = pool.isEmpty() ? new Frame(capacity) : pool.pop();
+        fill(frame, object, globals, values);
+        return frame;
+    }
+
+    /**
+     * Start a self tail call in the frame of the call making it: the frame gets what enter() would have put in a new one.
+     * @param frame - the frame of the call making the tail call
+     * @param object - the object it runs on, or null
+     * @param globals - the global members, or null
+     * @param values - the parameter values
+     */
+    void rebind(Frame frame, ObjectIDT object, Map<String, InterpreterDataType> globals, List<InterpreterDataType> values) {
+        frame.clear();
+        fill(frame, object, globals, values);
+    }
+
+    private void fill(Frame frame, ObjectIDT object, Map<String, InterpreterDataType> globals, List<InterpreterDataType> values) {
+        frame.setFallbacks(object, globals);
+        for (int i = 0; i < localNames.length; i++)
+            frame.put(localNames[i], instantiate(localKinds[i]));
+        int i = 0;
+        for (InterpreterDataType value : values)
+            frame.put(parameterNames[i++], value);
+        for (i = 0; i < returnNames.length; i++)
+            frame.put(returnNames[i], instantiate(returnKinds[i]));
+    }
+
+    /**
+     * @return how many IDTs enter() and rebind() make (the locals and returns)
+     */
+    int instantiated() {
+        return localNames.length + returnNames.length;
+    }
+
+    /**
+     * @param frame - the frame of a call that has finished
+     * @return its return values
+     */
+    List<InterpreterDataType> returns(Frame frame) {
+        List<InterpreterDataType> values = new LinkedList<>();
+        for (String name : returnNames)
+            values.add(frame.get(name));
+        return values;
+    }
+
+    /**
+     * Hand a frame back once nothing refers to it any more.
+     * @param frame - from enter()
+     */
+    void exit(Frame frame) {
+        frame.clear();
+        frame.setFallbacks(null, null);
+        pool.push(frame);
+    }
+
+    private static String[] names(List<VariableDeclarationNode> variables) {
+        return variables.stream().map(variable -> variable.name).toArray(String[]::new);
+    }
+
+    private static int[] kinds(List<VariableDeclarationNode> variables) {
+        int[] kinds = new int[variables.size()];
+        int i = 0;
+        for (VariableDeclarationNode variable : variables) {
+            kinds[i++] = switch (variable.type) {
+                case "number" -> NUMBER;
+                case "integer" -> INTEGER;
+                case "double" -> DOUBLE;
+                case "string" -> STRING;
+                case "boolean" -> BOOLEAN;
+                case "character" -> CHARACTER;
+                default -> REFERENCE;
+            };
+        }
+        return kinds;
+    }
+
+    // The same defaults as Interpreter.instantiate()
+    private static InterpreterDataType instantiate(int kind) {
+        return switch (kind) {
+            case NUMBER -> new NumberIDT(0);
+            case INTEGER -> new IntegerIDT(0);
+            case DOUBLE -> new DoubleIDT(0);
+            case STRING -> new StringIDT("");
+            case BOOLEAN -> new BooleanIDT(false);
+            case CHARACTER -> new CharIDT(' ');
+            default -> new ReferenceIDT();
+        };
+    }
+}
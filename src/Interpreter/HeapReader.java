@@ -0,0 +1,112 @@
+package Interpreter;
+
+import AST.ClassNode;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Loads the state written by HeapWriter into a new Interpreter for the same program, so that it can start() where the
+ * one that was saved left off.
+ */
+public class HeapReader {
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+
+    public HeapReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * @param interpreter - a new interpreter for the program the state was saved from
+     * @throws IOException if the stream can't be read, or holds state that doesn't fit the program
+     */
+    public void read(Interpreter interpreter) throws IOException {
+        ObjectIDT[] objects = new ObjectIDT[in.readInt()];
+        for (int i = 0; i < objects.length; i++) {
+            String className = readString();
+            Optional<ClassNode> classNode = interpreter.getClassByName(className);
+            if (classNode.isEmpty())
+                throw new IOException("Saved object of unknown class " + className);
+            objects[i] = interpreter.newObject(classNode.get());
+        }
+        for (ObjectIDT object : objects) {
+            int members = in.readInt();
+            for (int i = 0; i < members; i++) {
+                String name = readString();
+                object.put(name, readValue(objects));
+            }
+        }
+        Map<String, InterpreterDataType> members = interpreter.programMembers();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = readString();
+            InterpreterDataType member = members.get(name);
+            if (member == null)
+                throw new IOException("Saved member " + name + " isn't in the program");
+            member.Assign(readValue(objects));
+        }
+        int swappedIn = in.readInt();
+        if (swappedIn >= objects.length || swappedIn < -1)
+            throw new IOException("Bad object index " + swappedIn);
+        if (swappedIn >= 0)
+            interpreter.swapIn(objects[swappedIn]);
+    }
+
+    private InterpreterDataType readValue(ObjectIDT[] objects) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case HeapWriter.NUMBER -> {
+                return new NumberIDT(in.readFloat());
+            }
+            case HeapWriter.INTEGER -> {
+                return new IntegerIDT(in.readLong());
+            }
+            case HeapWriter.DOUBLE -> {
+                return new DoubleIDT(in.readDouble());
+            }
+            case HeapWriter.STRING -> {
+                return new StringIDT(readString());
+            }
+            case HeapWriter.CHARACTER -> {
+                return new CharIDT(in.readChar());
+            }
+            case HeapWriter.BOOLEAN -> {
+                return new BooleanIDT(in.readBoolean());
+            }
+            case HeapWriter.NULL_REFERENCE -> {
+                ReferenceIDT reference = new ReferenceIDT();
+                reference.refersTo = Optional.empty();
+                return reference;
+            }
+            case HeapWriter.REFERENCE -> {
+                int index = in.readInt();
+                if (index < 0 || index >= objects.length)
+                    throw new IOException("Bad object index " + index);
+                ReferenceIDT reference = new ReferenceIDT();
+                reference.refersTo = Optional.of(objects[index]);
+                return reference;
+            }
+            default -> throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private String readString() throws IOException {
+        int index = in.readInt();
+        if (index >= 0 && index < strings.size())
+            return strings.get(index);
+        if (index != strings.size())
+            throw new IOException("Bad string index " + index);
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(value);
+        return value;
+    }
+}
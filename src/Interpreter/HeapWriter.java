@@ -0,0 +1,144 @@
+package Interpreter;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes the state a program has built up - its members and every object they lead to - in a binary form that
+ * HeapReader loads into a new Interpreter for the same program (see Aot.Snapshot).
+ *
+ * The objects come first: how many there are and the class of each, then the members of each in slot order, so that
+ * putting them back in that order gives the objects the same Shapes. A reference is written as the index of the object
+ * it refers to, so an object that several references share is still shared when it is read back. The program's members
+ * come next, and last the index of the object whose members a call swapped in for them (see Interpreter.swapIn()), or
+ * -1. Strings are written once, as in Aot.AstWriter.
+ */
+public class HeapWriter {
+    // values
+    static final int NUMBER = 0;
+    static final int INTEGER = 1;
+    static final int DOUBLE = 2;
+    static final int STRING = 3;
+    static final int CHARACTER = 4;
+    static final int BOOLEAN = 5;
+    static final int NULL_REFERENCE = 6;
+    static final int REFERENCE = 7;
+
+    private final DataOutputStream out;
+    private final HashMap<String, Integer> strings = new HashMap<>();
+    private final IdentityHashMap<ObjectIDT, Integer> indexes = new IdentityHashMap<>();
+    private final List<ObjectIDT> objects = new ArrayList<>();
+
+    public HeapWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * @param interpreter - an interpreter, between calls (after initialize(), say)
+     * @throws IOException if the stream can't be written
+     */
+    public void write(Interpreter interpreter) throws IOException {
+        Map<String, InterpreterDataType> members = interpreter.programMembers();
+        for (InterpreterDataType member : members.values())
+            find(member);
+        ObjectIDT swappedIn = interpreter.swappedIn();
+        if (swappedIn != null)
+            add(swappedIn);
+        // objects grows as the members of the ones found so far lead to more
+        for (int i = 0; i < objects.size(); i++) {
+            ObjectIDT object = objects.get(i);
+            InterpreterDataType[] values = object.peek();
+            for (int slot = 0; slot < object.shape.size(); slot++)
+                find(values[slot]);
+        }
+        out.writeInt(objects.size());
+        for (ObjectIDT object : objects)
+            writeString(object.astNode.name);
+        for (ObjectIDT object : objects) {
+            InterpreterDataType[] values = object.peek();
+            out.writeInt(object.shape.size());
+            for (int slot = 0; slot < object.shape.size(); slot++) {
+                writeString(object.shape.nameAt(slot));
+                writeValue(values[slot]);
+            }
+        }
+        out.writeInt(members.size());
+        for (Map.Entry<String, InterpreterDataType> member : members.entrySet()) {
+            writeString(member.getKey());
+            writeValue(member.getValue());
+        }
+        out.writeInt(swappedIn == null ? -1 : indexes.get(swappedIn));
+        out.flush();
+    }
+
+    private void find(InterpreterDataType value) {
+        if (value instanceof ReferenceIDT reference && reference.refersTo != null && reference.refersTo.isPresent())
+            add(reference.refersTo.get());
+    }
+
+    private void add(ObjectIDT object) {
+        if (!indexes.containsKey(object)) {
+            indexes.put(object, objects.size());
+            objects.add(object);
+        }
+    }
+
+    private void writeValue(InterpreterDataType value) throws IOException {
+        if (value instanceof NumberIDT number) {
+            out.writeByte(NUMBER);
+            out.writeFloat(number.Value);
+        }
+        else if (value instanceof IntegerIDT integer) {
+            out.writeByte(INTEGER);
+            out.writeLong(integer.Value);
+        }
+        else if (value instanceof DoubleIDT number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(number.Value);
+        }
+        else if (value instanceof StringIDT string) {
+            out.writeByte(STRING);
+            writeString(string.getValue());
+        }
+        else if (value instanceof CharIDT character) {
+            out.writeByte(CHARACTER);
+            out.writeChar(character.Value);
+        }
+        else if (value instanceof BooleanIDT bool) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(bool.Value);
+        }
+        else if (value instanceof ReferenceIDT reference) {
+            Optional<ObjectIDT> object = reference.refersTo == null ? Optional.empty() : reference.refersTo;
+            if (object.isPresent()) {
+                out.writeByte(REFERENCE);
+                out.writeInt(indexes.get(object.get()));
+            }
+            else
+                out.writeByte(NULL_REFERENCE);
+        }
+        else
+            throw new IllegalArgumentException("Unable to save a " + value.getClass());
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            out.writeInt(index);
+            return;
+        }
+        out.writeInt(strings.size());
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
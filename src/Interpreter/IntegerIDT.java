@@ -0,0 +1,74 @@
+package Interpreter;
+
+public class IntegerIDT implements InterpreterDataType {
+    // small values have one shared constant each
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final IntegerIDT[] CACHE = new IntegerIDT[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++)
+            CACHE[i] = new IntegerIDT(i + CACHE_LOW, true);
+    }
+
+    public long Value;
+    private final boolean constant;
+
+    public IntegerIDT(long v) {
+        this(v, false);
+    }
+
+    private IntegerIDT(long v, boolean constant) {
+        Value = v;
+        this.constant = constant;
+    }
+
+    /**
+     * @param v - a value
+     * @return a constant IntegerIDT holding it - shared for small values, so no allocation (see asVariable())
+     */
+    public static IntegerIDT of(long v) {
+        if (v >= CACHE_LOW && v <= CACHE_HIGH)
+            return CACHE[(int) v - CACHE_LOW];
+        return new IntegerIDT(v, true);
+    }
+
+    /**
+     * @return a constant whose Value a Scratch region rewrites for each result it holds
+     */
+    static IntegerIDT scratch() {
+        return new IntegerIDT(0, true);
+    }
+
+    /**
+     * An integer can be assigned from any number that is whole ("i = 0" works without the L).
+     */
+    @Override
+    public void Assign(InterpreterDataType in) {
+        if (constant)
+            throw new IllegalStateException("Assigning to the constant " + Value);
+        if (in instanceof IntegerIDT inv)
+            Value = inv.Value;
+        else if (in instanceof NumberIDT inv)
+            Value = whole(inv.Value);
+        else if (in instanceof DoubleIDT inv)
+            Value = whole(inv.Value);
+        else
+            throw new RuntimeException("Trying to assign to an integer IDT from a " + in.getClass());
+    }
+
+    private static long whole(double value) {
+        if (value != Math.rint(value) || value < Long.MIN_VALUE || value >= 0x1p63)
+            throw new RuntimeException("Trying to assign " + value + " to an integer");
+        return (long) value;
+    }
+
+    @Override
+    public InterpreterDataType asVariable() {
+        return constant ? new IntegerIDT(Value) : this;
+    }
+
+    public String toString() {
+        return String.valueOf(Value);
+    }
+}
@@ -1,19 +1,56 @@
 package Interpreter;
 
 import AST.*;
+import Optimizer.PurityAnalysis;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public class Interpreter {
     private TranNode top;
     private List<MemberNode> memberNodes = new LinkedList<>();
-    private HashMap<String, InterpreterDataType> members = new HashMap<>();
+    // the program's own members
+    private final HashMap<String, InterpreterDataType> programMembers = new HashMap<>();
+    // what names resolve against after the locals: programMembers, until a call through a reference swaps in that
+    // object's members (see swapIn())
+    private Map<String, InterpreterDataType> members = programMembers;
+    private ObjectIDT swappedIn;
     // private HashMap<String, InterpreterDataType> methodParameters = new HashMap<>();
     private List<MethodDeclarationNode> methods = new LinkedList<>();
     private List<MethodDeclarationNode> sharedMethods = new LinkedList<>();
+    private Set<MethodDeclarationNode> pureMethods;
+    private MethodCache methodCache = new MethodCache(MethodCache.DEFAULT_CAPACITY);
+    private boolean memoize = true;
+    private ExecutionEngine engine = ExecutionEngine.TREE_WALKER;
+    // the engines that need the interpreter are made on first use (see nodeCompiler()), so that the constructor
+    // doesn't hand out this
+    private NodeCompiler nodeCompiler;
+    private BytecodeCompiler bytecodeCompiler;
+    private final JvmCompiler jvmCompiler;
+    private TieredExecution tiers;
+    private RegisterVM vm;
+    private final IdentityHashMap<Object, FrameLayout> frameLayouts = new IdentityHashMap<>();
+    // the empty Shape that each class's objects start with
+    private final IdentityHashMap<ClassNode, Shape> shapes = new IdentityHashMap<>();
+    private final IdentityHashMap<MethodCallStatementNode, MethodDeclarationNode> tailCalls;
+    // the program's literal pool: the constant for each number, string and character literal evaluate() has seen
+    private final IdentityHashMap<ExpressionNode, InterpreterDataType> literals = new IdentityHashMap<>();
+    // the arguments of a self tail call that the body just ended with (see interpretMethodCall())
+    private List<InterpreterDataType> tailCallArguments;
+    private final MemoryAccount memory = new MemoryAccount();
+    // the table of shared strings - one for the life of the interpreter, used while setStringInterning() has it on
+    private final StringInterner interner = new StringInterner();
+    private boolean interning;
+    // where objects with only primitive members keep them, if setOffHeapObjects() turned that on
+    private OffHeapStore offHeap;
+    // where the tree walker keeps the results of math until the statement ends, if setScratchTemporaries() turned that on
+    private Scratch scratch;
 
     /** Constructor - get the interpreter ready to run. Set members from parameters and "prepare" the class.
      *
@@ -26,11 +63,12 @@ public class Interpreter {
         for (ClassNode classNode : top.Classes) {
             for (MemberNode member : classNode.members) {
                 memberNodes.add(member);
-                members.put(member.declaration.name, instantiate(member.declaration.type));
+                members.put(member.declaration.name, defaultValue(member.declaration.type));
             }
             for (MethodDeclarationNode method : classNode.methods)
                 methods.add(method);
         }
+        memory.allocateIDTs(memberNodes.size());
         members.put("true", new BooleanIDT(true));
         members.put("false", new BooleanIDT(false));
         BuiltInMethodDeclarationNode write = new ConsoleWrite();
@@ -42,11 +80,140 @@ public class Interpreter {
         console.name = "console";
         console.methods.add(write);
         this.top.Classes.add(console);
-        members.put(console.name, new ObjectIDT(console));
+        members.put(console.name, createObject(console));
         for (MethodDeclarationNode method : console.methods) {
             if (method.isShared)
                 sharedMethods.add(method);
         }
+        pureMethods = new PurityAnalysis(top).pureMethods();
+        tailCalls = TailCalls.find(methods);
+        jvmCompiler = new JvmCompiler(top);
+    }
+
+    /**
+     * Calls to pure shared methods (see PurityAnalysis) are memoized by default. Turn that off, or give the cache a
+     * different size. Must be called before start().
+     * @param enabled - memoize pure calls?
+     * @param capacity - how many results to keep
+     */
+    public void setMemoization(boolean enabled, int capacity) {
+        memoize = enabled;
+        methodCache = new MethodCache(capacity);
+    }
+
+    /**
+     * @return the memoization cache, for its hit/miss statistics
+     */
+    public MethodCache getMethodCache() {
+        return methodCache;
+    }
+
+    /**
+     * Choose how method bodies are run (the tree walker by default). Must be called before start().
+     * @param engine - the engine to use
+     */
+    public void setEngine(ExecutionEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return what this program has allocated so far; set its limits before start()
+     */
+    public MemoryAccount memory() {
+        return memory;
+    }
+
+    /**
+     * Make equal short strings share one String while the program runs (see StringInterner), so that programs whose
+     * data repeats the same strings keep one copy of each, and == and != on them are identity tests. Off by default.
+     * Takes effect from the next initialize() or start(). Turning it off and on again goes back to the same table, so
+     * the strings interned before still compare equal to the ones interned after.
+     * @param enabled - whether to
+     */
+    public void setStringInterning(boolean enabled) {
+        interning = enabled;
+    }
+
+    /**
+     * @return how many strings interning replaced with an equal one it already had (0 if it was never on)
+     */
+    public long sharedStrings() {
+        return interner.shared();
+    }
+
+    /**
+     * Keep the members of objects whose members are all primitive off the heap, in direct ByteBuffer arenas (see
+     * OffHeapStore), so that a program with millions of such objects doesn't have millions of member IDTs for the
+     * garbage collector to trace. Off by default. Must be called before start().
+     * @param enabled - whether to
+     */
+    public void setOffHeapObjects(boolean enabled) {
+        offHeap = enabled ? new OffHeapStore() : null;
+    }
+
+    /**
+     * @return how many bytes of off-heap memory objects have taken so far (0 unless setOffHeapObjects() is on)
+     */
+    public long offHeapBytes() {
+        return offHeap == null ? 0 : offHeap.bytes();
+    }
+
+    /**
+     * Have the tree walker (and the TIERED engine, while a method is in that tier) keep the results of math in a scratch
+     * region that each statement reuses, instead of allocating an IDT for each one (see Scratch). Only the results that
+     * are assigned, passed, returned or stored become IDTs of their own. Off by default. Must be called before start().
+     * @param enabled - whether to
+     */
+    public void setScratchTemporaries(boolean enabled) {
+        scratch = enabled ? new Scratch() : null;
+    }
+
+    /**
+     * @return how many temporaries the scratch region holds - the most that were ever in use at once (0 if it is off)
+     */
+    public int scratchTemporaries() {
+        return scratch == null ? 0 : scratch.size();
+    }
+
+    /**
+     * Set when the TIERED engine moves a method up a tier. Must be called before start().
+     * @param invocations - how many calls a method makes in a tier before it moves up
+     * @param backEdges - how many loop iterations a method makes in a tier before it moves up
+     */
+    public void setTierThresholds(int invocations, int backEdges) {
+        tiers = new TieredExecution(top, invocations, backEdges, m -> bytecodeCompiler().compile(m).isPresent(), m -> jvmCompiler.compile(m).isPresent());
+    }
+
+    /**
+     * Limit how deep calls on the STACK engine's explicit call stack may go (RegisterVM.DEFAULT_MAX_DEPTH by default).
+     * Each level holds one method's registers, so this bounds the memory a runaway recursion can take.
+     * @param maxDepth - the deepest allowed call
+     */
+    public void setMaxCallDepth(int maxDepth) {
+        vm().setMaxDepth(maxDepth);
+    }
+
+    /**
+     * @return the TIERED engine's counters and promotions (its toString() is a readable report)
+     */
+    public TieredExecution getTiers() {
+        return tiers();
+    }
+
+    /**
+     * @param method - a method
+     * @return the bytecode the BYTECODE engine runs for it, or empty if it runs in the tree walker instead
+     */
+    public Optional<BytecodeFunction> bytecodeFor(MethodDeclarationNode method) {
+        return bytecodeCompiler().compile(method);
+    }
+
+    /**
+     * @param method - a method
+     * @return the Java method the JVM engine runs for it, or empty if it runs in the tree walker instead
+     */
+    public Optional<JvmMethod> jvmMethodFor(MethodDeclarationNode method) {
+        return jvmCompiler.compile(method);
     }
 
     /**
@@ -58,16 +225,37 @@ public class Interpreter {
      * Throw an exception if no such method exists.
      */
     public void start() {
-        // Find the "start" method
+        runShared("start");
+    }
+
+    /**
+     * Run a program's initialization - a shared method with no parameters, like start() - on its own, so that what it
+     * builds can be saved (see Aot.Snapshot) and a later run can start from there.
+     * @param name - the name of the method
+     */
+    public void initialize(String name) {
+        runShared(name);
+    }
+
+    private void runShared(String name) {
         for (ClassNode classNode : top.Classes) {
             for (MethodDeclarationNode method : classNode.methods) {
-                if (method.name.equals("start") && method.isShared && !method.isPrivate && method.parameters.isEmpty()) {
-                    interpretMethodCall(Optional.empty(), method, List.of());
+                if (method.name.equals(name) && method.isShared && !method.isPrivate && method.parameters.isEmpty()) {
+                    MemoryAccount previous = MemoryAccount.bind(memory);
+                    StringInterner previousInterner = StringInterner.bind(interning ? interner : null);
+                    if (scratch != null)
+                        scratch.release(0);
+                    try {
+                        interpretMethodCall(Optional.empty(), method, List.of());
+                    } finally {
+                        MemoryAccount.bind(previous);
+                        StringInterner.bind(previousInterner);
+                    }
                     return;
                 }
             }
         }
-        throw new RuntimeException("No 'start' method found");
+        throw new RuntimeException("No '" + name + "' method found");
     }
 
     //              Running Methods
@@ -91,7 +279,18 @@ public class Interpreter {
      * @return - the return values
      */
     private List<InterpreterDataType> findMethodForMethodCallAndRunIt(Optional<ObjectIDT> object, HashMap<String, InterpreterDataType> locals, MethodCallStatementNode mc) {
-        List<InterpreterDataType> parameters = getMethodParameters(object, locals, mc);
+        return runMethodCall(object, locals, mc, getMethodParameters(object, locals, mc));
+    }
+
+    /**
+     * The second half of findMethodForMethodCallAndRunIt(), for callers that have already evaluated the parameters.
+     * @param object - the object we are inside right now (might be empty)
+     * @param locals - the current local variables
+     * @param mc - the method call
+     * @param parameters - the parameter values
+     * @return - the return values
+     */
+    List<InterpreterDataType> runMethodCall(Optional<ObjectIDT> object, HashMap<String, InterpreterDataType> locals, MethodCallStatementNode mc, List<InterpreterDataType> parameters) {
         Optional<MethodDeclarationNode> methodOptional = Optional.empty();
         if (object.isPresent()) {
             for (MethodDeclarationNode method : object.get().astNode.methods) {
@@ -113,17 +312,13 @@ public class Interpreter {
             }
         }
         else {
-            for (java.util.Map.Entry<String, InterpreterDataType> local : locals.entrySet()) {
-                if (local.getValue() instanceof ReferenceIDT ref && ref.refersTo.isPresent()) {
-                    for (MethodDeclarationNode method : ref.refersTo.get().astNode.methods) {
-                        if (mc.methodName.equals(method.name) && mc.objectName.isPresent() && mc.objectName.get().equals(local.getKey())) {
-                            methodOptional = Optional.of(method);
-                            members = ref.refersTo.get().members;
-                            break;
-                        }
-                    }
-                    if (methodOptional.isPresent())
+            if (mc.objectName.isPresent() && locals.get(mc.objectName.get()) instanceof ReferenceIDT ref && ref.refersTo.isPresent()) {
+                for (MethodDeclarationNode method : ref.refersTo.get().astNode.methods) {
+                    if (mc.methodName.equals(method.name)) {
+                        methodOptional = Optional.of(method);
+                        swapIn(ref.refersTo.get());
                         break;
+                    }
                 }
             }
             if (methodOptional.isEmpty()) {
@@ -145,17 +340,41 @@ public class Interpreter {
         return result;
     }
 
+    /**
+     * @param object - the object we are inside right now (might be empty)
+     * @param mc - a method call without an object name
+     * @param m - a method
+     * @return would runMethodCall() run m for mc?
+     */
+    private boolean isResolvedTo(Optional<ObjectIDT> object, MethodCallStatementNode mc, MethodDeclarationNode m) {
+        List<MethodDeclarationNode> candidates = object.isPresent() ? object.get().astNode.methods : methods;
+        for (MethodDeclarationNode method : candidates) {
+            if (mc.methodName.equals(method.name))
+                return method == m;
+        }
+        return false;
+    }
+
     /**
      * Run a "prepared" method (found, parameters evaluated)
      * This is split from findMethodForMethodCallAndRunIt() because there are a few cases where we don't need to do the finding:
      * in start() and dealing with loops with iterator objects, for example.
      *
      * Check to see if "m" is a built-in. If so, call Execute() on it and return
-     * Make local variables, per "m"
+     * If "m" is pure and we have seen these argument values before, return the memoized results
      * If the number of passed in values doesn't match m's "expectations", throw
+     * Pin the object while m runs, in case its members are off the heap (see ObjectIDT)
+     * With the TIERED engine, count the call and use the tier that m is in
+     * With the BYTECODE or STACK engine, run m in the RegisterVM if it compiles; with the JVM engine, run its Java
+     * version if it has one and the values have the declared types
+     * Make local variables, per "m" - a Frame from m's FrameLayout, which sees the members without copying them
      * Add the parameters by name to locals.
      * Call InterpretStatementBlock
      * Build the return list - find the names from "m", then get the values for those names and add them to the list.
+     * If the body ended with a self tail call (see TailCalls), run the body again in the same frame with the call's
+     * arguments as the parameters, until it doesn't. The call's results would have been dropped by the call statement,
+     * so the return list is still the first pass's.
+     * Memoize the return list if "m" is pure.
      * @param object - The object this method is being called on (might be empty for shared)
      * @param m - Which method is being called
      * @param values - The values to be passed in
@@ -166,19 +385,47 @@ public class Interpreter {
             return bm.Execute(values);
         if (m.parameters.size() != values.size())
             throw new RuntimeException("Incorrect number of parameters for given method");
-        HashMap<String, InterpreterDataType> locals = new HashMap<>(members);
-        if (object.isPresent())
-            locals.putAll(object.get().members);
-        for (int i = 0; i < m.locals.size(); i++)
-            locals.put(m.locals.get(i).name, instantiate(m.locals.get(i).type));
-        for (int i = 0; i < m.parameters.size(); i++)
-            locals.put(m.parameters.get(i).name, values.get(i));
-        for (int i = 0; i < m.returns.size(); i++)
-            locals.put(m.returns.get(i).name, instantiate(m.returns.get(i).type));
-        interpretStatementBlock(object, m.statements, locals);
-        var retVal = new LinkedList<InterpreterDataType>();
-        for (int i = 0; i < m.returns.size(); i++)
-            retVal.add(locals.get(m.returns.get(i).name));
+        boolean memoized = isMemoized(m);
+        if (memoized) {
+            Optional<List<InterpreterDataType>> cached = methodCache.lookup(m, values);
+            if (cached.isPresent())
+                return cached.get();
+        }
+        object.ifPresent(ObjectIDT::pin);
+        List<InterpreterDataType> retVal;
+        try {
+            ExecutionEngine tier = engine == ExecutionEngine.TIERED ? tiers().enter(m) : engine;
+            Optional<BytecodeFunction> compiled = tier == ExecutionEngine.BYTECODE || tier == ExecutionEngine.STACK ? bytecodeCompiler().compile(m) : Optional.empty();
+            Optional<JvmMethod> jvmMethod = tier == ExecutionEngine.JVM ? jvmCompiler.compile(m) : Optional.empty();
+            Object[] arguments = jvmMethod.isPresent() ? jvmMethod.get().arguments(values) : null;
+            if (arguments != null)
+                retVal = jvmMethod.get().invoke(arguments);
+            else if (compiled.isPresent())
+                retVal = vm().run(compiled.get(), object, values, tier == ExecutionEngine.STACK);
+            else {
+                FrameLayout layout = layoutOf(m, m.parameters, m.locals, m.returns);
+                ObjectIDT self = object.orElse(null);
+                Frame locals = layout.enter(self, members, values);
+                try {
+                    memory.allocateIDTs(layout.instantiated());
+                    runBody(object, m.statements, locals);
+                    retVal = layout.returns(locals);
+                    while (tailCallArguments != null) {
+                        List<InterpreterDataType> parameters = tailCallArguments;
+                        tailCallArguments = null;
+                        layout.rebind(locals, self, members, parameters);
+                        memory.allocateIDTs(layout.instantiated());
+                        runBody(object, m.statements, locals);
+                    }
+                } finally {
+                    layout.exit(locals);
+                }
+            }
+        } finally {
+            object.ifPresent(ObjectIDT::unpin);
+        }
+        if (memoized)
+            methodCache.store(m, values, retVal);
         return retVal;
     }
 
@@ -198,7 +445,16 @@ public class Interpreter {
      * @param newOne - the object that we just created that we are calling the constructor for
      */
     private void findConstructorAndRunIt(Optional<ObjectIDT> callerObj, HashMap<String, InterpreterDataType> locals, NewNode n, ObjectIDT newOne) {
-        List<InterpreterDataType> parameters = getConstructorParameters(callerObj, locals, n);
+        runConstructor(n, newOne, getConstructorParameters(callerObj, locals, n));
+    }
+
+    /**
+     * The second half of findConstructorAndRunIt(), for callers that have already evaluated the parameters.
+     * @param n  - the constructor call for this construction
+     * @param newOne - the object that we just created that we are calling the constructor for
+     * @param parameters - the parameter values
+     */
+    void runConstructor(NewNode n, ObjectIDT newOne, List<InterpreterDataType> parameters) {
         Optional<ClassNode> optionalClass = getClassByName(newOne.astNode.name);
         if (optionalClass.isEmpty())
             throw new RuntimeException("Unable to resolve class " + newOne.astNode.name);
@@ -223,16 +479,114 @@ public class Interpreter {
      * @param values - the parameter values being passed to the constructor
      */
     private void interpretConstructorCall(ObjectIDT object, ConstructorNode c, List<InterpreterDataType> values) {
-        HashMap<String, InterpreterDataType> locals = new HashMap<>();
-        for (VariableDeclarationNode variable : c.locals) {
-            InterpreterDataType idt = instantiate(variable.type);
-            locals.put(variable.name, idt);
+        for (int i = 0; i < values.size(); i++)
+            object.put(memberNodes.get(i).declaration.name, instantiate(memberNodes.get(i).declaration.type));
+        FrameLayout layout = layoutOf(c, c.parameters, c.locals, List.of());
+        Frame locals = layout.enter(null, null, values);
+        try {
+            memory.allocateIDTs(layout.instantiated());
+            runBody(Optional.of(object), c.statements, locals);
+        } finally {
+            layout.exit(locals);
         }
-        for (int i = 0; i < values.size(); i++) {
-            object.members.put(memberNodes.get(i).declaration.name, instantiate(memberNodes.get(i).declaration.type));
-            locals.put(c.parameters.get(i).name, values.get(i));
+        if (offHeap != null)
+            object.moveOffHeap(offHeap);
+    }
+
+    private FrameLayout layoutOf(Object methodOrConstructor, List<VariableDeclarationNode> parameters, List<VariableDeclarationNode> locals, List<VariableDeclarationNode> returns) {
+        FrameLayout layout = frameLayouts.get(methodOrConstructor);
+        if (layout == null) {
+            layout = new FrameLayout(parameters, locals, returns);
+            frameLayouts.put(methodOrConstructor, layout);
         }
-        interpretStatementBlock(Optional.of(object), c.statements, locals);
+        return layout;
+    }
+
+    /**
+     * interpretMethodCall(), for the RegisterVM's calls to methods it resolved itself.
+     */
+    List<InterpreterDataType> invoke(Optional<ObjectIDT> object, MethodDeclarationNode m, List<InterpreterDataType> values) {
+        return interpretMethodCall(object, m, values);
+    }
+
+    /**
+     * @param m - a method
+     * @return are m's results memoized (see interpretMethodCall())?
+     */
+    boolean isMemoized(MethodDeclarationNode m) {
+        return memoize && pureMethods.contains(m);
+    }
+
+    /**
+     * Count a pass through a loop, for the TIERED engine.
+     */
+    void backEdge(LoopNode loop) {
+        if (engine == ExecutionEngine.TIERED)
+            tiers().backEdge(loop);
+    }
+
+    /**
+     * backEdge(), for the tree walker. Once the loop is hot, the rest of it runs as executable nodes, which work on the
+     * same locals (on-stack replacement).
+     * @param loop - the loop whose body just ran
+     * @param locals - the local variables
+     * @param object - the current object
+     * @param passes - how many times the body has run (only needed for a "times" loop without a variable)
+     * @return has the loop been finished?
+     */
+    private boolean backEdge(LoopNode loop, HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, int passes) {
+        if (engine != ExecutionEngine.TIERED)
+            return false;
+        tiers().backEdge(loop);
+        if (!tiers().shouldReplace(loop))
+            return false;
+        nodeCompiler().compileLoop(loop).resume(locals, object, passes);
+        return true;
+    }
+
+    private NodeCompiler nodeCompiler() {
+        if (nodeCompiler == null)
+            nodeCompiler = new NodeCompiler(this);
+        return nodeCompiler;
+    }
+
+    private BytecodeCompiler bytecodeCompiler() {
+        if (bytecodeCompiler == null)
+            bytecodeCompiler = new BytecodeCompiler(this, top);
+        return bytecodeCompiler;
+    }
+
+    private RegisterVM vm() {
+        if (vm == null)
+            vm = new RegisterVM(this);
+        return vm;
+    }
+
+    // The default thresholds, unless setTierThresholds() was called.
+    private TieredExecution tiers() {
+        if (tiers == null)
+            setTierThresholds(TieredExecution.DEFAULT_INVOCATION_THRESHOLD, TieredExecution.DEFAULT_BACK_EDGE_THRESHOLD);
+        return tiers;
+    }
+
+    /**
+     * @return the global members that a method entered now would see through its Frame
+     */
+    Map<String, InterpreterDataType> globals() {
+        return members;
+    }
+
+    /**
+     * Run a method or constructor body with the selected engine.
+     * @param object - the object that this body belongs to
+     * @param statements - the body
+     * @param locals - the local variables
+     */
+    private void runBody(Optional<ObjectIDT> object, List<StatementNode> statements, HashMap<String, InterpreterDataType> locals) {
+        if (engine == ExecutionEngine.NODES)
+            nodeCompiler().compile(statements).execute(locals, object);
+        else
+            interpretStatementBlock(object, statements, locals);
     }
 
     //              Running Instructions
@@ -245,6 +599,7 @@ public class Interpreter {
      * check the type:
      *      For AssignmentNode, FindVariable() to get the target. Evaluate() the expression. Call Assign() on the target with the result of Evaluate()
      *      For MethodCallStatementNode, call doMethodCall(). Loop over the returned values and copy the into our local variables
+     *          (a self tail call is only evaluated here - its arguments are left for interpretMethodCall())
      *      For LoopNode - there are 2 kinds.
      *          Setup:
      *          If this is a Loop over an iterator (an Object node whose class has "iterator" as an interface)
@@ -261,30 +616,24 @@ public class Interpreter {
      * @param locals - the local variables
      */
     private void interpretStatementBlock(Optional<ObjectIDT> object, List<StatementNode> statements, HashMap<String, InterpreterDataType> locals) {
+        int mark = scratch == null ? 0 : scratch.mark();
         for (StatementNode statement : statements) {
+            // the temporaries of the statement before are dead (see Scratch)
+            if (scratch != null)
+                scratch.release(mark);
             if (statement instanceof AssignmentNode assignment) {
                 InterpreterDataType target = findVariable(assignment.target.name, locals, object);
                 target.Assign(evaluate(locals, object, assignment.expression)); // WORK IN PROGRESS
                 continue;
             }
             if (statement instanceof MethodCallStatementNode methodCall) {
-                if (methodCall.objectName.isPresent() && !methodCall.objectName.get().equals("console")) {
-                    if (locals.get(methodCall.objectName.get()) instanceof ReferenceIDT ref) {
-                        Optional<ObjectIDT> createdObject = (ref.refersTo);
-                        if (methodCall.objectName.isPresent() && createdObject.isPresent()) {
-                            findMethodForMethodCallAndRunIt(createdObject, locals, methodCall);
-                            continue;
-                        }
-                    }
-                    else {
-                        Optional<ObjectIDT> otherObject = Optional.ofNullable((ObjectIDT)locals.get(methodCall.objectName.get()));
-                        if (otherObject.isPresent()) {
-                            findMethodForMethodCallAndRunIt(otherObject, locals, methodCall);
-                            continue;
-                        }
-                    }
+                MethodDeclarationNode self = tailCalls.get(methodCall);
+                if (self != null && isResolvedTo(object, methodCall, self)) {
+                    // the last statement of the body: leave the call for interpretMethodCall() to run in this frame
+                    tailCallArguments = getMethodParameters(object, locals, methodCall);
+                    continue;
                 }
-                findMethodForMethodCallAndRunIt(object, locals, methodCall);
+                findMethodForMethodCallAndRunIt(receiverOf(methodCall, locals, object), locals, methodCall);
                 continue;
             }
             if (statement instanceof LoopNode loop) {
@@ -294,6 +643,8 @@ public class Interpreter {
                             locals.put(loop.assignment.get().name, new NumberIDT(0));
                             while (((NumberIDT)locals.get(loop.assignment.get().name)).Value < ((NumberIDT)locals.get(mc.objectName.get())).Value) {
                                 interpretStatementBlock(object, loop.statements, locals);
+                                if (backEdge(loop, locals, object, 0))
+                                    break;
                                 ((NumberIDT)locals.get(loop.assignment.get().name)).Value++;
                             }
                         }
@@ -301,6 +652,29 @@ public class Interpreter {
                             int i = 0;
                             while (i < ((NumberIDT)locals.get(mc.objectName.get())).Value) {
                                 interpretStatementBlock(object, loop.statements, locals);
+                                if (backEdge(loop, locals, object, i + 1))
+                                    break;
+                                i++;
+                            }
+                        }
+                    }
+                    else if (locals.get(mc.objectName.get()) instanceof IntegerIDT) {
+                        // an integer counts exactly (and in an integer variable) past the 2^24 a float can count to
+                        if (loop.assignment.isPresent()) {
+                            locals.put(loop.assignment.get().name, new IntegerIDT(0));
+                            while (((IntegerIDT)locals.get(loop.assignment.get().name)).Value < ((IntegerIDT)locals.get(mc.objectName.get())).Value) {
+                                interpretStatementBlock(object, loop.statements, locals);
+                                if (backEdge(loop, locals, object, 0))
+                                    break;
+                                ((IntegerIDT)locals.get(loop.assignment.get().name)).Value++;
+                            }
+                        }
+                        else {
+                            long i = 0;
+                            while (i < ((IntegerIDT)locals.get(mc.objectName.get())).Value) {
+                                interpretStatementBlock(object, loop.statements, locals);
+                                if (backEdge(loop, locals, object, (int) (i + 1)))
+                                    break;
                                 i++;
                             }
                         }
@@ -309,17 +683,22 @@ public class Interpreter {
                         throw new RuntimeException("Attempted to call iterator on non-numeric value");
                 }
                 else {
-                    if (evaluate(locals, object, loop.expression) instanceof BooleanIDT result) {
+                    if (evaluateCondition(locals, object, loop.expression) instanceof BooleanIDT result) {
                         if (loop.assignment.isPresent()) {
-                            locals.put(loop.assignment.get().name, result);
+                            locals.put(loop.assignment.get().name, result.asVariable());
                             while (((BooleanIDT)locals.get(loop.assignment.get().name)).Value) {
                                 interpretStatementBlock(object, loop.statements, locals);
-                                locals.put(loop.assignment.get().name, evaluate(locals, object, loop.expression));
+                                if (backEdge(loop, locals, object, 0))
+                                    break;
+                                locals.put(loop.assignment.get().name, evaluateCondition(locals, object, loop.expression).asVariable());
                             }
                         }
                         else {
-                            while (((BooleanIDT)evaluate(locals, object, loop.expression)).Value)
+                            while (((BooleanIDT)evaluateCondition(locals, object, loop.expression)).Value) {
                                 interpretStatementBlock(object, loop.statements, locals);
+                                if (backEdge(loop, locals, object, 0))
+                                    break;
+                            }
                         }
                     }
                     else
@@ -337,6 +716,21 @@ public class Interpreter {
                 }
             }
         }
+        if (scratch != null)
+            scratch.release(mark);
+    }
+
+    /**
+     * evaluate() a loop's condition, which it does on every pass - so its temporaries are released right away instead
+     * of when the loop ends. A condition is a boolean (a shared constant), not a temporary.
+     */
+    private InterpreterDataType evaluateCondition(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, ExpressionNode expression) {
+        if (scratch == null)
+            return evaluate(locals, object, expression);
+        int mark = scratch.mark();
+        InterpreterDataType condition = evaluate(locals, object, expression);
+        scratch.release(mark);
+        return condition;
     }
 
     /**
@@ -345,11 +739,14 @@ public class Interpreter {
      *
      * See the How To Write an Interpreter document for examples
      * For each possible ExpressionNode, do the work to resolve it:
-     * BooleanLiteralNode - create a new BooleanLiteralNode with the same value
-     *      - Same for all of the basic data types
+     * BooleanLiteralNode - BooleanIDT.TRUE or FALSE
+     *      - the other basic data types come from the literal pool - constants, which is why a value that becomes a
+     *        variable has to be asVariable()
      * BooleanOpNode - Evaluate() left and right, then perform either and/or on the results.
+     * NotOpNode - Evaluate() the operand and invert it.
      * CompareNode - Evaluate() both sides. Do good comparison for each data type
      * MathOpNode - Evaluate() both sides. If they are both numbers, do the math using the built-in operators. Also handle String + String as concatenation (like Java)
+     *      - the result goes in the scratch region, if there is one (see setScratchTemporaries())
      * MethodCallExpression - call doMethodCall() and return the first value
      * VariableReferenceNode - call findVariable()
      * @param locals the local variables
@@ -359,98 +756,26 @@ public class Interpreter {
      */
     private InterpreterDataType evaluate(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, ExpressionNode expression) {
         if (expression instanceof BooleanLiteralNode bool)
-            return new BooleanIDT(bool.value);
-        if (expression instanceof NumericLiteralNode number)
-            return new NumberIDT(number.value);
-        if (expression instanceof StringLiteralNode string)
-            return new StringIDT(string.value);
-        if (expression instanceof CharLiteralNode character)
-            return new CharIDT(character.value);
+            return BooleanIDT.of(bool.value);
+        if (expression instanceof NumericLiteralNode || expression instanceof StringLiteralNode || expression instanceof CharLiteralNode
+                || expression instanceof IntegerLiteralNode || expression instanceof DoubleLiteralNode)
+            return literal(expression);
         if (expression instanceof BooleanOpNode boolOp) {
             InterpreterDataType left = evaluate(locals, object, boolOp.left);
             InterpreterDataType right = evaluate(locals, object, boolOp.right);
-            if (left instanceof BooleanIDT leftBool && right instanceof BooleanIDT rightBool) {
-                if (boolOp.op == BooleanOpNode.BooleanOperations.and)
-                    return new BooleanIDT(leftBool.Value && rightBool.Value);
-                if (boolOp.op == BooleanOpNode.BooleanOperations.or)
-                    return new BooleanIDT(leftBool.Value || rightBool.Value);
-            }
-            throw new RuntimeException("Attempted boolean operation between incompatible types");
+            return Operations.booleanOp(boolOp.op, left, right);
         }
+        if (expression instanceof NotOpNode not)
+            return Operations.not(evaluate(locals, object, not.left));
         if (expression instanceof CompareNode compare) {
             InterpreterDataType left = evaluate(locals, object, compare.left);
             InterpreterDataType right = evaluate(locals, object, compare.right);
-            if (left instanceof NumberIDT leftNumber && right instanceof NumberIDT rightNumber) {
-                if (compare.op == CompareNode.CompareOperations.lt)
-                    return new BooleanIDT(leftNumber.Value < rightNumber.Value);
-                if (compare.op == CompareNode.CompareOperations.le)
-                    return new BooleanIDT(leftNumber.Value <= rightNumber.Value);
-                if (compare.op == CompareNode.CompareOperations.gt)
-                    return new BooleanIDT(leftNumber.Value > rightNumber.Value);
-                if (compare.op == CompareNode.CompareOperations.ge)
-                    return new BooleanIDT(leftNumber.Value >= rightNumber.Value);
-                if (compare.op == CompareNode.CompareOperations.eq)
-                    return new BooleanIDT(leftNumber.Value == rightNumber.Value);
-                if (compare.op == CompareNode.CompareOperations.ne)
-                    return new BooleanIDT(leftNumber.Value != rightNumber.Value);
-            }
-            if (left instanceof StringIDT leftString && right instanceof StringIDT rightString) {
-                if (compare.op == CompareNode.CompareOperations.lt)
-                    return new BooleanIDT(leftString.Value.compareTo(rightString.Value) < 0);
-                if (compare.op == CompareNode.CompareOperations.le)
-                    return new BooleanIDT(leftString.Value.compareTo(rightString.Value) <= 0);
-                if (compare.op == CompareNode.CompareOperations.gt)
-                    return new BooleanIDT(leftString.Value.compareTo(rightString.Value) > 0);
-                if (compare.op == CompareNode.CompareOperations.ge)
-                    return new BooleanIDT(leftString.Value.compareTo(rightString.Value) >= 0);
-                if (compare.op == CompareNode.CompareOperations.eq)
-                    return new BooleanIDT(leftString.Value.compareTo(rightString.Value) == 0);
-                if (compare.op == CompareNode.CompareOperations.ne)
-                    return new BooleanIDT(leftString.Value.compareTo(rightString.Value) != 0);
-            }
-            if (left instanceof CharIDT leftChar && right instanceof CharIDT rightChar) {
-                if (compare.op == CompareNode.CompareOperations.lt)
-                    return new BooleanIDT(leftChar.Value < rightChar.Value);
-                if (compare.op == CompareNode.CompareOperations.le)
-                    return new BooleanIDT(leftChar.Value <= rightChar.Value);
-                if (compare.op == CompareNode.CompareOperations.gt)
-                    return new BooleanIDT(leftChar.Value > rightChar.Value);
-                if (compare.op == CompareNode.CompareOperations.ge)
-                    return new BooleanIDT(leftChar.Value >= rightChar.Value);
-                if (compare.op == CompareNode.CompareOperations.eq)
-                    return new BooleanIDT(leftChar.Value == rightChar.Value);
-                if (compare.op == CompareNode.CompareOperations.ne)
-                    return new BooleanIDT(leftChar.Value != rightChar.Value);
-            }
-            throw new RuntimeException("Attempted comparison operation between incompatible types");
+            return Operations.compare(compare.op, left, right);
         }
         if (expression instanceof MathOpNode math) {
             InterpreterDataType left = evaluate(locals, object, math.left);
             InterpreterDataType right = evaluate(locals, object, math.right);
-            if (left instanceof NumberIDT leftNumber && right instanceof NumberIDT rightNumber) {
-                if (math.op == MathOpNode.MathOperations.add)
-                    return new NumberIDT(leftNumber.Value + rightNumber.Value);
-                if (math.op == MathOpNode.MathOperations.subtract)
-                    return new NumberIDT(leftNumber.Value - rightNumber.Value);
-                if (math.op == MathOpNode.MathOperations.multiply)
-                    return new NumberIDT(leftNumber.Value * rightNumber.Value);
-                if (math.op == MathOpNode.MathOperations.divide) {
-                    if (rightNumber.Value != 0)
-                        return new NumberIDT(leftNumber.Value / rightNumber.Value);
-                    throw new RuntimeException("Attempted division by zero");
-                }
-                if (math.op == MathOpNode.MathOperations.modulo) {
-                    if (rightNumber.Value != 0)
-                        return new NumberIDT(leftNumber.Value % rightNumber.Value);
-                    throw new RuntimeException("Attempted modulo by zero");
-                }
-            }
-            if (left instanceof StringIDT leftString && right instanceof StringIDT rightString) {
-                if (math.op == MathOpNode.MathOperations.add)
-                    return new StringIDT(leftString.Value + rightString.Value);
-                throw new RuntimeException("Attempted illegal operation on string literals");
-            }
-            throw new RuntimeException("Attempted mathematical operation between incompatible types");
+            return scratch == null ? Operations.math(math.op, left, right) : scratch.math(math.op, left, right);
         }
         if (expression instanceof MethodCallExpressionNode methodCall)
             return findMethodForMethodCallAndRunIt(object, locals, new MethodCallStatementNode(methodCall)).get(0);
@@ -458,19 +783,71 @@ public class Interpreter {
             Optional<ClassNode> optionalClassNode = getClassByName(newExp.className);
             if (optionalClassNode.isEmpty())
                 throw new RuntimeException("Class " + newExp.className + " not found");
-            ObjectIDT newObject = new ObjectIDT(optionalClassNode.get());
+            ObjectIDT newObject = newObject(optionalClassNode.get());
             findConstructorAndRunIt(object, locals, newExp, newObject);
             return newObject;
         }
         if (expression instanceof VariableReferenceNode boolValue && (boolValue.name.equals("true") || boolValue.name.equals("false")))
-            return new BooleanIDT(Boolean.parseBoolean(boolValue.name));
+            return BooleanIDT.of(Boolean.parseBoolean(boolValue.name));
         if (expression instanceof VariableReferenceNode varRef)
             return findVariable(varRef.name, locals, object);
         throw new IllegalArgumentException();
     }
 
+    private InterpreterDataType literal(ExpressionNode expression) {
+        InterpreterDataType constant = literals.get(expression);
+        if (constant == null) {
+            if (expression instanceof NumericLiteralNode number)
+                constant = NumberIDT.of(number.value);
+            else if (expression instanceof StringLiteralNode string)
+                constant = StringIDT.of(string.value);
+            else if (expression instanceof IntegerLiteralNode integer)
+                constant = IntegerIDT.of(integer.value);
+            else if (expression instanceof DoubleLiteralNode number)
+                constant = DoubleIDT.of(number.value);
+            else
+                constant = CharIDT.of(((CharLiteralNode) expression).value);
+            literals.put(expression, constant);
+        }
+        return constant;
+    }
+
     //              Utility Methods
 
+    /**
+     * Which object a method call statement runs on: the object a local refers to when the call names one, otherwise
+     * the current object.
+     * @param methodCall - the method call statement
+     * @param locals - the local variables
+     * @param object - the current object
+     * @return the object to pass to findMethodForMethodCallAndRunIt()
+     */
+    Optional<ObjectIDT> receiverOf(MethodCallStatementNode methodCall, HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+        return receiverOf(methodCall, methodCall.objectName.map(locals::get).orElse(null), object);
+    }
+
+    /**
+     * receiverOf(), for callers that have already looked up the object name.
+     * @param methodCall - the method call statement
+     * @param value - the value of the object name (null if there is no such variable)
+     * @param object - the current object
+     * @return the object to pass to findMethodForMethodCallAndRunIt()
+     */
+    Optional<ObjectIDT> receiverOf(MethodCallStatementNode methodCall, InterpreterDataType value, Optional<ObjectIDT> object) {
+        if (methodCall.objectName.isPresent() && !methodCall.objectName.get().equals("console")) {
+            if (value instanceof ReferenceIDT ref) {
+                if (ref.refersTo.isPresent())
+                    return ref.refersTo;
+            }
+            else {
+                Optional<ObjectIDT> otherObject = Optional.ofNullable((ObjectIDT) value);
+                if (otherObject.isPresent())
+                    return otherObject;
+            }
+        }
+        return object;
+    }
+
     /**
      * Used when trying to find a match to a method call. Given a method declaration, does it match this method call?
      * We double-check with the parameters, too, although in theory JUST checking the declaration to the call should be enough.
@@ -520,7 +897,7 @@ public class Interpreter {
     /**
      * Used when we call a method to get the list of values for the parameters.
      *
-     * for each parameter in the method call, call Evaluate() on the parameter to get an IDT and add it to a list
+     * for each parameter in the method call, call Evaluate() on the parameter to get an IDT and add asVariable() of it to a list
      * @param object - the current object
      * @param locals - the local variables
      * @param mc - a method call
@@ -529,14 +906,14 @@ public class Interpreter {
     private List<InterpreterDataType> getMethodParameters(Optional<ObjectIDT> object, HashMap<String,InterpreterDataType> locals, MethodCallStatementNode mc) {
         List<InterpreterDataType> parameters = new LinkedList<>();
         for (ExpressionNode parameter : mc.parameters)
-            parameters.add(evaluate(locals, object, parameter));
+            parameters.add(evaluate(locals, object, parameter).asVariable());
         return parameters;
     }
 
     /**
      * Used when we call a constructor to get the list of values for the parameters.
      *
-     * for each parameter in the constructor call, call Evaluate() on the parameter to get an IDT and add it to a list
+     * for each parameter in the constructor call, call Evaluate() on the parameter to get an IDT and add asVariable() of it to a list
      * @param object - the current object
      * @param locals - the local variables
      * @param n - a constructor call
@@ -545,7 +922,7 @@ public class Interpreter {
     private List<InterpreterDataType> getConstructorParameters(Optional<ObjectIDT> object, HashMap<String,InterpreterDataType> locals, NewNode n) {
         List<InterpreterDataType> parameters = new LinkedList<>();
         for (ExpressionNode parameter : n.parameters)
-            parameters.add(evaluate(locals, object, parameter));
+            parameters.add(evaluate(locals, object, parameter).asVariable());
         return parameters;
     }
 
@@ -563,6 +940,10 @@ public class Interpreter {
     private boolean typeMatchToIDT(String type, InterpreterDataType idt) {
         if (idt instanceof NumberIDT)
             return type.equals("number");
+        if (idt instanceof IntegerIDT)
+            return type.equals("integer");
+        if (idt instanceof DoubleIDT)
+            return type.equals("double");
         if (idt instanceof StringIDT)
             return type.equals("string");
         if (idt instanceof BooleanIDT)
@@ -610,7 +991,7 @@ public class Interpreter {
      * @param name Name of the class to find
      * @return either a class node or empty if that class doesn't exist
      */
-    private Optional<ClassNode> getClassByName(String name) {
+    Optional<ClassNode> getClassByName(String name) {
         for (ClassNode classNode : top.Classes) {
             if (name.equals(classNode.name))
                 return Optional.of(classNode);
@@ -618,6 +999,51 @@ public class Interpreter {
         return Optional.empty();
     }
 
+    /**
+     * @return the program's members by name, in the order the classes declare them - the state that lives between calls
+     */
+    LinkedHashMap<String, InterpreterDataType> programMembers() {
+        LinkedHashMap<String, InterpreterDataType> found = new LinkedHashMap<>();
+        for (MemberNode member : memberNodes)
+            found.put(member.declaration.name, programMembers.get(member.declaration.name));
+        return found;
+    }
+
+    /**
+     * A call through a reference from outside any object makes names resolve against the object's members from then
+     * on, instead of the program's.
+     * @param object - the object called
+     */
+    void swapIn(ObjectIDT object) {
+        members = object.asMap();
+        swappedIn = object;
+    }
+
+    /**
+     * @return the object whose members swapIn() left in place of the program's, or null if there is none
+     */
+    ObjectIDT swappedIn() {
+        return swappedIn;
+    }
+
+    /**
+     * @param classNode - a class
+     * @return a new object of the class, without any members yet - its shape is the one all the class's objects start with
+     */
+    ObjectIDT newObject(ClassNode classNode) {
+        return createObject(classNode);
+    }
+
+    private ObjectIDT createObject(ClassNode classNode) {
+        memory.allocateObject();
+        Shape shape = shapes.get(classNode);
+        if (shape == null) {
+            shape = new Shape();
+            shapes.put(classNode, shape);
+        }
+        return new ObjectIDT(classNode, shape);
+    }
+
     /**
      * Given an execution environment (the current object, the current local variables), find a variable by name.
      *
@@ -626,34 +1052,36 @@ public class Interpreter {
      * @param object - the current object (so we can find members)
      * @return the IDT that we are looking for or throw an exception
      */
-    private InterpreterDataType findVariable(String name, HashMap<String,InterpreterDataType> locals, Optional<ObjectIDT> object) {
-        if (object.isPresent()) {
-            for (java.util.Map.Entry<String, InterpreterDataType> member : object.get().members.entrySet()) {
-                if (name.equals(member.getKey()))
-                    return member.getValue();
-            }
-        }
-        for (java.util.Map.Entry<String, InterpreterDataType> local : locals.entrySet()) {
-            if (name.equals(local.getKey()))
-                return local.getValue();
-        }
-        for (java.util.Map.Entry<String, InterpreterDataType> member : members.entrySet()) {
-            if (name.equals(member.getKey()))
-                return member.getValue();
-        }
+    InterpreterDataType findVariable(String name, HashMap<String,InterpreterDataType> locals, Optional<ObjectIDT> object) {
+        InterpreterDataType found;
+        if (object.isPresent() && (found = object.get().get(name)) != null)
+            return found;
+        if ((found = locals.get(name)) != null)
+            return found;
+        if ((found = members.get(name)) != null)
+            return found;
         throw new RuntimeException("Unable to find variable " + name);
     }
 
     /**
      * Given a string (the type name), make an IDT for it.
      *
-     * @param type The name of the type (string, number, boolean, character). Defaults to ReferenceIDT if not one of those.
-     * @return an IDT with default values (0 for number, "" for string, false for boolean, ' ' for character)
+     * @param type The name of the type (string, number, integer, double, boolean, character). Defaults to ReferenceIDT if not one of those.
+     * @return an IDT with default values (0 for the number types, "" for string, false for boolean, ' ' for character)
      */
-    private InterpreterDataType instantiate(String type) {
+    InterpreterDataType instantiate(String type) {
+        memory.allocateIDTs(1);
+        return defaultValue(type);
+    }
+
+    private static InterpreterDataType defaultValue(String type) {
         switch (type) {
             case "number":
                 return new NumberIDT(0);
+            case "integer":
+                return new IntegerIDT(0);
+            case "double":
+                return new DoubleIDT(0);
             case "string":
                 return new StringIDT("");
             case "boolean":
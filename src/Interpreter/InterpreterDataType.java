@@ -2,5 +2,14 @@ package Interpreter;
 
 public interface InterpreterDataType {
     public void Assign(InterpreterDataType in);
-}
 
+    /**
+     * Values that are only read (literals, the results of operators) may be shared constants - see NumberIDT.of(), for
+     * example. Anything that becomes a variable (a parameter, a loop variable) has to be an IDT of its own, since
+     * variables are assigned in place.
+     * @return this, or a new IDT with the same value if this is a shared constant
+     */
+    default InterpreterDataType asVariable() {
+        return this;
+    }
+}
@@ -0,0 +1,531 @@
+package Interpreter;
+
+import AST.*;
+import Interpreter.ClassFileWriter.Label;
+import Interpreter.ClassFileWriter.Opcodes;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+/**
+ * Compiles each Tran class to a JVM class, loaded with Lookup.defineHiddenClass(), so that HotSpot compiles Tran code
+ * like any other Java code. Each method becomes a static Java method; number, boolean and string variables become
+ * float, boolean and Object locals - a string is held as the text a StringIDT would hold, a String or a rope (see Rope),
+ * so appending to it doesn't copy it. It is flattened only to be compared or written.
+ *
+ * A Java local can't be shared the way an IDT can, so only methods that never depend on sharing are compiled:
+ *      every name used is one of the method's own parameters, locals or returns (no members; a name that is also a
+ *          member anywhere doesn't count, since inside an object the member would win)
+ *      parameters are never changed (the caller would see the change)
+ *      all variables are numbers, booleans or strings, there is at most one return, and the types of every
+ *          assignment, operator, condition and argument are known and fit
+ *      calls are to console.write() (bound to the built-in through the class data) or to other compiled methods of the
+ *          same class whose names are unique in the program (so the interpreter could find nothing else)
+ * Members therefore stay in the interpreter's ObjectIDTs; the other methods of a class run in the tree walker.
+ */
+public class JvmCompiler {
+    private static final String TEXT = "Ljava/lang/Object;";
+    private static final String OBJECT_ARRAY = "[Ljava/lang/Object;";
+    private static final String RUNTIME = "Interpreter/JvmRuntime";
+    /** the ifXX that jumps when a CompareOperations comparison (of fcmp or compareTo() with 0) is false */
+    private static final int[] BRANCH_IF_NOT = { Opcodes.IFGE, Opcodes.IFGT, Opcodes.IFLE, Opcodes.IFLT, Opcodes.IFNE, Opcodes.IFEQ };
+
+    private final IdentityHashMap<MethodDeclarationNode, Optional<JvmMethod>> compiled = new IdentityHashMap<>();
+    private final IdentityHashMap<MethodDeclarationNode, ClassNode> owners = new IdentityHashMap<>();
+    private final Set<String> memberNames = new HashSet<>(Set.of("console", "true", "false"));
+    private final HashMap<String, Integer> methodNameCounts = new HashMap<>();
+    private Optional<MethodDeclarationNode> consoleWrite = Optional.empty();
+
+    public JvmCompiler(TranNode top) {
+        for (ClassNode classNode : top.Classes) {
+            for (MemberNode member : classNode.members)
+                memberNames.add(member.declaration.name);
+            for (MethodDeclarationNode method : classNode.methods) {
+                owners.put(method, classNode);
+                if (method instanceof BuiltInMethodDeclarationNode && classNode.name.equals("console") && method.name.equals("write"))
+                    consoleWrite = Optional.of(method);
+                else
+                    methodNameCounts.merge(method.name, 1, Integer::sum);
+            }
+        }
+        if (methodNameCounts.containsKey("write"))
+            consoleWrite = Optional.empty();
+    }
+
+    /**
+     * The first request for any method of a class compiles and loads the whole class.
+     * @param method - a method
+     * @return its Java version, or empty if it has to run in the interpreter
+     */
+    public Optional<JvmMethod> compile(MethodDeclarationNode method) {
+        if (!compiled.containsKey(method)) {
+            ClassNode owner = owners.get(method);
+            if (owner == null || method instanceof BuiltInMethodDeclarationNode)
+                compiled.put(method, Optional.empty());
+            else
+                compileClass(owner);
+        }
+        return compiled.get(method);
+    }
+
+    /** Thrown when a method uses something that can't be compiled. */
+    private static class Unsupported extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private void compileClass(ClassNode classNode) {
+        List<MethodDeclarationNode> candidates = new ArrayList<>();
+        for (MethodDeclarationNode method : classNode.methods) {
+            compiled.put(method, Optional.empty());
+            if (!(method instanceof BuiltInMethodDeclarationNode) && method.returns.size() <= 1)
+                candidates.add(method);
+        }
+        // Compiling a method can only fail because of something in it, or because it calls a method that failed.
+        // Drop failures until everything left compiles.
+        String className = "Interpreter/Tran$" + classNode.name;
+        ClassFileWriter writer;
+        while (true) {
+            writer = new ClassFileWriter(className);
+            Optional<MethodDeclarationNode> failed = Optional.empty();
+            for (MethodDeclarationNode method : candidates) {
+                try {
+                    new MethodGenerator(writer, classNode, method, candidates).generate();
+                } catch (Unsupported e) {
+                    failed = Optional.of(method);
+                    break;
+                }
+            }
+            if (failed.isEmpty())
+                break;
+            candidates.remove(failed.get());
+        }
+        if (candidates.isEmpty())
+            return;
+        writeInitializer(writer, className);
+        try {
+            Object[] classData = { consoleWrite.orElse(null) };
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClassWithClassData(writer.toBytes(), classData, true);
+            for (MethodDeclarationNode method : candidates) {
+                MethodHandle handle = lookup.findStatic(lookup.lookupClass(), javaName(classNode, method), methodType(method))
+                        .asSpreader(Object[].class, method.parameters.size())
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+                compiled.put(method, Optional.of(new JvmMethod(method, handle)));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to load the compiled class " + classNode.name, e);
+        }
+    }
+
+    // static final Object[] DATA = (Object[]) MethodHandles.classData(MethodHandles.lookup(), "_", Object[].class);
+    private static void writeInitializer(ClassFileWriter writer, String className) {
+        writer.field(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_FINAL, "DATA", OBJECT_ARRAY);
+        ClassFileWriter.Code code = writer.method(ClassFileWriter.ACC_STATIC, "<clinit>", "()V");
+        code.invokeStatic("java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;");
+        code.loadConstant(writer.string("_"));
+        code.loadConstant(writer.classReference(OBJECT_ARRAY));
+        code.invokeStatic("java/lang/invoke/MethodHandles", "classData", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;");
+        code.poolOp(Opcodes.CHECKCAST, writer.classReference(OBJECT_ARRAY), 0);
+        code.poolOp(Opcodes.PUTSTATIC, writer.fieldReference(className, "DATA", OBJECT_ARRAY), -1);
+        code.op(Opcodes.RETURN, 0);
+        code.finish();
+    }
+
+    // Methods can share a name in Tran; the index keeps the Java names apart.
+    private static String javaName(ClassNode classNode, MethodDeclarationNode method) {
+        return method.name + "$" + classNode.methods.indexOf(method);
+    }
+
+    private static String descriptor(MethodDeclarationNode method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (VariableDeclarationNode parameter : method.parameters)
+            descriptor.append(descriptor(parameter.type));
+        descriptor.append(')');
+        descriptor.append(method.returns.isEmpty() ? "V" : descriptor(method.returns.get(0).type));
+        return descriptor.toString();
+    }
+
+    private static String descriptor(String type) {
+        return switch (type) {
+            case "number" -> "F";
+            case "boolean" -> "Z";
+            default -> TEXT;
+        };
+    }
+
+    private static MethodType methodType(MethodDeclarationNode method) {
+        Class<?>[] parameters = method.parameters.stream().map(parameter -> javaType(parameter.type)).toArray(Class<?>[]::new);
+        return MethodType.methodType(method.returns.isEmpty() ? void.class : javaType(method.returns.get(0).type), parameters);
+    }
+
+    private static Class<?> javaType(String type) {
+        return switch (type) {
+            case "number" -> float.class;
+            case "boolean" -> boolean.class;
+            default -> Object.class;
+        };
+    }
+
+    private class MethodGenerator {
+        private final ClassFileWriter writer;
+        private final ClassNode classNode;
+        private final MethodDeclarationNode method;
+        private final List<MethodDeclarationNode> compilable;
+        private final HashMap<String, Integer> slots = new HashMap<>();
+        private final HashMap<String, String> types = new HashMap<>();
+        private final String className;
+        private ClassFileWriter.Code code;
+
+        MethodGenerator(ClassFileWriter writer, ClassNode classNode, MethodDeclarationNode method, List<MethodDeclarationNode> compilable) {
+            this.writer = writer;
+            this.classNode = classNode;
+            this.method = method;
+            this.compilable = compilable;
+            className = "Interpreter/Tran$" + classNode.name;
+        }
+
+        void generate() throws Unsupported {
+            for (VariableDeclarationNode parameter : method.parameters)
+                declare(parameter);
+            for (VariableDeclarationNode local : method.locals)
+                declare(local);
+            for (VariableDeclarationNode ret : method.returns)
+                declare(ret);
+            if (slots.size() > 200)
+                throw new Unsupported();
+            code = writer.method(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, javaName(classNode, method), descriptor(method));
+            for (VariableDeclarationNode variable : concat(method.locals, method.returns)) {
+                switch (variable.type) {
+                    case "number" -> code.op(Opcodes.FCONST_0, 1);
+                    case "boolean" -> code.pushInt(0);
+                    default -> code.loadConstant(writer.string(""));
+                }
+                store(variable.name);
+            }
+            block(method.statements);
+            if (method.returns.isEmpty())
+                code.op(Opcodes.RETURN, 0);
+            else {
+                load(method.returns.get(0).name);
+                code.op(returnOpcode(method.returns.get(0).type), -1);
+            }
+            try {
+                code.finish();
+            } catch (IllegalStateException e) {
+                throw new Unsupported();
+            }
+        }
+
+        private void declare(VariableDeclarationNode variable) throws Unsupported {
+            if (memberNames.contains(variable.name) || slots.containsKey(variable.name))
+                throw new Unsupported();
+            if (!variable.type.equals("number") && !variable.type.equals("boolean") && !variable.type.equals("string"))
+                throw new Unsupported();
+            slots.put(variable.name, slots.size());
+            types.put(variable.name, variable.type);
+        }
+
+        //              Statements
+
+        private void block(List<StatementNode> statements) throws Unsupported {
+            for (StatementNode statement : statements)
+                statement(statement);
+        }
+
+        private void statement(StatementNode statement) throws Unsupported {
+            if (statement instanceof AssignmentNode assignment) {
+                String type = writable(assignment.target.name);
+                expect(expression(assignment.expression), type);
+                store(assignment.target.name);
+            }
+            else if (statement instanceof MethodCallStatementNode call) {
+                if (!call(call).equals("V"))
+                    code.op(Opcodes.POP, -1);
+            }
+            else if (statement instanceof IfNode ifNode) {
+                Label otherwise = new Label();
+                branchUnless(ifNode.condition, otherwise);
+                block(ifNode.statements);
+                if (ifNode.elseStatement.isPresent()) {
+                    Label end = new Label();
+                    code.jump(Opcodes.GOTO, end);
+                    code.place(otherwise);
+                    block(ifNode.elseStatement.get().statements);
+                    code.place(end);
+                }
+                else
+                    code.place(otherwise);
+            }
+            else if (statement instanceof LoopNode loop) {
+                if (loop.expression instanceof MethodCallExpressionNode mc && mc.objectName.isPresent() && mc.methodName.equals("times"))
+                    times(loop, mc.objectName.get());
+                else
+                    loop(loop);
+            }
+            else
+                throw new Unsupported();
+        }
+
+        // The interpreter evaluates the condition once to check that it is a boolean, then again before each pass.
+        // A loop variable gets the condition's value (the IDT itself - so a plain variable as the condition would
+        // make the two names share one value).
+        private void loop(LoopNode loop) throws Unsupported {
+            Label top = new Label();
+            Label end = new Label();
+            if (loop.assignment.isEmpty()) {
+                expect(expression(loop.expression), "boolean");
+                code.op(Opcodes.POP, -1);
+                code.place(top);
+                branchUnless(loop.expression, end);
+                block(loop.statements);
+            }
+            else {
+                String variable = loop.assignment.get().name;
+                if (loop.expression instanceof VariableReferenceNode)
+                    throw new Unsupported();
+                expect(writable(variable), "boolean");
+                expect(expression(loop.expression), "boolean");
+                store(variable);
+                code.place(top);
+                load(variable);
+                code.jump(Opcodes.IFEQ, end);
+                block(loop.statements);
+                expression(loop.expression);
+                store(variable);
+            }
+            code.jump(Opcodes.GOTO, top);
+            code.place(end);
+        }
+
+        private void times(LoopNode loop, String counter) throws Unsupported {
+            expect(readable(counter), "number");
+            Label top = new Label();
+            Label end = new Label();
+            if (loop.assignment.isPresent()) {
+                String variable = loop.assignment.get().name;
+                expect(writable(variable), "number");
+                code.op(Opcodes.FCONST_0, 1);
+                store(variable);
+                code.place(top);
+                load(variable);
+                load(counter);
+                code.op(Opcodes.FCMPG, -1);
+                code.jump(Opcodes.IFGE, end);
+                block(loop.statements);
+                load(variable);
+                code.op(Opcodes.FCONST_0 + 1, 1);
+                code.op(Opcodes.FADD, -1);
+                store(variable);
+            }
+            else {
+                int i = code.newLocal();
+                code.pushInt(0);
+                code.local(Opcodes.ISTORE, i);
+                code.place(top);
+                code.local(Opcodes.ILOAD, i);
+                code.op(Opcodes.I2F, 0);
+                load(counter);
+                code.op(Opcodes.FCMPG, -1);
+                code.jump(Opcodes.IFGE, end);
+                block(loop.statements);
+                code.increment(i, 1);
+            }
+            code.jump(Opcodes.GOTO, top);
+            code.place(end);
+        }
+
+        /**
+         * Jump to the label when the condition is false.
+         */
+        private void branchUnless(ExpressionNode condition, Label target) throws Unsupported {
+            if (condition instanceof CompareNode compare) {
+                compare(compare);
+                code.jump(BRANCH_IF_NOT[compare.op.ordinal()], target);
+            }
+            else {
+                expect(expression(condition), "boolean");
+                code.jump(Opcodes.IFEQ, target);
+            }
+        }
+
+        // Leaves an int that compares with 0 the way the left side compares with the right.
+        private void compare(CompareNode compare) throws Unsupported {
+            String type = expression(compare.left);
+            expect(expression(compare.right), type);
+            if (type.equals("number")) {
+                boolean lessThan = compare.op == CompareNode.CompareOperations.lt || compare.op == CompareNode.CompareOperations.le;
+                // NaN has to make the comparison false: fcmpg gives 1 for it and fcmpl gives -1.
+                code.op(lessThan ? Opcodes.FCMPG : Opcodes.FCMPL, -1);
+            }
+            else if (type.equals("string") && (compare.op == CompareNode.CompareOperations.eq || compare.op == CompareNode.CompareOperations.ne))
+                code.invokeStatic(RUNTIME, "differ", "(" + TEXT + TEXT + ")I");
+            else if (type.equals("string"))
+                code.invokeStatic(RUNTIME, "compare", "(" + TEXT + TEXT + ")I");
+            else
+                throw new Unsupported();
+        }
+
+        //              Expressions
+
+        /**
+         * Push the value of an expression.
+         * @return its type
+         */
+        private String expression(ExpressionNode expression) throws Unsupported {
+            if (expression instanceof NumericLiteralNode number) {
+                code.loadConstant(writer.floatConstant(number.value));
+                return "number";
+            }
+            if (expression instanceof StringLiteralNode string) {
+                code.loadConstant(writer.string(string.value));
+                return "string";
+            }
+            if (expression instanceof BooleanLiteralNode bool) {
+                code.pushInt(bool.value ? 1 : 0);
+                return "boolean";
+            }
+            if (expression instanceof VariableReferenceNode variable) {
+                if (variable.name.equals("true") || variable.name.equals("false")) {
+                    code.pushInt(variable.name.equals("true") ? 1 : 0);
+                    return "boolean";
+                }
+                String type = readable(variable.name);
+                load(variable.name);
+                return type;
+            }
+            if (expression instanceof MathOpNode math) {
+                String type = expression(math.left);
+                expect(expression(math.right), type);
+                if (type.equals("string") && math.op == MathOpNode.MathOperations.add)
+                    code.invokeStatic(RUNTIME, "concat", "(" + TEXT + TEXT + ")" + TEXT);
+                else if (!type.equals("number"))
+                    throw new Unsupported();
+                else switch (math.op) {
+                    case add -> code.op(Opcodes.FADD, -1);
+                    case subtract -> code.op(Opcodes.FSUB, -1);
+                    case multiply -> code.op(Opcodes.FMUL, -1);
+                    case divide -> code.invokeStatic(RUNTIME, "divide", "(FF)F");
+                    case modulo -> code.invokeStatic(RUNTIME, "modulo", "(FF)F");
+                }
+                return type;
+            }
+            if (expression instanceof CompareNode compare) {
+                Label isFalse = new Label();
+                Label end = new Label();
+                int depth = code.stack();
+                compare(compare);
+                code.jump(BRANCH_IF_NOT[compare.op.ordinal()], isFalse);
+                code.pushInt(1);
+                code.jump(Opcodes.GOTO, end);
+                code.place(isFalse);
+                code.setStack(depth);
+                code.pushInt(0);
+                code.place(end);
+                return "boolean";
+            }
+            if (expression instanceof MethodCallExpressionNode call) {
+                String returnType = call(new MethodCallStatementNode(call));
+                if (returnType.equals("V"))
+                    throw new Unsupported();
+                return returnType.equals("F") ? "number" : returnType.equals("Z") ? "boolean" : "string";
+            }
+            throw new Unsupported();
+        }
+
+        /**
+         * @return the descriptor of what the call leaves on the stack ("V" for nothing)
+         */
+        private String call(MethodCallStatementNode call) throws Unsupported {
+            if (call.objectName.isPresent()) {
+                if (!call.objectName.get().equals("console") || !call.methodName.equals("write") || consoleWrite.isEmpty())
+                    throw new Unsupported();
+                code.poolOp(Opcodes.GETSTATIC, writer.fieldReference(className, "DATA", OBJECT_ARRAY), 1);
+                code.pushInt(0);
+                code.op(Opcodes.AALOAD, -1);
+                code.pushInt(call.parameters.size());
+                code.poolOp(Opcodes.ANEWARRAY, writer.classReference("java/lang/Object"), 0);
+                for (int i = 0; i < call.parameters.size(); i++) {
+                    code.op(Opcodes.DUP, 1);
+                    code.pushInt(i);
+                    box(expression(call.parameters.get(i)));
+                    code.op(Opcodes.AASTORE, -3);
+                }
+                code.invokeStatic(RUNTIME, "callBuiltIn", "(Ljava/lang/Object;" + OBJECT_ARRAY + ")V");
+                return "V";
+            }
+            if (methodNameCounts.getOrDefault(call.methodName, 0) != 1)
+                throw new Unsupported();
+            Optional<MethodDeclarationNode> target = compilable.stream().filter(candidate -> candidate.name.equals(call.methodName)).findFirst();
+            if (target.isEmpty() || target.get().parameters.size() != call.parameters.size())
+                throw new Unsupported();
+            for (int i = 0; i < call.parameters.size(); i++)
+                expect(expression(call.parameters.get(i)), target.get().parameters.get(i).type);
+            String descriptor = descriptor(target.get());
+            code.invokeStatic(className, javaName(classNode, target.get()), descriptor);
+            return descriptor.substring(descriptor.indexOf(')') + 1);
+        }
+
+        private void box(String type) {
+            if (type.equals("number"))
+                code.invokeStatic("java/lang/Float", "valueOf", "(F)Ljava/lang/Float;");
+            else if (type.equals("boolean"))
+                code.invokeStatic("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+        }
+
+        //              Variables
+
+        private String readable(String name) throws Unsupported {
+            if (!types.containsKey(name))
+                throw new Unsupported();
+            return types.get(name);
+        }
+
+        private String writable(String name) throws Unsupported {
+            for (VariableDeclarationNode parameter : method.parameters) {
+                if (parameter.name.equals(name))
+                    throw new Unsupported();
+            }
+            return readable(name);
+        }
+
+        private void load(String name) {
+            code.local(switch (types.get(name)) {
+                case "number" -> Opcodes.FLOAD;
+                case "boolean" -> Opcodes.ILOAD;
+                default -> Opcodes.ALOAD;
+            }, slots.get(name));
+        }
+
+        private void store(String name) {
+            code.local(switch (types.get(name)) {
+                case "number" -> Opcodes.FSTORE;
+                case "boolean" -> Opcodes.ISTORE;
+                default -> Opcodes.ASTORE;
+            }, slots.get(name));
+        }
+
+        private void expect(String actual, String expected) throws Unsupported {
+            if (!actual.equals(expected))
+                throw new Unsupported();
+        }
+    }
+
+    private static int returnOpcode(String type) {
+        return switch (type) {
+            case "number" -> Opcodes.FRETURN;
+            case "boolean" -> Opcodes.IRETURN;
+            default -> Opcodes.ARETURN;
+        };
+    }
+
+    private static List<VariableDeclarationNode> concat(List<VariableDeclarationNode> first, List<VariableDeclarationNode> second) {
+        List<VariableDeclarationNode> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+}
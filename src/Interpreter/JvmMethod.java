@@ -0,0 +1,61 @@
+package Interpreter;
+
+import AST.MethodDeclarationNode;
+
+import java.lang.invoke.MethodHandle;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A Tran method that the JvmCompiler turned into a static Java method of a hidden class.
+ */
+public class JvmMethod {
+    public final MethodDeclarationNode method;
+    /** the Java method, adapted to take its arguments as an Object[] and return an Object */
+    private final MethodHandle handle;
+    private final String[] parameterTypes;
+    private final String returnType;
+
+    JvmMethod(MethodDeclarationNode method, MethodHandle handle) {
+        this.method = method;
+        this.handle = handle;
+        parameterTypes = method.parameters.stream().map(parameter -> parameter.type).toArray(String[]::new);
+        returnType = method.returns.isEmpty() ? null : method.returns.get(0).type;
+    }
+
+    /**
+     * Generated code only handles the declared parameter types. The interpreter doesn't check the types of arguments,
+     * so a call with other types has to run in the tree walker.
+     * @param values - the argument values
+     * @return the values as Java values, or null if one of them has the wrong type
+     */
+    Object[] arguments(List<InterpreterDataType> values) {
+        Object[] arguments = new Object[values.size()];
+        int i = 0;
+        for (InterpreterDataType value : values) {
+            arguments[i] = JvmRuntime.fromIDT(value, parameterTypes[i]);
+            if (arguments[i++] == null)
+                return null;
+        }
+        return arguments;
+    }
+
+    /**
+     * @param arguments - from arguments()
+     * @return the return values, as interpretMethodCall() returns them
+     */
+    List<InterpreterDataType> invoke(Object[] arguments) {
+        Object result;
+        try {
+            result = (Object) handle.invokeExact(arguments);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+        List<InterpreterDataType> results = new LinkedList<>();
+        if (returnType != null)
+            results.add(JvmRuntime.toIDT(result));
+        return results;
+    }
+}
@@ -0,0 +1,88 @@
+package Interpreter;
+
+import AST.BuiltInMethodDeclarationNode;
+import AST.MathOpNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The helpers that code generated by the JvmCompiler calls, and the conversions between the interpreter's IDTs and
+ * the plain Java values (Float, Boolean, and the text of a string - a String or a rope, see Rope) that generated code
+ * works with.
+ */
+public class JvmRuntime {
+    /**
+     * Call a built-in (console.write, for example) from generated code.
+     * @param builtIn - the BuiltInMethodDeclarationNode, from the class data
+     * @param values - the argument values
+     */
+    public static void callBuiltIn(Object builtIn, Object[] values) {
+        List<InterpreterDataType> parameters = new ArrayList<>(values.length);
+        for (Object value : values)
+            parameters.add(toIDT(value));
+        ((BuiltInMethodDeclarationNode) builtIn).Execute(parameters);
+    }
+
+    public static float divide(float left, float right) {
+        return Operations.math(MathOpNode.MathOperations.divide, left, right);
+    }
+
+    public static float modulo(float left, float right) {
+        return Operations.math(MathOpNode.MathOperations.modulo, left, right);
+    }
+
+    /**
+     * String + for generated code: a rope, as StringIDT.concat() makes, so "s = s + x" in a loop shares s instead of
+     * copying it. Charged to the running program's MemoryAccount the same way. If the program interns, a result short
+     * enough to intern is flattened and interned right away (see StringInterner).
+     */
+    public static Object concat(Object left, Object right) {
+        MemoryAccount account = MemoryAccount.current();
+        if (account != null)
+            account.allocateString(Math.min(Rope.length(left), Rope.length(right)));
+        Object joined = Rope.concat(left, right);
+        StringInterner interner = StringInterner.current();
+        if (interner != null && Rope.length(joined) <= StringInterner.MAX_LENGTH)
+            return interner.intern(Rope.toString(joined));
+        return joined;
+    }
+
+    /**
+     * String == and != for generated code. The texts are only flattened when they aren't the same one.
+     * @return 0 if the strings are equal, 1 if not (to branch on like compareTo())
+     */
+    public static int differ(Object left, Object right) {
+        return left == right || Rope.toString(left).equals(Rope.toString(right)) ? 0 : 1;
+    }
+
+    /**
+     * String <, <=, > and >= for generated code.
+     * @return what compareTo() of the two strings returns
+     */
+    public static int compare(Object left, Object right) {
+        return Rope.toString(left).compareTo(Rope.toString(right));
+    }
+
+    static InterpreterDataType toIDT(Object value) {
+        if (value instanceof Float number)
+            return new NumberIDT(number);
+        if (value instanceof Boolean bool)
+            return new BooleanIDT(bool);
+        return StringIDT.ofText(value);
+    }
+
+    /**
+     * @return the Java value of an IDT, or null if it isn't of the type generated code expects
+     */
+    static Object fromIDT(InterpreterDataType value, String type) {
+        switch (type) {
+            case "number":
+                return value instanceof NumberIDT number ? number.Value : null;
+            case "boolean":
+                return value instanceof BooleanIDT bool ? bool.Value : null;
+            default:
+                return value instanceof StringIDT string ? string.text() : null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package Interpreter;
+
+/**
+ * What one Interpreter has allocated, with optional limits - so that a runaway program stops with a Tran-level error
+ * (AllocationLimitException) instead of taking the JVM down with it. See Interpreter.memory().
+ *
+ * Three things are counted, each as a running total of what was allocated - nothing is credited back when it is no
+ * longer in use, so a limit caps how much a program may allocate over its whole run, not how much it holds at once:
+ *      objects - every "new"
+ *      IDTs - the variables made for calls and objects: locals, returns, members and the VM's boxed registers
+ *          (temporaries, like the result of a math operation, aren't counted)
+ *      string bytes - two per character that concatenation adds: the shorter side, since the longer one is shared
+ *          (see Rope)
+ * A count is one addition and one comparison, at most once per call, object or concatenation.
+ *
+ * Concatenation is done in static code (Operations, the JVM engine), so it is charged to the account of the program
+ * running on the current thread: Interpreter.start() makes its account current() while the program runs.
+ */
+public class MemoryAccount {
+    private static final ThreadLocal<MemoryAccount> CURRENT = new ThreadLocal<>();
+
+    private long objects;
+    private long idts;
+    private long stringBytes;
+    private long objectAllocationLimit = Long.MAX_VALUE;
+    private long idtAllocationLimit = Long.MAX_VALUE;
+    private long stringByteAllocationLimit = Long.MAX_VALUE;
+
+    public long objects() {
+        return objects;
+    }
+
+    public long idts() {
+        return idts;
+    }
+
+    public long stringBytes() {
+        return stringBytes;
+    }
+
+    /**
+     * @param limit - how many objects the program may allocate in all (no limit by default)
+     */
+    public void setObjectAllocationLimit(long limit) {
+        objectAllocationLimit = limit;
+    }
+
+    /**
+     * @param limit - how many IDTs the program may allocate in all (no limit by default)
+     */
+    public void setIdtAllocationLimit(long limit) {
+        idtAllocationLimit = limit;
+    }
+
+    /**
+     * @param limit - how many string bytes the program may allocate in all (no limit by default)
+     */
+    public void setStringByteAllocationLimit(long limit) {
+        stringByteAllocationLimit = limit;
+    }
+
+    void allocateObject() {
+        if (++objects > objectAllocationLimit)
+            throw new AllocationLimitException("objects", objectAllocationLimit);
+    }
+
+    void allocateIDTs(int count) {
+        if ((idts += count) > idtAllocationLimit)
+            throw new AllocationLimitException("IDTs", idtAllocationLimit);
+    }
+
+    void allocateString(int characters) {
+        if ((stringBytes += 2L * characters) > stringByteAllocationLimit)
+            throw new AllocationLimitException("string bytes", stringByteAllocationLimit);
+    }
+
+    /**
+     * @return the account of the program running on this thread, or null if there is none
+     */
+    static MemoryAccount current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Make an account current() for this thread.
+     * @param account - the account, or null for none
+     * @return the account that was current before
+     */
+    static MemoryAccount bind(MemoryAccount account) {
+        MemoryAccount previous = CURRENT.get();
+        CURRENT.set(account);
+        return previous;
+    }
+
+    @Override
+    public String toString() {
+        return objects + " objects, " + idts + " IDTs, " + stringBytes + " string bytes";
+    }
+}
@@ -0,0 +1,138 @@
+package Interpreter;
+
+import AST.MethodDeclarationNode;
+
+import java.util.*;
+
+/**
+ * A bounded, least-recently-used cache of the results of pure method calls, keyed by the method and the values of its
+ * arguments. Only calls whose arguments are all numbers, strings, characters or booleans can be cached.
+ *
+ * Results are stored as plain values and handed out as new IDTs on every hit, because callers are free to change the
+ * IDTs they get back.
+ */
+public class MethodCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final LinkedHashMap<List<Object>, List<Object>> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param capacity - how many results to keep before the least recently used ones are dropped
+     */
+    public MethodCache(int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, List<Object>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param method - the method being called
+     * @param arguments - the argument values
+     * @return new IDTs holding the cached return values, or empty if the call has to run
+     */
+    public Optional<List<InterpreterDataType>> lookup(MethodDeclarationNode method, List<InterpreterDataType> arguments) {
+        Optional<List<Object>> key = key(method, arguments);
+        if (key.isEmpty())
+            return Optional.empty();
+        List<Object> results = entries.get(key.get());
+        if (results == null) {
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        List<InterpreterDataType> values = new LinkedList<>();
+        for (Object result : results)
+            values.add(toIDT(result));
+        return Optional.of(values);
+    }
+
+    /**
+     * Remember the return values of a call that just ran.
+     * @param method - the method that was called
+     * @param arguments - the argument values it was called with
+     * @param results - its return values
+     */
+    public void store(MethodDeclarationNode method, List<InterpreterDataType> arguments, List<InterpreterDataType> results) {
+        Optional<List<Object>> key = key(method, arguments);
+        List<Object> values = new ArrayList<>(results.size());
+        for (InterpreterDataType result : results) {
+            Optional<Object> value = valueOf(result);
+            if (value.isEmpty())
+                return;
+            values.add(value.get());
+        }
+        key.ifPresent(k -> entries.put(k, values));
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the share of cacheable calls that were answered from the cache (0 before any call)
+     */
+    public double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d entries", hits, misses, getHitRate() * 100, entries.size());
+    }
+
+    private static Optional<List<Object>> key(MethodDeclarationNode method, List<InterpreterDataType> arguments) {
+        List<Object> key = new ArrayList<>(arguments.size() + 1);
+        key.add(method);
+        for (InterpreterDataType argument : arguments) {
+            Optional<Object> value = valueOf(argument);
+            if (value.isEmpty())
+                return Optional.empty();
+            key.add(value.get());
+        }
+        return Optional.of(key);
+    }
+
+    // The boxed types differ, so a number and a string with the same text never share a key.
+    private static Optional<Object> valueOf(InterpreterDataType idt) {
+        if (idt instanceof NumberIDT number)
+            return Optional.of(number.Value);
+        if (idt instanceof IntegerIDT integer)
+            return Optional.of(integer.Value);
+        if (idt instanceof DoubleIDT number)
+            return Optional.of(number.Value);
+        if (idt instanceof StringIDT string)
+            return Optional.of(string.getValue());
+        if (idt instanceof CharIDT character)
+            return Optional.of(character.Value);
+        if (idt instanceof BooleanIDT bool)
+            return Optional.of(bool.Value);
+        return Optional.empty();
+    }
+
+    private static InterpreterDataType toIDT(Object value) {
+        if (value instanceof Float number)
+            return new NumberIDT(number);
+        if (value instanceof Long integer)
+            return new IntegerIDT(integer);
+        if (value instanceof Double number)
+            return new DoubleIDT(number);
+        if (value instanceof String string)
+            return new StringIDT(string);
+        if (value instanceof Character character)
+            return new CharIDT(character);
+        return new BooleanIDT((Boolean) value);
+    }
+}
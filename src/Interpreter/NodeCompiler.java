@@ -0,0 +1,130 @@
+package Interpreter;
+
+import AST.*;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Turns method and constructor bodies into trees of executable nodes (see ExpressionNodes and StatementNodes), once per
+ * body. Running the nodes replaces the instanceof chains of interpretStatementBlock() and evaluate() with one virtual
+ * call per node, and lets each node specialize itself on the types it sees.
+ */
+public class NodeCompiler {
+    private final Interpreter interpreter;
+    private final IdentityHashMap<List<StatementNode>, ExecutableStatement> compiled = new IdentityHashMap<>();
+    private final IdentityHashMap<LoopNode, StatementNodes.Loop> loops = new IdentityHashMap<>();
+
+    public NodeCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * @param statements - a method or constructor body
+     * @return its executable nodes (compiled the first time they are asked for)
+     */
+    public ExecutableStatement compile(List<StatementNode> statements) {
+        ExecutableStatement block = compiled.get(statements);
+        if (block == null) {
+            block = compileBlock(statements);
+            compiled.put(statements, block);
+        }
+        return block;
+    }
+
+    /**
+     * @param loop - a loop, for on-stack replacement
+     * @return its executable node (compiled the first time it is asked for)
+     */
+    public StatementNodes.Loop compileLoop(LoopNode loop) {
+        return loops.computeIfAbsent(loop, node -> (StatementNodes.Loop) compileStatement(node));
+    }
+
+    private ExecutableStatement compileBlock(List<StatementNode> statements) {
+        ExecutableStatement[] block = new ExecutableStatement[statements.size()];
+        for (int i = 0; i < block.length; i++)
+            block[i] = compileStatement(statements.get(i));
+        return new StatementNodes.Block(block);
+    }
+
+    private ExecutableStatement compileStatement(StatementNode statement) {
+        if (statement instanceof AssignmentNode assignment)
+            return new StatementNodes.Assign(interpreter, assignment.target.name, compileExpression(assignment.expression));
+        if (statement instanceof MethodCallStatementNode methodCall)
+            return new StatementNodes.Call(interpreter, methodCall, compileExpressions(methodCall.parameters));
+        if (statement instanceof IfNode ifNode)
+            return new StatementNodes.If(compileExpression(ifNode.condition), compileBlock(ifNode.statements),
+                    ifNode.elseStatement.map(elseNode -> compileBlock(elseNode.statements)));
+        if (statement instanceof LoopNode loop) {
+            ExecutableStatement body = compileBlock(loop.statements);
+            Optional<String> variable = loop.assignment.map(reference -> reference.name);
+            if (loop.expression instanceof MethodCallExpressionNode mc && mc.objectName.isPresent() && mc.methodName.equals("times"))
+                return new StatementNodes.Times(variable, mc.objectName.get(), body);
+            if (variable.isPresent())
+                return new StatementNodes.WhileWithVariable(variable.get(), compileExpression(loop.expression), body);
+            return new StatementNodes.While(compileExpression(loop.expression), body);
+        }
+        throw new IllegalArgumentException("Unknown statement " + statement);
+    }
+
+    private ExecutableExpression compileExpression(ExpressionNode expression) {
+        if (expression instanceof NumericLiteralNode number)
+            return new ExpressionNodes.NumberLiteral(number.value);
+        if (expression instanceof IntegerLiteralNode integer)
+            return new ExpressionNodes.IntegerLiteral(integer.value);
+        if (expression instanceof DoubleLiteralNode number)
+            return new ExpressionNodes.DoubleLiteral(number.value);
+        if (expression instanceof StringLiteralNode string)
+            return new ExpressionNodes.StringLiteral(string.value);
+        if (expression instanceof CharLiteralNode character)
+            return new ExpressionNodes.CharLiteral(character.value);
+        if (expression instanceof BooleanLiteralNode bool)
+            return new ExpressionNodes.BooleanLiteral(bool.value);
+        if (expression instanceof VariableReferenceNode variable) {
+            if (variable.name.equals("true") || variable.name.equals("false"))
+                return new ExpressionNodes.BooleanLiteral(Boolean.parseBoolean(variable.name));
+            return new ExpressionNodes.Variable(interpreter, variable.name);
+        }
+        if (expression instanceof MathOpNode math)
+            return new ExpressionNodes.Math(math.op, compileExpression(math.left), compileExpression(math.right), canSpecialize(math.left, math.right));
+        if (expression instanceof CompareNode compare)
+            return new ExpressionNodes.Compare(compare.op, compileExpression(compare.left), compileExpression(compare.right), canSpecialize(compare.left, compare.right));
+        if (expression instanceof BooleanOpNode boolOp)
+            return new ExpressionNodes.BooleanOp(boolOp.op, compileExpression(boolOp.left), compileExpression(boolOp.right), canSpecialize(boolOp.left, boolOp.right));
+        if (expression instanceof NotOpNode not)
+            return new ExpressionNodes.Not(compileExpression(not.left));
+        if (expression instanceof MethodCallExpressionNode methodCall)
+            return new ExpressionNodes.Call(interpreter, new MethodCallStatementNode(methodCall), compileExpressions(methodCall.parameters));
+        if (expression instanceof NewNode newNode)
+            return new ExpressionNodes.New(interpreter, newNode, compileExpressions(newNode.parameters));
+        throw new IllegalArgumentException("Unknown expression " + expression);
+    }
+
+    private ExecutableExpression[] compileExpressions(List<ExpressionNode> expressions) {
+        ExecutableExpression[] compiled = new ExecutableExpression[expressions.size()];
+        for (int i = 0; i < compiled.length; i++)
+            compiled[i] = compileExpression(expressions.get(i));
+        return compiled;
+    }
+
+    // evaluate() holds on to a variable's IDT and reads its value only after the right side has run. The typed fast
+    // paths read the value right away, which is only the same when the right side can't change the variable.
+    private static boolean canSpecialize(ExpressionNode left, ExpressionNode right) {
+        return !(left instanceof VariableReferenceNode) || !containsCall(right);
+    }
+
+    private static boolean containsCall(ExpressionNode expression) {
+        if (expression instanceof MethodCallExpressionNode || expression instanceof NewNode)
+            return true;
+        if (expression instanceof MathOpNode math)
+            return containsCall(math.left) || containsCall(math.right);
+        if (expression instanceof CompareNode compare)
+            return containsCall(compare.left) || containsCall(compare.right);
+        if (expression instanceof BooleanOpNode boolOp)
+            return containsCall(boolOp.left) || containsCall(boolOp.right);
+        if (expression instanceof NotOpNode not)
+            return containsCall(not.left);
+        return false;
+    }
+}
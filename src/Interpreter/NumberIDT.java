@@ -1,21 +1,70 @@
 package Interpreter;
 
 public class NumberIDT implements InterpreterDataType {
+    // whole numbers in this range have one shared constant each
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final NumberIDT[] CACHE = new NumberIDT[CACHE_HIGH - CACHE_LOW + 1];
+    private static final int NEGATIVE_ZERO = Float.floatToRawIntBits(-0.0f);
+
+    static {
+        for (int i = 0; i < CACHE.length; i++)
+            CACHE[i] = new NumberIDT(i + CACHE_LOW, true);
+    }
+
     public float Value;
+    private final boolean constant;
 
     public NumberIDT(float v) {
+        this(v, false);
+    }
+
+    private NumberIDT(float v, boolean constant) {
         Value = v;
+        this.constant = constant;
+    }
+
+    /**
+     * @param v - a value
+     * @return a constant NumberIDT holding it - shared for small whole numbers, so no allocation (see asVariable())
+     */
+    public static NumberIDT of(float v) {
+        int whole = (int) v;
+        if (whole == v && whole >= CACHE_LOW && whole <= CACHE_HIGH && Float.floatToRawIntBits(v) != NEGATIVE_ZERO)
+            return CACHE[whole - CACHE_LOW];
+        return new NumberIDT(v, true);
     }
 
+    /**
+     * @return a constant whose Value a Scratch region rewrites for each result it holds
+     */
+    static NumberIDT scratch() {
+        return new NumberIDT(0, true);
+    }
+
+    /**
+     * A number can also be assigned from an integer or a double, rounded to the nearest float.
+     */
     @Override
     public void Assign(InterpreterDataType in) {
+        if (constant)
+            throw new IllegalStateException("Assigning to the constant " + Value);
         if (in instanceof NumberIDT inv) {
             Value = inv.Value;
+        } else if (in instanceof IntegerIDT inv) {
+            Value = inv.Value;
+        } else if (in instanceof DoubleIDT inv) {
+            Value = (float) inv.Value;
         } else {
             throw new RuntimeException("Trying to assign to a number IDT from a " + in.getClass());
         }
     }
 
+    @Override
+    public InterpreterDataType asVariable() {
+        return constant ? new NumberIDT(Value) : this;
+    }
+
     public String toString() {
         return String.valueOf(Value);
     }
@@ -2,14 +2,187 @@ package Interpreter;
 
 import AST.ClassNode;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+/**
+ * An object: its class and its members. The members are a plain array, laid out by the object's Shape, instead of a
+ * map per object.
+ *
+ * With Interpreter.setOffHeapObjects(), an object whose members are all primitive moves them to a row of an
+ * OffHeapStore once it has been constructed, and drops the array. While a method runs on the object, it is pinned: the
+ * members are read back into IDTs (the body assigns them in place) and written to the row when the last such method
+ * returns. A member asked for outside of any method on the object moves it back to the heap for good.
+ */
 public class ObjectIDT implements InterpreterDataType {
-    public final HashMap<String,InterpreterDataType> members = new HashMap<>();
+    private static final InterpreterDataType[] NO_VALUES = new InterpreterDataType[0];
+
     public final ClassNode astNode;
+    Shape shape;
+    InterpreterDataType[] values = NO_VALUES;
+    // the row holding the members while they are off the heap (values is then null unless pinned)
+    private OffHeapStore.Layout layout;
+    private int row;
+    private int pins;
 
-    public ObjectIDT(ClassNode astNode) {
+    /**
+     * @param astNode - the class
+     * @param shape - the empty shape that the class's objects start with (see Interpreter.newObject())
+     */
+    ObjectIDT(ClassNode astNode, Shape shape) {
         this.astNode = astNode;
+        this.shape = shape;
+    }
+
+    /**
+     * An object whose shape isn't shared with any other.
+     * @param astNode - the class
+     */
+    public ObjectIDT(ClassNode astNode) {
+        this(astNode, new Shape());
+    }
+
+    /**
+     * @param name - a member name
+     * @return the member, or null if the object doesn't have it
+     */
+    public InterpreterDataType get(String name) {
+        int slot = shape.slotOf(name);
+        return slot < 0 ? null : values()[slot];
+    }
+
+    /**
+     * Set a member, adding it if the object doesn't have it yet.
+     * @param name - the member name
+     * @param value - its value
+     */
+    public void put(String name, InterpreterDataType value) {
+        InterpreterDataType[] values = values();
+        int slot = shape.slotOf(name);
+        if (slot < 0) {
+            shape = shape.with(name);
+            slot = shape.size() - 1;
+            if (slot == values.length) {
+                InterpreterDataType[] grown = new InterpreterDataType[Math.max(4, values.length * 2)];
+                System.arraycopy(values, 0, grown, 0, values.length);
+                values = grown;
+                this.values = values;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * @return the members, by slot - if they are off the heap and the object isn't pinned, they move back for good
+     */
+    InterpreterDataType[] values() {
+        if (values == null) {
+            values = layout.read(row);
+            layout = null;
+        }
+        return values;
+    }
+
+    /**
+     * @return the members, by slot (possibly more than the shape has) - read from the row if they are off the heap,
+     * without moving them back
+     */
+    InterpreterDataType[] peek() {
+        return values != null ? values : layout.read(row);
+    }
+
+    /**
+     * Move the members off the heap, if they are all primitive.
+     * @param store - where to put them
+     */
+    void moveOffHeap(OffHeapStore store) {
+        if (layout != null || values == null || pins > 0)
+            return;
+        InterpreterDataType[] members = values.length == shape.size() ? values : Arrays.copyOf(values, shape.size());
+        OffHeapStore.Layout found = store.layoutFor(shape, members);
+        if (found == null)
+            return;
+        layout = found;
+        row = layout.allocate();
+        layout.write(row, members);
+        values = null;
+    }
+
+    /**
+     * A method is about to run on this object: bring the members back as IDTs, if they are off the heap.
+     */
+    void pin() {
+        if (layout != null && pins++ == 0)
+            values = layout.read(row);
+    }
+
+    /**
+     * The method pin() was called for has returned: the last one to return stores the members again.
+     */
+    void unpin() {
+        if (layout != null && --pins == 0) {
+            layout.write(row, values);
+            values = null;
+        }
+    }
+
+    /**
+     * @return the members as a map (a view: changes go to the object)
+     */
+    public Map<String, InterpreterDataType> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public InterpreterDataType get(Object name) {
+                return name instanceof String string ? ObjectIDT.this.get(string) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object name) {
+                return get(name) != null;
+            }
+
+            @Override
+            public InterpreterDataType put(String name, InterpreterDataType value) {
+                InterpreterDataType old = ObjectIDT.this.get(name);
+                ObjectIDT.this.put(name, value);
+                return old;
+            }
+
+            @Override
+            public Set<Entry<String, InterpreterDataType>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, InterpreterDataType>> iterator() {
+                        return new Iterator<>() {
+                            private int slot;
+
+                            @Override
+                            public boolean hasNext() {
+                                return slot < shape.size();
+                            }
+
+                            @Override
+                            public Entry<String, InterpreterDataType> next() {
+                                if (!hasNext())
+                                    throw new NoSuchElementException();
+                                int current = slot++;
+                                return new SimpleImmutableEntry<>(shape.nameAt(current), ObjectIDT.this.values()[current]);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return shape.size();
+                    }
+                };
+            }
+        };
     }
 
     @Override
@@ -19,9 +192,10 @@ public class ObjectIDT implements InterpreterDataType {
 
     @Override
     public String toString() {
+        InterpreterDataType[] values = peek();
         StringBuilder out = new StringBuilder();
-        for (var m : members.entrySet())
-            out.append(m.getKey()).append(" : ").append(m.getValue().toString()).append("\n");
+        for (int slot = 0; slot < shape.size(); slot++)
+            out.append(shape.nameAt(slot)).append(" : ").append(values[slot].toString()).append("\n");
         return out.toString();
     }
 }
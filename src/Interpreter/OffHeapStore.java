@@ -0,0 +1,154 @@
+package Interpreter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Off-heap storage for the members of objects whose members are all primitive (numbers, integers, doubles, booleans and
+ * characters). See Interpreter.setOffHeapObjects().
+ *
+ * Each Shape gets a Layout: a fixed offset in a row for each member, by the type of its IDT. Rows are cut out of direct
+ * ByteBuffers of CHUNK_SIZE bytes (arenas), so an object that has moved here is only its ObjectIDT on the heap - no
+ * value array and no member IDTs for the garbage collector to trace. Rows are never reused: like an arena, the memory
+ * goes away with the interpreter, which suits batch programs that build a population of objects and keep it.
+ */
+class OffHeapStore {
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private static final byte NUMBER = 0;
+    private static final byte INTEGER = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte CHARACTER = 4;
+    private static final int[] SIZES = { Float.BYTES, Long.BYTES, Double.BYTES, 1, Character.BYTES };
+
+    private final IdentityHashMap<Shape, Layout> layouts = new IdentityHashMap<>();
+
+    /**
+     * @param shape - the shape of an object
+     * @param values - its members
+     * @return the layout for objects of that shape with members of these types, or null if they can't be stored here
+     */
+    Layout layoutFor(Shape shape, InterpreterDataType[] values) {
+        if (shape.size() == 0)
+            return null;
+        byte[] kinds = new byte[shape.size()];
+        for (int slot = 0; slot < kinds.length; slot++) {
+            int kind = kindOf(values[slot]);
+            if (kind < 0)
+                return null;
+            kinds[slot] = (byte) kind;
+        }
+        Layout layout = layouts.get(shape);
+        if (layout == null) {
+            layout = new Layout(kinds);
+            layouts.put(shape, layout);
+        }
+        return layout.hasKinds(kinds) ? layout : null;
+    }
+
+    /**
+     * @return how many bytes of off-heap memory the rows take up so far
+     */
+    long bytes() {
+        long bytes = 0;
+        for (Layout layout : layouts.values())
+            bytes += (long) layout.chunks.size() * CHUNK_SIZE;
+        return bytes;
+    }
+
+    private static int kindOf(InterpreterDataType value) {
+        if (value instanceof NumberIDT)
+            return NUMBER;
+        if (value instanceof IntegerIDT)
+            return INTEGER;
+        if (value instanceof DoubleIDT)
+            return DOUBLE;
+        if (value instanceof BooleanIDT)
+            return BOOLEAN;
+        if (value instanceof CharIDT)
+            return CHARACTER;
+        return -1;
+    }
+
+    /**
+     * The rows of the objects of one shape.
+     */
+    static final class Layout {
+        private final byte[] kinds;
+        private final int[] offsets;
+        private final int rowsPerChunk;
+        private final int rowSize;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private int rows;
+
+        private Layout(byte[] kinds) {
+            this.kinds = kinds;
+            offsets = new int[kinds.length];
+            int size = 0;
+            for (int slot = 0; slot < kinds.length; slot++) {
+                offsets[slot] = size;
+                size += SIZES[kinds[slot]];
+            }
+            rowSize = size;
+            rowsPerChunk = CHUNK_SIZE / size;
+        }
+
+        private boolean hasKinds(byte[] kinds) {
+            return Arrays.equals(this.kinds, kinds);
+        }
+
+        /**
+         * @return a new row
+         */
+        int allocate() {
+            if (rows == chunks.size() * rowsPerChunk)
+                chunks.add(ByteBuffer.allocateDirect(rowsPerChunk * rowSize));
+            return rows++;
+        }
+
+        /**
+         * Store the members of an object in its row.
+         * @param row - the row
+         * @param values - the members, of this layout's types
+         */
+        void write(int row, InterpreterDataType[] values) {
+            ByteBuffer chunk = chunks.get(row / rowsPerChunk);
+            int base = (row % rowsPerChunk) * rowSize;
+            for (int slot = 0; slot < kinds.length; slot++) {
+                int at = base + offsets[slot];
+                switch (kinds[slot]) {
+                    case NUMBER -> chunk.putFloat(at, ((NumberIDT) values[slot]).Value);
+                    case INTEGER -> chunk.putLong(at, ((IntegerIDT) values[slot]).Value);
+                    case DOUBLE -> chunk.putDouble(at, ((DoubleIDT) values[slot]).Value);
+                    case BOOLEAN -> chunk.put(at, (byte) (((BooleanIDT) values[slot]).Value ? 1 : 0));
+                    default -> chunk.putChar(at, ((CharIDT) values[slot]).Value);
+                }
+            }
+        }
+
+        /**
+         * @param row - a row
+         * @return new member IDTs holding what the row holds
+         */
+        InterpreterDataType[] read(int row) {
+            ByteBuffer chunk = chunks.get(row / rowsPerChunk);
+            int base = (row % rowsPerChunk) * rowSize;
+            InterpreterDataType[] values = new InterpreterDataType[kinds.length];
+            for (int slot = 0; slot < kinds.length; slot++) {
+                int at = base + offsets[slot];
+                values[slot] = switch (kinds[slot]) {
+                    case NUMBER -> new NumberIDT(chunk.getFloat(at));
+                    case INTEGER -> new IntegerIDT(chunk.getLong(at));
+                    case DOUBLE -> new DoubleIDT(chunk.getDouble(at));
+                    case BOOLEAN -> new BooleanIDT(chunk.get(at) != 0);
+                    default -> new CharIDT(chunk.getChar(at));
+                };
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package Interpreter;
+
+import AST.BooleanOpNode;
+import AST.CompareNode;
+import AST.MathOpNode;
+
+/**
+ * The operators of the language, applied to values that have already been evaluated. Shared by evaluate() and the
+ * executable nodes so that both engines agree on every result and every error.
+ *
+ * Integer, number and double math follows Java: integers stay exact 64-bit values, and mixing types widens from integer
+ * to number to double. Number and boolean results are constants (NumberIDT.of(), BooleanIDT.of()), so comparisons and
+ * small whole-number math don't allocate. Whatever stores a result as a variable takes asVariable() of it.
+ */
+public class Operations {
+    /**
+     * MathOpNode - if both sides are numbers, do the math using the built-in operators. Also handle String + String as
+     * concatenation (like Java)
+     * @param op - the operator
+     * @param left - the left value
+     * @param right - the right value
+     * @return the result
+     */
+    public static InterpreterDataType math(MathOpNode.MathOperations op, InterpreterDataType left, InterpreterDataType right) {
+        if (left instanceof NumberIDT leftNumber && right instanceof NumberIDT rightNumber)
+            return NumberIDT.of(math(op, leftNumber.Value, rightNumber.Value));
+        if (left instanceof IntegerIDT leftInteger && right instanceof IntegerIDT rightInteger)
+            return IntegerIDT.of(math(op, leftInteger.Value, rightInteger.Value));
+        if (isNumeric(left) && isNumeric(right)) {
+            // mixed number types widen as in Java: integer to number to double
+            if (left instanceof DoubleIDT || right instanceof DoubleIDT)
+                return DoubleIDT.of(math(op, toDouble(left), toDouble(right)));
+            return NumberIDT.of(math(op, (float) toDouble(left), (float) toDouble(right)));
+        }
+        if (left instanceof StringIDT leftString && right instanceof StringIDT rightString) {
+            if (op == MathOpNode.MathOperations.add)
+                return StringIDT.concat(leftString, rightString);
+            throw new RuntimeException("Attempted illegal operation on string literals");
+        }
+        throw new RuntimeException("Attempted mathematical operation between incompatible types");
+    }
+
+    public static float math(MathOpNode.MathOperations op, float left, float right) {
+        switch (op) {
+            case add:
+                return left + right;
+            case subtract:
+                return left - right;
+            case multiply:
+                return left * right;
+            case divide:
+                if (right != 0)
+                    return left / right;
+                throw new RuntimeException("Attempted division by zero");
+            default:
+                if (right != 0)
+                    return left % right;
+                throw new RuntimeException("Attempted modulo by zero");
+        }
+    }
+
+    public static long math(MathOpNode.MathOperations op, long left, long right) {
+        switch (op) {
+            case add:
+                return left + right;
+            case subtract:
+                return left - right;
+            case multiply:
+                return left * right;
+            case divide:
+                if (right != 0)
+                    return left / right;
+                throw new RuntimeException("Attempted division by zero");
+            default:
+                if (right != 0)
+                    return left % right;
+                throw new RuntimeException("Attempted modulo by zero");
+        }
+    }
+
+    public static double math(MathOpNode.MathOperations op, double left, double right) {
+        switch (op) {
+            case add:
+                return left + right;
+            case subtract:
+                return left - right;
+            case multiply:
+                return left * right;
+            case divide:
+                if (right != 0)
+                    return left / right;
+                throw new RuntimeException("Attempted division by zero");
+            default:
+                if (right != 0)
+                    return left % right;
+                throw new RuntimeException("Attempted modulo by zero");
+        }
+    }
+
+    /**
+     * CompareNode - numbers (of any of the number types), strings and characters can be compared with values of the same type
+     * @param op - the operator
+     * @param left - the left value
+     * @param right - the right value
+     * @return the result
+     */
+    public static BooleanIDT compare(CompareNode.CompareOperations op, InterpreterDataType left, InterpreterDataType right) {
+        if (left instanceof NumberIDT leftNumber && right instanceof NumberIDT rightNumber)
+            return BooleanIDT.of(compare(op, leftNumber.Value, rightNumber.Value));
+        if (left instanceof IntegerIDT leftInteger && right instanceof IntegerIDT rightInteger)
+            return BooleanIDT.of(compare(op, leftInteger.Value, rightInteger.Value));
+        if (isNumeric(left) && isNumeric(right))
+            return BooleanIDT.of(compare(op, toDouble(left), toDouble(right)));
+        if (left instanceof StringIDT leftString && right instanceof StringIDT rightString) {
+            if (op == CompareNode.CompareOperations.eq || op == CompareNode.CompareOperations.ne)
+                return BooleanIDT.of(leftString.equalTo(rightString) == (op == CompareNode.CompareOperations.eq));
+            return BooleanIDT.of(compare(op, leftString.getValue().compareTo(rightString.getValue()), 0));
+        }
+        if (left instanceof CharIDT leftChar && right instanceof CharIDT rightChar)
+            return BooleanIDT.of(compare(op, leftChar.Value, rightChar.Value));
+        throw new RuntimeException("Attempted comparison operation between incompatible types");
+    }
+
+    public static boolean compare(CompareNode.CompareOperations op, float left, float right) {
+        switch (op) {
+            case lt:
+                return left < right;
+            case le:
+                return left <= right;
+            case gt:
+                return left > right;
+            case ge:
+                return left >= right;
+            case eq:
+                return left == right;
+            default:
+                return left != right;
+        }
+    }
+
+    public static boolean compare(CompareNode.CompareOperations op, long left, long right) {
+        switch (op) {
+            case lt:
+                return left < right;
+            case le:
+                return left <= right;
+            case gt:
+                return left > right;
+            case ge:
+                return left >= right;
+            case eq:
+                return left == right;
+            default:
+                return left != right;
+        }
+    }
+
+    public static boolean compare(CompareNode.CompareOperations op, double left, double right) {
+        switch (op) {
+            case lt:
+                return left < right;
+            case le:
+                return left <= right;
+            case gt:
+                return left > right;
+            case ge:
+                return left >= right;
+            case eq:
+                return left == right;
+            default:
+                return left != right;
+        }
+    }
+
+    private static boolean isNumeric(InterpreterDataType value) {
+        return value instanceof NumberIDT || value instanceof IntegerIDT || value instanceof DoubleIDT;
+    }
+
+    private static double toDouble(InterpreterDataType value) {
+        if (value instanceof IntegerIDT integer)
+            return integer.Value;
+        if (value instanceof DoubleIDT number)
+            return number.Value;
+        return ((NumberIDT) value).Value;
+    }
+
+    /**
+     * BooleanOpNode - perform either and/or on two booleans
+     * @param op - the operator
+     * @param left - the left value
+     * @param right - the right value
+     * @return the result
+     */
+    public static BooleanIDT booleanOp(BooleanOpNode.BooleanOperations op, InterpreterDataType left, InterpreterDataType right) {
+        if (left instanceof BooleanIDT leftBool && right instanceof BooleanIDT rightBool) {
+            if (op == BooleanOpNode.BooleanOperations.and)
+                return BooleanIDT.of(leftBool.Value && rightBool.Value);
+            return BooleanIDT.of(leftBool.Value || rightBool.Value);
+        }
+        throw new RuntimeException("Attempted boolean operation between incompatible types");
+    }
+
+    /**
+     * NotOpNode - invert a boolean
+     * @param value - the operand
+     * @return the result
+     */
+    public static BooleanIDT not(InterpreterDataType value) {
+        if (value instanceof BooleanIDT bool)
+            return BooleanIDT.of(!bool.Value);
+        throw new RuntimeException("Attempted not operation on a non-boolean value");
+    }
+}
@@ -0,0 +1,521 @@
+package Interpreter;
+
+import AST.BooleanOpNode;
+import AST.ClassNode;
+import AST.CompareNode;
+import AST.LoopNode;
+import AST.MathOpNode;
+import AST.MethodDeclarationNode;
+
+import java.util.*;
+
+/**
+ * Runs BytecodeFunctions. Each call gets an array of registers instead of the Frame of locals that
+ * interpretMethodCall() builds, so a variable is an array index rather than a string lookup.
+ *
+ * Registers hold IDTs exactly like the locals map does - a parameter register holds the caller's own IDT - so calls
+ * between compiled methods, uncompiled methods and built-ins all behave as they do in the tree walker. Variables the
+ * compiler kept unboxed sit in a float[] or int[] next to the registers, so number loops over them allocate nothing.
+ *
+ * With ExecutionEngine.STACK, a call to a method that is resolved at compile time and compiled itself doesn't go back
+ * through the interpreter: the VM pushes an Activation (a heap object linked to its caller) and carries on in the same
+ * loop, so that recursion uses no Java stack. Every other call still nests as usual.
+ */
+public class RegisterVM {
+    public static final int DEFAULT_MAX_DEPTH = 2_000_000;
+    private static final MathOpNode.MathOperations[] MATH_OPERATIONS = MathOpNode.MathOperations.values();
+    private static final CompareNode.CompareOperations[] COMPARE_OPERATIONS = CompareNode.CompareOperations.values();
+    private static final BooleanOpNode.BooleanOperations[] BOOLEAN_OPERATIONS = BooleanOpNode.BooleanOperations.values();
+    private static final HashMap<String, InterpreterDataType> NO_LOCALS = new HashMap<>();
+    private static final float[] NO_FLOATS = new float[0];
+    private static final int[] NO_INTS = new int[0];
+
+    private final Interpreter interpreter;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    /** calls running in the VM right now, on the Java stack or the explicit one */
+    private int depth = 0;
+    /** the activation that was running last, for error reports */
+    private Activation current;
+
+    public RegisterVM(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * @param function - the compiled method
+     * @param object - the object it runs on (might be empty)
+     * @param values - the parameter values
+     * @return the return values
+     */
+    public List<InterpreterDataType> run(BytecodeFunction function, Optional<ObjectIDT> object, List<InterpreterDataType> values) {
+        return run(function, object, values, false);
+    }
+
+    /**
+     * @param maxDepth - how deep the explicit call stack may get before a call fails (see ExecutionEngine.STACK)
+     */
+    void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * One call on the explicit stack. The caller's activation keeps its pc, so a RETURN can carry on where it left off.
+     */
+    private static final class Activation {
+        final BytecodeFunction function;
+        final Optional<ObjectIDT> object;
+        final InterpreterDataType[] registers;
+        final float[] floats;
+        final int[] ints;
+        final int[] counters;
+        final Map<String, InterpreterDataType> globals;
+        final Activation caller;
+        /** the caller's register for the first return value, or -1 */
+        final int resultRegister;
+        /** the argument values, when the results have to be memoized */
+        final List<InterpreterDataType> memoArguments;
+        int pc;
+
+        Activation(BytecodeFunction function, Optional<ObjectIDT> object, Map<String, InterpreterDataType> globals,
+                   Activation caller, int resultRegister, List<InterpreterDataType> memoArguments) {
+            this.function = function;
+            this.object = object;
+            this.globals = globals;
+            this.caller = caller;
+            this.resultRegister = resultRegister;
+            this.memoArguments = memoArguments;
+            registers = new InterpreterDataType[function.registerCount];
+            floats = function.floatNames.length == 0 ? NO_FLOATS : new float[function.floatNames.length];
+            ints = function.intNames.length == 0 ? NO_INTS : new int[function.intNames.length];
+            counters = function.counterCount == 0 ? NO_INTS : new int[function.counterCount];
+        }
+    }
+
+    /** Added (once) to an error that ends a run on the explicit stack, to say how deep it happened. */
+    private static class CallDepth extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CallDepth(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * @param stacked - run calls to other compiled methods on an explicit stack of Activations instead of the Java
+     * stack, so recursion between them can go as deep as maxDepth
+     */
+    List<InterpreterDataType> run(BytecodeFunction function, Optional<ObjectIDT> object, List<InterpreterDataType> values, boolean stacked) {
+        int entryDepth = depth;
+        Activation entryCurrent = current;
+        // The global members as they were when the method was entered - what a Frame falls back to.
+        Activation frame = enter(function, object, interpreter.globals(), null, -1, null, stacked);
+        for (int i = 0; i < values.size(); i++)
+            frame.registers[i] = values.get(i);
+        try {
+            return execute(frame, stacked);
+        } catch (RuntimeException e) {
+            if (stacked && Arrays.stream(e.getSuppressed()).noneMatch(CallDepth.class::isInstance))
+                e.addSuppressed(new CallDepth("at call depth " + depth + " (" + current.function.method.name + ")"));
+            throw e;
+        } finally {
+            depth = entryDepth;
+            current = entryCurrent;
+        }
+    }
+
+    private Activation enter(BytecodeFunction function, Optional<ObjectIDT> object, Map<String, InterpreterDataType> globals,
+                             Activation caller, int resultRegister, List<InterpreterDataType> memoArguments, boolean stacked) {
+        if (++depth > maxDepth && stacked)
+            throw new RuntimeException("Call stack overflow: recursion depth " + depth + " is over the limit of " + maxDepth + " (calling " + function.method.name + ")");
+        Activation frame = new Activation(function, object, globals, caller, resultRegister, memoArguments);
+        for (int slot : function.characterSlots)
+            frame.ints[slot] = ' ';
+        for (int i = 0; i < function.instantiated.length; i++)
+            frame.registers[function.instantiated[i]] = interpreter.instantiate(function.instantiatedTypes[i]);
+        current = frame;
+        return frame;
+    }
+
+    private List<InterpreterDataType> execute(Activation frame, boolean stacked) {
+        BytecodeFunction function = frame.function;
+        Optional<ObjectIDT> object = frame.object;
+        InterpreterDataType[] registers = frame.registers;
+        float[] floats = frame.floats;
+        int[] ints = frame.ints;
+        int[] counters = frame.counters;
+        Map<String, InterpreterDataType> globals = frame.globals;
+        int[] code = function.code;
+        Object[] constants = function.constants;
+        float[] numbers = function.numberConstants;
+        int[] intConstants = function.intConstants;
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case Bytecode.CONST -> {
+                    registers[code[pc + 1]] = copy((InterpreterDataType) constants[code[pc + 2]]);
+                    pc += 3;
+                }
+                case Bytecode.MOVE -> {
+                    registers[code[pc + 1]] = registers[code[pc + 2]].asVariable();
+                    pc += 3;
+                }
+                case Bytecode.LOAD_MEMBER -> {
+                    registers[code[pc + 1]] = member((BytecodeFunction.MemberSite) constants[code[pc + 2]], object, globals);
+                    pc += 3;
+                }
+                case Bytecode.CHECK -> {
+                    if (registers[code[pc + 1]] == null)
+                        throw new RuntimeException("Unable to find variable " + constants[code[pc + 2]]);
+                    pc += 3;
+                }
+                case Bytecode.ASSIGN -> {
+                    registers[code[pc + 1]].Assign(value(registers, constants, code[pc + 2]));
+                    pc += 3;
+                }
+                case Bytecode.MATH -> {
+                    registers[code[pc + 1]] = Operations.math(MATH_OPERATIONS[code[pc + 4]], value(registers, constants, code[pc + 2]), value(registers, constants, code[pc + 3]));
+                    pc += 5;
+                }
+                case Bytecode.ADD_N, Bytecode.SUB_N, Bytecode.MUL_N, Bytecode.DIV_N, Bytecode.MOD_N -> {
+                    InterpreterDataType left = value(registers, constants, code[pc + 2]);
+                    InterpreterDataType right = value(registers, constants, code[pc + 3]);
+                    MathOpNode.MathOperations op = MATH_OPERATIONS[code[pc] - Bytecode.ADD_N];
+                    if (left instanceof NumberIDT leftNumber && right instanceof NumberIDT rightNumber)
+                        registers[code[pc + 1]] = new NumberIDT(Operations.math(op, leftNumber.Value, rightNumber.Value));
+                    else
+                        registers[code[pc + 1]] = Operations.math(op, left, right);
+                    pc += 4;
+                }
+                case Bytecode.CONCAT -> {
+                    InterpreterDataType left = value(registers, constants, code[pc + 2]);
+                    InterpreterDataType right = value(registers, constants, code[pc + 3]);
+                    if (left instanceof StringIDT leftString && right instanceof StringIDT rightString)
+                        registers[code[pc + 1]] = StringIDT.concat(leftString, rightString);
+                    else
+                        registers[code[pc + 1]] = Operations.math(MathOpNode.MathOperations.add, left, right);
+                    pc += 4;
+                }
+                case Bytecode.CMP -> {
+                    registers[code[pc + 1]] = Operations.compare(COMPARE_OPERATIONS[code[pc + 4]], value(registers, constants, code[pc + 2]), value(registers, constants, code[pc + 3]));
+                    pc += 5;
+                }
+                case Bytecode.CMP_N -> {
+                    registers[code[pc + 1]] = new BooleanIDT(compare(COMPARE_OPERATIONS[code[pc + 4]], value(registers, constants, code[pc + 2]), value(registers, constants, code[pc + 3])));
+                    pc += 5;
+                }
+                case Bytecode.JUMP_UNLESS_N -> {
+                    if (compare(COMPARE_OPERATIONS[code[pc + 3]], value(registers, constants, code[pc + 1]), value(registers, constants, code[pc + 2])))
+                        pc += 5;
+                    else
+                        pc = code[pc + 4];
+                }
+                case Bytecode.BOOL -> {
+                    registers[code[pc + 1]] = Operations.booleanOp(BOOLEAN_OPERATIONS[code[pc + 4]], value(registers, constants, code[pc + 2]), value(registers, constants, code[pc + 3]));
+                    pc += 5;
+                }
+                case Bytecode.NOT -> {
+                    registers[code[pc + 1]] = Operations.not(value(registers, constants, code[pc + 2]));
+                    pc += 3;
+                }
+                case Bytecode.JUMP -> pc = code[pc + 1];
+                case Bytecode.LOOP -> {
+                    interpreter.backEdge((LoopNode) constants[code[pc + 2]]);
+                    pc = code[pc + 1];
+                }
+                case Bytecode.JUMP_FALSE -> {
+                    if (((BooleanIDT) value(registers, constants, code[pc + 1])).Value)
+                        pc += 3;
+                    else
+                        pc = code[pc + 2];
+                }
+                case Bytecode.IF_FALSE -> {
+                    if (value(registers, constants, code[pc + 1]) instanceof BooleanIDT condition)
+                        pc = condition.Value ? pc + 4 : code[pc + 2];
+                    else
+                        pc = code[pc + 3];
+                }
+                case Bytecode.CHECK_BOOL -> {
+                    if (!(value(registers, constants, code[pc + 1]) instanceof BooleanIDT))
+                        throw new RuntimeException("Illegal loop condition");
+                    pc += 2;
+                }
+                case Bytecode.CHECK_TIMES -> {
+                    if (!(value(registers, constants, code[pc + 1]) instanceof NumberIDT))
+                        throw new RuntimeException("Attempted to call iterator on non-numeric value");
+                    pc += 2;
+                }
+                case Bytecode.COUNTER_ZERO -> {
+                    counters[code[pc + 1]] = 0;
+                    pc += 2;
+                }
+                case Bytecode.JUMP_COUNTER_NOT_BELOW -> {
+                    if (counters[code[pc + 1]] < number(floats, numbers, code[pc + 2]))
+                        pc += 4;
+                    else
+                        pc = code[pc + 3];
+                }
+                case Bytecode.COUNTER_INCREMENT -> {
+                    counters[code[pc + 1]]++;
+                    pc += 2;
+                }
+                case Bytecode.CALL -> {
+                    BytecodeFunction.CallSite site = (BytecodeFunction.CallSite) constants[code[pc + 2]];
+                    Optional<BytecodeFunction> callee = stacked && site.target.isPresent() ? interpreter.bytecodeFor(site.target.get()) : Optional.empty();
+                    if (callee.isEmpty()) {
+                        InterpreterDataType result = call(site, registers, constants, object);
+                        if (code[pc + 1] >= 0)
+                            registers[code[pc + 1]] = result;
+                        pc += 3;
+                        continue;
+                    }
+                    // What interpretMethodCall() would do before running the callee, then a push instead of a Java call
+                    MethodDeclarationNode target = site.target.get();
+                    if (target.parameters.size() != site.arguments.length)
+                        throw new RuntimeException("Incorrect number of parameters for given method");
+                    List<InterpreterDataType> memoArguments = null;
+                    if (interpreter.isMemoized(target)) {
+                        memoArguments = new ArrayList<>(site.arguments.length);
+                        for (int argument : site.arguments)
+                            memoArguments.add(value(registers, constants, argument));
+                        Optional<List<InterpreterDataType>> cached = interpreter.getMethodCache().lookup(target, memoArguments);
+                        if (cached.isPresent()) {
+                            if (code[pc + 1] >= 0)
+                                registers[code[pc + 1]] = cached.get().get(0);
+                            pc += 3;
+                            continue;
+                        }
+                    }
+                    Optional<ObjectIDT> runOn = site.isStatement ? interpreter.receiverOf(site.call, (InterpreterDataType) null, object) : object;
+                    frame.pc = pc + 3;
+                    Activation calleeFrame = enter(callee.get(), runOn, interpreter.globals(), frame, code[pc + 1], memoArguments, true);
+                    for (int i = 0; i < site.arguments.length; i++)
+                        calleeFrame.registers[i] = value(registers, constants, site.arguments[i]).asVariable();
+                    frame = calleeFrame;
+                    function = frame.function;
+                    object = frame.object;
+                    registers = frame.registers;
+                    floats = frame.floats;
+                    ints = frame.ints;
+                    counters = frame.counters;
+                    globals = frame.globals;
+                    code = function.code;
+                    constants = function.constants;
+                    numbers = function.numberConstants;
+                    intConstants = function.intConstants;
+                    pc = 0;
+                }
+                case Bytecode.NEW -> {
+                    registers[code[pc + 1]] = construct((BytecodeFunction.NewSite) constants[code[pc + 2]], registers, constants, object);
+                    pc += 3;
+                }
+                case Bytecode.F_MOVE -> {
+                    floats[code[pc + 1]] = number(floats, numbers, code[pc + 2]);
+                    pc += 3;
+                }
+                case Bytecode.F_ADD -> {
+                    floats[code[pc + 1]] = number(floats, numbers, code[pc + 2]) + number(floats, numbers, code[pc + 3]);
+                    pc += 4;
+                }
+                case Bytecode.F_SUB -> {
+                    floats[code[pc + 1]] = number(floats, numbers, code[pc + 2]) - number(floats, numbers, code[pc + 3]);
+                    pc += 4;
+                }
+                case Bytecode.F_MUL -> {
+                    floats[code[pc + 1]] = number(floats, numbers, code[pc + 2]) * number(floats, numbers, code[pc + 3]);
+                    pc += 4;
+                }
+                case Bytecode.F_DIV, Bytecode.F_MOD -> {
+                    // Operations.math() reports division by zero
+                    floats[code[pc + 1]] = Operations.math(MATH_OPERATIONS[code[pc] - Bytecode.F_ADD], number(floats, numbers, code[pc + 2]), number(floats, numbers, code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.F_CMP -> {
+                    ints[code[pc + 1]] = Operations.compare(COMPARE_OPERATIONS[code[pc + 4]], number(floats, numbers, code[pc + 2]), number(floats, numbers, code[pc + 3])) ? 1 : 0;
+                    pc += 5;
+                }
+                case Bytecode.F_JUMP_UNLESS -> {
+                    if (Operations.compare(COMPARE_OPERATIONS[code[pc + 3]], number(floats, numbers, code[pc + 1]), number(floats, numbers, code[pc + 2])))
+                        pc += 5;
+                    else
+                        pc = code[pc + 4];
+                }
+                case Bytecode.F_INCREMENT -> {
+                    floats[code[pc + 1]]++;
+                    pc += 2;
+                }
+                case Bytecode.F_LOAD -> {
+                    floats[code[pc + 1]] = ((NumberIDT) registers[code[pc + 2]]).Value;
+                    pc += 3;
+                }
+                case Bytecode.F_UNBOX -> {
+                    if (value(registers, constants, code[pc + 2]) instanceof NumberIDT number)
+                        floats[code[pc + 1]] = number.Value;
+                    else
+                        new NumberIDT(0).Assign(value(registers, constants, code[pc + 2]));
+                    pc += 3;
+                }
+                case Bytecode.F_BOX -> {
+                    registers[code[pc + 1]] = new NumberIDT(number(floats, numbers, code[pc + 2]));
+                    pc += 3;
+                }
+                case Bytecode.F_STORE -> {
+                    if (registers[code[pc + 1]] instanceof NumberIDT target)
+                        target.Value = number(floats, numbers, code[pc + 2]);
+                    else
+                        registers[code[pc + 1]].Assign(new NumberIDT(number(floats, numbers, code[pc + 2])));
+                    pc += 3;
+                }
+                case Bytecode.I_MOVE -> {
+                    ints[code[pc + 1]] = integer(ints, intConstants, code[pc + 2]);
+                    pc += 3;
+                }
+                case Bytecode.I_JUMP_FALSE -> {
+                    if (integer(ints, intConstants, code[pc + 1]) != 0)
+                        pc += 3;
+                    else
+                        pc = code[pc + 2];
+                }
+                case Bytecode.I_LOAD -> {
+                    ints[code[pc + 1]] = ((BooleanIDT) registers[code[pc + 2]]).Value ? 1 : 0;
+                    pc += 3;
+                }
+                case Bytecode.I_UNBOX -> {
+                    InterpreterDataType value = value(registers, constants, code[pc + 2]);
+                    if (code[pc + 3] == Bytecode.BOOLEAN && value instanceof BooleanIDT bool)
+                        ints[code[pc + 1]] = bool.Value ? 1 : 0;
+                    else if (code[pc + 3] == Bytecode.CHARACTER && value instanceof CharIDT character)
+                        ints[code[pc + 1]] = character.Value;
+                    else
+                        box(0, code[pc + 3]).Assign(value);
+                    pc += 4;
+                }
+                case Bytecode.I_BOX -> {
+                    registers[code[pc + 1]] = box(integer(ints, intConstants, code[pc + 2]), code[pc + 3]);
+                    pc += 4;
+                }
+                case Bytecode.I_STORE -> {
+                    int value = integer(ints, intConstants, code[pc + 2]);
+                    if (code[pc + 3] == Bytecode.BOOLEAN && registers[code[pc + 1]] instanceof BooleanIDT target)
+                        target.Value = value != 0;
+                    else if (code[pc + 3] == Bytecode.CHARACTER && registers[code[pc + 1]] instanceof CharIDT target)
+                        target.Value = (char) value;
+                    else
+                        registers[code[pc + 1]].Assign(box(value, code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.RETURN -> {
+                    List<InterpreterDataType> results = new LinkedList<>();
+                    for (int register : function.returnRegisters)
+                        results.add(registers[register]);
+                    if (frame.caller == null)
+                        return results;
+                    if (frame.memoArguments != null)
+                        interpreter.getMethodCache().store(function.method, frame.memoArguments, results);
+                    int resultRegister = frame.resultRegister;
+                    depth--;
+                    frame = frame.caller;
+                    current = frame;
+                    function = frame.function;
+                    object = frame.object;
+                    registers = frame.registers;
+                    floats = frame.floats;
+                    ints = frame.ints;
+                    counters = frame.counters;
+                    globals = frame.globals;
+                    code = function.code;
+                    constants = function.constants;
+                    numbers = function.numberConstants;
+                    intConstants = function.intConstants;
+                    pc = frame.pc;
+                    if (resultRegister >= 0)
+                        registers[resultRegister] = results.get(0);
+                }
+                default -> throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    // The same order as findVariable(): the object's members, then (since these names aren't locals) the globals.
+    // An object with the shape the site saw last has the member in the same slot.
+    private InterpreterDataType member(BytecodeFunction.MemberSite site, Optional<ObjectIDT> object, Map<String, InterpreterDataType> globals) {
+        InterpreterDataType found;
+        if (object.isPresent()) {
+            ObjectIDT self = object.get();
+            if (self.shape == site.shape)
+                return self.values()[site.slot];
+            int slot = self.shape.slotOf(site.name);
+            if (slot >= 0) {
+                site.shape = self.shape;
+                site.slot = slot;
+                return self.values()[slot];
+            }
+        }
+        if ((found = globals.get(site.name)) != null)
+            return found;
+        return interpreter.findVariable(site.name, NO_LOCALS, object);
+    }
+
+    private InterpreterDataType call(BytecodeFunction.CallSite site, InterpreterDataType[] registers, Object[] constants, Optional<ObjectIDT> object) {
+        InterpreterDataType receiver = site.receiver >= 0 ? registers[site.receiver] : null;
+        Optional<ObjectIDT> runOn = site.isStatement ? interpreter.receiverOf(site.call, receiver, object) : object;
+        List<InterpreterDataType> arguments = new ArrayList<>(site.arguments.length);
+        for (int argument : site.arguments)
+            arguments.add(value(registers, constants, argument).asVariable());
+        List<InterpreterDataType> results;
+        if (site.target.isPresent())
+            results = interpreter.invoke(runOn, site.target.get(), arguments);
+        else if (!site.isStatement && site.call.objectName.isPresent() && receiver != null) {
+            // Outside an object, the interpreter finds "x.method()" by looking for x among the locals.
+            HashMap<String, InterpreterDataType> locals = new HashMap<>();
+            locals.put(site.call.objectName.get(), receiver);
+            results = interpreter.runMethodCall(runOn, locals, site.call, arguments);
+        }
+        else
+            results = interpreter.runMethodCall(runOn, NO_LOCALS, site.call, arguments);
+        return site.isStatement ? null : results.get(0);
+    }
+
+    private InterpreterDataType construct(BytecodeFunction.NewSite site, InterpreterDataType[] registers, Object[] constants, Optional<ObjectIDT> object) {
+        Optional<ClassNode> classNode = interpreter.getClassByName(site.newNode.className);
+        if (classNode.isEmpty())
+            throw new RuntimeException("Class " + site.newNode.className + " not found");
+        ObjectIDT newObject = interpreter.newObject(classNode.get());
+        List<InterpreterDataType> arguments = new ArrayList<>(site.arguments.length);
+        for (int argument : site.arguments)
+            arguments.add(value(registers, constants, argument).asVariable());
+        interpreter.runConstructor(site.newNode, newObject, arguments);
+        return newObject;
+    }
+
+    private static boolean compare(CompareNode.CompareOperations op, InterpreterDataType left, InterpreterDataType right) {
+        if (left instanceof NumberIDT leftNumber && right instanceof NumberIDT rightNumber)
+            return Operations.compare(op, leftNumber.Value, rightNumber.Value);
+        return Operations.compare(op, left, right).Value;
+    }
+
+    private static InterpreterDataType value(InterpreterDataType[] registers, Object[] constants, int operand) {
+        return operand >= 0 ? registers[operand] : (InterpreterDataType) constants[-1 - operand];
+    }
+
+    private static float number(float[] floats, float[] numbers, int operand) {
+        return operand >= 0 ? floats[operand] : numbers[-1 - operand];
+    }
+
+    private static int integer(int[] ints, int[] intConstants, int operand) {
+        return operand >= 0 ? ints[operand] : intConstants[-1 - operand];
+    }
+
+    private static InterpreterDataType box(int value, int type) {
+        return type == Bytecode.BOOLEAN ? new BooleanIDT(value != 0) : new CharIDT((char) value);
+    }
+
+    static InterpreterDataType copy(InterpreterDataType constant) {
+        if (constant instanceof NumberIDT number)
+            return new NumberIDT(number.Value);
+        if (constant instanceof StringIDT string)
+            return new StringIDT(string.getValue());
+        if (constant instanceof CharIDT character)
+            return new CharIDT(character.Value);
+        return new BooleanIDT(((BooleanIDT) constant).Value);
+    }
+}
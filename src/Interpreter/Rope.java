@@ -0,0 +1,129 @@
+package Interpreter;
+
+/**
+ * The text of a StringIDT that was built by concatenation, so that "s = s + x" doesn't copy s every time.
+ *
+ * A StringIDT's text is a String, a Concat of two texts or a Buffer. All three are immutable. Concatenating makes a
+ * Concat (no copying); the text is flattened into a String only when something needs the characters - a comparison,
+ * console.write(), the memoization key - or when the tree gets deeper than MAX_DEPTH.
+ *
+ * Flattening past MAX_DEPTH makes a Buffer: the first characters of a StringBuilder, which is only ever appended to,
+ * so the characters a Buffer covers never change. If nothing has been appended to the builder since the Buffer was
+ * made, the next flatten of a tree that starts with it appends the rest to the same builder instead of copying it.
+ * Appending in a loop therefore costs amortized O(1) per append.
+ */
+final class Rope {
+    static final int MAX_DEPTH = 64;
+
+    private Rope() {
+    }
+
+    private static final class Concat {
+        final Object left;
+        final Object right;
+        final int length;
+        final int depth;
+
+        Concat(Object left, Object right) {
+            this.left = left;
+            this.right = right;
+            length = length(left) + length(right);
+            depth = Math.max(depth(left), depth(right)) + 1;
+        }
+    }
+
+    private static final class Buffer {
+        final StringBuilder builder;
+        final int length;
+        String string;
+
+        Buffer(StringBuilder builder, int length) {
+            this.builder = builder;
+            this.length = length;
+        }
+
+        @Override
+        public String toString() {
+            if (string == null)
+                string = builder.substring(0, length);
+            return string;
+        }
+    }
+
+    /**
+     * @param left - a text
+     * @param right - a text
+     * @return the text of left followed by right
+     */
+    static Object concat(Object left, Object right) {
+        if (length(right) == 0)
+            return left;
+        if (length(left) == 0)
+            return right;
+        Concat concat = new Concat(left, right);
+        return concat.depth > MAX_DEPTH ? flatten(concat) : concat;
+    }
+
+    /**
+     * @param text - a text
+     * @return its characters
+     */
+    static String toString(Object text) {
+        if (text instanceof String string)
+            return string;
+        if (text instanceof Concat concat)
+            return flatten(concat).toString();
+        return text.toString();
+    }
+
+    static int length(Object text) {
+        if (text instanceof String string)
+            return string.length();
+        if (text instanceof Concat concat)
+            return concat.length;
+        return ((Buffer) text).length;
+    }
+
+    private static int depth(Object text) {
+        return text instanceof Concat concat ? concat.depth : 0;
+    }
+
+    private static Buffer flatten(Concat concat) {
+        Object leftmost = concat;
+        while (leftmost instanceof Concat inner)
+            leftmost = inner.left;
+        StringBuilder builder;
+        if (leftmost instanceof Buffer buffer && buffer.builder.length() == buffer.length) {
+            // nothing was appended after this buffer's text, so its builder can take the rest
+            builder = buffer.builder;
+            builder.ensureCapacity(builder.length() + concat.length - buffer.length);
+            appendAfterLeftmost(builder, concat);
+        }
+        else {
+            builder = new StringBuilder(Math.max(16, concat.length * 2));
+            append(builder, concat);
+        }
+        return new Buffer(builder, builder.length());
+    }
+
+    private static void append(StringBuilder builder, Object text) {
+        if (text instanceof String string)
+            builder.append(string);
+        else if (text instanceof Concat concat) {
+            append(builder, concat.left);
+            append(builder, concat.right);
+        }
+        else {
+            Buffer buffer = (Buffer) text;
+            builder.append(buffer.builder, 0, buffer.length);
+        }
+    }
+
+    // Append everything but the leftmost leaf, which is already in the builder.
+    private static void appendAfterLeftmost(StringBuilder builder, Object text) {
+        if (text instanceof Concat concat) {
+            appendAfterLeftmost(builder, concat.left);
+            append(builder, concat.right);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package Interpreter;
+
+import AST.MathOpNode;
+
+/**
+ * Where the tree walker keeps the results of math while it evaluates a statement, so that "a * b + c" doesn't leave a
+ * new NumberIDT behind for each operator. See Interpreter.setScratchTemporaries().
+ *
+ * The region is a stack of IDTs that are reused, not allocated: math() writes its result into the next one. A block
+ * marks the top before each statement and releases back to the mark after it, so a statement's temporaries are reused
+ * by the next one, while those of a caller further down the stack (still waiting on "f(x) + g(y)") are left alone.
+ *
+ * The temporaries are constants (see asVariable()), which is what makes releasing them safe. Nothing keeps a result
+ * as it is: Assign() copies its value into the target, and whatever stores a result as a variable - a parameter, a
+ * return value, a loop variable, a member - takes asVariable() of it, which is a durable copy. Only those are left
+ * once the statement ends.
+ *
+ * An Interpreter runs a program on one thread at a time, so each has one region.
+ */
+class Scratch {
+    private InterpreterDataType[] slots = new InterpreterDataType[16];
+    private int top;
+
+    /**
+     * @return the top of the stack, to release() back to
+     */
+    int mark() {
+        return top;
+    }
+
+    /**
+     * Make the temporaries above a mark free for reuse.
+     * @param mark - what mark() returned
+     */
+    void release(int mark) {
+        top = mark;
+    }
+
+    /**
+     * @return how many temporaries the region holds - the most that were ever in use at once
+     */
+    int size() {
+        int size = 0;
+        while (size < slots.length && slots[size] != null)
+            size++;
+        return size;
+    }
+
+    /**
+     * Operations.math(), with the result in the region. Mixed types aren't worth a slot and go to Operations.math().
+     * @param op - the operator
+     * @param left - the left value
+     * @param right - the right value
+     * @return the result, which is only good until the statement ends
+     */
+    InterpreterDataType math(MathOpNode.MathOperations op, InterpreterDataType left, InterpreterDataType right) {
+        if (left instanceof NumberIDT leftNumber && right instanceof NumberIDT rightNumber) {
+            float value = Operations.math(op, leftNumber.Value, rightNumber.Value);
+            NumberIDT result = slot() instanceof NumberIDT number ? number : push(NumberIDT.scratch());
+            result.Value = value;
+            return result;
+        }
+        if (left instanceof IntegerIDT leftInteger && right instanceof IntegerIDT rightInteger) {
+            long value = Operations.math(op, leftInteger.Value, rightInteger.Value);
+            IntegerIDT result = slot() instanceof IntegerIDT integer ? integer : push(IntegerIDT.scratch());
+            result.Value = value;
+            return result;
+        }
+        if (left instanceof DoubleIDT leftDouble && right instanceof DoubleIDT rightDouble) {
+            double value = Operations.math(op, leftDouble.Value, rightDouble.Value);
+            DoubleIDT result = slot() instanceof DoubleIDT number ? number : push(DoubleIDT.scratch());
+            result.Value = value;
+            return result;
+        }
+        if (left instanceof StringIDT leftString && right instanceof StringIDT rightString && op == MathOpNode.MathOperations.add) {
+            StringIDT result = slot() instanceof StringIDT string ? string : push(StringIDT.scratch());
+            result.join(leftString, rightString);
+            return result;
+        }
+        return Operations.math(op, left, right);
+    }
+
+    // The next free temporary (null if there isn't one yet, or a different type), taken.
+    private InterpreterDataType slot() {
+        if (top == slots.length) {
+            InterpreterDataType[] bigger = new InterpreterDataType[slots.length * 2];
+            System.arraycopy(slots, 0, bigger, 0, slots.length);
+            slots = bigger;
+        }
+        return slots[top++];
+    }
+
+    // Put a new temporary in the slot that slot() just took.
+    private <T extends InterpreterDataType> T push(T temporary) {
+        slots[top - 1] = temporary;
+        return temporary;
+    }
+}
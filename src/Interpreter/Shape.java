@@ -0,0 +1,70 @@
+package Interpreter;
+
+import java.util.HashMap;
+
+/**
+ * The layout of an ObjectIDT's members (a "hidden class"): which slot of the object's value array holds each member.
+ *
+ * Shapes are shared. An object starts with its class's empty shape and moves to a child shape each time it gets a
+ * member it didn't have; the child for a name is made once and reused, so objects that got the same members in the same
+ * order have the same shape. Code that finds a member can then remember the shape and the slot and, for the next
+ * object with that shape, load the slot directly (see RegisterVM's LOAD_MEMBER).
+ */
+public class Shape {
+    private final String[] names;
+    private final HashMap<String, Integer> slots;
+    private final HashMap<String, Shape> transitions = new HashMap<>();
+
+    /**
+     * An empty shape, for the objects of one class.
+     */
+    Shape() {
+        names = new String[0];
+        slots = new HashMap<>();
+    }
+
+    private Shape(Shape parent, String name) {
+        names = new String[parent.names.length + 1];
+        System.arraycopy(parent.names, 0, names, 0, parent.names.length);
+        names[parent.names.length] = name;
+        slots = new HashMap<>(parent.slots);
+        slots.put(name, parent.names.length);
+    }
+
+    /**
+     * @param name - a member name
+     * @return its slot, or -1 if objects of this shape don't have it
+     */
+    int slotOf(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @param name - a member that objects of this shape don't have
+     * @return the shape of such an object once it has it (in the last slot)
+     */
+    Shape with(String name) {
+        Shape next = transitions.get(name);
+        if (next == null) {
+            next = new Shape(this, name);
+            transitions.put(name, next);
+        }
+        return next;
+    }
+
+    /**
+     * @return how many slots an object of this shape has
+     */
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * @param slot - a slot
+     * @return the name of the member in it
+     */
+    String nameAt(int slot) {
+        return names[slot];
+    }
+}
@@ -0,0 +1,284 @@
+package Interpreter;
+
+import AST.MethodCallStatementNode;
+
+import java.util.HashMap;
+import java.util.Optional;
+
+/**
+ * The executable statement nodes made by the NodeCompiler. Each one does exactly what interpretStatementBlock() does
+ * for its statement - down to the order of lookups and evaluations, and the errors.
+ */
+public class StatementNodes {
+    public static class Block extends ExecutableStatement {
+        private final ExecutableStatement[] statements;
+
+        Block(ExecutableStatement[] statements) {
+            this.statements = statements;
+        }
+
+        @Override
+        public void execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            for (ExecutableStatement statement : statements)
+                statement.execute(locals, object);
+        }
+    }
+
+    /**
+     * Specializes to storing a raw float when the target and the value have been numbers (or a raw long for integers).
+     */
+    public static class Assign extends ExecutableStatement {
+        private enum State { UNINITIALIZED, NUMBER, INTEGER, GENERIC }
+
+        private final Interpreter interpreter;
+        private final String target;
+        private final ExecutableExpression expression;
+        private State state = State.UNINITIALIZED;
+
+        Assign(Interpreter interpreter, String target, ExecutableExpression expression) {
+            this.interpreter = interpreter;
+            this.target = target;
+            this.expression = expression;
+        }
+
+        @Override
+        public void execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            InterpreterDataType variable = interpreter.findVariable(target, locals, object);
+            if (state == State.NUMBER && variable instanceof NumberIDT number) {
+                try {
+                    number.Value = expression.executeNumber(locals, object);
+                } catch (UnexpectedResultException e) {
+                    state = State.GENERIC;
+                    variable.Assign(e.result);
+                }
+                return;
+            }
+            if (state == State.INTEGER && variable instanceof IntegerIDT integer) {
+                try {
+                    integer.Value = expression.executeInteger(locals, object);
+                } catch (UnexpectedResultException e) {
+                    state = State.GENERIC;
+                    variable.Assign(e.result);
+                }
+                return;
+            }
+            InterpreterDataType value = expression.execute(locals, object);
+            if (state == State.UNINITIALIZED && variable instanceof NumberIDT && value instanceof NumberIDT)
+                state = State.NUMBER;
+            else if (state == State.UNINITIALIZED && variable instanceof IntegerIDT && value instanceof IntegerIDT)
+                state = State.INTEGER;
+            else
+                state = State.GENERIC;
+            variable.Assign(value);
+        }
+    }
+
+    /**
+     * The parameters are evaluated inside the object the call runs on, as interpretStatementBlock() does.
+     */
+    public static class Call extends ExecutableStatement {
+        private final Interpreter interpreter;
+        private final MethodCallStatementNode call;
+        private final ExecutableExpression[] arguments;
+
+        Call(Interpreter interpreter, MethodCallStatementNode call, ExecutableExpression[] arguments) {
+            this.interpreter = interpreter;
+            this.call = call;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public void execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            Optional<ObjectIDT> receiver = interpreter.receiverOf(call, locals, object);
+            interpreter.runMethodCall(receiver, locals, call, ExpressionNodes.evaluateAll(arguments, locals, receiver));
+        }
+    }
+
+    /**
+     * A condition that isn't a boolean runs neither branch.
+     */
+    public static class If extends ExecutableStatement {
+        private final ExecutableExpression condition;
+        private final ExecutableStatement then;
+        private final Optional<ExecutableStatement> otherwise;
+
+        If(ExecutableExpression condition, ExecutableStatement then, Optional<ExecutableStatement> otherwise) {
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        public void execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            boolean result;
+            try {
+                result = condition.executeBoolean(locals, object);
+            } catch (UnexpectedResultException e) {
+                return;
+            }
+            if (result)
+                then.execute(locals, object);
+            else if (otherwise.isPresent())
+                otherwise.get().execute(locals, object);
+        }
+    }
+
+    /**
+     * A loop that the tree walker can hand over to part way through (on-stack replacement).
+     */
+    public abstract static class Loop extends ExecutableStatement {
+        /**
+         * Finish a loop that the tree walker has been running: its body has just run for the passes'th time, and
+         * everything else the loop depends on (the variable, the counter) is in the locals.
+         * @param locals - the tree walker's local variables
+         * @param object - the current object
+         * @param passes - how many times the body has run so far
+         */
+        public abstract void resume(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, int passes);
+    }
+
+    /**
+     * A boolean loop without a variable. The condition is evaluated once up front just to check that it is a boolean.
+     */
+    public static class While extends Loop {
+        private final ExecutableExpression condition;
+        private final ExecutableStatement body;
+
+        While(ExecutableExpression condition, ExecutableStatement body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        public void execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            try {
+                condition.executeBoolean(locals, object);
+            } catch (UnexpectedResultException e) {
+                throw new RuntimeException("Illegal loop condition");
+            }
+            while (test(locals, object))
+                body.execute(locals, object);
+        }
+
+        @Override
+        public void resume(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, int passes) {
+            while (test(locals, object))
+                body.execute(locals, object);
+        }
+
+        private boolean test(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            try {
+                return condition.executeBoolean(locals, object);
+            } catch (UnexpectedResultException e) {
+                return ((BooleanIDT) e.result).Value;
+            }
+        }
+    }
+
+    /**
+     * A boolean loop with a variable: the condition's IDT itself is put into the locals under the variable's name.
+     */
+    public static class WhileWithVariable extends Loop {
+        private final String variable;
+        private final ExecutableExpression condition;
+        private final ExecutableStatement body;
+
+        WhileWithVariable(String variable, ExecutableExpression condition, ExecutableStatement body) {
+            this.variable = variable;
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        public void execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            InterpreterDataType first = condition.execute(locals, object);
+            if (!(first instanceof BooleanIDT))
+                throw new RuntimeException("Illegal loop condition");
+            locals.put(variable, first.asVariable());
+            while (((BooleanIDT) locals.get(variable)).Value) {
+                body.execute(locals, object);
+                locals.put(variable, condition.execute(locals, object).asVariable());
+            }
+        }
+
+        @Override
+        public void resume(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, int passes) {
+            locals.put(variable, condition.execute(locals, object).asVariable());
+            while (((BooleanIDT) locals.get(variable)).Value) {
+                body.execute(locals, object);
+                locals.put(variable, condition.execute(locals, object).asVariable());
+            }
+        }
+    }
+
+    /**
+     * "loop [variable =] counter.times()". The counter is only looked up in the locals. An integer counter counts with
+     * an integer variable.
+     */
+    public static class Times extends Loop {
+        private final Optional<String> variable;
+        private final String counter;
+        private final ExecutableStatement body;
+
+        Times(Optional<String> variable, String counter, ExecutableStatement body) {
+            this.variable = variable;
+            this.counter = counter;
+            this.body = body;
+        }
+
+        @Override
+        public void execute(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object) {
+            InterpreterDataType limit = locals.get(counter);
+            if (!(limit instanceof NumberIDT) && !(limit instanceof IntegerIDT))
+                throw new RuntimeException("Attempted to call iterator on non-numeric value");
+            if (variable.isPresent()) {
+                locals.put(variable.get(), limit instanceof IntegerIDT ? new IntegerIDT(0) : new NumberIDT(0));
+                countWithVariable(locals, object, variable.get());
+            }
+            else
+                count(locals, object, 0);
+        }
+
+        @Override
+        public void resume(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, int passes) {
+            if (variable.isPresent()) {
+                String name = variable.get();
+                if (locals.get(name) instanceof IntegerIDT integer)
+                    integer.Value++;
+                else
+                    ((NumberIDT) locals.get(name)).Value++;
+                countWithVariable(locals, object, name);
+            }
+            else
+                count(locals, object, passes);
+        }
+
+        private void countWithVariable(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, String name) {
+            if (locals.get(name) instanceof IntegerIDT) {
+                while (((IntegerIDT) locals.get(name)).Value < ((IntegerIDT) locals.get(counter)).Value) {
+                    body.execute(locals, object);
+                    ((IntegerIDT) locals.get(name)).Value++;
+                }
+                return;
+            }
+            while (((NumberIDT) locals.get(name)).Value < ((NumberIDT) locals.get(counter)).Value) {
+                body.execute(locals, object);
+                ((NumberIDT) locals.get(name)).Value++;
+            }
+        }
+
+        private void count(HashMap<String, InterpreterDataType> locals, Optional<ObjectIDT> object, long i) {
+            if (locals.get(counter) instanceof IntegerIDT) {
+                while (i < ((IntegerIDT) locals.get(counter)).Value) {
+                    body.execute(locals, object);
+                    i++;
+                }
+                return;
+            }
+            while (i < ((NumberIDT) locals.get(counter)).Value) {
+                body.execute(locals, object);
+                i++;
+            }
+        }
+    }
+}
@@ -1,23 +1,135 @@
 package Interpreter;
 
 public class StringIDT implements InterpreterDataType {
-    public String Value;
+    // a String, or a rope built by concat() (see Rope)
+    private Object text;
+    // text is the StringInterner's copy of the string (see StringInterner)
+    private boolean interned;
+    private final boolean constant;
 
     public StringIDT(String s) {
-        Value = s;
+        this(s, false);
+    }
+
+    private StringIDT(Object text, boolean constant) {
+        this.text = text;
+        this.constant = constant;
+        if (text instanceof String string)
+            intern(string);
+    }
+
+    /**
+     * @param s - a value
+     * @return a constant StringIDT holding it, which may be shared (see asVariable())
+     */
+    public static StringIDT of(String s) {
+        return new StringIDT(s, true);
+    }
+
+    /**
+     * "left + right" without copying either side; the characters are copied when something needs them (see Rope).
+     * @param left - the first string
+     * @param right - the second string
+     * @return a new StringIDT holding the two joined
+     */
+    public static StringIDT concat(StringIDT left, StringIDT right) {
+        charge(left, right);
+        return new StringIDT(Rope.concat(left.text, right.text), false);
+    }
+
+    /**
+     * @param text - a String or a rope (see Rope), from code the JvmCompiler generated
+     * @return a new StringIDT holding it
+     */
+    static StringIDT ofText(Object text) {
+        return new StringIDT(text, false);
+    }
+
+    /**
+     * @return the text of this string, without flattening it (for generated code - see JvmRuntime)
+     */
+    Object text() {
+        return text;
+    }
+
+    /**
+     * @return a constant whose text a Scratch region rewrites for each result it holds
+     */
+    static StringIDT scratch() {
+        return new StringIDT("", true);
+    }
+
+    /**
+     * concat(), into this scratch() string instead of a new one.
+     * @param left - the first string
+     * @param right - the second string
+     */
+    void join(StringIDT left, StringIDT right) {
+        charge(left, right);
+        text = Rope.concat(left.text, right.text);
+        interned = false;
+        if (text instanceof String string)
+            intern(string);
+    }
+
+    // Count the characters a concatenation will copy against the program running on this thread (see MemoryAccount).
+    private static void charge(StringIDT left, StringIDT right) {
+        MemoryAccount account = MemoryAccount.current();
+        if (account != null)
+            account.allocateString(Math.min(Rope.length(left.text), Rope.length(right.text)));
+    }
+
+    /**
+     * @return the characters of this string
+     */
+    public String getValue() {
+        if (!(text instanceof String)) {
+            text = Rope.toString(text);
+            intern((String) text);
+        }
+        return (String) text;
+    }
+
+    /**
+     * @param other - another string
+     * @return whether the two hold the same characters - decided by identity alone when both are interned
+     */
+    boolean equalTo(StringIDT other) {
+        if (text == other.text)
+            return true;
+        if (interned && other.interned)
+            return false;
+        return getValue().equals(other.getValue());
+    }
+
+    // Hold the current interner's copy of the string instead, if there is one and the string isn't too long for it.
+    private void intern(String string) {
+        StringInterner interner = StringInterner.current();
+        if (interner != null && string.length() <= StringInterner.MAX_LENGTH) {
+            text = interner.intern(string);
+            interned = true;
+        }
     }
 
     @Override
     public void Assign(InterpreterDataType in) {
+        if (constant)
+            throw new IllegalStateException("Assigning to the constant " + getValue());
         if (in instanceof StringIDT inv) {
-            Value = inv.Value;
+            text = inv.text;
+            interned = inv.interned;
         } else {
             throw new RuntimeException("Trying to assign to a string IDT from a " + in.getClass());
         }
     }
 
+    @Override
+    public InterpreterDataType asVariable() {
+        return constant ? new StringIDT(text, false) : this;
+    }
+
     @Override
     public String toString() {
-        return Value;
+        return getValue();
     }
 }
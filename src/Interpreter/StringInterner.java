@@ -0,0 +1,68 @@
+package Interpreter;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Makes equal strings share one String, for programs whose data repeats the same few strings (names, categories) over
+ * and over. See Interpreter.setStringInterning().
+ *
+ * While a program with interning on runs, a StringIDT that holds a String (rather than a rope - see Rope) of at most
+ * MAX_LENGTH characters holds the table's copy of it, so the duplicates are garbage. Two such StringIDTs are equal
+ * exactly when they hold the same String, which lets == and != compare them by identity (see StringIDT.equalTo()).
+ *
+ * The table is weak: a string stays in it only while something else still holds it. So it never keeps a string alive,
+ * and it never drops one that is still in use - which is what makes the identity test safe. Longer strings are left
+ * alone: they are rarely repeated, and hashing them costs more than sharing them saves.
+ *
+ * Like MemoryAccount, the interner of the program running on the current thread is current().
+ */
+class StringInterner {
+    static final int MAX_LENGTH = 64;
+
+    private static final ThreadLocal<StringInterner> CURRENT = new ThreadLocal<>();
+
+    private final WeakHashMap<String, WeakReference<String>> table = new WeakHashMap<>();
+    private long shared;
+
+    /**
+     * @param string - a string of at most MAX_LENGTH characters
+     * @return the table's copy of it
+     */
+    String intern(String string) {
+        WeakReference<String> found = table.get(string);
+        String copy = found == null ? null : found.get();
+        if (copy != null) {
+            if (copy != string)
+                shared++;
+            return copy;
+        }
+        table.put(string, new WeakReference<>(string));
+        return string;
+    }
+
+    /**
+     * @return how many times a string was replaced by an equal one the table already had
+     */
+    long shared() {
+        return shared;
+    }
+
+    /**
+     * @return the interner of the program running on this thread, or null if it doesn't intern strings
+     */
+    static StringInterner current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Make an interner current() for this thread.
+     * @param interner - the interner, or null for none
+     * @return the interner that was current before
+     */
+    static StringInterner bind(StringInterner interner) {
+        StringInterner previous = CURRENT.get();
+        CURRENT.set(interner);
+        return previous;
+    }
+}
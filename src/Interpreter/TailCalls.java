@@ -0,0 +1,60 @@
+package Interpreter;
+
+import AST.*;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Finds the self tail calls in a program: call statements that are the last thing a method does (the last statement of
+ * its body, or the last statement of either branch of an "if" that is itself last) and that call the method itself,
+ * with its results going to the method's own returns:
+ *      sum(number n, number acc) : number total
+ *          if n > 0
+ *              total = sum(n - 1, acc + n)
+ *          else
+ *              total = acc
+ *
+ * The call has no object name and the right number of arguments. Whether it really reaches the same method depends on
+ * the object it runs on, so the interpreter still checks that before it runs the call as a tail call.
+ */
+public class TailCalls {
+    private TailCalls() {
+    }
+
+    /**
+     * @param methods - every method in the program
+     * @return each self tail call, with the method it is in
+     */
+    static IdentityHashMap<MethodCallStatementNode, MethodDeclarationNode> find(List<MethodDeclarationNode> methods) {
+        IdentityHashMap<MethodCallStatementNode, MethodDeclarationNode> tailCalls = new IdentityHashMap<>();
+        for (MethodDeclarationNode method : methods)
+            addTailCalls(method, method.statements, tailCalls);
+        return tailCalls;
+    }
+
+    private static void addTailCalls(MethodDeclarationNode method, List<StatementNode> statements, IdentityHashMap<MethodCallStatementNode, MethodDeclarationNode> tailCalls) {
+        if (statements.isEmpty())
+            return;
+        StatementNode last = statements.getLast();
+        if (last instanceof MethodCallStatementNode call && isSelfCall(method, call))
+            tailCalls.put(call, method);
+        else if (last instanceof IfNode ifNode) {
+            addTailCalls(method, ifNode.statements, tailCalls);
+            if (ifNode.elseStatement.isPresent())
+                addTailCalls(method, ifNode.elseStatement.get().statements, tailCalls);
+        }
+    }
+
+    private static boolean isSelfCall(MethodDeclarationNode method, MethodCallStatementNode call) {
+        if (call.objectName.isPresent() || !call.methodName.equals(method.name) || call.parameters.size() != method.parameters.size())
+            return false;
+        if (call.returnValues.size() != method.returns.size())
+            return false;
+        for (int i = 0; i < call.returnValues.size(); i++) {
+            if (!call.returnValues.get(i).name.equals(method.returns.get(i).name))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,196 @@
+package Interpreter;
+
+import AST.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The counters behind ExecutionEngine.TIERED. Every method starts in the tree walker. Each call counts as an
+ * invocation and each pass through one of its loops as a back edge; when either count reaches its threshold the method
+ * moves up a tier (tree walker, then bytecode, then JVM - skipping a tier that can't compile it) and both counts start
+ * again from zero. The move takes effect the next time the method is called.
+ *
+ * A method that is only called once (start(), typically) never gets a next call, so loops are also moved up on their
+ * own: once a loop in the tree walker has made the back edge threshold of passes, the rest of it runs as executable
+ * nodes (on-stack replacement - see Interpreter.backEdge()).
+ */
+public class TieredExecution {
+    public static final int DEFAULT_INVOCATION_THRESHOLD = 500;
+    public static final int DEFAULT_BACK_EDGE_THRESHOLD = 5000;
+    private static final ExecutionEngine[] TIERS = { ExecutionEngine.TREE_WALKER, ExecutionEngine.BYTECODE, ExecutionEngine.JVM };
+
+    private final int invocationThreshold;
+    private final int backEdgeThreshold;
+    private final Predicate<MethodDeclarationNode> compilesToBytecode;
+    private final Predicate<MethodDeclarationNode> compilesToJvm;
+    private final IdentityHashMap<MethodDeclarationNode, Counters> counters = new IdentityHashMap<>();
+    private final List<Counters> allCounters = new ArrayList<>();
+    private final IdentityHashMap<LoopNode, Counters> loopOwners = new IdentityHashMap<>();
+    private final IdentityHashMap<LoopNode, Integer> backEdges = new IdentityHashMap<>();
+    private final IdentityHashMap<LoopNode, String> loopNames = new IdentityHashMap<>();
+    private final Set<LoopNode> replacedLoops = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<String> transitions = new ArrayList<>();
+
+    private static class Counters {
+        final String name;
+        int tier = 0;
+        int invocations = 0;
+        int backEdges = 0;
+        long totalInvocations = 0;
+        long totalBackEdges = 0;
+        int loops = 0;
+        /** no higher tier can run this method, so stop checking */
+        boolean settled = false;
+
+        Counters(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * @param top - the program
+     * @param invocationThreshold - calls in a tier before moving up
+     * @param backEdgeThreshold - loop iterations in a tier before moving up
+     * @param compilesToBytecode - can the BYTECODE engine run a method?
+     * @param compilesToJvm - can the JVM engine run a method?
+     */
+    public TieredExecution(TranNode top, int invocationThreshold, int backEdgeThreshold,
+                           Predicate<MethodDeclarationNode> compilesToBytecode, Predicate<MethodDeclarationNode> compilesToJvm) {
+        this.invocationThreshold = invocationThreshold;
+        this.backEdgeThreshold = backEdgeThreshold;
+        this.compilesToBytecode = compilesToBytecode;
+        this.compilesToJvm = compilesToJvm;
+        for (ClassNode classNode : top.Classes) {
+            for (MethodDeclarationNode method : classNode.methods) {
+                if (method instanceof BuiltInMethodDeclarationNode)
+                    continue;
+                Counters methodCounters = new Counters(classNode.name + "." + method.name);
+                counters.put(method, methodCounters);
+                allCounters.add(methodCounters);
+                findLoops(method.statements, methodCounters);
+            }
+        }
+    }
+
+    private void findLoops(List<StatementNode> statements, Counters owner) {
+        for (StatementNode statement : statements) {
+            if (statement instanceof LoopNode loop) {
+                loopOwners.put(loop, owner);
+                loopNames.put(loop, owner.name + " loop " + (++owner.loops));
+                findLoops(loop.statements, owner);
+            }
+            else if (statement instanceof IfNode ifNode) {
+                findLoops(ifNode.statements, owner);
+                if (ifNode.elseStatement.isPresent())
+                    findLoops(ifNode.elseStatement.get().statements, owner);
+            }
+        }
+    }
+
+    /**
+     * Count a call, moving the method up a tier if it has reached a threshold.
+     * @param method - the method being called
+     * @return the engine to run this call with
+     */
+    ExecutionEngine enter(MethodDeclarationNode method) {
+        Counters methodCounters = counters.get(method);
+        if (methodCounters == null)
+            return ExecutionEngine.TREE_WALKER;
+        methodCounters.invocations++;
+        methodCounters.totalInvocations++;
+        if (!methodCounters.settled) {
+            if (methodCounters.invocations >= invocationThreshold)
+                promote(method, methodCounters, methodCounters.invocations + " calls");
+            else if (methodCounters.backEdges >= backEdgeThreshold)
+                promote(method, methodCounters, methodCounters.backEdges + " loop iterations");
+        }
+        return TIERS[methodCounters.tier];
+    }
+
+    /**
+     * Count one more pass through a loop.
+     * @param loop - the loop
+     */
+    void backEdge(LoopNode loop) {
+        backEdges.merge(loop, 1, Integer::sum);
+        Counters owner = loopOwners.get(loop);
+        if (owner != null) {
+            owner.backEdges++;
+            owner.totalBackEdges++;
+        }
+    }
+
+    /**
+     * @param loop - a loop in the tree walker that has just made a pass
+     * @return should the rest of the loop be run by a faster tier?
+     */
+    boolean shouldReplace(LoopNode loop) {
+        int passes = backEdges.get(loop);
+        if (passes < backEdgeThreshold)
+            return false;
+        if (replacedLoops.add(loop))
+            transitions.add(loopNames.getOrDefault(loop, "loop") + ": TREE_WALKER -> NODES (on-stack replacement) after " + passes + " loop iterations");
+        return true;
+    }
+
+    private void promote(MethodDeclarationNode method, Counters methodCounters, String reason) {
+        int next = methodCounters.tier + 1;
+        while (next < TIERS.length && !canRun(TIERS[next], method))
+            next++;
+        if (next == TIERS.length) {
+            methodCounters.settled = true;
+            return;
+        }
+        transitions.add(methodCounters.name + ": " + TIERS[methodCounters.tier] + " -> " + TIERS[next] + " after " + reason);
+        methodCounters.tier = next;
+        methodCounters.invocations = 0;
+        methodCounters.backEdges = 0;
+        methodCounters.settled = next == TIERS.length - 1;
+    }
+
+    private boolean canRun(ExecutionEngine tier, MethodDeclarationNode method) {
+        return tier == ExecutionEngine.BYTECODE ? compilesToBytecode.test(method) : compilesToJvm.test(method);
+    }
+
+    /**
+     * @param method - a method
+     * @return the tier its next call will start in
+     */
+    public ExecutionEngine tierOf(MethodDeclarationNode method) {
+        Counters methodCounters = counters.get(method);
+        return methodCounters == null ? ExecutionEngine.TREE_WALKER : TIERS[methodCounters.tier];
+    }
+
+    /**
+     * @param loop - a loop
+     * @return how many times its body has run (while the tiers were being counted)
+     */
+    public int getBackEdges(LoopNode loop) {
+        return backEdges.getOrDefault(loop, 0);
+    }
+
+    /**
+     * @return every promotion so far, in order, like "Example.start: TREE_WALKER -> BYTECODE after 500 calls"
+     */
+    public List<String> getTransitions() {
+        return transitions;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("tier thresholds: " + invocationThreshold + " calls, " + backEdgeThreshold + " loop iterations\n");
+        for (String transition : transitions)
+            report.append(transition).append('\n');
+        for (Counters methodCounters : allCounters) {
+            if (methodCounters.totalInvocations > 0)
+                report.append(methodCounters.name).append(": ").append(methodCounters.totalInvocations).append(" calls, ")
+                        .append(methodCounters.totalBackEdges).append(" loop iterations, ").append(TIERS[methodCounters.tier]).append('\n');
+        }
+        return report.toString();
+    }
+}
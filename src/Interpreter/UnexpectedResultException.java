@@ -0,0 +1,17 @@
+package Interpreter;
+
+/**
+ * Thrown by the typed execute methods of an executable expression when the value isn't of the type asked for. Carries
+ * the value (which has already been computed, so it must not be computed again) back to the caller, which then falls
+ * back to its generic code. Happens once per node at most, so there is no stack trace.
+ */
+public class UnexpectedResultException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public final transient InterpreterDataType result;
+
+    public UnexpectedResultException(InterpreterDataType result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+}
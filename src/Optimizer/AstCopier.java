@@ -0,0 +1,158 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Deep copies statements and expressions, renaming variables on the way. Used when a pass duplicates a body into
+ * another method.
+ *
+ * Every name the interpreter looks up is passed through the rename function: variable references, assignment targets,
+ * loop variables, return value targets and the object name of a method call. A variable reference can also be replaced
+ * by a whole expression (which is itself copied for every use).
+ */
+public class AstCopier {
+    private final Function<String, String> rename;
+    private final Map<String, ExpressionNode> substitutions;
+
+    /**
+     * @param rename - maps an old name to a new one (return the name itself to keep it)
+     * @param substitutions - variable references to replace with an expression instead of renaming
+     */
+    public AstCopier(Function<String, String> rename, Map<String, ExpressionNode> substitutions) {
+        this.rename = rename;
+        this.substitutions = substitutions;
+    }
+
+    public List<StatementNode> copyBlock(List<StatementNode> statements) {
+        List<StatementNode> copy = new ArrayList<>(statements.size());
+        for (StatementNode statement : statements)
+            copy.add(copyStatement(statement));
+        return copy;
+    }
+
+    public StatementNode copyStatement(StatementNode statement) {
+        if (statement instanceof AssignmentNode assignment) {
+            AssignmentNode copy = new AssignmentNode();
+            copy.target = reference(rename.apply(assignment.target.name));
+            copy.expression = copyExpression(assignment.expression);
+            return copy;
+        }
+        if (statement instanceof MethodCallStatementNode methodCall) {
+            MethodCallStatementNode copy = new MethodCallStatementNode();
+            copy.objectName = methodCall.objectName.map(rename);
+            copy.methodName = methodCall.methodName;
+            copy.parameters = copyExpressions(methodCall.parameters);
+            copy.returnValues = new LinkedList<>();
+            for (VariableReferenceNode returnValue : methodCall.returnValues)
+                copy.returnValues.add(reference(rename.apply(returnValue.name)));
+            return copy;
+        }
+        if (statement instanceof IfNode ifNode) {
+            IfNode copy = new IfNode();
+            copy.condition = copyExpression(ifNode.condition);
+            copy.statements = copyBlock(ifNode.statements);
+            copy.elseStatement = ifNode.elseStatement.map(elseNode -> {
+                ElseNode elseCopy = new ElseNode();
+                elseCopy.statements = copyBlock(elseNode.statements);
+                return elseCopy;
+            });
+            return copy;
+        }
+        if (statement instanceof LoopNode loop) {
+            LoopNode copy = new LoopNode();
+            copy.assignment = loop.assignment.map(variable -> reference(rename.apply(variable.name)));
+            copy.expression = copyExpression(loop.expression);
+            copy.statements = copyBlock(loop.statements);
+            return copy;
+        }
+        throw new IllegalArgumentException("Unknown statement " + statement);
+    }
+
+    public ExpressionNode copyExpression(ExpressionNode expression) {
+        if (expression instanceof VariableReferenceNode variable) {
+            if (substitutions.containsKey(variable.name))
+                return new AstCopier(Function.identity(), Map.of()).copyExpression(substitutions.get(variable.name));
+            return reference(rename.apply(variable.name));
+        }
+        if (expression instanceof NumericLiteralNode number)
+            return ConstantFolder.numericLiteral(number.value);
+        if (expression instanceof IntegerLiteralNode integer) {
+            IntegerLiteralNode copy = new IntegerLiteralNode();
+            copy.value = integer.value;
+            return copy;
+        }
+        if (expression instanceof DoubleLiteralNode number) {
+            DoubleLiteralNode copy = new DoubleLiteralNode();
+            copy.value = number.value;
+            return copy;
+        }
+        if (expression instanceof StringLiteralNode string)
+            return ConstantFolder.stringLiteral(string.value);
+        if (expression instanceof CharLiteralNode character) {
+            CharLiteralNode copy = new CharLiteralNode();
+            copy.value = character.value;
+            return copy;
+        }
+        if (expression instanceof BooleanLiteralNode bool)
+            return new BooleanLiteralNode(bool.value);
+        if (expression instanceof MathOpNode math) {
+            MathOpNode copy = new MathOpNode();
+            copy.op = math.op;
+            copy.left = copyExpression(math.left);
+            copy.right = copyExpression(math.right);
+            return copy;
+        }
+        if (expression instanceof CompareNode compare) {
+            CompareNode copy = new CompareNode();
+            copy.op = compare.op;
+            copy.left = copyExpression(compare.left);
+            copy.right = copyExpression(compare.right);
+            return copy;
+        }
+        if (expression instanceof BooleanOpNode boolOp) {
+            BooleanOpNode copy = new BooleanOpNode();
+            copy.op = boolOp.op;
+            copy.left = copyExpression(boolOp.left);
+            copy.right = copyExpression(boolOp.right);
+            return copy;
+        }
+        if (expression instanceof NotOpNode not) {
+            NotOpNode copy = new NotOpNode();
+            copy.left = copyExpression(not.left);
+            return copy;
+        }
+        if (expression instanceof MethodCallExpressionNode methodCall) {
+            MethodCallExpressionNode copy = new MethodCallExpressionNode();
+            copy.objectName = methodCall.objectName.map(rename);
+            copy.methodName = methodCall.methodName;
+            copy.parameters = copyExpressions(methodCall.parameters);
+            return copy;
+        }
+        if (expression instanceof NewNode newNode) {
+            NewNode copy = new NewNode();
+            copy.className = newNode.className;
+            copy.parameters = copyExpressions(newNode.parameters);
+            return copy;
+        }
+        throw new IllegalArgumentException("Unknown expression " + expression);
+    }
+
+    private List<ExpressionNode> copyExpressions(List<ExpressionNode> expressions) {
+        List<ExpressionNode> copy = new ArrayList<>(expressions.size());
+        for (ExpressionNode expression : expressions)
+            copy.add(copyExpression(expression));
+        return copy;
+    }
+
+    static VariableReferenceNode reference(String name) {
+        VariableReferenceNode reference = new VariableReferenceNode();
+        reference.name = name;
+        return reference;
+    }
+}
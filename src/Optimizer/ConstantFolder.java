@@ -0,0 +1,140 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.Optional;
+
+/**
+ * Folds literal-only subexpressions (60 * 60 * 24, "a" + "b", 3 < 4, ...) into a single literal and applies the
+ * algebraic identities that are exact for the interpreter's float arithmetic:
+ *      x * 1, 1 * x, x / 1, x - 0  =>  x        (x known to be a number)
+ *      x + "", "" + x              =>  x        (x known to be a string)
+ *      (x + "a") + "b"             =>  x + "ab" (x known to be a string)
+ * x + 0 is deliberately left alone: -0.0 + 0 is 0.0, so it is not an identity for floats.
+ *
+ * Anything that would throw at runtime (division by zero, mismatched types) is left for the interpreter to report.
+ */
+public class ConstantFolder extends TreeRewriter {
+    public ConstantFolder(TranNode top) {
+        super(top);
+    }
+
+    @Override
+    protected ExpressionNode transformExpression(ExpressionNode expression, boolean isArgument) {
+        if (expression instanceof VariableReferenceNode variable && (variable.name.equals("true") || variable.name.equals("false")))
+            return new BooleanLiteralNode(variable.name.equals("true"));
+        if (expression instanceof MathOpNode math)
+            return foldMath(math, isArgument);
+        if (expression instanceof CompareNode compare)
+            return foldCompare(compare).map(value -> (ExpressionNode) new BooleanLiteralNode(value)).orElse(compare);
+        if (expression instanceof BooleanOpNode boolOp) {
+            if (boolOp.left instanceof BooleanLiteralNode left && boolOp.right instanceof BooleanLiteralNode right)
+                return new BooleanLiteralNode(boolOp.op == BooleanOpNode.BooleanOperations.and ? left.value && right.value : left.value || right.value);
+            return boolOp;
+        }
+        if (expression instanceof NotOpNode not && not.left instanceof BooleanLiteralNode value)
+            return new BooleanLiteralNode(!value.value);
+        return expression;
+    }
+
+    private ExpressionNode foldMath(MathOpNode math, boolean isArgument) {
+        if (math.left instanceof NumericLiteralNode left && math.right instanceof NumericLiteralNode right) {
+            Optional<Float> result = foldNumbers(math.op, left.value, right.value);
+            if (result.isPresent())
+                return numericLiteral(result.get());
+            return math;
+        }
+        if (math.left instanceof StringLiteralNode left && math.right instanceof StringLiteralNode right && math.op == MathOpNode.MathOperations.add)
+            return stringLiteral(left.value + right.value);
+        // The identities below hand back a variable instead of a fresh value - not allowed when a callee receives it.
+        if (isArgument)
+            return math;
+        if (isNumber(math.left) && math.right instanceof NumericLiteralNode right) {
+            if ((right.value == 1 && (math.op == MathOpNode.MathOperations.multiply || math.op == MathOpNode.MathOperations.divide))
+                    || (isPositiveZero(right.value) && math.op == MathOpNode.MathOperations.subtract))
+                return math.left;
+        }
+        if (math.left instanceof NumericLiteralNode left && left.value == 1 && math.op == MathOpNode.MathOperations.multiply && isNumber(math.right))
+            return math.right;
+        if (math.op == MathOpNode.MathOperations.add) {
+            if (math.right instanceof StringLiteralNode right && right.value.isEmpty() && isString(math.left))
+                return math.left;
+            if (math.left instanceof StringLiteralNode left && left.value.isEmpty() && isString(math.right))
+                return math.right;
+            if (math.right instanceof StringLiteralNode right && math.left instanceof MathOpNode inner && inner.op == MathOpNode.MathOperations.add
+                    && inner.right instanceof StringLiteralNode innerRight && isString(inner.left)) {
+                inner.right = stringLiteral(innerRight.value + right.value);
+                return inner;
+            }
+        }
+        return math;
+    }
+
+    /**
+     * Do the arithmetic exactly the way evaluate() does on two NumberIDTs.
+     * @return the result, or empty if the interpreter would throw instead
+     */
+    static Optional<Float> foldNumbers(MathOpNode.MathOperations op, float left, float right) {
+        switch (op) {
+            case add -> {return Optional.of(left + right);}
+            case subtract -> {return Optional.of(left - right);}
+            case multiply -> {return Optional.of(left * right);}
+            case divide -> {return right != 0 ? Optional.of(left / right) : Optional.empty();}
+            case modulo -> {return right != 0 ? Optional.of(left % right) : Optional.empty();}
+        }
+        throw new AssertionError("Unreachable");
+    }
+
+    /**
+     * Compare two literals exactly the way evaluate() does.
+     * @return the result, or empty if the operands aren't literals of the same type
+     */
+    static Optional<Boolean> foldCompare(CompareNode compare) {
+        if (compare.left instanceof NumericLiteralNode left && compare.right instanceof NumericLiteralNode right)
+            return Optional.of(compareResult(compare.op, left.value == right.value, left.value < right.value, left.value > right.value));
+        if (compare.left instanceof StringLiteralNode left && compare.right instanceof StringLiteralNode right) {
+            int order = left.value.compareTo(right.value);
+            return Optional.of(compareResult(compare.op, order == 0, order < 0, order > 0));
+        }
+        if (compare.left instanceof CharLiteralNode left && compare.right instanceof CharLiteralNode right)
+            return Optional.of(compareResult(compare.op, left.value == right.value, left.value < right.value, left.value > right.value));
+        return Optional.empty();
+    }
+
+    // Floats can't be reduced to a compareTo() result - NaN is neither less, greater nor equal - so the three tests are passed in.
+    private static boolean compareResult(CompareNode.CompareOperations op, boolean equal, boolean less, boolean greater) {
+        switch (op) {
+            case lt -> {return less;}
+            case le -> {return less || equal;}
+            case gt -> {return greater;}
+            case ge -> {return greater || equal;}
+            case eq -> {return equal;}
+            case ne -> {return !equal;}
+        }
+        throw new AssertionError("Unreachable");
+    }
+
+    private boolean isNumber(ExpressionNode expression) {
+        return scope.typeOf(expression).filter(type -> type.equals("number")).isPresent();
+    }
+
+    private boolean isString(ExpressionNode expression) {
+        return scope.typeOf(expression).filter(type -> type.equals("string")).isPresent();
+    }
+
+    private static boolean isPositiveZero(float value) {
+        return Float.floatToRawIntBits(value) == 0;
+    }
+
+    static NumericLiteralNode numericLiteral(float value) {
+        NumericLiteralNode literal = new NumericLiteralNode();
+        literal.value = value;
+        return literal;
+    }
+
+    static StringLiteralNode stringLiteral(String value) {
+        StringLiteralNode literal = new StringLiteralNode();
+        literal.value = value;
+        return literal;
+    }
+}
@@ -0,0 +1,115 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Removes code that can never run or whose results are never used:
+ *      if true / if false          => the branch that is taken (spliced into the enclosing block)
+ *      loop false (no variable)    => removed
+ *      statements after "loop true" (no variable) - the loop can only be left by an exception
+ *      assignments to locals that are never read, when the value is safe to skip (see Effects)
+ *      locals that are never mentioned, so interpretMethodCall() doesn't have to instantiate them
+ *
+ * Run the ConstantFolder first - it is what turns most conditions into literals.
+ */
+public class DeadCodeEliminator extends TreeRewriter {
+    public DeadCodeEliminator(TranNode top) {
+        super(top);
+    }
+
+    @Override
+    protected List<StatementNode> rewriteBody(List<VariableDeclarationNode> locals, List<StatementNode> statements) {
+        List<StatementNode> body = rewriteBlock(statements);
+        boolean changed = true;
+        while (changed) {
+            VariableUsage usage = VariableUsage.of(body);
+            changed = false;
+            for (VariableDeclarationNode local : locals) {
+                if (!usage.reads.contains(local.name) && usage.writes.contains(local.name) && !scope.isMember(local.name))
+                    changed |= removeDeadStores(body, local);
+            }
+        }
+        VariableUsage usage = VariableUsage.of(body);
+        locals.removeIf(local -> !usage.mentions(local.name));
+        return body;
+    }
+
+    @Override
+    protected List<StatementNode> rewriteBlock(List<StatementNode> statements) {
+        List<StatementNode> rewritten = super.rewriteBlock(statements);
+        for (int i = 0; i < rewritten.size(); i++) {
+            if (rewritten.get(i) instanceof LoopNode loop && loop.assignment.isEmpty() && isLiteral(loop.expression, true))
+                return new ArrayList<>(rewritten.subList(0, i + 1));
+        }
+        return rewritten;
+    }
+
+    @Override
+    protected List<StatementNode> rewriteStatement(StatementNode statement) {
+        List<StatementNode> rewritten = super.rewriteStatement(statement);
+        if (statement instanceof IfNode ifNode) {
+            if (isLiteral(ifNode.condition, true))
+                return ifNode.statements;
+            if (isLiteral(ifNode.condition, false))
+                return ifNode.elseStatement.isPresent() ? ifNode.elseStatement.get().statements : List.of();
+        }
+        if (statement instanceof LoopNode loop && loop.assignment.isEmpty() && isLiteral(loop.expression, false))
+            return List.of();
+        return rewritten;
+    }
+
+    // Removes every "local = value" in the block (and nested blocks) when the value is safe to skip.
+    // Leaves all of them if any one can't go, so the variable stays consistent.
+    private boolean removeDeadStores(List<StatementNode> block, VariableDeclarationNode local) {
+        List<AssignmentNode> stores = new ArrayList<>();
+        if (!collectStores(block, local, stores))
+            return false;
+        removeStores(block, stores);
+        return !stores.isEmpty();
+    }
+
+    private boolean collectStores(List<StatementNode> block, VariableDeclarationNode local, List<AssignmentNode> stores) {
+        for (StatementNode statement : block) {
+            if (statement instanceof AssignmentNode assignment && assignment.target.name.equals(local.name)) {
+                if (!Effects.isSafe(assignment.expression, scope) || !scope.typeOf(assignment.expression).orElse("").equals(local.type))
+                    return false;
+                stores.add(assignment);
+            }
+            else if (statement instanceof IfNode ifNode) {
+                if (!collectStores(ifNode.statements, local, stores))
+                    return false;
+                if (ifNode.elseStatement.isPresent() && !collectStores(ifNode.elseStatement.get().statements, local, stores))
+                    return false;
+            }
+            else if (statement instanceof LoopNode loop && !collectStores(loop.statements, local, stores))
+                return false;
+        }
+        return true;
+    }
+
+    private void removeStores(List<StatementNode> block, List<AssignmentNode> stores) {
+        Iterator<StatementNode> iterator = block.iterator();
+        while (iterator.hasNext()) {
+            StatementNode statement = iterator.next();
+            if (stores.contains(statement))
+                iterator.remove();
+            else if (statement instanceof IfNode ifNode) {
+                removeStores(ifNode.statements, stores);
+                if (ifNode.elseStatement.isPresent())
+                    removeStores(ifNode.elseStatement.get().statements, stores);
+            }
+            else if (statement instanceof LoopNode loop)
+                removeStores(loop.statements, stores);
+        }
+    }
+
+    private static boolean isLiteral(ExpressionNode expression, boolean value) {
+        if (expression instanceof BooleanLiteralNode literal)
+            return literal.value == value;
+        return expression instanceof VariableReferenceNode variable && variable.name.equals(value ? "true" : "false");
+    }
+}
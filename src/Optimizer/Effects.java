@@ -0,0 +1,46 @@
+package Optimizer;
+
+import AST.*;
+
+/**
+ * Effect analysis for expressions.
+ *
+ * An expression is "safe" when evaluating it can neither change anything nor throw - so it can be removed, duplicated
+ * or evaluated at a different time without anyone noticing. Method calls and constructors are never safe: the callee
+ * can write members and, since arguments are passed as the caller's own IDTs, the caller's variables too. Nor is
+ * reading a member that isn't always there (see TypeScope.isMemberAlwaysFound()), since that read throws.
+ */
+public class Effects {
+    /**
+     * @param expression - the expression to check
+     * @param scope - the types of the names visible where the expression is evaluated
+     * @return can this expression be evaluated without side effects and without throwing?
+     */
+    public static boolean isSafe(ExpressionNode expression, TypeScope scope) {
+        if (expression instanceof NumericLiteralNode || expression instanceof StringLiteralNode
+                || expression instanceof CharLiteralNode || expression instanceof BooleanLiteralNode
+                || expression instanceof IntegerLiteralNode || expression instanceof DoubleLiteralNode)
+            return true;
+        if (expression instanceof VariableReferenceNode variable) {
+            if (variable.name.equals("true") || variable.name.equals("false"))
+                return true;
+            return (scope.isDeclared(variable.name) || scope.isMemberAlwaysFound(variable.name)) && scope.typeOf(variable.name).isPresent();
+        }
+        if (expression instanceof MathOpNode math) {
+            if (!isSafe(math.left, scope) || !isSafe(math.right, scope) || scope.typeOf(math).isEmpty())
+                return false;
+            if (math.op == MathOpNode.MathOperations.divide || math.op == MathOpNode.MathOperations.modulo)
+                return (math.right instanceof NumericLiteralNode divisor && divisor.value != 0)
+                        || (math.right instanceof IntegerLiteralNode integer && integer.value != 0)
+                        || (math.right instanceof DoubleLiteralNode number && number.value != 0);
+            return true;
+        }
+        if (expression instanceof CompareNode compare)
+            return isSafe(compare.left, scope) && isSafe(compare.right, scope) && scope.typeOf(compare).isPresent();
+        if (expression instanceof BooleanOpNode boolOp)
+            return isSafe(boolOp.left, scope) && isSafe(boolOp.right, scope) && scope.typeOf(boolOp).isPresent();
+        if (expression instanceof NotOpNode not)
+            return isSafe(not.left, scope) && scope.typeOf(not).isPresent();
+        return false;
+    }
+}
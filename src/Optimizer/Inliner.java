@@ -0,0 +1,398 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.*;
+
+/**
+ * Replaces calls to small leaf methods with the methods' bodies, so they don't pay for interpretMethodCall() (the copy
+ * of every member, the locals, the return list) and the method lookup.
+ *
+ * A callee can be inlined when:
+ *      it is a leaf - it doesn't call anything or create objects - and is no bigger than the size budget (in AST nodes)
+ *      its name is unique in the program and it is in the caller's class, so an unqualified call always finds it
+ *      its parameters, locals and returns are primitives and don't share a name with any member
+ *      every other name it uses is a member that the caller doesn't hide with a variable of its own
+ *
+ * Calls used as an expression are replaced by the one expression that computes the return value:
+ *      getAverage() : number avg                 console.write(getAverage())
+ *          avg = (gradea + gradeb + gradec)/3  =>  console.write((gradea + gradeb + gradec)/3)
+ * Call statements are replaced by the body, with the callee's locals and returns renamed to new locals of the caller
+ * ($inlN_name) that are reset to their default first. A parameter whose argument is a plain variable becomes that
+ * variable - the interpreter passes the IDT itself, so the callee's writes to it were already visible to the caller.
+ * Other arguments are stored into new locals first.
+ *
+ * Inlining repeats (up to three rounds) since a method can become a leaf once its own calls are inlined.
+ */
+public class Inliner extends TreeRewriter {
+    public static final int DEFAULT_BUDGET = 40;
+    private static final int MAX_ROUNDS = 3;
+
+    private final int budget;
+    private final List<String> report = new ArrayList<>();
+    private final HashMap<String, Integer> methodNameCounts = new HashMap<>();
+    private final HashMap<MethodDeclarationNode, ClassNode> owners = new HashMap<>();
+    private boolean membersMayBeRebound;
+    private boolean changed;
+    private List<VariableDeclarationNode> currentLocals;
+    private int siteCount;
+
+    public Inliner(TranNode top, int budget) {
+        super(top);
+        this.budget = budget;
+    }
+
+    /**
+     * @return one line per inlined call site: "Class.caller: inlined callee"
+     */
+    public List<String> getReport() {
+        return report;
+    }
+
+    @Override
+    public void run() {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            analyze();
+            changed = false;
+            super.run();
+            if (!changed)
+                return;
+        }
+    }
+
+    private void analyze() {
+        methodNameCounts.clear();
+        owners.clear();
+        // After a call swaps the global members, callee and caller no longer see members the same way.
+        membersMayBeRebound = TypeScope.membersMaySwap(top);
+        for (ClassNode classNode : top.Classes) {
+            for (MethodDeclarationNode method : classNode.methods) {
+                methodNameCounts.merge(method.name, 1, Integer::sum);
+                owners.put(method, classNode);
+            }
+        }
+    }
+
+    @Override
+    protected List<StatementNode> rewriteBody(List<VariableDeclarationNode> locals, List<StatementNode> statements) {
+        currentLocals = locals;
+        return rewriteBlock(statements);
+    }
+
+    @Override
+    protected List<StatementNode> rewriteStatement(StatementNode statement) {
+        List<StatementNode> rewritten = super.rewriteStatement(statement);
+        if (statement instanceof MethodCallStatementNode call && call.objectName.isEmpty()) {
+            Optional<MethodDeclarationNode> callee = findInlinable(call.methodName, call.parameters.size());
+            if (callee.isPresent()) {
+                Optional<List<StatementNode>> body = inlineStatement(call, callee.get());
+                if (body.isPresent()) {
+                    record(callee.get());
+                    return body.get();
+                }
+            }
+        }
+        return rewritten;
+    }
+
+    @Override
+    protected ExpressionNode transformExpression(ExpressionNode expression, boolean isArgument) {
+        if (expression instanceof MethodCallExpressionNode call && call.objectName.isEmpty()) {
+            Optional<MethodDeclarationNode> callee = findInlinable(call.methodName, call.parameters.size());
+            if (callee.isPresent()) {
+                Optional<ExpressionNode> inlined = inlineExpression(call, callee.get());
+                if (inlined.isPresent()) {
+                    record(callee.get());
+                    return inlined.get();
+                }
+            }
+        }
+        return expression;
+    }
+
+    private Optional<MethodDeclarationNode> findInlinable(String name, int argumentCount) {
+        if (methodNameCounts.getOrDefault(name, 0) != 1)
+            return Optional.empty();
+        for (MethodDeclarationNode method : currentClass.methods) {
+            if (method.name.equals(name) && !(method instanceof BuiltInMethodDeclarationNode) && currentMethod.orElse(null) != method
+                    && method.parameters.size() == argumentCount && isReachable(method) && isSmallLeaf(method)
+                    && allDeclarationsPrimitive(method) && ownNamesAreNotMembers(method))
+                return Optional.of(method);
+        }
+        return Optional.empty();
+    }
+
+    // A shared method may run inside an object of another class, where an unqualified call only finds that class's
+    // methods and the shared ones - so a call from there to a non-shared method fails. Keep that failure.
+    private boolean isReachable(MethodDeclarationNode callee) {
+        return callee.isShared || currentMethod.isEmpty() || !currentMethod.get().isShared;
+    }
+
+    private boolean isSmallLeaf(MethodDeclarationNode method) {
+        VariableUsage usage = VariableUsage.of(method.statements);
+        return !usage.hasMethodCalls && !usage.hasNew && size(method.statements) <= budget;
+    }
+
+    private boolean ownNamesAreNotMembers(MethodDeclarationNode method) {
+        for (VariableDeclarationNode declaration : declarations(method)) {
+            if (scope.isMember(declaration.name))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Replace "callee(args)" used as a value with the expression the callee assigns to its only return value.
+     */
+    private Optional<ExpressionNode> inlineExpression(MethodCallExpressionNode call, MethodDeclarationNode callee) {
+        if (callee.returns.size() != 1 || !callee.locals.isEmpty() || callee.statements.size() != 1
+                || !(callee.statements.getFirst() instanceof AssignmentNode assignment)
+                || !assignment.target.name.equals(callee.returns.getFirst().name))
+            return Optional.empty();
+        // The call produces the callee's own return IDT; a plain variable here would hand out the variable's IDT instead.
+        if (assignment.expression instanceof VariableReferenceNode)
+            return Optional.empty();
+        TypeScope calleeScope = new TypeScope(top, callee.parameters, callee.locals, callee.returns);
+        if (!isPrimitive(callee.returns.getFirst().type) || !calleeScope.typeOf(assignment.expression).orElse("").equals(callee.returns.getFirst().type))
+            return Optional.empty();
+        VariableUsage usage = VariableUsage.of(assignment.expression);
+        if (usage.reads.contains(assignment.target.name))
+            return Optional.empty();
+
+        HashMap<String, ExpressionNode> substitutions = new HashMap<>();
+        for (int i = 0; i < callee.parameters.size(); i++) {
+            ExpressionNode argument = call.parameters.get(i);
+            if (!Effects.isSafe(argument, scope))
+                return Optional.empty();
+            boolean trivial = argument instanceof VariableReferenceNode || argument instanceof NumericLiteralNode
+                    || argument instanceof StringLiteralNode || argument instanceof CharLiteralNode || argument instanceof BooleanLiteralNode
+                    || argument instanceof IntegerLiteralNode || argument instanceof DoubleLiteralNode;
+            if (!trivial && countReads(assignment.expression, callee.parameters.get(i).name) > 1)
+                return Optional.empty();
+            substitutions.put(callee.parameters.get(i).name, argument);
+        }
+        if (!freeNamesVisible(usage.reads, callee))
+            return Optional.empty();
+        return Optional.of(new AstCopier(name -> name, substitutions).copyExpression(assignment.expression));
+    }
+
+    /**
+     * Replace a call statement with a renamed copy of the callee's body.
+     */
+    private Optional<List<StatementNode>> inlineStatement(MethodCallStatementNode call, MethodDeclarationNode callee) {
+        VariableUsage usage = VariableUsage.of(callee.statements);
+        // A loop variable is put straight into the locals: for a parameter that would re-bind the caller's variable,
+        // for an undeclared name it would leave a new local behind in the caller. "times" loops only look in the locals,
+        // which don't hold the members in a constructor.
+        for (String name : loopNames(callee.statements)) {
+            if (!isDeclaredIn(callee, name) || isParameter(callee, name))
+                return Optional.empty();
+        }
+        Set<String> free = new HashSet<>(usage.reads);
+        free.addAll(usage.writes);
+        free.addAll(usage.returnTargets);
+        for (VariableDeclarationNode declaration : declarations(callee))
+            free.remove(declaration.name);
+        if (!freeNamesVisible(free, callee))
+            return Optional.empty();
+
+        int site = siteCount++;
+        List<StatementNode> inlined = new ArrayList<>();
+        HashMap<String, String> names = new HashMap<>();
+        for (int i = 0; i < callee.parameters.size(); i++) {
+            VariableDeclarationNode parameter = callee.parameters.get(i);
+            ExpressionNode argument = call.parameters.get(i);
+            if (argument instanceof VariableReferenceNode variable) {
+                if (!Effects.isSafe(variable, scope))
+                    return Optional.empty();
+                names.put(parameter.name, variable.name);
+            }
+            else {
+                // Storing into a typed local checks the type; the original call wouldn't have.
+                if (!scope.typeOf(argument).orElse("").equals(parameter.type))
+                    return Optional.empty();
+                names.put(parameter.name, newLocal(site, parameter));
+                inlined.add(assign(names.get(parameter.name), argument));
+            }
+        }
+        for (VariableDeclarationNode declaration : concat(callee.locals, callee.returns)) {
+            names.put(declaration.name, newLocal(site, declaration));
+            inlined.add(assign(names.get(declaration.name), defaultValue(declaration.type)));
+        }
+        inlined.addAll(new AstCopier(name -> names.getOrDefault(name, name), Map.of()).copyBlock(callee.statements));
+        return Optional.of(inlined);
+    }
+
+    // Names the callee finds among the members must mean the same thing in the caller.
+    private boolean freeNamesVisible(Set<String> names, MethodDeclarationNode callee) {
+        for (String name : names) {
+            if (name.equals("true") || name.equals("false") || isDeclaredIn(callee, name))
+                continue;
+            if (!scope.isMember(name) || scope.isBound(name) || membersMayBeRebound)
+                return false;
+        }
+        return true;
+    }
+
+    private String newLocal(int site, VariableDeclarationNode original) {
+        VariableDeclarationNode declaration = new VariableDeclarationNode();
+        declaration.name = "$inl" + site + "_" + original.name;
+        declaration.type = original.type;
+        currentLocals.add(declaration);
+        scope.declare(declaration.name, declaration.type);
+        return declaration.name;
+    }
+
+    private void record(MethodDeclarationNode callee) {
+        changed = true;
+        String caller = currentMethod.map(method -> method.name).orElse("construct");
+        report.add(currentClass.name + "." + caller + ": inlined " + owners.get(callee).name + "." + callee.name);
+    }
+
+    static boolean allDeclarationsPrimitive(MethodDeclarationNode method) {
+        for (VariableDeclarationNode declaration : declarations(method)) {
+            if (!isPrimitive(declaration.type))
+                return false;
+        }
+        return true;
+    }
+
+    static boolean isPrimitive(String type) {
+        return type.equals("number") || type.equals("string") || type.equals("boolean") || type.equals("character")
+                || type.equals("integer") || type.equals("double");
+    }
+
+    static boolean isDeclaredIn(MethodDeclarationNode method, String name) {
+        for (VariableDeclarationNode declaration : declarations(method)) {
+            if (declaration.name.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    static boolean isParameter(MethodDeclarationNode method, String name) {
+        for (VariableDeclarationNode parameter : method.parameters) {
+            if (parameter.name.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param statements - a block
+     * @return the loop variables, and the counters of "times" loops, used in it
+     */
+    static Set<String> loopNames(List<StatementNode> statements) {
+        Set<String> names = new HashSet<>();
+        for (StatementNode statement : statements) {
+            if (statement instanceof LoopNode loop) {
+                loop.assignment.ifPresent(variable -> names.add(variable.name));
+                if (loop.expression instanceof MethodCallExpressionNode mc && mc.objectName.isPresent() && mc.methodName.equals("times"))
+                    names.add(mc.objectName.get());
+                names.addAll(loopNames(loop.statements));
+            }
+            else if (statement instanceof IfNode ifNode) {
+                names.addAll(loopNames(ifNode.statements));
+                if (ifNode.elseStatement.isPresent())
+                    names.addAll(loopNames(ifNode.elseStatement.get().statements));
+            }
+        }
+        return names;
+    }
+
+    static List<VariableDeclarationNode> declarations(MethodDeclarationNode method) {
+        List<VariableDeclarationNode> all = new ArrayList<>(method.parameters);
+        all.addAll(method.locals);
+        all.addAll(method.returns);
+        return all;
+    }
+
+    private static List<VariableDeclarationNode> concat(List<VariableDeclarationNode> first, List<VariableDeclarationNode> second) {
+        List<VariableDeclarationNode> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    static AssignmentNode assign(String name, ExpressionNode value) {
+        AssignmentNode assignment = new AssignmentNode();
+        assignment.target = AstCopier.reference(name);
+        assignment.expression = value;
+        return assignment;
+    }
+
+    /**
+     * @param type - a primitive type name
+     * @return a literal with the value instantiate() gives a new variable of that type
+     */
+    static ExpressionNode defaultValue(String type) {
+        switch (type) {
+            case "number":
+                return ConstantFolder.numericLiteral(0);
+            case "integer":
+                return new IntegerLiteralNode();
+            case "double":
+                return new DoubleLiteralNode();
+            case "string":
+                return ConstantFolder.stringLiteral("");
+            case "boolean":
+                return new BooleanLiteralNode(false);
+            default:
+                CharLiteralNode character = new CharLiteralNode();
+                character.value = ' ';
+                return character;
+        }
+    }
+
+    private static int countReads(ExpressionNode expression, String name) {
+        if (expression instanceof VariableReferenceNode variable)
+            return variable.name.equals(name) ? 1 : 0;
+        if (expression instanceof MathOpNode math)
+            return countReads(math.left, name) + countReads(math.right, name);
+        if (expression instanceof CompareNode compare)
+            return countReads(compare.left, name) + countReads(compare.right, name);
+        if (expression instanceof BooleanOpNode boolOp)
+            return countReads(boolOp.left, name) + countReads(boolOp.right, name);
+        if (expression instanceof NotOpNode not)
+            return countReads(not.left, name);
+        return 0;
+    }
+
+    /**
+     * @param statements - a block
+     * @return how many AST nodes (statements and expressions) it contains
+     */
+    static int size(List<StatementNode> statements) {
+        int size = 0;
+        for (StatementNode statement : statements) {
+            size++;
+            if (statement instanceof AssignmentNode assignment)
+                size += size(assignment.expression);
+            else if (statement instanceof MethodCallStatementNode methodCall)
+                for (ExpressionNode parameter : methodCall.parameters)
+                    size += size(parameter);
+            else if (statement instanceof IfNode ifNode)
+                size += size(ifNode.condition) + size(ifNode.statements) + ifNode.elseStatement.map(elseNode -> size(elseNode.statements)).orElse(0);
+            else if (statement instanceof LoopNode loop)
+                size += size(loop.expression) + size(loop.statements);
+        }
+        return size;
+    }
+
+    private static int size(ExpressionNode expression) {
+        if (expression instanceof MathOpNode math)
+            return 1 + size(math.left) + size(math.right);
+        if (expression instanceof CompareNode compare)
+            return 1 + size(compare.left) + size(compare.right);
+        if (expression instanceof BooleanOpNode boolOp)
+            return 1 + size(boolOp.left) + size(boolOp.right);
+        if (expression instanceof NotOpNode not)
+            return 1 + size(not.left);
+        if (expression instanceof MethodCallExpressionNode methodCall) {
+            int size = 1;
+            for (ExpressionNode parameter : methodCall.parameters)
+                size += size(parameter);
+            return size;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,265 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.*;
+
+/**
+ * Hoists loop-invariant expressions out of loops. Each invariant expression in a loop's body or condition is computed
+ * once, into a new local, just ahead of the loop:
+ *      loop n < limit * 2                 $licm0 = limit * 2
+ *          total = total + rate * 3  =>   $licm1 = rate * 3
+ *          n = n + 1                      loop n < $licm0
+ *                                             total = total + $licm1
+ *                                             n = n + 1
+ * Only expressions that are safe to evaluate early (see Effects) and whose variables the loop can't change are moved.
+ * The loop can change a variable by assigning it, by using it as a loop variable and - through method calls - by
+ * writing members or the caller's variables it passed as arguments. Parameters, members and loop variables can be
+ * other names for the same IDT, so writing any one of them makes all of them variant.
+ *
+ * Inner loops are handled first; the assignments hoisted out of them move further out when the outer loop doesn't
+ * change them either.
+ */
+public class LoopInvariantCodeMotion extends TreeRewriter {
+    private static final String TEMP_PREFIX = "$licm";
+    private List<VariableDeclarationNode> currentLocals;
+    private List<StatementNode> currentBody;
+    private int tempCount;
+
+    public LoopInvariantCodeMotion(TranNode top) {
+        super(top);
+    }
+
+    @Override
+    protected List<StatementNode> rewriteBody(List<VariableDeclarationNode> locals, List<StatementNode> statements) {
+        currentLocals = locals;
+        currentBody = statements;
+        tempCount = 0;
+        return rewriteBlock(statements);
+    }
+
+    @Override
+    protected List<StatementNode> rewriteBlock(List<StatementNode> statements) {
+        List<StatementNode> rewritten = new ArrayList<>(statements.size());
+        for (StatementNode statement : statements) {
+            for (StatementNode replacement : rewriteStatement(statement)) {
+                if (replacement instanceof LoopNode loop)
+                    rewritten.addAll(hoist(loop));
+                rewritten.add(replacement);
+            }
+        }
+        return rewritten;
+    }
+
+    /**
+     * @param loop - a loop whose body has already been processed
+     * @return the assignments to run ahead of the loop
+     */
+    private List<StatementNode> hoist(LoopNode loop) {
+        List<StatementNode> hoisted = new ArrayList<>();
+        Set<String> variant = variantNames(loop);
+        Iterator<StatementNode> iterator = loop.statements.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() instanceof AssignmentNode assignment && assignment.target.name.startsWith(TEMP_PREFIX)
+                    && isInvariant(assignment.expression, variant)) {
+                hoisted.add(assignment);
+                iterator.remove();
+            }
+        }
+        if (!hoisted.isEmpty())
+            variant = variantNames(loop);
+
+        HashMap<String, String> temps = new HashMap<>();
+        if (!isTimesLoop(loop))
+            loop.expression = replaceInvariants(loop.expression, loop.assignment.isEmpty(), variant, temps, hoisted);
+        replaceInBlock(loop.statements, variant, temps, hoisted);
+        return hoisted;
+    }
+
+    private void replaceInBlock(List<StatementNode> block, Set<String> variant, HashMap<String, String> temps, List<StatementNode> hoisted) {
+        for (StatementNode statement : block) {
+            if (statement instanceof AssignmentNode assignment)
+                assignment.expression = replaceInvariants(assignment.expression, true, variant, temps, hoisted);
+            else if (statement instanceof MethodCallStatementNode methodCall)
+                replaceInArguments(methodCall.objectName, methodCall.methodName, methodCall.parameters, variant, temps, hoisted);
+            else if (statement instanceof IfNode ifNode) {
+                ifNode.condition = replaceInvariants(ifNode.condition, true, variant, temps, hoisted);
+                replaceInBlock(ifNode.statements, variant, temps, hoisted);
+                if (ifNode.elseStatement.isPresent())
+                    replaceInBlock(ifNode.elseStatement.get().statements, variant, temps, hoisted);
+            }
+            else if (statement instanceof LoopNode loop) {
+                if (!isTimesLoop(loop))
+                    loop.expression = replaceInvariants(loop.expression, loop.assignment.isEmpty(), variant, temps, hoisted);
+                replaceInBlock(loop.statements, variant, temps, hoisted);
+            }
+        }
+    }
+
+    /**
+     * Replace the largest invariant subexpressions with references to temporaries.
+     * @param canReplaceWhole - false where the IDT itself is kept (a callee's parameter, a loop variable), since
+     *                        sharing the temporary's IDT would let it be changed
+     */
+    private ExpressionNode replaceInvariants(ExpressionNode expression, boolean canReplaceWhole, Set<String> variant,
+                                             HashMap<String, String> temps, List<StatementNode> hoisted) {
+        if (canReplaceWhole && isHoistable(expression) && isInvariant(expression, variant))
+            return reference(temps.computeIfAbsent(key(expression), key -> newTemp(expression, hoisted)));
+        if (expression instanceof MathOpNode math) {
+            math.left = replaceInvariants(math.left, true, variant, temps, hoisted);
+            math.right = replaceInvariants(math.right, true, variant, temps, hoisted);
+        }
+        else if (expression instanceof CompareNode compare) {
+            compare.left = replaceInvariants(compare.left, true, variant, temps, hoisted);
+            compare.right = replaceInvariants(compare.right, true, variant, temps, hoisted);
+        }
+        else if (expression instanceof BooleanOpNode boolOp) {
+            boolOp.left = replaceInvariants(boolOp.left, true, variant, temps, hoisted);
+            boolOp.right = replaceInvariants(boolOp.right, true, variant, temps, hoisted);
+        }
+        else if (expression instanceof NotOpNode not)
+            not.left = replaceInvariants(not.left, true, variant, temps, hoisted);
+        else if (expression instanceof MethodCallExpressionNode methodCall)
+            replaceInArguments(methodCall.objectName, methodCall.methodName, methodCall.parameters, variant, temps, hoisted);
+        else if (expression instanceof NewNode newNode)
+            newNode.parameters.replaceAll(parameter -> replaceInvariants(parameter, false, variant, temps, hoisted));
+        return expression;
+    }
+
+    private void replaceInArguments(Optional<String> objectName, String methodName, List<ExpressionNode> parameters, Set<String> variant,
+                                    HashMap<String, String> temps, List<StatementNode> hoisted) {
+        boolean builtIn = isConsoleWrite(objectName, methodName);
+        parameters.replaceAll(parameter -> replaceInvariants(parameter, builtIn, variant, temps, hoisted));
+    }
+
+    private String newTemp(ExpressionNode expression, List<StatementNode> hoisted) {
+        VariableDeclarationNode declaration = new VariableDeclarationNode();
+        declaration.name = TEMP_PREFIX + tempCount++;
+        declaration.type = scope.typeOf(expression).orElseThrow();
+        currentLocals.add(declaration);
+        scope.declare(declaration.name, declaration.type);
+        AssignmentNode assignment = new AssignmentNode();
+        assignment.target = reference(declaration.name);
+        assignment.expression = expression;
+        hoisted.add(assignment);
+        return declaration.name;
+    }
+
+    // Only computations are worth a temporary - literals and variables are already as cheap as a temporary.
+    private static boolean isHoistable(ExpressionNode expression) {
+        return expression instanceof MathOpNode || expression instanceof CompareNode || expression instanceof BooleanOpNode || expression instanceof NotOpNode;
+    }
+
+    private boolean isInvariant(ExpressionNode expression, Set<String> variant) {
+        if (!Effects.isSafe(expression, scope))
+            return false;
+        for (String name : VariableUsage.of(expression).reads) {
+            if (variant.contains(name))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param loop - a loop
+     * @return every name whose value may change while the loop runs
+     */
+    private Set<String> variantNames(LoopNode loop) {
+        VariableUsage usage = VariableUsage.of(List.of(loop));
+        Set<String> variant = new HashSet<>(usage.writes);
+        boolean callsOut = usage.hasNew;
+        for (MethodCallExpressionNode call : usage.calls)
+            callsOut |= !isConsoleWrite(call.objectName, call.methodName);
+        if (callsOut)
+            variant.addAll(usage.arguments);
+        Set<String> aliasable = aliasableNames();
+        boolean writesAliasable = callsOut;
+        for (String name : variant)
+            writesAliasable |= aliasable.contains(name);
+        if (writesAliasable) {
+            variant.addAll(aliasable);
+            variant.add(MEMBERS);
+        }
+        return new MemberAwareSet(variant, scope);
+    }
+
+    // Names that can share an IDT with some other name: parameters, members and loop variables (a loop puts the
+    // condition's IDT itself into its variable).
+    private Set<String> aliasableNames() {
+        Set<String> aliasable = new HashSet<>();
+        List<StatementNode> body = currentBody;
+        for (String name : VariableUsage.of(body).reads) {
+            if (scope.isParameter(name) || scope.isMember(name))
+                aliasable.add(name);
+        }
+        collectLoopAliases(body, aliasable);
+        return aliasable;
+    }
+
+    private static void collectLoopAliases(List<StatementNode> block, Set<String> aliasable) {
+        for (StatementNode statement : block) {
+            if (statement instanceof LoopNode loop) {
+                if (loop.assignment.isPresent()) {
+                    aliasable.add(loop.assignment.get().name);
+                    if (loop.expression instanceof VariableReferenceNode variable)
+                        aliasable.add(variable.name);
+                }
+                collectLoopAliases(loop.statements, aliasable);
+            }
+            else if (statement instanceof IfNode ifNode) {
+                collectLoopAliases(ifNode.statements, aliasable);
+                if (ifNode.elseStatement.isPresent())
+                    collectLoopAliases(ifNode.elseStatement.get().statements, aliasable);
+            }
+        }
+    }
+
+    // Stands for "every member" in a variant set.
+    private static final String MEMBERS = "$members";
+
+    /**
+     * A variant set that also answers "yes" for every member once MEMBERS has been added to it.
+     */
+    private static class MemberAwareSet extends HashSet<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient TypeScope scope;
+
+        MemberAwareSet(Set<String> names, TypeScope scope) {
+            super(names);
+            this.scope = scope;
+        }
+
+        @Override
+        public boolean contains(Object name) {
+            if (super.contains(name))
+                return true;
+            return super.contains(MEMBERS) && name instanceof String s && scope.isMember(s);
+        }
+    }
+
+    // toString() doesn't parenthesize, so (a + b) * c and a + b * c would look alike.
+    private static String key(ExpressionNode expression) {
+        if (expression instanceof MathOpNode math)
+            return "(" + key(math.left) + " " + math.op + " " + key(math.right) + ")";
+        if (expression instanceof CompareNode compare)
+            return "(" + key(compare.left) + " " + compare.op + " " + key(compare.right) + ")";
+        if (expression instanceof BooleanOpNode boolOp)
+            return "(" + key(boolOp.left) + " " + boolOp.op + " " + key(boolOp.right) + ")";
+        if (expression instanceof NotOpNode not)
+            return "(not " + key(not.left) + ")";
+        if (expression instanceof StringLiteralNode || expression instanceof CharLiteralNode)
+            return expression.getClass().getSimpleName() + expression;
+        return expression.toString().strip();
+    }
+
+    private static boolean isTimesLoop(LoopNode loop) {
+        return loop.expression instanceof MethodCallExpressionNode mc && mc.objectName.isPresent() && mc.methodName.equals("times");
+    }
+
+    private static VariableReferenceNode reference(String name) {
+        VariableReferenceNode reference = new VariableReferenceNode();
+        reference.name = name;
+        return reference;
+    }
+}
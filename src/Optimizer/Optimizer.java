@@ -0,0 +1,78 @@
+package Optimizer;
+
+import AST.TranNode;
+
+import java.util.List;
+
+/**
+ * Runs the AST optimization passes over a parsed program. This has to happen before the Interpreter is created.
+ *
+ * Every pass keeps the observable behavior of the program the same - including the runtime errors it would throw.
+ */
+public class Optimizer {
+    private final TranNode top;
+
+    public Optimizer(TranNode top) {
+        this.top = top;
+    }
+
+    /**
+     * Run every pass, in order.
+     */
+    public void optimize() {
+        inlineMethods();
+        replaceScalars();
+        foldConstants();
+        eliminateDeadCode();
+        hoistLoopInvariants();
+    }
+
+    /**
+     * Replace calls to small leaf methods with their bodies (see Inliner).
+     * @return which calls were inlined, one line per call site
+     */
+    public List<String> inlineMethods() {
+        return inlineMethods(Inliner.DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param budget - the largest method (in AST nodes) that may be inlined
+     * @return which calls were inlined, one line per call site
+     */
+    public List<String> inlineMethods(int budget) {
+        Inliner inliner = new Inliner(top, budget);
+        inliner.run();
+        return inliner.getReport();
+    }
+
+    /**
+     * Turn objects that never leave the method that creates them into locals of that method (see ScalarReplacement).
+     * @return which objects were replaced, one line per object
+     */
+    public List<String> replaceScalars() {
+        ScalarReplacement replacement = new ScalarReplacement(top);
+        replacement.run();
+        return replacement.getReport();
+    }
+
+    /**
+     * Fold literal-only expressions and apply the exact algebraic identities (see ConstantFolder).
+     */
+    public void foldConstants() {
+        new ConstantFolder(top).run();
+    }
+
+    /**
+     * Prune branches and loops with constant conditions, dead stores and unused locals (see DeadCodeEliminator).
+     */
+    public void eliminateDeadCode() {
+        new DeadCodeEliminator(top).run();
+    }
+
+    /**
+     * Move loop-invariant expressions into locals computed ahead of their loop (see LoopInvariantCodeMotion).
+     */
+    public void hoistLoopInvariants() {
+        new LoopInvariantCodeMotion(top).run();
+    }
+}
@@ -0,0 +1,122 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.*;
+
+/**
+ * Finds the shared methods that are pure functions of their arguments: running one has no effect other than producing
+ * its return values, and the return values only depend on the values of the arguments. The interpreter memoizes calls
+ * to these.
+ *
+ * A shared method is pure when:
+ *      its parameters, locals and returns are all number, string, character or boolean
+ *      every name it uses is one of its own variables (or true/false) - no members, no console, no objects
+ *      none of its names is also a member (inside an object, members are found before locals)
+ *      it never changes a parameter - parameters are the caller's own IDTs - neither by assigning it, using it as a
+ *          loop variable, nor by letting a loop variable share its IDT
+ *      it creates no objects, and only calls (unqualified) other pure shared methods of its class whose names are
+ *          unique in the program, so the call always finds the same method
+ */
+public class PurityAnalysis {
+    private static final Set<String> PRIMITIVES = Set.of("number", "integer", "double", "string", "character", "boolean");
+
+    private final TranNode top;
+
+    public PurityAnalysis(TranNode top) {
+        this.top = top;
+    }
+
+    /**
+     * @return the pure methods of the program
+     */
+    public Set<MethodDeclarationNode> pureMethods() {
+        Set<String> memberNames = new HashSet<>();
+        HashMap<String, Integer> nameCounts = new HashMap<>();
+        for (ClassNode classNode : top.Classes) {
+            for (MemberNode member : classNode.members)
+                memberNames.add(member.declaration.name);
+            for (MethodDeclarationNode method : classNode.methods)
+                nameCounts.merge(method.name, 1, Integer::sum);
+        }
+
+        // Start with every method that is pure on its own, then drop the ones that call an impure method until
+        // nothing changes.
+        HashMap<MethodDeclarationNode, List<MethodDeclarationNode>> callees = new HashMap<>();
+        for (ClassNode classNode : top.Classes) {
+            for (MethodDeclarationNode method : classNode.methods) {
+                if (method instanceof BuiltInMethodDeclarationNode || !method.isShared || !isSelfContained(method, memberNames))
+                    continue;
+                Optional<List<MethodDeclarationNode>> called = resolveCalls(classNode, method, nameCounts);
+                called.ifPresent(list -> callees.put(method, list));
+            }
+        }
+        boolean changed = true;
+        while (changed)
+            changed = callees.keySet().removeIf(method -> !callees.keySet().containsAll(callees.get(method)));
+        return new HashSet<>(callees.keySet());
+    }
+
+    private static boolean isSelfContained(MethodDeclarationNode method, Set<String> memberNames) {
+        Set<String> own = new HashSet<>();
+        Set<String> parameters = new HashSet<>();
+        for (VariableDeclarationNode parameter : method.parameters)
+            parameters.add(parameter.name);
+        for (List<VariableDeclarationNode> declarations : List.of(method.parameters, method.locals, method.returns)) {
+            for (VariableDeclarationNode declaration : declarations) {
+                if (!PRIMITIVES.contains(declaration.type) || memberNames.contains(declaration.name))
+                    return false;
+                own.add(declaration.name);
+            }
+        }
+        VariableUsage usage = VariableUsage.of(method.statements);
+        if (usage.hasNew)
+            return false;
+        for (String name : usage.writes) {
+            if (parameters.contains(name) || memberNames.contains(name))
+                return false;
+            // An undeclared loop variable is a local too.
+            own.add(name);
+        }
+        for (String name : usage.reads) {
+            if (!own.contains(name) && !name.equals("true") && !name.equals("false"))
+                return false;
+        }
+        return !aliasesParameter(method.statements, parameters);
+    }
+
+    // "loop b = p" puts p's IDT itself into b, so writing b later would change the caller's variable.
+    private static boolean aliasesParameter(List<StatementNode> statements, Set<String> parameters) {
+        for (StatementNode statement : statements) {
+            if (statement instanceof LoopNode loop) {
+                if (loop.assignment.isPresent() && loop.expression instanceof VariableReferenceNode variable && parameters.contains(variable.name))
+                    return true;
+                if (aliasesParameter(loop.statements, parameters))
+                    return true;
+            }
+            else if (statement instanceof IfNode ifNode) {
+                if (aliasesParameter(ifNode.statements, parameters))
+                    return true;
+                if (ifNode.elseStatement.isPresent() && aliasesParameter(ifNode.elseStatement.get().statements, parameters))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the methods the calls in the method's body run, or empty if one of them can't be pinned down
+     */
+    private static Optional<List<MethodDeclarationNode>> resolveCalls(ClassNode classNode, MethodDeclarationNode method, HashMap<String, Integer> nameCounts) {
+        List<MethodDeclarationNode> called = new ArrayList<>();
+        for (MethodCallExpressionNode call : VariableUsage.of(method.statements).calls) {
+            if (call.objectName.isPresent() || nameCounts.getOrDefault(call.methodName, 0) != 1)
+                return Optional.empty();
+            Optional<MethodDeclarationNode> callee = classNode.methods.stream().filter(m -> m.name.equals(call.methodName)).findFirst();
+            if (callee.isEmpty())
+                return Optional.empty();
+            called.add(callee.get());
+        }
+        return Optional.of(called);
+    }
+}
@@ -0,0 +1,425 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.*;
+
+/**
+ * Escape analysis for the objects a method creates, and scalar replacement of the ones that don't escape: their members
+ * become locals of the method, and the constructor and the calls on the object are replaced by their bodies (renamed,
+ * as in Inliner). No ObjectIDT is made, and no constructor or method is looked up.
+ *
+ * An object doesn't escape when it is made by "t = new C(...)" at the top of a shared method's body and the local t is
+ * only used for call statements "t.m(...)" after that, at the top of the body too - never read as a value, passed,
+ * assigned again or used for the results of a call.
+ *
+ * The rest follows from how the interpreter runs objects:
+ *      The object's members are the program's first members, one per constructor argument (see
+ *      Interpreter.interpretConstructorCall()). They must be primitive and have different names.
+ *      The method must never run inside an object: there, "t.m()" runs m on the current object instead.
+ *      Outside an object, "t.m()" swaps the interpreter's global members for t's members. Methods and constructors that
+ *      run after that see t's members instead of the globals. So from a call on t until a call on another object swaps
+ *      them again, the method may only call console.write and use its own variables (any member, in start()). If the
+ *      method ends with t's members in place, it has to be the program's start() method, after which nothing runs.
+ *      The constructor and the methods called are small leaves that only use their own primitive variables and the
+ *      object's members (console.write is allowed), so they mean the same thing inside the method.
+ */
+public class ScalarReplacement {
+    private final TranNode top;
+    private final List<String> report = new ArrayList<>();
+    // the members of every class, in the order the interpreter lists them
+    private final List<VariableDeclarationNode> members = new ArrayList<>();
+    private Set<String> calledInsideObjects;
+    private boolean writeIsBuiltIn;
+    private int siteCount;
+
+    public ScalarReplacement(TranNode top) {
+        this.top = top;
+    }
+
+    /**
+     * @return one line per replaced object: "Class.method: replaced t (new C)"
+     */
+    public List<String> getReport() {
+        return report;
+    }
+
+    public void run() {
+        members.clear();
+        writeIsBuiltIn = true;
+        for (ClassNode classNode : top.Classes) {
+            for (MemberNode member : classNode.members)
+                members.add(member.declaration);
+            for (MethodDeclarationNode method : classNode.methods)
+                writeIsBuiltIn &= !method.name.equals("write");
+        }
+        calledInsideObjects = calledInsideObjects();
+        Optional<MethodDeclarationNode> start = startMethod();
+        for (ClassNode classNode : top.Classes) {
+            for (MethodDeclarationNode method : classNode.methods) {
+                if (method.isShared && !(method instanceof BuiltInMethodDeclarationNode) && !calledInsideObjects.contains(method.name)) {
+                    boolean isStart = start.isPresent() && start.get() == method;
+                    while (replaceOne(classNode, method, isStart))
+                        ;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the names of the methods that may be called while an object is current: anything a constructor or a
+     * non-shared method calls, and anything the shared methods by those names call
+     */
+    private Set<String> calledInsideObjects() {
+        Set<String> names = new HashSet<>();
+        for (ClassNode classNode : top.Classes) {
+            for (ConstructorNode constructor : classNode.constructors)
+                addCalls(constructor.statements, names);
+            for (MethodDeclarationNode method : classNode.methods) {
+                if (!method.isShared)
+                    addCalls(method.statements, names);
+            }
+        }
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (ClassNode classNode : top.Classes) {
+                for (MethodDeclarationNode method : classNode.methods) {
+                    if (method.isShared && names.contains(method.name))
+                        added |= addCalls(method.statements, names);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static boolean addCalls(List<StatementNode> statements, Set<String> names) {
+        boolean added = false;
+        for (MethodCallExpressionNode call : VariableUsage.of(statements).calls)
+            added |= names.add(call.methodName);
+        return added;
+    }
+
+    /**
+     * @return the method Interpreter.start() runs, if nothing can call it again
+     */
+    private Optional<MethodDeclarationNode> startMethod() {
+        for (ClassNode classNode : top.Classes) {
+            for (MethodDeclarationNode method : classNode.methods) {
+                if (method.name.equals("start") && method.isShared && !method.isPrivate && method.parameters.isEmpty()) {
+                    for (ClassNode caller : top.Classes) {
+                        for (ConstructorNode constructor : caller.constructors) {
+                            if (calls(constructor.statements, "start"))
+                                return Optional.empty();
+                        }
+                        for (MethodDeclarationNode callerMethod : caller.methods) {
+                            if (calls(callerMethod.statements, "start"))
+                                return Optional.empty();
+                        }
+                    }
+                    return Optional.of(method);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean calls(List<StatementNode> statements, String name) {
+        return VariableUsage.of(statements).calls.stream().anyMatch(call -> call.methodName.equals(name));
+    }
+
+    /**
+     * Replace the first object in the method that doesn't escape.
+     * @return was one replaced?
+     */
+    private boolean replaceOne(ClassNode classNode, MethodDeclarationNode method, boolean isStart) {
+        TypeScope scope = new TypeScope(top, method.parameters, method.locals, method.returns);
+        scope.declareLoopVariables(method.statements);
+        for (int i = 0; i < method.statements.size(); i++) {
+            if (method.statements.get(i) instanceof AssignmentNode assignment && assignment.expression instanceof NewNode newNode
+                    && replace(method, scope, i, assignment.target.name, newNode, isStart)) {
+                report.add(classNode.name + "." + method.name + ": replaced " + assignment.target.name + " (new " + newNode.className + ")");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean replace(MethodDeclarationNode method, TypeScope scope, int creation, String variable, NewNode newNode, boolean isStart) {
+        Optional<VariableDeclarationNode> local = method.locals.stream().filter(declaration -> declaration.name.equals(variable)).findFirst();
+        if (local.isEmpty() || Inliner.isParameter(method, variable) || method.returns.stream().anyMatch(r -> r.name.equals(variable))
+                || scope.isMember(variable) || mentions(newNode.parameters, variable))
+            return false;
+        List<Integer> callSites = new ArrayList<>();
+        for (int i = 0; i < method.statements.size(); i++) {
+            StatementNode statement = method.statements.get(i);
+            if (i == creation)
+                continue;
+            if (i > creation && statement instanceof MethodCallStatementNode call && call.objectName.equals(Optional.of(variable))
+                    && call.returnValues.isEmpty() && !mentions(call.parameters, variable))
+                callSites.add(i);
+            else if (VariableUsage.of(List.of(statement)).mentions(variable))
+                return false;
+        }
+
+        // The object, its constructor and the methods called on it
+        Optional<ClassNode> classNode = classNamed(newNode.className);
+        int argumentCount = newNode.parameters.size();
+        if (classNode.isEmpty() || argumentCount > members.size())
+            return false;
+        List<VariableDeclarationNode> fields = members.subList(0, argumentCount);
+        Set<String> fieldNames = new HashSet<>();
+        for (VariableDeclarationNode field : fields) {
+            if (!Inliner.isPrimitive(field.type) || !fieldNames.add(field.name))
+                return false;
+        }
+        Optional<ConstructorNode> constructor = constructorFor(classNode.get(), newNode.parameters, scope);
+        if (constructor.isEmpty() || !isContained(constructor.get().statements, constructor.get().parameters, constructor.get().locals, List.of(), fieldNames, scope)
+                || !canBind(constructor.get().parameters, newNode.parameters, scope))
+            return false;
+        List<MethodDeclarationNode> callees = new ArrayList<>();
+        for (int site : callSites) {
+            MethodCallStatementNode call = (MethodCallStatementNode) method.statements.get(site);
+            Optional<MethodDeclarationNode> callee = classNode.get().methods.stream().filter(m -> m.name.equals(call.methodName)).findFirst();
+            if (callee.isEmpty() || callee.get() instanceof BuiltInMethodDeclarationNode || callee.get().parameters.size() != call.parameters.size()
+                    || !isContained(callee.get().statements, callee.get().parameters, callee.get().locals, callee.get().returns, fieldNames, scope)
+                    || !canBind(callee.get().parameters, call.parameters, scope))
+                return false;
+            callees.add(callee.get());
+        }
+        if (!membersStaySwappedUnseen(method, scope, creation, callSites, isStart))
+            return false;
+
+        // The replacement
+        int site = siteCount++;
+        HashMap<String, String> fieldLocals = new HashMap<>();
+        List<StatementNode> created = new ArrayList<>();
+        for (VariableDeclarationNode field : fields) {
+            fieldLocals.put(field.name, newLocal(method, scope, "$sr" + site + "_" + field.name, field.type));
+            created.add(Inliner.assign(fieldLocals.get(field.name), Inliner.defaultValue(field.type)));
+        }
+        created.addAll(body(method, scope, site + "_0", constructor.get().parameters, constructor.get().locals, List.of(),
+                constructor.get().statements, newNode.parameters, fieldLocals));
+        List<List<StatementNode>> calls = new ArrayList<>();
+        for (int i = 0; i < callSites.size(); i++) {
+            MethodCallStatementNode call = (MethodCallStatementNode) method.statements.get(callSites.get(i));
+            MethodDeclarationNode callee = callees.get(i);
+            calls.add(body(method, scope, site + "_" + (i + 1), callee.parameters, callee.locals, callee.returns, callee.statements,
+                    call.parameters, fieldLocals));
+        }
+
+        List<StatementNode> statements = new ArrayList<>();
+        for (int i = 0; i < method.statements.size(); i++) {
+            if (i == creation)
+                statements.addAll(created);
+            else if (callSites.contains(i))
+                statements.addAll(calls.get(callSites.indexOf(i)));
+            else
+                statements.add(method.statements.get(i));
+        }
+        method.statements.clear();
+        method.statements.addAll(statements);
+        method.locals.remove(local.get());
+        return true;
+    }
+
+    /**
+     * @return the constructor that Interpreter.runConstructor() would pick for these arguments, if their types are known
+     */
+    private static Optional<ConstructorNode> constructorFor(ClassNode classNode, List<ExpressionNode> arguments, TypeScope scope) {
+        List<String> types = new ArrayList<>();
+        for (ExpressionNode argument : arguments) {
+            Optional<String> type = scope.typeOf(argument);
+            if (type.isEmpty() || !Inliner.isPrimitive(type.get()))
+                return Optional.empty();
+            types.add(type.get());
+        }
+        for (ConstructorNode constructor : classNode.constructors) {
+            if (constructor.parameters.stream().map(parameter -> parameter.type).toList().equals(types))
+                return Optional.of(constructor);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Can a constructor or method body be moved into the creating method? It must be a small leaf that only uses its
+     * own primitive variables and the object's members.
+     */
+    private boolean isContained(List<StatementNode> statements, List<VariableDeclarationNode> parameters, List<VariableDeclarationNode> locals,
+                                List<VariableDeclarationNode> returns, Set<String> fieldNames, TypeScope scope) {
+        MethodDeclarationNode declarations = new MethodDeclarationNode();
+        declarations.parameters = parameters;
+        declarations.locals = locals;
+        declarations.returns = returns;
+        if (!Inliner.allDeclarationsPrimitive(declarations) || Inliner.size(statements) > Inliner.DEFAULT_BUDGET)
+            return false;
+        for (VariableDeclarationNode declaration : Inliner.declarations(declarations)) {
+            if (scope.isMember(declaration.name))
+                return false;
+        }
+        // A loop variable is put straight into the locals, see Inliner.inlineStatement()
+        for (String name : Inliner.loopNames(statements)) {
+            if (!Inliner.isDeclaredIn(declarations, name) || Inliner.isParameter(declarations, name))
+                return false;
+        }
+        VariableUsage usage = VariableUsage.of(statements);
+        if (usage.hasNew || !onlyWrites(usage))
+            return false;
+        Set<String> names = new HashSet<>(usage.reads);
+        names.addAll(usage.writes);
+        names.addAll(usage.returnTargets);
+        for (String name : names) {
+            if (!name.equals("console") && !fieldNames.contains(name) && !Inliner.isDeclaredIn(declarations, name))
+                return false;
+        }
+        return true;
+    }
+
+    // Are all the calls console.write? (They run the built-in unless the program has a method by that name.)
+    private boolean onlyWrites(VariableUsage usage) {
+        for (MethodCallExpressionNode call : usage.calls) {
+            if (!writeIsBuiltIn || !call.objectName.equals(Optional.of("console")) || !call.methodName.equals("write"))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Follow the top-level statements from the creation on: while the calls on the object leave its members in place of
+     * the globals, nothing may run that would see them.
+     */
+    private boolean membersStaySwappedUnseen(MethodDeclarationNode method, TypeScope scope, int creation, List<Integer> callSites, boolean isStart) {
+        if (scope.isBound("console"))
+            return false;
+        boolean swapped = false;
+        for (int i = creation + 1; i < method.statements.size(); i++) {
+            StatementNode statement = method.statements.get(i);
+            boolean isCallSite = callSites.contains(i);
+            if (swapped && (isCallSite || swapsBack(method, i))) {
+                // the arguments are evaluated before the call swaps in the members of the object it is on
+                for (ExpressionNode argument : ((MethodCallStatementNode) statement).parameters) {
+                    if (!isUnaffected(VariableUsage.of(argument), scope, isStart))
+                        return false;
+                }
+                swapped = isCallSite;
+            }
+            else if (isCallSite)
+                swapped = true;
+            else if (swapped && !isUnaffected(VariableUsage.of(List.of(statement)), scope, isStart))
+                return false;
+        }
+        return !swapped || isStart;
+    }
+
+    // Calls and constructors would see the object's members. The method's own lookups go to its variables and then to
+    // the members it started with (see Frame) - in start(), those of the whole program. Another method may have started
+    // with an object's members, though, and look up the current ones for a name they don't have.
+    private boolean isUnaffected(VariableUsage usage, TypeScope scope, boolean isStart) {
+        if (usage.hasNew || !onlyWrites(usage))
+            return false;
+        if (isStart)
+            return true;
+        Set<String> names = new HashSet<>(usage.reads);
+        names.addAll(usage.writes);
+        names.addAll(usage.returnTargets);
+        names.remove("console");
+        return names.stream().allMatch(scope::isDeclared);
+    }
+
+    /**
+     * @return is statement i a call on another object that the method certainly made (so the call swaps in its members)?
+     */
+    private boolean swapsBack(MethodDeclarationNode method, int index) {
+        if (!(method.statements.get(index) instanceof MethodCallStatementNode call) || call.objectName.isEmpty())
+            return false;
+        String other = call.objectName.get();
+        if (method.locals.stream().noneMatch(declaration -> declaration.name.equals(other)) || Inliner.isParameter(method, other))
+            return false;
+        Optional<NewNode> made = Optional.empty();
+        for (int i = 0; i < method.statements.size(); i++) {
+            StatementNode statement = method.statements.get(i);
+            VariableUsage usage = VariableUsage.of(List.of(statement));
+            if (usage.arguments.contains(other) || usage.returnTargets.contains(other) || Inliner.loopNames(List.of(statement)).contains(other))
+                return false;
+            if (statement instanceof AssignmentNode assignment && assignment.target.name.equals(other)) {
+                if (i > index || made.isPresent() || !(assignment.expression instanceof NewNode newNode))
+                    return false;
+                made = Optional.of(newNode);
+            }
+            else if (usage.writes.contains(other))
+                return false;
+        }
+        if (made.isEmpty())
+            return false;
+        Optional<ClassNode> classNode = classNamed(made.get().className);
+        return classNode.isPresent() && classNode.get().methods.stream().anyMatch(m -> m.name.equals(call.methodName));
+    }
+
+    /**
+     * @return can the arguments be bound to the parameters in the creating method? A variable argument becomes the
+     * parameter (the interpreter passes a variable's own IDT, so the callee's writes to the parameter were the
+     * caller's); other arguments are stored into a typed local, which checks the type where the call wouldn't have.
+     */
+    private static boolean canBind(List<VariableDeclarationNode> parameters, List<ExpressionNode> arguments, TypeScope scope) {
+        for (int i = 0; i < parameters.size(); i++) {
+            ExpressionNode argument = arguments.get(i);
+            if (argument instanceof VariableReferenceNode variable ? !scope.isDeclared(variable.name)
+                    : !scope.typeOf(argument).orElse("").equals(parameters.get(i).type))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * A renamed copy of a constructor or method body, after the statements that bind its parameters (see canBind()) and
+     * reset its locals and returns.
+     */
+    private static List<StatementNode> body(MethodDeclarationNode method, TypeScope scope, String prefix, List<VariableDeclarationNode> parameters,
+                                            List<VariableDeclarationNode> locals, List<VariableDeclarationNode> returns, List<StatementNode> statements,
+                                            List<ExpressionNode> arguments, HashMap<String, String> fieldLocals) {
+        List<StatementNode> body = new ArrayList<>();
+        HashMap<String, String> names = new HashMap<>(fieldLocals);
+        for (int i = 0; i < parameters.size(); i++) {
+            VariableDeclarationNode parameter = parameters.get(i);
+            if (arguments.get(i) instanceof VariableReferenceNode variable)
+                names.put(parameter.name, variable.name);
+            else {
+                names.put(parameter.name, newLocal(method, scope, "$sr" + prefix + "_" + parameter.name, parameter.type));
+                body.add(Inliner.assign(names.get(parameter.name), arguments.get(i)));
+            }
+        }
+        List<VariableDeclarationNode> variables = new ArrayList<>(locals);
+        variables.addAll(returns);
+        for (VariableDeclarationNode declaration : variables) {
+            names.put(declaration.name, newLocal(method, scope, "$sr" + prefix + "_" + declaration.name, declaration.type));
+            body.add(Inliner.assign(names.get(declaration.name), Inliner.defaultValue(declaration.type)));
+        }
+        body.addAll(new AstCopier(name -> names.getOrDefault(name, name), Map.of()).copyBlock(statements));
+        return body;
+    }
+
+    private static String newLocal(MethodDeclarationNode method, TypeScope scope, String name, String type) {
+        VariableDeclarationNode declaration = new VariableDeclarationNode();
+        declaration.name = name;
+        declaration.type = type;
+        method.locals.add(declaration);
+        scope.declare(name, type);
+        return name;
+    }
+
+    private Optional<ClassNode> classNamed(String name) {
+        for (ClassNode classNode : top.Classes) {
+            if (classNode.name.equals(name))
+                return Optional.of(classNode);
+        }
+        return Optional.empty();
+    }
+
+    private static boolean mentions(List<ExpressionNode> expressions, String name) {
+        for (ExpressionNode expression : expressions) {
+            if (VariableUsage.of(expression).reads.contains(name))
+                return true;
+        }
+        return false;
+    }
+}
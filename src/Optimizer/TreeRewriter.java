@@ -0,0 +1,157 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Optional;
+
+/**
+ * Base class for the optimization passes. Walks every constructor and method body in the program, giving the pass a
+ * chance to replace each statement (with zero or more statements) and each expression (bottom up).
+ *
+ * Passes override rewriteStatement() and/or rewriteExpression(); the defaults just recurse.
+ */
+public abstract class TreeRewriter {
+    protected final TranNode top;
+    protected ClassNode currentClass;
+    protected Optional<MethodDeclarationNode> currentMethod = Optional.empty();
+    protected TypeScope scope;
+
+    protected TreeRewriter(TranNode top) {
+        this.top = top;
+    }
+
+    /**
+     * Run the pass over every user defined constructor and method.
+     */
+    public void run() {
+        for (ClassNode classNode : top.Classes) {
+            currentClass = classNode;
+            for (ConstructorNode constructor : classNode.constructors) {
+                currentMethod = Optional.empty();
+                scope = new TypeScope(top, constructor.parameters, constructor.locals, List.of());
+                scope.declareLoopVariables(constructor.statements);
+                constructor.statements = rewriteBody(constructor.locals, constructor.statements);
+            }
+            for (MethodDeclarationNode method : classNode.methods) {
+                if (method instanceof BuiltInMethodDeclarationNode)
+                    continue;
+                currentMethod = Optional.of(method);
+                scope = new TypeScope(top, method.parameters, method.locals, method.returns);
+                scope.declareLoopVariables(method.statements);
+                method.statements = rewriteBody(method.locals, method.statements);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the whole body of a constructor or method. Passes that need to change the local declarations hook in here.
+     * @param locals - the local variable declarations (may be changed in place)
+     * @param statements - the body
+     * @return the rewritten body
+     */
+    protected List<StatementNode> rewriteBody(List<VariableDeclarationNode> locals, List<StatementNode> statements) {
+        return rewriteBlock(statements);
+    }
+
+    /**
+     * @param statements - a block of statements
+     * @return the rewritten block
+     */
+    protected List<StatementNode> rewriteBlock(List<StatementNode> statements) {
+        List<StatementNode> rewritten = new ArrayList<>(statements.size());
+        for (StatementNode statement : statements)
+            rewritten.addAll(rewriteStatement(statement));
+        return rewritten;
+    }
+
+    /**
+     * Rewrite the expressions and nested blocks of one statement.
+     * @param statement - the statement to rewrite
+     * @return the statements that replace it (usually just the statement itself)
+     */
+    protected List<StatementNode> rewriteStatement(StatementNode statement) {
+        if (statement instanceof AssignmentNode assignment)
+            assignment.expression = rewriteExpression(assignment.expression, false);
+        else if (statement instanceof MethodCallStatementNode methodCall)
+            rewriteParameters(methodCall.objectName, methodCall.methodName, methodCall.parameters);
+        else if (statement instanceof IfNode ifNode) {
+            ifNode.condition = rewriteExpression(ifNode.condition, false);
+            ifNode.statements = rewriteBlock(ifNode.statements);
+            if (ifNode.elseStatement.isPresent())
+                ifNode.elseStatement.get().statements = rewriteBlock(ifNode.elseStatement.get().statements);
+        }
+        else if (statement instanceof LoopNode loop) {
+            loop.expression = rewriteExpression(loop.expression, false);
+            loop.statements = rewriteBlock(loop.statements);
+        }
+        return List.of(statement);
+    }
+
+    /**
+     * Rewrite the children of an expression, then the expression itself.
+     * @param expression - the expression to rewrite
+     * @param isArgument - is the value handed to a method or constructor? Those receive the IDT itself (not a copy), so
+     *                   replacing a computed value with a variable would let the callee change the variable.
+     * @return the replacement expression (possibly the same node)
+     */
+    protected ExpressionNode rewriteExpression(ExpressionNode expression, boolean isArgument) {
+        if (expression instanceof MathOpNode math) {
+            math.left = rewriteExpression(math.left, false);
+            math.right = rewriteExpression(math.right, false);
+        }
+        else if (expression instanceof CompareNode compare) {
+            compare.left = rewriteExpression(compare.left, false);
+            compare.right = rewriteExpression(compare.right, false);
+        }
+        else if (expression instanceof BooleanOpNode boolOp) {
+            boolOp.left = rewriteExpression(boolOp.left, false);
+            boolOp.right = rewriteExpression(boolOp.right, false);
+        }
+        else if (expression instanceof NotOpNode not)
+            not.left = rewriteExpression(not.left, false);
+        else if (expression instanceof MethodCallExpressionNode methodCall)
+            rewriteParameters(methodCall.objectName, methodCall.methodName, methodCall.parameters);
+        else if (expression instanceof NewNode newNode)
+            newNode.parameters.replaceAll(parameter -> rewriteExpression(parameter, true));
+        return transformExpression(expression, isArgument);
+    }
+
+    /**
+     * The per-pass hook: called on every expression after its children have been rewritten.
+     * @param expression - the expression
+     * @param isArgument - see rewriteExpression()
+     * @return the replacement expression (possibly the same node)
+     */
+    protected ExpressionNode transformExpression(ExpressionNode expression, boolean isArgument) {
+        return expression;
+    }
+
+    private void rewriteParameters(Optional<String> objectName, String methodName, List<ExpressionNode> parameters) {
+        boolean builtIn = isConsoleWrite(objectName, methodName);
+        ListIterator<ExpressionNode> iterator = parameters.listIterator();
+        while (iterator.hasNext())
+            iterator.set(rewriteExpression(iterator.next(), !builtIn));
+    }
+
+    /**
+     * console.write() only reads its parameters. It is only safe to assume a call reaches it when no class declares
+     * its own "write" (inside an object, calls are looked up on the object's class first).
+     * @param objectName - the object name of the call
+     * @param methodName - the method name of the call
+     * @return is this certainly a call to the built-in console.write()?
+     */
+    protected boolean isConsoleWrite(Optional<String> objectName, String methodName) {
+        if (objectName.isEmpty() || !objectName.get().equals("console") || !methodName.equals("write"))
+            return false;
+        for (ClassNode classNode : top.Classes) {
+            for (MethodDeclarationNode method : classNode.methods) {
+                if (method.name.equals("write") && !(method instanceof BuiltInMethodDeclarationNode))
+                    return false;
+            }
+        }
+        return true;
+    }
+}
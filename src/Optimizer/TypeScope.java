@@ -0,0 +1,257 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The statically known types of the names visible inside one method or constructor.
+ *
+ * The interpreter resolves a name by looking at the current object's members first, then the locals, then the global
+ * members. Because of that, a name that is both a member and a local can be either one at runtime, so we only report a
+ * type when every place the name could resolve to agrees.
+ */
+public class TypeScope {
+    private static final Set<String> NUMBER_TYPES = Set.of("number", "integer", "double");
+
+    private final HashMap<String, String> memberTypes = new HashMap<>();
+    private final HashMap<String, String> declaredTypes = new HashMap<>();
+    private final HashMap<String, String> loopVariableTypes = new HashMap<>();
+    private final HashMap<String, ClassNode> classes = new HashMap<>();
+    private final HashSet<String> parameterNames = new HashSet<>();
+    private final HashSet<String> membersAlwaysFound = new HashSet<>();
+
+    public TypeScope(TranNode top, List<VariableDeclarationNode> parameters, List<VariableDeclarationNode> locals, List<VariableDeclarationNode> returns) {
+        List<String> memberNames = new ArrayList<>();
+        int fewestArguments = Integer.MAX_VALUE;
+        for (ClassNode classNode : top.Classes) {
+            classes.putIfAbsent(classNode.name, classNode);
+            for (ConstructorNode constructor : classNode.constructors)
+                fewestArguments = Math.min(fewestArguments, constructor.parameters.size());
+            for (MemberNode member : classNode.members) {
+                memberNames.add(member.declaration.name);
+                String previous = memberTypes.putIfAbsent(member.declaration.name, member.declaration.type);
+                if (previous != null && !previous.equals(member.declaration.type))
+                    memberTypes.put(member.declaration.name, "");
+            }
+        }
+        if (membersMaySwap(top))
+            membersAlwaysFound.addAll(memberNames.subList(0, Math.min(fewestArguments, memberNames.size())));
+        else
+            membersAlwaysFound.addAll(memberNames);
+        for (VariableDeclarationNode local : locals)
+            declaredTypes.put(local.name, local.type);
+        for (VariableDeclarationNode parameter : parameters) {
+            declaredTypes.put(parameter.name, parameter.type);
+            parameterNames.add(parameter.name);
+        }
+        for (VariableDeclarationNode ret : returns)
+            declaredTypes.put(ret.name, ret.type);
+    }
+
+    /**
+     * A loop with an assignment puts its variable straight into the locals, even when it was never declared.
+     * Record those variables (number for "times" loops - integer when counting an integer - boolean otherwise) so they aren't mistaken for members.
+     * @param statements - the body of the method or constructor
+     */
+    public void declareLoopVariables(List<StatementNode> statements) {
+        for (StatementNode statement : statements) {
+            if (statement instanceof LoopNode loop) {
+                if (loop.assignment.isPresent()) {
+                    String type = "boolean";
+                    if (loop.expression instanceof MethodCallExpressionNode mc && mc.methodName.equals("times"))
+                        type = mc.objectName.flatMap(this::typeOf).filter("integer"::equals).orElse("number");
+                    String name = loop.assignment.get().name;
+                    String previous = loopVariableTypes.putIfAbsent(name, type);
+                    if ((previous != null && !previous.equals(type)) || (declaredTypes.containsKey(name) && !declaredTypes.get(name).equals(type)))
+                        loopVariableTypes.put(name, "");
+                }
+                declareLoopVariables(loop.statements);
+            }
+            if (statement instanceof IfNode ifNode) {
+                declareLoopVariables(ifNode.statements);
+                if (ifNode.elseStatement.isPresent())
+                    declareLoopVariables(ifNode.elseStatement.get().statements);
+            }
+        }
+    }
+
+    /**
+     * @param name - a variable name
+     * @return is there a member (in any class) with this name?
+     */
+    public boolean isMember(String name) {
+        return memberTypes.containsKey(name);
+    }
+
+    /**
+     * An object only gets the first members of the program - one for each argument its constructor took - and a call
+     * like "x.f()" in an expression, made outside an object, swaps the global members for x's. So a member read can
+     * fail, unless nothing swaps the globals or every constructor gives every object that member.
+     * @param name - a variable name
+     * @return is there a member by this name that every read of it will find?
+     */
+    public boolean isMemberAlwaysFound(String name) {
+        return membersAlwaysFound.contains(name);
+    }
+
+    /**
+     * @param top - the program
+     * @return does it make a call that can swap the interpreter's global members for an object's (see isMemberAlwaysFound())?
+     */
+    public static boolean membersMaySwap(TranNode top) {
+        for (ClassNode classNode : top.Classes) {
+            for (MethodDeclarationNode method : classNode.methods) {
+                if (hasQualifiedExpressionCall(method.statements))
+                    return true;
+            }
+            for (ConstructorNode constructor : classNode.constructors) {
+                if (hasQualifiedExpressionCall(constructor.statements))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasQualifiedExpressionCall(List<StatementNode> statements) {
+        for (StatementNode statement : statements) {
+            List<ExpressionNode> expressions = new ArrayList<>();
+            if (statement instanceof AssignmentNode assignment)
+                expressions.add(assignment.expression);
+            else if (statement instanceof MethodCallStatementNode methodCall)
+                expressions.addAll(methodCall.parameters);
+            else if (statement instanceof IfNode ifNode) {
+                expressions.add(ifNode.condition);
+                if (hasQualifiedExpressionCall(ifNode.statements)
+                        || (ifNode.elseStatement.isPresent() && hasQualifiedExpressionCall(ifNode.elseStatement.get().statements)))
+                    return true;
+            }
+            else if (statement instanceof LoopNode loop) {
+                if (!(loop.expression instanceof MethodCallExpressionNode mc && mc.objectName.isPresent() && mc.methodName.equals("times")))
+                    expressions.add(loop.expression);
+                if (hasQualifiedExpressionCall(loop.statements))
+                    return true;
+            }
+            for (ExpressionNode expression : expressions) {
+                for (MethodCallExpressionNode call : VariableUsage.of(expression).calls) {
+                    if (call.objectName.isPresent() && !call.objectName.get().equals("console"))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a local that a pass has created.
+     * @param name - the name of the new local
+     * @param type - its type
+     */
+    public void declare(String name, String type) {
+        declaredTypes.put(name, type);
+    }
+
+    /**
+     * @param name - a variable name
+     * @return is this a parameter? Parameters hold the caller's own IDTs, so they may be another name for a caller's
+     * variable or a member.
+     */
+    public boolean isParameter(String name) {
+        return parameterNames.contains(name);
+    }
+
+    /**
+     * @param name - a variable name
+     * @return is this name declared as a parameter, local or return of the current method? (Loop variables that were
+     * never declared don't count - they only exist once their loop starts.)
+     */
+    public boolean isDeclared(String name) {
+        return declaredTypes.containsKey(name);
+    }
+
+    /**
+     * @param name - a variable name
+     * @return does the current method have its own variable by this name (declared, or a loop variable)?
+     */
+    public boolean isBound(String name) {
+        return declaredTypes.containsKey(name) || loopVariableTypes.containsKey(name);
+    }
+
+    /**
+     * @param name - a variable name
+     * @return the type the name is guaranteed to have at runtime, or empty if we can't be sure
+     */
+    public Optional<String> typeOf(String name) {
+        String declared = loopVariableTypes.containsKey(name) ? loopVariableTypes.get(name) : declaredTypes.get(name);
+        String member = memberTypes.get(name);
+        if (declared != null && member != null)
+            return declared.equals(member) && !declared.isEmpty() ? Optional.of(declared) : Optional.empty();
+        if (declared != null)
+            return declared.isEmpty() ? Optional.empty() : Optional.of(declared);
+        if (member != null && !member.isEmpty())
+            return Optional.of(member);
+        return Optional.empty();
+    }
+
+    /**
+     * Works out the type that evaluate() will produce for an expression, without running it.
+     * @param expression - the expression to type
+     * @return the type name ("number", "string", ...) or empty if it is unknown or the operand types don't fit
+     */
+    public Optional<String> typeOf(ExpressionNode expression) {
+        if (expression instanceof NumericLiteralNode)
+            return Optional.of("number");
+        if (expression instanceof IntegerLiteralNode)
+            return Optional.of("integer");
+        if (expression instanceof DoubleLiteralNode)
+            return Optional.of("double");
+        if (expression instanceof StringLiteralNode)
+            return Optional.of("string");
+        if (expression instanceof CharLiteralNode)
+            return Optional.of("character");
+        if (expression instanceof BooleanLiteralNode)
+            return Optional.of("boolean");
+        if (expression instanceof VariableReferenceNode variable) {
+            if (variable.name.equals("true") || variable.name.equals("false"))
+                return Optional.of("boolean");
+            return typeOf(variable.name);
+        }
+        if (expression instanceof MathOpNode math) {
+            Optional<String> left = typeOf(math.left);
+            Optional<String> right = typeOf(math.right);
+            if (left.isEmpty() || !left.equals(right))
+                return Optional.empty();
+            if (NUMBER_TYPES.contains(left.get()))
+                return left;
+            if (left.get().equals("string") && math.op == MathOpNode.MathOperations.add)
+                return left;
+            return Optional.empty();
+        }
+        if (expression instanceof CompareNode compare) {
+            Optional<String> left = typeOf(compare.left);
+            Optional<String> right = typeOf(compare.right);
+            if (left.isPresent() && left.equals(right) && (NUMBER_TYPES.contains(left.get()) || left.get().equals("string") || left.get().equals("character")))
+                return Optional.of("boolean");
+            return Optional.empty();
+        }
+        if (expression instanceof BooleanOpNode boolOp) {
+            if (isBoolean(boolOp.left) && isBoolean(boolOp.right))
+                return Optional.of("boolean");
+            return Optional.empty();
+        }
+        if (expression instanceof NotOpNode not)
+            return isBoolean(not.left) ? Optional.of("boolean") : Optional.empty();
+        if (expression instanceof NewNode newNode && classes.containsKey(newNode.className))
+            return Optional.of(newNode.className);
+        return Optional.empty();
+    }
+
+    private boolean isBoolean(ExpressionNode expression) {
+        return typeOf(expression).filter(type -> type.equals("boolean")).isPresent();
+    }
+}
@@ -0,0 +1,137 @@
+package Optimizer;
+
+import AST.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Which names a block of statements reads and writes.
+ *
+ * A read is any place the interpreter looks a name up: variable references in expressions, the object name of a method
+ * call and the variable of a "times" loop. Writes are assignment targets and loop variables (which are also read, by
+ * the loop itself). Names that receive a method call's return values are kept separately - the interpreter never
+ * stores into them.
+ */
+public class VariableUsage {
+    public final Set<String> reads = new HashSet<>();
+    public final Set<String> writes = new HashSet<>();
+    public final Set<String> returnTargets = new HashSet<>();
+    public final Set<String> arguments = new HashSet<>();
+    public final List<MethodCallExpressionNode> calls = new ArrayList<>();
+    public boolean hasMethodCalls = false;
+    public boolean hasNew = false;
+
+    /**
+     * @param statements - the block to scan (nested blocks included)
+     * @return the names read and written in it
+     */
+    public static VariableUsage of(List<StatementNode> statements) {
+        VariableUsage usage = new VariableUsage();
+        usage.addBlock(statements);
+        return usage;
+    }
+
+    /**
+     * @param expression - the expression to scan
+     * @return the names read by it
+     */
+    public static VariableUsage of(ExpressionNode expression) {
+        VariableUsage usage = new VariableUsage();
+        usage.addExpression(expression);
+        return usage;
+    }
+
+    /**
+     * @param name - a variable name
+     * @return does the block refer to this name at all?
+     */
+    public boolean mentions(String name) {
+        return reads.contains(name) || writes.contains(name) || returnTargets.contains(name);
+    }
+
+    private void addBlock(List<StatementNode> statements) {
+        for (StatementNode statement : statements)
+            addStatement(statement);
+    }
+
+    private void addStatement(StatementNode statement) {
+        if (statement instanceof AssignmentNode assignment) {
+            writes.add(assignment.target.name);
+            addExpression(assignment.expression);
+        }
+        else if (statement instanceof MethodCallStatementNode methodCall) {
+            hasMethodCalls = true;
+            calls.add(asExpression(methodCall));
+            methodCall.objectName.ifPresent(reads::add);
+            for (VariableReferenceNode returnValue : methodCall.returnValues)
+                returnTargets.add(returnValue.name);
+            addArguments(methodCall.parameters);
+        }
+        else if (statement instanceof IfNode ifNode) {
+            addExpression(ifNode.condition);
+            addBlock(ifNode.statements);
+            if (ifNode.elseStatement.isPresent())
+                addBlock(ifNode.elseStatement.get().statements);
+        }
+        else if (statement instanceof LoopNode loop) {
+            if (loop.assignment.isPresent()) {
+                reads.add(loop.assignment.get().name);
+                writes.add(loop.assignment.get().name);
+            }
+            if (loop.expression instanceof MethodCallExpressionNode mc && mc.objectName.isPresent() && mc.methodName.equals("times"))
+                reads.add(mc.objectName.get());
+            else
+                addExpression(loop.expression);
+            addBlock(loop.statements);
+        }
+    }
+
+    private void addExpression(ExpressionNode expression) {
+        if (expression instanceof VariableReferenceNode variable)
+            reads.add(variable.name);
+        else if (expression instanceof MathOpNode math) {
+            addExpression(math.left);
+            addExpression(math.right);
+        }
+        else if (expression instanceof CompareNode compare) {
+            addExpression(compare.left);
+            addExpression(compare.right);
+        }
+        else if (expression instanceof BooleanOpNode boolOp) {
+            addExpression(boolOp.left);
+            addExpression(boolOp.right);
+        }
+        else if (expression instanceof NotOpNode not)
+            addExpression(not.left);
+        else if (expression instanceof MethodCallExpressionNode methodCall) {
+            hasMethodCalls = true;
+            calls.add(methodCall);
+            methodCall.objectName.ifPresent(reads::add);
+            addArguments(methodCall.parameters);
+        }
+        else if (expression instanceof NewNode newNode) {
+            hasNew = true;
+            addArguments(newNode.parameters);
+        }
+    }
+
+    // Arguments that are plain variables are handed to the callee as-is, so the callee can change them.
+    private void addArguments(List<ExpressionNode> parameters) {
+        for (ExpressionNode parameter : parameters) {
+            if (parameter instanceof VariableReferenceNode variable)
+                arguments.add(variable.name);
+            addExpression(parameter);
+        }
+    }
+
+    private static MethodCallExpressionNode asExpression(MethodCallStatementNode methodCall) {
+        MethodCallExpressionNode expression = new MethodCallExpressionNode();
+        expression.objectName = methodCall.objectName;
+        expression.methodName = methodCall.methodName;
+        expression.parameters = methodCall.parameters;
+        return expression;
+    }
+}
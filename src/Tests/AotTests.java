@@ -0,0 +1,159 @@
+package Tests;
+
+import AST.TranNode;
+import Aot.AotExporter;
+import Aot.AstReader;
+import Aot.AstWriter;
+import Aot.Launcher;
+import Aot.Snapshot;
+import Interpreter.ExecutionEngine;
+import Interpreter.Interpreter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+
+public class AotTests {
+    @Test
+    public void WrittenProgramsReadBackTheSame() throws IOException {
+        for (String program : new String[] { OptimizerTests.STUDENT, EngineTests.LOOPS }) {
+            TranNode read = new AstReader(new ByteArrayInputStream(write(OptimizerTests.parse(program)))).read();
+            Assertions.assertEquals(OptimizerTests.parse(program).toString(), read.toString());
+            Assertions.assertEquals(EngineTests.run(program, ExecutionEngine.TREE_WALKER), EngineTests.run(new Interpreter(read)));
+        }
+        IOException error = Assertions.assertThrows(IOException.class, () -> new AstReader(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 })).read());
+        Assertions.assertEquals("Not a compiled Tran program", error.getMessage());
+    }
+
+    @Test
+    public void ExportedJarRunsWithoutTheParser() throws IOException {
+        Path jar = Files.createTempFile("tran", ".jar");
+        try {
+            AotExporter.export(OptimizerTests.parse(OptimizerTests.STUDENT), ExecutionEngine.BYTECODE, Files.newOutputStream(jar));
+            try (JarFile jarFile = new JarFile(jar.toFile())) {
+                Assertions.assertEquals("Aot.Launcher", jarFile.getManifest().getMainAttributes().get(Attributes.Name.MAIN_CLASS));
+                Assertions.assertNotNull(jarFile.getEntry("Interpreter/Interpreter.class"));
+                Assertions.assertNotNull(jarFile.getEntry("Aot/Launcher.class"));
+                Assertions.assertTrue(jarFile.stream().noneMatch(entry -> entry.getName().startsWith("Tran/") || entry.getName().startsWith("Tests/")));
+                Assertions.assertNull(jarFile.getEntry("Aot/AotExporter.class"));
+                Interpreter interpreter = Launcher.load(jarFile.getInputStream(jarFile.getEntry("Aot/program.tranc")));
+                Assertions.assertEquals(EngineTests.run(OptimizerTests.STUDENT, ExecutionEngine.BYTECODE), EngineTests.run(interpreter));
+            }
+        } finally {
+            Files.delete(jar);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AotExporter.export(OptimizerTests.parse("class A\n    go()\n        console.write(1)\n"), ExecutionEngine.TREE_WALKER, new ByteArrayOutputStream()));
+    }
+
+    static final String TABLE = """
+            class Table
+                number count
+                string name
+                Table first
+                Table second
+                Table empty
+                number total
+
+                construct(number c, string n)
+                    count = c
+                    name = n
+
+                bump()
+                    count = count + 1
+
+                describe()
+                    console.write(name, " ", count)
+
+                shared initialize()
+                    number i
+                    console.write("initializing")
+                    first = new Table(3, "squares")
+                    second = first
+                    i = 0
+                    loop i < 100
+                        total = total + i * i
+                        i = i + 1
+
+                shared start()
+                    second.bump()
+                    first.describe()
+                    console.write(total)
+            """;
+
+    @Test
+    public void RestoredSnapshotsSkipTheInitialization() throws IOException {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Path file = Files.createTempFile("tran", ".snapshot");
+            try {
+                Snapshot.take(OptimizerTests.parse(TABLE), "initialize", engine, file);
+                Interpreter restored = Snapshot.restore(file);
+                Assertions.assertEquals("squares 4.0\n328350.0\n", EngineTests.run(restored), engine.name());
+                // the console and the one table
+                Assertions.assertEquals(2L, restored.memory().objects(), engine.name());
+            } finally {
+                Files.delete(file);
+            }
+        }
+        Path empty = Files.createTempFile("tran", ".snapshot");
+        try {
+            Assertions.assertThrows(IOException.class, () -> Snapshot.restore(empty));
+        } finally {
+            Files.delete(empty);
+        }
+    }
+
+    @Test
+    public void SnapshotsKeepTheMembersACallSwappedIn() throws IOException {
+        String program = """
+                class Box
+                    number size
+
+                    construct(number s)
+                        size = s
+
+                    grow() : number result
+                        size = size + 1
+                        result = size
+
+                class Setup
+                    number level
+
+                    shared initialize()
+                        Box b
+                        number n
+                        b = new Box(7)
+                        n = 0 + b.grow()
+                        level = n
+
+                    shared start()
+                        console.write(size)
+                """;
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            // from then on, names resolve against the box's members
+            var inPlace = new Interpreter(OptimizerTests.parse(program));
+            inPlace.setEngine(engine);
+            inPlace.initialize("initialize");
+            String expected = EngineTests.run(inPlace);
+            Assertions.assertEquals("8.0\n", expected, engine.name());
+            Path file = Files.createTempFile("tran", ".snapshot");
+            try {
+                Snapshot.take(OptimizerTests.parse(program), "initialize", engine, file);
+                Assertions.assertEquals(expected, EngineTests.run(Snapshot.restore(file)), engine.name());
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static byte[] write(TranNode top) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new AstWriter(out).write(top);
+        return out.toByteArray();
+    }
+}
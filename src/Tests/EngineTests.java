@@ -0,0 +1,872 @@
+package Tests;
+
+import AST.ClassNode;
+import AST.LoopNode;
+import AST.TranNode;
+import Interpreter.BooleanIDT;
+import Interpreter.BytecodeFunction;
+import Interpreter.CharIDT;
+import Interpreter.ExecutionEngine;
+import Interpreter.Interpreter;
+import Interpreter.MethodCache;
+import Interpreter.NumberIDT;
+import Interpreter.ObjectIDT;
+import Interpreter.StringIDT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class EngineTests {
+    @Test
+    public void NodesMatchTreeWalkerOnStudent() {
+        assertSameOnEveryEngine(OptimizerTests.STUDENT);
+    }
+
+    @Test
+    public void NodesMatchTreeWalkerOnTemperatures() {
+        assertSameOnEveryEngine(OptimizerTests.TEMPERATURES);
+    }
+
+    @Test
+    public void NodesMatchTreeWalkerOnLoops() {
+        assertSameOnEveryEngine(LOOPS);
+        Assertions.assertEquals("45.0\n0.0\n1.0\n2.0\nfalsefalse\n4.0\n", run(LOOPS, ExecutionEngine.NODES));
+    }
+
+    @Test
+    public void NodesFallBackWhenTypesChange() {
+        String program = """
+                class Change
+                    shared combine(string a, string b) : string result
+                        number unused
+                        console.write(a + b)
+
+                    shared start()
+                        number i
+                        loop i < 3
+                            combine(i, i)
+                            i = i + 1
+                        combine("a", "b")
+                        combine('c', 'd')
+                """;
+        assertSameOnEveryEngine(program);
+        Assertions.assertTrue(run(program, ExecutionEngine.NODES).startsWith("0.0\n2.0\n4.0\nab\n"));
+    }
+
+    @Test
+    public void NodesKeepVariableAliasing() {
+        String program = """
+                class Alias
+                    number total
+
+                    construct()
+                        total = 1
+
+                    bump(number n) : number result
+                        n = n + 10
+                        total = total + n
+                        result = total
+
+                    run()
+                        number x, y
+                        x = 1
+                        bump(x)
+                        y = total + bump(x)
+                        console.write(x, " ", y, " ", total)
+
+                    shared start()
+                        Alias a
+                        a = new Alias()
+                        a.run()
+                """;
+        assertSameOnEveryEngine(program);
+    }
+
+    @Test
+    public void NodesReportTheSameErrors() {
+        String program = """
+                class Errors
+                    shared start()
+                        number x
+                        string s
+                        s = "a"
+                        x = 1
+                        loop x < 3
+                            x = x + 1
+                        x = s * 2
+                """;
+        assertSameOnEveryEngine(program);
+    }
+
+    @Test
+    public void FramesSeeMembersWithoutCopyingThem() {
+        String program = """
+                class Frames
+                    number limit
+
+                    construct()
+                        limit = 3
+
+                    count(number n) : number result
+                        if n > 0
+                            result = n + count(n - 1)
+
+                    run()
+                        number total
+                        loop limit.times()
+                            total = total + count(limit)
+                        console.write(total, " ", limit)
+
+                    shared start()
+                        Frames f
+                        f = new Frames()
+                        f.run()
+                """;
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("18.0 3.0\n", run(program, ExecutionEngine.TREE_WALKER));
+    }
+
+    @Test
+    public void CallsIgnoreReferencesThatWereNeverAssigned() {
+        // a call outside an object used to look through every reference in the locals, and failed on an unassigned one
+        String program = """
+                class Unset
+                    number v
+
+                    construct()
+                        v = 1
+
+                    shared describe(Unset u)
+                        console.write("described")
+
+                    shared start()
+                        Unset never, copy
+                        copy = never
+                        describe(never)
+                        console.write("end")
+                """;
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("described\nend\n", run(program, ExecutionEngine.TREE_WALKER));
+    }
+
+    @Test
+    public void BytecodeCompilesLoopsToTypedInstructions() {
+        TranNode top = OptimizerTests.parse(LOOPS);
+        var interpreter = new Interpreter(top);
+        Optional<BytecodeFunction> start = interpreter.bytecodeFor(top.Classes.get(0).methods.get(0));
+        Assertions.assertTrue(start.isPresent());
+        String listing = start.get().toString();
+        Assertions.assertTrue(listing.startsWith("start ("), listing);
+        Assertions.assertTrue(listing.contains("F_JUMP_UNLESS f0(i), #(10.0), lt"), listing);
+        Assertions.assertTrue(listing.contains("F_ADD f1(sum), f1(sum), f0(i)"), listing);
+        Assertions.assertTrue(listing.contains("F_BOX r3(t0), f1(sum)"), listing);
+        Assertions.assertTrue(listing.contains("CALL -, k#"), listing);
+        Assertions.assertTrue(listing.contains("(static console.write)"), listing);
+        Assertions.assertTrue(listing.endsWith("RETURN\n"), listing);
+    }
+
+    @Test
+    public void BytecodeKeepsUnsharedVariablesUnboxed() {
+        String program = """
+                class Frames
+                    number total
+
+                    shared scale(number n, number by) : number result
+                        result = n * by
+                        n = result
+
+                    shared start()
+                        number i, x, kept
+                        boolean even, going
+                        character c
+                        string s
+                        loop i < 6
+                            if i < 3
+                                x = x + i * 2
+                                even = true
+                            i = i + 1
+                        c = 'z'
+                        kept = 3
+                        scale(kept, 2)
+                        console.write(x, " ", even, " ", c, " ", scale(2, 6), " ", kept)
+                        loop going = x > 1
+                            x = x - 1
+                        console.write(going, x)
+                        s = "text"
+                        s = x
+                """;
+        TranNode top = OptimizerTests.parse(program);
+        var interpreter = new Interpreter(top);
+        var methods = top.Classes.get(0).methods;
+        String start = interpreter.bytecodeFor(methods.get(1)).get().toString();
+        Assertions.assertTrue(start.startsWith("start (12 registers, 4 floats, 4 ints)\n"), start);
+        Assertions.assertTrue(start.contains("F_MUL f2(t0), f0(i), #(2.0)"), start);
+        Assertions.assertTrue(start.contains("I_MOVE i0(even), #(1)"), start);
+        Assertions.assertTrue(start.contains("F_ADD f1(x), f1(x), f2(t0)"), start);
+        Assertions.assertTrue(start.contains("F_STORE r0(kept), #(3.0)"), start);
+        Assertions.assertTrue(start.contains("F_CMP i1(going), f1(x), #(1.0), gt"), start);
+        Assertions.assertTrue(start.contains("I_JUMP_FALSE i1(going), "), start);
+        String scale = interpreter.bytecodeFor(methods.get(0)).get().toString();
+        Assertions.assertTrue(scale.contains("MUL_N r2(t0), r0(n), r1(by)"), scale);
+        Assertions.assertTrue(scale.contains("F_UNBOX f0(result), r2(t0)"), scale);
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("6.0 true z 12.0 6.0\nfalse1.0\n! Trying to assign to a string IDT from a class Interpreter.NumberIDT\n",
+                run(program, ExecutionEngine.BYTECODE));
+    }
+
+    @Test
+    public void BytecodeLeavesMemberNamesToTheTreeWalker() {
+        String program = """
+                class Shadow
+                    number count
+
+                    shared bump(number n) : number count
+                        count = n + 1
+
+                    shared start()
+                        number x
+                        console.write(bump(2), count)
+                """;
+        TranNode top = OptimizerTests.parse(program);
+        var interpreter = new Interpreter(top);
+        Assertions.assertTrue(interpreter.bytecodeFor(top.Classes.get(0).methods.get(0)).isEmpty());
+        Assertions.assertTrue(interpreter.bytecodeFor(top.Classes.get(0).methods.get(1)).isPresent());
+        assertSameOnEveryEngine(program);
+    }
+
+    @Test
+    public void JvmCompilesSelfContainedMethods() {
+        String program = """
+                class Numbers
+                    shared fib(number n) : number result
+                        if n < 2
+                            result = n
+                        else
+                            result = fib(n - 1) + fib(n - 2)
+
+                    shared describe(number n) : string text
+                        text = "small"
+                        if n >= 10
+                            text = "big"
+                        if text == "big"
+                            text = text + "!"
+
+                    shared start()
+                        number i, n, total
+                        boolean going
+                        n = 8
+                        loop i = n.times()
+                            total = total + fib(i)
+                        console.write(total, " ", describe(total), " ", total / 4 % 3)
+                        loop going = i < 10
+                            i = i + 1
+                        console.write(i, going)
+                        loop total.times()
+                            total = total - 1
+                        console.write(total)
+                """;
+        TranNode top = OptimizerTests.parse(program);
+        var interpreter = new Interpreter(top);
+        for (var method : top.Classes.get(0).methods)
+            Assertions.assertTrue(interpreter.jvmMethodFor(method).isPresent(), method.name);
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("33.0 big! 2.25\n10.0false\n16.0\n", run(program, ExecutionEngine.JVM));
+    }
+
+    @Test
+    public void JvmLeavesSharingToTheInterpreter() {
+        String program = """
+                class Shared
+                    number count
+
+                    shared bump(number n)
+                        n = n + 1
+
+                    shared counted() : number result
+                        result = count
+
+                    shared divide(number n) : number result
+                        result = 1 / n
+
+                    shared start()
+                        number x
+                        bump(x)
+                        console.write(x, counted(), divide(4))
+                        console.write(divide(0))
+                """;
+        TranNode top = OptimizerTests.parse(program);
+        var interpreter = new Interpreter(top);
+        var methods = top.Classes.get(0).methods;
+        Assertions.assertTrue(interpreter.jvmMethodFor(methods.get(0)).isEmpty());
+        Assertions.assertTrue(interpreter.jvmMethodFor(methods.get(1)).isEmpty());
+        Assertions.assertTrue(interpreter.jvmMethodFor(methods.get(2)).isPresent());
+        Assertions.assertTrue(interpreter.jvmMethodFor(methods.get(3)).isEmpty());
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("1.00.00.25\n! Attempted division by zero\n", run(program, ExecutionEngine.JVM));
+    }
+
+    @Test
+    public void TieredPromotesHotMethods() {
+        String program = """
+                class Hot
+                    shared square(number n) : number result
+                        result = n * n
+
+                    shared spin(number n) : number result
+                        loop n.times()
+                            result = result + 1
+
+                    shared start()
+                        number i, total
+                        loop i < 50
+                            total = total + square(i)
+                            i = i + 1
+                        console.write(total)
+                        console.write(spin(30), spin(31))
+                """;
+        TranNode top = OptimizerTests.parse(program);
+        var interpreter = new Interpreter(top);
+        interpreter.setEngine(ExecutionEngine.TIERED);
+        interpreter.setTierThresholds(3, 20);
+        Assertions.assertEquals("40425.0\n30.031.0\n", run(interpreter));
+        var tiers = interpreter.getTiers();
+        Assertions.assertEquals(List.of(
+                "Hot.square: TREE_WALKER -> BYTECODE after 3 calls",
+                "Hot.square: BYTECODE -> JVM after 3 calls",
+                "Hot.start loop 1: TREE_WALKER -> NODES (on-stack replacement) after 20 loop iterations",
+                "Hot.spin loop 1: TREE_WALKER -> NODES (on-stack replacement) after 20 loop iterations",
+                "Hot.spin: TREE_WALKER -> BYTECODE after 20 loop iterations"), tiers.getTransitions());
+        var methods = top.Classes.get(0).methods;
+        Assertions.assertEquals(ExecutionEngine.JVM, tiers.tierOf(methods.get(0)));
+        Assertions.assertEquals(ExecutionEngine.BYTECODE, tiers.tierOf(methods.get(1)));
+        Assertions.assertEquals(ExecutionEngine.TREE_WALKER, tiers.tierOf(methods.get(2)));
+        Assertions.assertEquals(20, tiers.getBackEdges((LoopNode) methods.get(2).statements.get(0)));
+        Assertions.assertTrue(tiers.toString().startsWith("tier thresholds: 3 calls, 20 loop iterations\n"));
+        Assertions.assertTrue(tiers.toString().contains("Hot.spin: 2 calls, 51 loop iterations, BYTECODE\n"));
+        Assertions.assertTrue(tiers.toString().contains("Hot.start: 1 calls, 20 loop iterations, TREE_WALKER\n"));
+    }
+
+    @Test
+    public void TieredReplacesHotLoopsWhileTheyRun() {
+        String program = """
+                class Once
+                    number calls
+
+                    shared start()
+                        number i, n, total
+                        boolean going
+                        n = 30
+                        loop j = n.times()
+                            total = total + j
+                        loop n.times()
+                            total = total + 1
+                            n = n - 1
+                        loop i < 40
+                            i = i + 1
+                        going = true
+                        loop b = going
+                            calls = calls + 1
+                            if calls > 25
+                                going = false
+                        console.write(total, " ", j, " ", n, " ", i, " ", b, " ", calls)
+                """;
+        var interpreter = new Interpreter(OptimizerTests.parse(program));
+        interpreter.setEngine(ExecutionEngine.TIERED);
+        interpreter.setTierThresholds(1000, 10);
+        String output = run(interpreter);
+        Assertions.assertEquals(run(program, ExecutionEngine.TREE_WALKER), output);
+        Assertions.assertEquals("450.0 30.0 15.0 40.0 false 26.0\n", output);
+        Assertions.assertEquals(4, interpreter.getTiers().getTransitions().size());
+        Assertions.assertEquals("Once.start loop 1: TREE_WALKER -> NODES (on-stack replacement) after 10 loop iterations",
+                interpreter.getTiers().getTransitions().get(0));
+    }
+
+    @Test
+    public void StackRunsDeepRecursionWithoutTheJavaStack() {
+        String program = """
+                class Deep
+                    shared down(number n) : number result
+                        if n > 0
+                            result = down(n - 1) + 1
+
+                    shared countdown(number n)
+                        if n > 0
+                            countdown(n - 1)
+                        else
+                            console.write("done")
+
+                    shared start()
+                        console.write(down(DEPTH))
+                        countdown(DEPTH)
+                """;
+        assertSameOnEveryEngine(program.replace("DEPTH", "50"));
+        // far deeper than the Java stack goes on the default thread; down() is pure, but memoizing it only costs time here
+        var deep = new Interpreter(OptimizerTests.parse(program.replace("DEPTH", "100000")));
+        deep.setEngine(ExecutionEngine.STACK);
+        deep.setMemoization(false, MethodCache.DEFAULT_CAPACITY);
+        Assertions.assertEquals("100000.0\ndone\n", run(deep));
+
+        var limited = new Interpreter(OptimizerTests.parse(program.replace("DEPTH", "5000")));
+        limited.setEngine(ExecutionEngine.STACK);
+        limited.setMaxCallDepth(1000);
+        RuntimeException error = Assertions.assertThrows(RuntimeException.class, limited::start);
+        Assertions.assertEquals("Call stack overflow: recursion depth 1001 is over the limit of 1000 (calling down)", error.getMessage());
+        Assertions.assertEquals("at call depth 1001 (down)", error.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    public void TreeWalkerRunsSelfTailCallsInOneFrame() {
+        String program = """
+                class Tail
+                    shared count(number n, number acc) : number total
+                        total = acc
+                        if n > 0
+                            total = count(n - 1, acc + 1)
+                        else
+                            console.write(acc)
+
+                    shared start()
+                        console.write(count(DEPTH, 0))
+                """;
+        assertSameOnEveryEngine(program.replace("DEPTH", "50"));
+        var deep = new Interpreter(OptimizerTests.parse(program.replace("DEPTH", "1000000")));
+        Assertions.assertEquals("1000000.0\n0.0\n", run(deep));
+    }
+
+    @Test
+    public void ConstantValuesAreCopiedIntoVariables() {
+        Assertions.assertSame(BooleanIDT.TRUE, BooleanIDT.of(true));
+        Assertions.assertSame(NumberIDT.of(7), NumberIDT.of(7));
+        Assertions.assertSame(CharIDT.of('a'), CharIDT.of('a'));
+        Assertions.assertNotSame(NumberIDT.of(7), NumberIDT.of(7).asVariable());
+        Assertions.assertEquals("-0.0", NumberIDT.of(-0.0f).toString());
+        Assertions.assertThrows(IllegalStateException.class, () -> BooleanIDT.TRUE.Assign(BooleanIDT.FALSE));
+
+        String program = """
+                class Flyweights
+                    shared bump(number n, boolean b, character c)
+                        n = n + 1
+                        b = false
+                        c = 'z'
+                        console.write(n, b, c)
+
+                    shared start()
+                        number i
+                        bump(1, true, 'a')
+                        bump(1, true, 'a')
+                        i = 0
+                        loop going = i < 3
+                            i = i + 1
+                            going = false
+                        console.write(i, true, 'a')
+                        if 1 < 2
+                            console.write("still true")
+                """;
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("2.0falsez\n2.0falsez\n3.0truea\nstill true\n", run(program, ExecutionEngine.TREE_WALKER));
+    }
+
+    @Test
+    public void ObjectsKeepTheirMembersInShapedSlots() {
+        var point = new ObjectIDT(new ClassNode());
+        point.put("x", new NumberIDT(1));
+        point.put("y", new NumberIDT(2));
+        point.put("x", new NumberIDT(3));
+        Assertions.assertEquals("3.0", point.get("x").toString());
+        Assertions.assertNull(point.get("z"));
+        Assertions.assertEquals("x : 3.0\ny : 2.0\n", point.toString());
+        Assertions.assertEquals(List.of("x", "y"), List.copyOf(point.asMap().keySet()));
+
+        String program = """
+                class Point
+                    number x
+                    number y
+
+                    construct(number a, number b)
+                        x = a
+                        y = b
+
+                    sum() : number result
+                        result = x + y
+
+                    shared start()
+                        Point p, q
+                        p = new Point(1, 2)
+                        q = new Point(10, 20)
+                        console.write(p.sum(), " ", q.sum(), " ", p.sum())
+                """;
+        TranNode top = OptimizerTests.parse(program);
+        String sum = new Interpreter(top).bytecodeFor(top.Classes.get(0).methods.get(0)).get().toString();
+        Assertions.assertTrue(sum.contains("LOAD_MEMBER r0(t0), k#0(x)"), sum);
+        Assertions.assertTrue(sum.contains("LOAD_MEMBER r1(t1), k#1(y)"), sum);
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("3.0 30.0 3.0\n", run(program, ExecutionEngine.BYTECODE));
+    }
+
+    @Test
+    public void WritingAnObjectListsItsMembersInDeclarationOrder() {
+        // a HashMap of these names would give width, label, height
+        String program = """
+                class Box
+                    number width
+                    number height
+                    string label
+
+                    construct(number w, number h, string l)
+                        width = w
+                        height = h
+                        label = l
+
+                    shared start()
+                        Box b
+                        b = new Box(2, 3, "crate")
+                        console.write(b)
+                """;
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("width : 2.0\nheight : 3.0\nlabel : crate\n\n", run(program, ExecutionEngine.TREE_WALKER));
+    }
+
+    @Test
+    public void RepeatedConcatenationSharesItsText() {
+        StringIDT s = new StringIDT("");
+        StringIDT snapshot = null;
+        for (int i = 0; i < 1000; i++) {
+            s.Assign(StringIDT.concat(s, new StringIDT("ab")));
+            if (i == 100)
+                snapshot = StringIDT.concat(s, new StringIDT("!"));
+        }
+        StringIDT other = StringIDT.concat(snapshot, new StringIDT("?"));
+        Assertions.assertEquals("ab".repeat(1000), s.getValue());
+        Assertions.assertEquals("ab".repeat(101) + "!?", other.getValue());
+        Assertions.assertEquals("ab".repeat(101) + "!", snapshot.toString());
+
+        String program = """
+                class Strings
+                    shared start()
+                        string s, t
+                        number i
+                        s = ""
+                        i = 0
+                        loop i < 500
+                            s = s + "x"
+                            if i == 200
+                                t = s + "-"
+                            i = i + 1
+                        t = t + s
+                        if s > t
+                            console.write(s, " ", t)
+                        console.write(t)
+                """;
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("x".repeat(500) + " " + "x".repeat(201) + "-" + "x".repeat(500) + "\n" + "x".repeat(201) + "-" + "x".repeat(500) + "\n", run(program, ExecutionEngine.TREE_WALKER));
+    }
+
+    @Test
+    public void IntegersStayExactPastFloatPrecision() {
+        String program = """
+                class Counting
+                    shared start()
+                        integer n, sum, big, count
+                        double d
+                        number f
+                        n = 6000L
+                        loop i = n.times()
+                            sum = sum + i
+                        loop n.times()
+                            count = count + 1L
+                        console.write(sum, " ", i, " ", count)
+                        big = 16777216L
+                        big = big + 1L
+                        console.write(big, " ", big * 1000000L, " ", 7L / 2L)
+                        f = 16777216
+                        f = f + 1
+                        console.write(f, " ", 7 / 2, " ", big + 0.5)
+                        d = 0.1d + 0.2d
+                        console.write(d, " ", d + 1L)
+                        d = big
+                        n = 3
+                        console.write(d, " ", n)
+                        if big > 16777216L
+                            console.write("exact")
+                        if 7L < 7.5
+                            console.write("mixed")
+                """;
+        assertSameOnEveryEngine(program);
+        Assertions.assertEquals("17997000 6000 6000\n16777217 16777217000000 3\n1.6777216E7 3.5 1.6777216E7\n"
+                + "0.30000000000000004 1.3\n1.6777217E7 3\nexact\nmixed\n", run(program, ExecutionEngine.TREE_WALKER));
+    }
+
+    @Test
+    public void OffHeapObjectsBehaveLikeHeapObjects() {
+        String program = """
+                class Particle
+                    number x
+                    integer hits
+                    boolean alive
+                    character tag
+
+                    construct(number a, integer b, boolean c, character d)
+                        x = a
+                        hits = b
+                        alive = c
+                        tag = d
+
+                    bump(number by)
+                        x = x + by
+                        hits = hits + 1L
+                        if hits > 2L
+                            alive = false
+
+                    position() : number result
+                        result = x
+
+                    shared start()
+                        Particle p, q
+                        number i
+                        p = new Particle(1, 0L, true, 'p')
+                        i = 0
+                        loop i < 3000
+                            q = new Particle(i, 0L, true, 'q')
+                            i = i + 1
+                        p.bump(2)
+                        p.bump(3)
+                        p.bump(4)
+                        q.bump(1)
+                        console.write(p)
+                        console.write(q)
+                        console.write(p.position(), " ", q.position())
+                """;
+        String expected = "x : 10.0\nhits : 3\nalive : false\ntag : p\n\nx : 3000.0\nhits : 1\nalive : true\ntag : q\n\n10.0 3000.0\n";
+        Assertions.assertEquals(expected, run(program, ExecutionEngine.TREE_WALKER));
+        assertSameOnEveryEngine(program, expected, interpreter -> interpreter.setOffHeapObjects(true),
+                (engine, interpreter) -> Assertions.assertTrue(interpreter.offHeapBytes() > 0, engine.name()));
+    }
+
+    @Test
+    public void AllocationLimitsStopARunawayProgramOnEveryEngine() {
+        String program = """
+                class Node
+                    number value
+                    construct(number v)
+                        value = v
+
+                class Grow
+                    shared start()
+                        number i
+                        string s
+                        Node n
+                        i = 0
+                        s = "ab"
+                        loop i < 100
+                            n = new Node(i)
+                            s = s + "cd"
+                            console.write(i)
+                            i = i + 1
+                """;
+        // the console is an object too
+        String expected = "0.0\n1.0\n2.0\n3.0\n! Allocation limit exceeded: more than 5 objects allocated\n";
+        assertSameOnEveryEngine(program, expected, interpreter -> interpreter.memory().setObjectAllocationLimit(5), (engine, interpreter) -> {
+            Assertions.assertEquals(6L, interpreter.memory().objects(), engine.name());
+            Assertions.assertTrue(interpreter.memory().idts() > 0, engine.name());
+            Assertions.assertEquals(4L * 4, interpreter.memory().stringBytes(), engine.name());
+        });
+        var unlimited = new Interpreter(OptimizerTests.parse(program));
+        run(unlimited);
+        Assertions.assertEquals(101L, unlimited.memory().objects());
+
+        String appends = """
+                class Text
+                    shared start()
+                        number i
+                        string s
+                        s = "ab"
+                        loop i < 3
+                            s = s + "cd"
+                            i = i + 1
+                        console.write(s)
+                """;
+        // a compiled method charges its appends the way the tree walker does: the shorter side of each (see Rope)
+        for (ExecutionEngine engine : List.of(ExecutionEngine.TREE_WALKER, ExecutionEngine.JVM)) {
+            var interpreter = new Interpreter(OptimizerTests.parse(appends));
+            interpreter.setEngine(engine);
+            Assertions.assertEquals("abcdcdcd\n", run(interpreter), engine.name());
+            Assertions.assertEquals(2L * 6, interpreter.memory().stringBytes(), engine.name());
+        }
+    }
+
+    @Test
+    public void InternedStringsCompareTheSameOnEveryEngine() {
+        String program = """
+                class Records
+                    shared start()
+                        number i, fruit, other
+                        string category, wanted
+                        wanted = "fru" + "it"
+                        i = 0
+                        fruit = 0
+                        other = 0
+                        loop i < 40
+                            if i < 30
+                                category = "fr" + "uit"
+                            else
+                                category = "veg" + "etable"
+                            if category == wanted
+                                fruit = fruit + 1
+                            if category != wanted
+                                other = other + 1
+                            i = i + 1
+                        console.write(fruit, " ", other, " ", category)
+                """;
+        Assertions.assertEquals("30.0 10.0 vegetable\n", run(program, ExecutionEngine.TREE_WALKER));
+        assertSameOnEveryEngine(program, "30.0 10.0 vegetable\n", interpreter -> interpreter.setStringInterning(true),
+                (engine, interpreter) -> Assertions.assertTrue(interpreter.sharedStrings() > 0, engine.name()));
+    }
+
+    @Test
+    public void InterningCanBeToggledBetweenRuns() {
+        String program = """
+                class Records
+                    string wanted
+
+                    shared build()
+                        wanted = "fru" + "it"
+                        if wanted == "apple"
+                            wanted = "pear"
+
+                    shared start()
+                        string category
+                        category = "fr" + "uit"
+                        if category == wanted
+                            console.write("equal")
+                        if category != wanted
+                            console.write("different")
+                """;
+        // what build() interned has to compare equal to what start() interns
+        assertSameOnEveryEngine(program, "equal\n", interpreter -> {
+            interpreter.setStringInterning(true);
+            interpreter.initialize("build");
+            interpreter.setStringInterning(false);
+            interpreter.setStringInterning(true);
+        }, (engine, interpreter) -> {});
+    }
+
+    @Test
+    public void ScratchTemporariesOnlyKeepWhatIsStored() {
+        String program = """
+                class Scratch
+                    number total
+                    string label
+
+                    shared start()
+                        number i, x, kept
+                        string s
+                        i = 0
+                        x = 0
+                        loop i < 250 * 2
+                            x = x + (i * 2.5 - i) / 3
+                            kept = i * 1.5 + twice(i + 0.5) * 2
+                            total = total + kept
+                            i = i + 1
+                        loop going = total < 0 + 0.5
+                            total = 1
+                        s = "a"
+                        loop s != "a" + "bbbb"
+                            s = s + "b"
+                            label = s + "!"
+                        console.write(x, " ", kept, " ", total, " ", s, " ", label, " ", going, " ", fib(12 + 0.5 - 0.5))
+
+                    shared twice(number n) : number result
+                        result = n + n
+
+                    shared fib(number n) : number result
+                        if n < 2
+                            result = n
+                        else
+                            result = fib(n - 1) + fib(n - 2)
+                """;
+        String expected = run(program, ExecutionEngine.TREE_WALKER);
+        Assertions.assertEquals("62375.0 2746.5 687125.0 abbbb abbbb! false 144.0\n", expected);
+        assertSameOnEveryEngine(program, expected, interpreter -> interpreter.setScratchTemporaries(true), (engine, interpreter) -> {
+            if (engine == ExecutionEngine.TREE_WALKER) {
+                // the loops reuse a handful, however many passes they make
+                Assertions.assertTrue(interpreter.scratchTemporaries() > 0);
+                Assertions.assertTrue(interpreter.scratchTemporaries() < 16, String.valueOf(interpreter.scratchTemporaries()));
+            }
+        });
+    }
+
+    static final String LOOPS = """
+            class Loops
+                shared start()
+                    number i, sum, n
+                    boolean going
+                    i = 0
+                    loop i < 10
+                        sum = sum + i
+                        i = i + 1
+                    console.write(sum)
+                    n = 3
+                    loop j = n.times()
+                        console.write(j)
+                    going = true
+                    loop b = going
+                        going = false
+                    console.write(b, going)
+                    if i
+                        console.write("never")
+                    i = 0
+                    loop i < 4
+                        i = i + 1
+                    console.write(i)
+            """;
+
+    static void assertSameOnEveryEngine(String program) {
+        String expected = run(program, ExecutionEngine.TREE_WALKER);
+        for (ExecutionEngine engine : ExecutionEngine.values())
+            Assertions.assertEquals(expected, run(program, engine), engine.toString());
+    }
+
+    /**
+     * Run the program on every engine with a setting changed, and check that each prints what is expected.
+     * @param setUp - changes the setting, before the interpreter starts
+     * @param check - checks what the setting did, once the interpreter has run
+     */
+    static void assertSameOnEveryEngine(String program, String expected, Consumer<Interpreter> setUp, BiConsumer<ExecutionEngine, Interpreter> check) {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            var interpreter = new Interpreter(OptimizerTests.parse(program));
+            interpreter.setEngine(engine);
+            setUp.accept(interpreter);
+            Assertions.assertEquals(expected, run(interpreter), engine.name());
+            check.accept(engine, interpreter);
+        }
+    }
+
+    /**
+     * @return what the program printed, followed by the message of the exception it ended with (if any)
+     */
+    static String run(String program, ExecutionEngine engine) {
+        var interpreter = new Interpreter(OptimizerTests.parse(program));
+        interpreter.setEngine(engine);
+        return run(interpreter);
+    }
+
+    static String run(Interpreter interpreter) {
+        var out = new ByteArrayOutputStream();
+        var original = System.out;
+        System.setOut(new PrintStream(out));
+        try {
+            interpreter.start();
+        } catch (RuntimeException e) {
+            System.out.println("! " + e.getMessage());
+        } finally {
+            System.setOut(original);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,515 @@
+package Tests;
+
+import AST.*;
+import Interpreter.ExecutionEngine;
+import Interpreter.Interpreter;
+import Interpreter.MethodCache;
+import Optimizer.Optimizer;
+import Optimizer.PurityAnalysis;
+import Tran.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+public class OptimizerTests {
+    @Test
+    public void FoldsNumericLiterals() {
+        String program = """
+                class Fold
+                    shared start()
+                        number seconds
+                        seconds = 60 * 60 * 24
+                        console.write(seconds)
+                """;
+        var tran = parse(program);
+        new Optimizer(tran).foldConstants();
+        var assignment = (AssignmentNode) tran.Classes.getFirst().methods.getFirst().statements.getFirst();
+        Assertions.assertInstanceOf(NumericLiteralNode.class, assignment.expression);
+        Assertions.assertEquals(86400f, ((NumericLiteralNode) assignment.expression).value);
+        Assertions.assertEquals("86400.0\n", run(tran));
+    }
+
+    @Test
+    public void FoldsStringConcatenation() {
+        String program = """
+                class Fold
+                    shared start()
+                        string s
+                        s = "a" + "b" + "c"
+                        s = s + "d" + "e"
+                        console.write(s)
+                """;
+        var tran = parse(program);
+        new Optimizer(tran).foldConstants();
+        var statements = tran.Classes.getFirst().methods.getFirst().statements;
+        Assertions.assertEquals("\"abc\"", ((AssignmentNode) statements.get(0)).expression.toString());
+        Assertions.assertEquals("s + \"de\"", ((AssignmentNode) statements.get(1)).expression.toString());
+        Assertions.assertEquals("abcde\n", run(tran));
+    }
+
+    @Test
+    public void FoldsComparisonsAndKeepsDivisionByZero() {
+        String program = """
+                class Fold
+                    shared start()
+                        number x
+                        if 3 < 4
+                            x = 1 / 0
+                """;
+        var tran = parse(program);
+        new Optimizer(tran).foldConstants();
+        var ifNode = (IfNode) tran.Classes.getFirst().methods.getFirst().statements.getFirst();
+        Assertions.assertInstanceOf(BooleanLiteralNode.class, ifNode.condition);
+        Assertions.assertInstanceOf(MathOpNode.class, ((AssignmentNode) ifNode.statements.getFirst()).expression);
+        Assertions.assertThrows(RuntimeException.class, () -> run(tran));
+    }
+
+    @Test
+    public void AppliesOnlyExactIdentities() {
+        String program = """
+                class Fold
+                    shared start()
+                        number x
+                        number y
+                        x = 5
+                        y = x * 1
+                        y = x + 0
+                        y = x - 0
+                        console.write(x * 1)
+                """;
+        var tran = parse(program);
+        new Optimizer(tran).foldConstants();
+        var statements = tran.Classes.getFirst().methods.getFirst().statements;
+        Assertions.assertInstanceOf(VariableReferenceNode.class, ((AssignmentNode) statements.get(1)).expression);
+        Assertions.assertInstanceOf(MathOpNode.class, ((AssignmentNode) statements.get(2)).expression);
+        Assertions.assertInstanceOf(VariableReferenceNode.class, ((AssignmentNode) statements.get(3)).expression);
+        Assertions.assertEquals("5.0\n", run(tran));
+    }
+
+    @Test
+    public void PrunesConstantBranches() {
+        String program = """
+                class Dead
+                    shared start()
+                        number x
+                        x = 1
+                        if 2 > 3
+                            console.write("never")
+                        else
+                            console.write("always")
+                        loop 1 == 2
+                            console.write("never")
+                        if x < 10
+                            console.write("kept")
+                """;
+        var tran = parse(program);
+        new Optimizer(tran).optimize();
+        var statements = tran.Classes.getFirst().methods.getFirst().statements;
+        Assertions.assertEquals(3, statements.size());
+        Assertions.assertInstanceOf(MethodCallStatementNode.class, statements.get(1));
+        Assertions.assertInstanceOf(IfNode.class, statements.get(2));
+        Assertions.assertEquals("always\nkept\n", run(tran));
+    }
+
+    @Test
+    public void RemovesUnusedLocalsAndDeadStores() {
+        String program = """
+                class Dead
+                    shared start()
+                        number used, unused, written
+                        string label
+                        used = 2
+                        written = used * 3
+                        label = "never read"
+                        console.write(used)
+                """;
+        var tran = parse(program);
+        new Optimizer(tran).optimize();
+        var method = tran.Classes.getFirst().methods.getFirst();
+        Assertions.assertEquals(1, method.locals.size());
+        Assertions.assertEquals("used", method.locals.getFirst().name);
+        Assertions.assertEquals(2, method.statements.size());
+        Assertions.assertEquals("2.0\n", run(tran));
+    }
+
+    @Test
+    public void KeepsStoresThatCanThrow() {
+        String program = """
+                class Dead
+                    shared start()
+                        number zero, written
+                        zero = 0
+                        written = 1 / zero
+                """;
+        var tran = parse(program);
+        new Optimizer(tran).optimize();
+        Assertions.assertEquals(2, tran.Classes.getFirst().methods.getFirst().statements.size());
+        Assertions.assertThrows(RuntimeException.class, () -> run(tran));
+    }
+
+    @Test
+    public void KeepsMemberReadsThatCanFail() {
+        // o.g() swaps the globals for o's members, and o only got "a" - its constructor took one argument
+        String program = """
+                class A
+                    number a
+                    number x
+                    construct(number p)
+                        a = p
+                    shared g() : number r
+                        number k
+                        k = x
+                        console.write("reached")
+                    shared start()
+                        A o
+                        o = new A(1)
+                        console.write(0 + o.g())
+                """;
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            var interpreter = new Interpreter(optimized(program));
+            interpreter.setEngine(engine);
+            Assertions.assertEquals("! Unable to find variable x\n", EngineTests.run(interpreter), engine.name());
+        }
+    }
+
+    @Test
+    public void HoistsLoopInvariants() {
+        String program = """
+                class Hoist
+                    shared start()
+                        number n, limit, rate, total
+                        n = 0
+                        limit = 5
+                        rate = 2
+                        loop n < limit * 2
+                            total = total + rate * 3
+                            n = n + 1
+                        console.write(total)
+                """;
+        String expected = run(parse(program));
+        var tran = parse(program);
+        new Optimizer(tran).hoistLoopInvariants();
+        var method = tran.Classes.getFirst().methods.getFirst();
+        Assertions.assertEquals(6, method.locals.size());
+        var loop = (LoopNode) method.statements.get(5);
+        Assertions.assertEquals("n < $licm0", loop.expression.toString());
+        Assertions.assertEquals("total = total + $licm1\n", loop.statements.getFirst().toString());
+        Assertions.assertEquals("60.0\n", expected);
+        Assertions.assertEquals(expected, run(tran));
+    }
+
+    @Test
+    public void HoistsOutOfNestedLoops() {
+        String program = """
+                class Hoist
+                    shared start()
+                        number i, j, base, total
+                        base = 4
+                        loop i < 3
+                            j = 0
+                            loop j < 3
+                                total = total + base * base
+                                j = j + 1
+                            i = i + 1
+                        console.write(total)
+                """;
+        String expected = run(parse(program));
+        var tran = parse(program);
+        new Optimizer(tran).hoistLoopInvariants();
+        var statements = tran.Classes.getFirst().methods.getFirst().statements;
+        Assertions.assertEquals("$licm0 = base * base\n", statements.get(1).toString());
+        Assertions.assertInstanceOf(LoopNode.class, statements.get(2));
+        Assertions.assertEquals("144.0\n", expected);
+        Assertions.assertEquals(expected, run(tran));
+    }
+
+    @Test
+    public void DoesNotHoistAcrossMethodCalls() {
+        String program = """
+                class Hoist
+                    number rate
+
+                    construct()
+                        rate = 0
+
+                    bump()
+                        rate = rate + 1
+
+                    run()
+                        number n, total
+                        loop n < 3
+                            total = total + rate * 2
+                            bump()
+                            n = n + 1
+                        console.write(total)
+
+                    shared start()
+                        Hoist h
+                        h = new Hoist()
+                        h.run()
+                """;
+        String expected = run(parse(program));
+        var tran = parse(program);
+        new Optimizer(tran).hoistLoopInvariants();
+        var run = tran.Classes.getFirst().methods.get(1);
+        Assertions.assertEquals(2, run.locals.size());
+        Assertions.assertEquals("6.0\n", expected);
+        Assertions.assertEquals(expected, run(tran));
+    }
+
+    @Test
+    public void InlinesGetterIntoExpression() {
+        var tran = parse(STUDENT);
+        var report = new Optimizer(tran).inlineMethods();
+        Assertions.assertEquals(List.of("student.print: inlined student.getAverage"), report);
+        var print = (MethodCallStatementNode) tran.Classes.getFirst().methods.get(1).statements.getFirst();
+        Assertions.assertInstanceOf(MathOpNode.class, print.parameters.getLast());
+        Assertions.assertEquals(run(parse(STUDENT)), run(tran));
+    }
+
+    @Test
+    public void InlinesCallStatementWithRenamedLocals() {
+        String program = """
+                class Inline
+                    shared double(number value)
+                        number twice
+                        twice = value * 2
+                        value = twice
+
+                    shared start()
+                        number n, twice
+                        n = 5
+                        twice = 1
+                        double(n)
+                        double(n + 1)
+                        console.write(n, twice)
+                """;
+        String expected = run(parse(program));
+        var tran = parse(program);
+        var report = new Optimizer(tran).inlineMethods();
+        Assertions.assertEquals(2, report.size());
+        var start = tran.Classes.getFirst().methods.get(1);
+        Assertions.assertEquals(5, start.locals.size());
+        for (StatementNode statement : start.statements)
+            Assertions.assertFalse(statement instanceof MethodCallStatementNode call && call.methodName.equals("double"));
+        Assertions.assertEquals("10.01.0\n", expected);
+        Assertions.assertEquals(expected, run(tran));
+    }
+
+    @Test
+    public void DoesNotInlineCallersOrLargeMethods() {
+        String program = """
+                class Inline
+                    shared count(number n) : number result
+                        result = n
+                        if n > 0
+                            count(n - 1)
+
+                    shared square(number n) : number result
+                        result = n * n
+
+                    shared start()
+                        count(3)
+                        console.write(square(3))
+                """;
+        var tran = parse(program);
+        Assertions.assertEquals(List.of(), new Optimizer(tran).inlineMethods(2));
+        Assertions.assertEquals(List.of("Inline.start: inlined Inline.square"), new Optimizer(tran).inlineMethods());
+        Assertions.assertEquals(run(parse(program)), run(tran));
+    }
+
+    @Test
+    public void ReplacesObjectsThatDoNotEscape() {
+        String program = """
+                class Counter
+                    number count
+                    construct(number first)
+                        count = first
+                    add(number n)
+                        count = count + n
+                    show()
+                        console.write("count ", count)
+                    shared start()
+                        Counter c
+                        number i
+                        c = new Counter(5)
+                        c.add(3)
+                        i = 2
+                        c.add(i)
+                        c.show()
+                """;
+        String expected = run(parse(program));
+        Assertions.assertEquals("count 10.0\n", expected);
+        var tran = parse(program);
+        Assertions.assertEquals(List.of("Counter.start: replaced c (new Counter)"), new Optimizer(tran).replaceScalars());
+        var start = tran.Classes.getFirst().methods.getLast();
+        Assertions.assertTrue(start.locals.stream().noneMatch(local -> local.name.equals("c")));
+        for (StatementNode statement : start.statements)
+            Assertions.assertFalse(statement instanceof MethodCallStatementNode call && call.objectName.isPresent() && call.objectName.get().equals("c"));
+
+        var student = parse(STUDENT);
+        var optimizer = new Optimizer(student);
+        optimizer.inlineMethods();
+        Assertions.assertEquals(List.of("student.start: replaced sa (new student)", "student.start: replaced sb (new student)"), optimizer.replaceScalars());
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            var interpreter = new Interpreter(optimized(program));
+            interpreter.setEngine(engine);
+            Assertions.assertEquals(expected, EngineTests.run(interpreter), engine.name());
+            // only the console is left
+            Assertions.assertEquals(1L, interpreter.memory().objects(), engine.name());
+            interpreter = new Interpreter(optimized(STUDENT));
+            interpreter.setEngine(engine);
+            Assertions.assertEquals(run(parse(STUDENT)), EngineTests.run(interpreter), engine.name());
+        }
+    }
+
+    @Test
+    public void KeepsObjectsThatEscape() {
+        String program = """
+                class Counter
+                    number count
+                    construct(number first)
+                        count = first
+                    add(number n)
+                        count = count + n
+                    shared show(Counter c)
+                        console.write(c)
+                    shared build()
+                        Counter c
+                        c = new Counter(1)
+                        c.add(1)
+                    shared start()
+                        Counter c, d
+                        c = new Counter(5)
+                        show(c)
+                        d = new Counter(7)
+                        d.add(1)
+                        build()
+                """;
+        var tran = parse(program);
+        Assertions.assertEquals(List.of(), new Optimizer(tran).replaceScalars());
+        Assertions.assertEquals(run(parse(program)), run(tran));
+    }
+
+    @Test
+    public void FindsPureSharedMethods() {
+        var tran = parse(TEMPERATURES);
+        var pure = new PurityAnalysis(tran).pureMethods();
+        var methods = tran.Classes.getFirst().methods;
+        Assertions.assertTrue(pure.contains(methods.get(0)));
+        Assertions.assertTrue(pure.contains(methods.get(1)));
+        Assertions.assertFalse(pure.contains(methods.get(2)));
+        Assertions.assertFalse(pure.contains(methods.get(3)));
+        Assertions.assertFalse(pure.contains(methods.get(4)));
+    }
+
+    @Test
+    public void MemoizesPureCalls() {
+        var interpreter = new Interpreter(parse(TEMPERATURES));
+        String output = run(interpreter);
+        Assertions.assertEquals(8, interpreter.getMethodCache().getHits());
+        Assertions.assertEquals(3, interpreter.getMethodCache().getMisses());
+        Assertions.assertEquals(3, interpreter.getMethodCache().size());
+
+        var uncached = new Interpreter(parse(TEMPERATURES));
+        uncached.setMemoization(false, MethodCache.DEFAULT_CAPACITY);
+        Assertions.assertEquals(output, run(uncached));
+        Assertions.assertEquals(0.0, uncached.getMethodCache().getHitRate());
+    }
+
+    static final String TEMPERATURES = """
+            class Temperature
+                number calls
+
+                shared toCelsius(number f) : number c
+                    c = (f - 32) * 5 / 9
+
+                shared roundTrip(number f) : number back
+                    back = toCelsius(f) * 9 / 5 + 32
+
+                shared counted(number f) : number c
+                    calls = calls + 1
+                    c = f
+
+                shared twice(number f) : number result
+                    f = f * 2
+                    result = f
+
+                shared start()
+                    number i
+                    loop i < 5
+                        console.write(toCelsius(212), roundTrip(50))
+                        i = i + 1
+                    console.write(counted(1))
+            """;
+
+    @Test
+    public void StudentOutputUnchanged() {
+        Assertions.assertEquals(run(parse(STUDENT)), run(optimized(STUDENT)));
+    }
+
+    static final String STUDENT = """
+            class student
+                number gradea
+                number gradeb
+                number gradec
+                string firstname
+                string lastname
+
+                construct (string fname, string lname, number ga, number gb, number gc)
+                    firstname = fname
+                    lastname = lname
+                    gradea = ga
+                    gradeb = gb
+                    gradec = gc
+
+                getAverage() : number avg
+                    avg = (gradea + gradeb + gradec)/3
+
+                print()
+                    console.write(firstname, " ", lastname, " ", getAverage())
+
+                shared start()
+                    student sa
+                    student sb
+                    sa = new student("michael","phipps",100,99,98)
+                    sb = new student("tom","johnson",80,75,83)
+                    sa.print()
+                    sb.print()
+            """;
+
+    static TranNode optimized(String program) {
+        var tran = parse(program);
+        new Optimizer(tran).optimize();
+        return tran;
+    }
+
+    static TranNode parse(String program) {
+        try {
+            var tran = new TranNode();
+            new Parser(tran, new Lexer(program).Lex()).Tran();
+            return tran;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String run(TranNode tran) {
+        return run(new Interpreter(tran));
+    }
+
+    static String run(Interpreter interpreter) {
+        var out = new ByteArrayOutputStream();
+        var original = System.out;
+        System.setOut(new PrintStream(out));
+        try {
+            interpreter.start();
+        } finally {
+            System.setOut(original);
+        }
+        return out.toString();
+    }
+}
@@ -108,9 +108,19 @@ public class Lexer {
                 characterPosition++;
             }
         }
+        // 10L is an integer literal, 0.1d a double literal (like Java)
+        Token.TokenTypes type = Token.TokenTypes.NUMBER;
+        if (!textManager.isAtEnd() && !hasDecimal && Character.toUpperCase(textManager.peekCharacter()) == 'L')
+            type = Token.TokenTypes.INTEGER;
+        else if (!textManager.isAtEnd() && Character.toUpperCase(textManager.peekCharacter()) == 'D')
+            type = Token.TokenTypes.DOUBLE;
+        if (type != Token.TokenTypes.NUMBER) {
+            textManager.getCharacter();
+            characterPosition++;
+        }
         if (!textManager.isAtEnd() && Character.isLetter(textManager.peekCharacter()))
             throw new SyntaxErrorException("Numbers may not contain alphabetic characters", lineNumber, characterPosition);
-        return new Token(Token.TokenTypes.NUMBER, lineNumber, initialPosition, buffer);
+        return new Token(type, lineNumber, initialPosition, buffer);
     }
 
     public Token readPunctuation() throws SyntaxErrorException {
@@ -503,7 +503,7 @@ public class Parser {
         return factor;
     }
 
-    // Factor = NUMBER | VariableReference |  STRINGLITERAL | CHARACTERLITERAL | MethodCallExpression | "(" Expression ")" | "new" IDENTIFIER "(" (Expression ("," Expression )*)? ")"
+    // Factor = NUMBER | INTEGER | DOUBLE | VariableReference |  STRINGLITERAL | CHARACTERLITERAL | MethodCallExpression | "(" Expression ")" | "new" IDENTIFIER "(" (Expression ("," Expression )*)? ")"
     private Optional<ExpressionNode> Factor() throws SyntaxErrorException {
         if (tokenManager.peek(0).isPresent() && tokenManager.peek(0).get().getType() == Token.TokenTypes.NUMBER) {
             Optional<Token> number = tokenManager.matchAndRemove(Token.TokenTypes.NUMBER);
@@ -511,6 +511,22 @@ public class Parser {
             numericLiteral.value = Float.parseFloat(number.get().getValue());
             return Optional.of(numericLiteral);
         }
+        if (tokenManager.peek(0).get().getType() == Token.TokenTypes.INTEGER) {
+            Token integer = tokenManager.matchAndRemove(Token.TokenTypes.INTEGER).get();
+            IntegerLiteralNode integerLiteral = new IntegerLiteralNode();
+            try {
+                integerLiteral.value = Long.parseLong(integer.getValue());
+            } catch (NumberFormatException e) {
+                throw new SyntaxErrorException("Integer literal out of range", integer.getLineNumber(), integer.getColumnNumber());
+            }
+            return Optional.of(integerLiteral);
+        }
+        if (tokenManager.peek(0).get().getType() == Token.TokenTypes.DOUBLE) {
+            Optional<Token> number = tokenManager.matchAndRemove(Token.TokenTypes.DOUBLE);
+            DoubleLiteralNode doubleLiteral = new DoubleLiteralNode();
+            doubleLiteral.value = Double.parseDouble(number.get().getValue());
+            return Optional.of(doubleLiteral);
+        }
         if (tokenManager.peek(0).get().getType() == Token.TokenTypes.QUOTEDSTRING) {
             Optional<Token> quotedString = tokenManager.matchAndRemove(Token.TokenTypes.QUOTEDSTRING);
             StringLiteralNode stringLiteral = new StringLiteralNode();
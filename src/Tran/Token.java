@@ -3,7 +3,7 @@ import java.util.Optional;
 
 public class Token {
     public enum TokenTypes {
-        WORD,  NUMBER, // These require a String value
+        WORD,  NUMBER, INTEGER, DOUBLE, // These require a String value
         ASSIGN, LPAREN, RPAREN, COLON, DOT, // punctuation
         PLUS, MINUS, TIMES, DIVIDE, MODULO, COMMA, // punctuation
         EQUAL, NOTEQUAL, LESSTHAN, LESSTHANEQUAL, GREATERTHAN, GREATERTHANEQUAL, // punctuation